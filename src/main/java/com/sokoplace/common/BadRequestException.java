@@ -0,0 +1,10 @@
+package com.sokoplace.common;
+
+// Thrown when a request value fails a check the service layer makes, e.g. an invalid pagination cursor or
+// page size; mapped to 400 Bad Request. Other IllegalArgumentExceptions are bugs or bad configuration.
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sokoplace.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Position of the last row on a page: the row's sort key (null when sorting by id alone) plus its id.
+// The id breaks ties between rows sharing the same sort key, so a seek query can resume exactly
+// where the previous page ended: WHERE (key, id) > (:key, :id) ORDER BY key, id
+// Encoded as URL-safe Base64 so clients treat it as an opaque token.
+
+public record Cursor(long id, String key) {
+
+    private static final String SEPARATOR = ":";
+
+    public String encode() {
+        String raw = key == null ? String.valueOf(id) : id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns null for a missing token (first page)
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 2);  // the key itself may contain the separator
+            long id = Long.parseLong(parts[0]);
+            return new Cursor(id, parts.length > 1 ? parts[1] : null);
+        } catch (IllegalArgumentException ex) {  // also covers NumberFormatException
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.sokoplace.common;
+
+import java.util.List;
+
+// One page of a keyset (cursor) paginated listing.
+// 'next' is an opaque token for the following page; null when there are no more rows.
+// Clients pass 'next' back as the 'cursor' request parameter to continue where they left off.
+
+public record CursorPage<T>(
+        List<T> items,
+        String next
+) {}
@@ -0,0 +1,39 @@
+package com.sokoplace.common;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+// The version of a single row for conditional GETs: id + updatedAt identify one state of one resource.
+// eTag() is a strong validator (it changes whenever updatedAt does, to the microsecond),
+// lastModified() feeds the Last-Modified header, which HTTP only carries to the second.
+// updated_at is written as local time (LocalDateTime.now()), so it is read back in the same zone.
+
+public record ResourceVersion(Long id, LocalDateTime updatedAt) {
+
+    public String eTag() {
+        long micros = ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), updatedAt);
+        return "\"" + id + "-" + Long.toHexString(micros) + "\"";
+    }
+
+    public long lastModified() {
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Checks If-None-Match / If-Modified-Since against this version. When the client's copy is current the
+    // response is turned into a 304 Not Modified (with ETag and Last-Modified set) and the caller returns no body.
+    public boolean isNotModified(WebRequest request) {
+        return request.checkNotModified(eTag(), lastModified());
+    }
+
+    // 200 OK carrying this version's validators
+    public <T> ResponseEntity<T> ok(T body) {
+        return ResponseEntity.ok()
+                .eTag(eTag())
+                .lastModified(lastModified())
+                .body(body);
+    }
+}
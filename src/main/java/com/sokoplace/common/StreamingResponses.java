@@ -0,0 +1,71 @@
+package com.sokoplace.common;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+// Shared by the handlers that return a StreamingResponseBody (the bulk exports).
+
+public final class StreamingResponses {
+
+    private StreamingResponses() {
+    }
+
+    // Accept-Encoding is a list of codings with optional q-values (RFC 9110 12.5.3): "gzip;q=0" refuses gzip,
+    // and "*" covers any coding not listed by name. An unparseable q-value makes that entry unacceptable.
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip == null ? 0 : gzip, quality(parts));
+            } else if (coding.equals("*")) {
+                wildcard = quality(parts);
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return wildcard != null && wildcard > 0;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // spring.mvc.async.request-timeout applies to every async request, including the order endpoints.
+    // A streamed body is written asynchronously too, so a long download sets its own timeout here:
+    // the interceptor runs just before async processing starts, when the timeout can still be changed.
+    public static void setAsyncTimeout(WebRequest request, Duration timeout) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(StreamingResponses.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest asyncRequest, Callable<T> task) {
+                        if (asyncRequest instanceof AsyncWebRequest webRequest) {
+                            webRequest.setTimeout(timeout.toMillis());
+                        }
+                    }
+                });
+    }
+}
@@ -1,8 +1,13 @@
 package com.sokoplace.config;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.IdempotencyKeyInUseException;
+import com.sokoplace.customerOrder.OrderQueueFullException;
+import com.sokoplace.product.inventory.InsufficientStockException;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -15,9 +20,11 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import javax.naming.AuthenticationException;
 import java.nio.file.AccessDeniedException;
+import java.util.concurrent.RejectedExecutionException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -53,6 +60,28 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);  // 409
     }
 
+    // An order asks for more units than are in stock
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<ErrorResponse> handleInsufficientStock() {
+        ErrorResponse errorResponse = new ErrorResponse("INSUFFICIENT STOCK");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);  // 409
+    }
+
+    // Another instance is still creating the order of this Idempotency-Key
+    @ExceptionHandler(IdempotencyKeyInUseException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyInUse() {
+        ErrorResponse errorResponse = new ErrorResponse("REQUEST WITH THIS IDEMPOTENCY KEY IN PROGRESS");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);  // 409
+    }
+
+    // Order group commit is enabled and its queue is full; the client should retry shortly
+    @ExceptionHandler(OrderQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleOrderQueueFull() {
+        ErrorResponse errorResponse = new ErrorResponse("TOO MANY ORDERS - TRY AGAIN LATER");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1").body(errorResponse);  // 429
+    }
+
     // Handle '@Valid' '@RequestBody' validation exceptions
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidationException() {
@@ -91,6 +120,13 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
 
+    // Malformed request values caught in the service layer, e.g. an invalid pagination cursor
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ErrorResponse> handleBadRequestException() {
+        ErrorResponse errorResponse = new ErrorResponse("INVALID REQUEST ARGUMENT");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<ErrorResponse> handleHttpMethodException() {
         ErrorResponse errorResponse = new ErrorResponse("METHOD NOT SUPPORTED");
@@ -110,6 +146,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);  // 503
     }
 
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorResponse> handleUploadTooLarge() {
+        ErrorResponse errorResponse = new ErrorResponse("UPLOAD TOO LARGE");
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(errorResponse);  // 413
+    }
+
+    // A bounded worker queue is full, e.g. image processing; the client should retry later
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorResponse> handleRejectedExecution() {
+        ErrorResponse errorResponse = new ErrorResponse("SERVER BUSY - TRY AGAIN LATER");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);  // 503
+    }
+
     // General exception handler. Handles any exception not explicitly defined above
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGeneralException() {
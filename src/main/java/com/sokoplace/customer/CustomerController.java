@@ -1,20 +1,26 @@
 package com.sokoplace.customer;
 
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.common.ResourceVersion;
 import com.sokoplace.customer.dto.CustomerRequest;
 import com.sokoplace.customer.dto.CustomerResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 // ResponseEntity represents the HTTP response: status code, headers, body (payload)
 // ResponseEntity.ok(createdProduct) -> 200 Ok, ResponseEntity.status(HttpStatus.CREATED).body(savedProduct) -> 201 created
 // ResponseEntity.notFound(), ResponseEntity.badRequest().body("Invalid"), etc.
 // Create a custom header object, then ResponseEntity.ok().headers(customHeaders).body(...)
 // @Valid: corresponds to validation in DTO; for incoming @ResponseBody
+// Single-customer GETs are conditional: only the customer's version (id + updatedAt) is read first,
+// and the full customer is loaded and serialized only when the client's copy is out of date.
 
 @RestController
 @RequestMapping("/api/v1/customers")
@@ -27,20 +33,33 @@ public class CustomerController {
     }
 
     @GetMapping("/{Id}")
-    public ResponseEntity<CustomerResponse> getCustomerById(@PathVariable Long Id) {
+    public ResponseEntity<CustomerResponse> getCustomerById(@PathVariable Long Id, WebRequest request) {
+        if (customerService.findCustomerVersion(Id).isNotModified(request)) {
+            return null;  // 304 already written
+        }
         CustomerResponse responseObject = customerService.findCustomerById(Id);
-        return ResponseEntity.ok(responseObject);
+        return versioned(responseObject);
     }
 
     @GetMapping("/email/{email}")
-    public ResponseEntity<CustomerResponse> getCustomerByEmail(@Valid @PathVariable String email) {
+    public ResponseEntity<CustomerResponse> getCustomerByEmail(@Valid @PathVariable String email, WebRequest request) {
+        if (customerService.findCustomerVersionByEmail(email).isNotModified(request)) {
+            return null;
+        }
         CustomerResponse responseObject = customerService.findCustomerByEmail(email);
-        return ResponseEntity.ok(responseObject);
+        return versioned(responseObject);
     }
 
+    // Cursor paginated: pass the 'next' value of a page as 'cursor' to get the following page.
+    // Optional filters on creation time (ISO date-time, e.g. 2025-06-01T00:00:00): createdFrom inclusive,
+    // createdTo exclusive. For every customer at once, use /export.
     @GetMapping
-    public ResponseEntity<List<CustomerResponse>> getAllCustomers() {
-        List<CustomerResponse> responseObject = customerService.findAllCustomers();
+    public ResponseEntity<CursorPage<CustomerResponse>> getAllCustomers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${sokoplace.pagination.default-page-size:20}") int size) {
+        CursorPage<CustomerResponse> responseObject = customerService.findCustomers(createdFrom, createdTo, cursor, size);
         return ResponseEntity.ok(responseObject);
     }
 
@@ -65,4 +84,9 @@ public class CustomerController {
         return ResponseEntity.noContent().build();  // HTTP 204
     }
 
+    // The customer may have changed since the version check; the headers always describe the body sent
+    private ResponseEntity<CustomerResponse> versioned(CustomerResponse customer) {
+        return new ResourceVersion(customer.Id(), customer.updatedAt()).ok(customer);
+    }
+
 }
@@ -1,8 +1,17 @@
 package com.sokoplace.customer;
 
+import com.sokoplace.common.ResourceVersion;
+import com.sokoplace.customer.dto.CustomerResponse;
+import com.sokoplace.customerOrder.OrderItemId;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 // JPA parses method names e.g. findByName and creates / implements SQL queries
@@ -17,6 +26,51 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
     Optional<Customer> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // Just the id and updatedAt, for answering conditional GETs without loading the customer
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.sokoplace.common.ResourceVersion(c.Id, c.updatedAt) FROM Customer c WHERE c.Id = :id")
+    Optional<ResourceVersion> findVersionById(Long id);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.sokoplace.common.ResourceVersion(c.Id, c.updatedAt) FROM Customer c WHERE c.email = :email")
+    Optional<ResourceVersion> findVersionByEmail(String email);
+
+    // Keyset page of customers created in [from, to): resumes after the last id of the previous page, so every
+    // page costs the same however deep it is. Selected straight into CustomerResponse, no entities are loaded.
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.sokoplace.customer.dto.CustomerResponse(c.Id, c.name, c.email, c.updatedAt) " +
+            "FROM Customer c WHERE c.Id > :afterId AND c.createdAt >= :from AND c.createdAt < :to ORDER BY c.Id")
+    List<CustomerResponse> findResponsesAfter(Long afterId, LocalDateTime from, LocalDateTime to, Limit limit);
+
+    // A single DELETE statement, unlike deleteById, which loads the customer and, through the orders cascade,
+    // every order before removing them one by one. The database's ON DELETE CASCADE removes the orders and
+    // their items instead. Returns the number of customers deleted (0 or 1).
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Customer c WHERE c.Id = :Id")
+    int deleteCustomerById(Long Id);
+
+    // Deletes every order of the customer (order_item rows follow through ON DELETE CASCADE) and returns the
+    // keys of the items those orders had, for the read models built from order_item. The join sees order_item
+    // as it was when the statement started, before the cascade.
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH deleted AS (DELETE FROM customer_order WHERE customer_id = :customerId RETURNING id)
+            SELECT i.customer_order_id AS customerOrderId, i.product_id AS productId
+            FROM deleted d JOIN order_item i ON i.customer_order_id = d.id
+            """)
+    List<DeletedOrderItem> deleteOrdersByCustomerId(Long customerId);
+
+    // A row of deleteOrdersByCustomerId: the primary key of an order_item row
+    interface DeletedOrderItem {
+        Long getCustomerOrderId();
+        Long getProductId();
+
+        default OrderItemId toId() {
+            return new OrderItemId(getCustomerOrderId(), getProductId());
+        }
+    }
 }
 
 
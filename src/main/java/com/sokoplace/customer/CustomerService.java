@@ -1,13 +1,22 @@
 package com.sokoplace.customer;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.common.ResourceVersion;
 import com.sokoplace.customer.dto.CustomerRequest;
 import com.sokoplace.customer.dto.CustomerResponse;
+import com.sokoplace.customer.email.CustomerEmailFilter;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 //  Though you could inject repositories directly into controllers,
@@ -25,16 +34,31 @@ import java.util.List;
 
 @Service
 public class CustomerService {
+
+    // Upper bound on a client-requested page size
+    static final int MAX_PAGE_SIZE = 100;
+    // Stand-ins for a missing createdAt bound; both within the range of a PostgreSQL timestamp
+    public static final LocalDateTime EARLIEST = LocalDateTime.of(1, 1, 1, 0, 0);
+    public static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     private final CustomerRepository customerRepository;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           CustomerEmailFilter customerEmailFilter,
+                           ApplicationEventPublisher eventPublisher) {
         this.customerRepository = customerRepository;
+        this.customerEmailFilter = customerEmailFilter;
+        this.eventPublisher = eventPublisher;
     }
 
+    // A new email usually costs no lookup: the filter rules it out. If a duplicate slips through
+    // (a concurrent signup), the unique constraint rejects the insert with the same 409.
     @Transactional
     public CustomerResponse createCustomer(CustomerRequest customerRequest) {
-        if (customerRepository.existsByEmail(customerRequest.email())) {
+        if (emailTaken(customerRequest.email())) {
             throw new DataIntegrityViolationException("Email already exists");
         }
 
@@ -43,6 +67,7 @@ public class CustomerService {
         customer.setEmail(customerRequest.email());  // setter method
 
         Customer savedCustomer = customerRepository.save(customer);
+        customerEmailFilter.add(savedCustomer.getEmail());
         return mapToCustomerResponse(savedCustomer);
     }
 
@@ -54,7 +79,8 @@ public class CustomerService {
         customer.setName(customerRequest.name());
         customer.setEmail(customerRequest.email());
 
-        Customer updatedCustomer = customerRepository.save(customer);
+        Customer updatedCustomer = customerRepository.saveAndFlush(customer);  // flush runs @PreUpdate: fresh updatedAt
+        customerEmailFilter.add(updatedCustomer.getEmail());
         return mapToCustomerResponse(updatedCustomer);
     }
 
@@ -74,28 +100,74 @@ public class CustomerService {
         return mapToCustomerResponse(customer);
     }
 
-    @Transactional
-    public List<CustomerResponse> findAllCustomers() {
-        List<Customer> customers = customerRepository.findAll();
+    // Version lookups for conditional GETs: one indexed read of two columns, no entity is loaded
+    public ResourceVersion findCustomerVersion(Long Id) {
+        return customerRepository.findVersionById(Id)
+                .orElseThrow(() -> new EntityNotFoundException("Customer not found"));
+    }
+
+    public ResourceVersion findCustomerVersionByEmail(String email) {
+        return customerRepository.findVersionByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("Customer not found"));
+    }
 
-        return customers.stream()
-                .map(this::mapToCustomerResponse)
-                .toList();
+    // Customers in id order, optionally only those created in [createdFrom, createdTo). Pass a page's 'next'
+    // back as 'cursor' for the following page, with the same filters.
+    public CursorPage<CustomerResponse> findCustomers(LocalDateTime createdFrom, LocalDateTime createdTo,
+                                                      String cursor, int size) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        LocalDateTime from = createdFrom == null ? EARLIEST : createdFrom;
+        LocalDateTime to = createdTo == null ? LATEST : createdTo;
+        if (from.isAfter(to)) {
+            throw new BadRequestException("createdFrom must not be after createdTo");
+        }
+        Cursor after = Cursor.decode(cursor);
+
+        // Fetch one extra row: if it comes back, there is a next page
+        List<CustomerResponse> customers = customerRepository.findResponsesAfter(
+                after == null ? 0L : after.id(), from, to, Limit.of(pageSize + 1));
+        boolean hasNext = customers.size() > pageSize;
+        List<CustomerResponse> page = hasNext ? List.copyOf(customers.subList(0, pageSize)) : customers;
+        String next = hasNext ? new Cursor(page.get(page.size() - 1).Id(), null).encode() : null;
+        return new CursorPage<>(page, next);
     }
 
+    // Set-based: no order is loaded. One statement deletes the orders (the database cascades to their items)
+    // and returns the items they had, so an OrderItemsChangedEvent per order can take them out of the related
+    // products and suggestion order counts after commit; a second deletes the customer.
+    // For customers with very long histories, CustomerPurgeService deletes the orders in batches instead.
+    // The units are deliberately not returned to product.stock_quantity: deleting a customer erases their
+    // history, it does not cancel their orders. Cancelling is DELETE /api/v1/orders/{id}, which does return them.
     @Transactional
     public void deleteCustomer(Long Id) {
-        if (!customerRepository.existsById(Id)) {
+        List<CustomerRepository.DeletedOrderItem> items = customerRepository.deleteOrdersByCustomerId(Id);
+        if (customerRepository.deleteCustomerById(Id) == 0) {
             throw new EntityNotFoundException("Customer not found");
         }
-        customerRepository.deleteById(Id);
+        OrderItemsChangedEvent.ordersDeleted(items.stream().map(CustomerRepository.DeletedOrderItem::toId).toList())
+                .forEach(eventPublisher::publishEvent);
+    }
+
+    private boolean emailTaken(String email) {
+        if (!customerEmailFilter.mightContain(email)) {
+            return false;
+        }
+        boolean exists = customerRepository.existsByEmail(email);
+        if (!exists) {
+            customerEmailFilter.recordFalsePositive();
+        }
+        return exists;
     }
 
     private CustomerResponse mapToCustomerResponse(Customer customer) {
         return new CustomerResponse(
                 customer.getId(),
                 customer.getName(),
-                customer.getEmail()  // getter method
+                customer.getEmail(),  // getter method
+                customer.getUpdatedAt()
         );
     }
 }
@@ -0,0 +1,91 @@
+package com.sokoplace.customer.bulk;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.StreamingResponses;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+// Bulk customer operations for admins. The export streams instead of paging, for tools that need
+// every customer (or every customer created in a period) in one response. The purge is the background
+// variant of DELETE /api/v1/customers/{id} for customers with very long order histories.
+
+@RestController
+@RequestMapping("/api/v1/customers")
+public class CustomerBulkController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final CustomerExportService customerExportService;
+    private final CustomerPurgeService customerPurgeService;
+    private final Duration exportTimeout;
+
+    @Autowired
+    public CustomerBulkController(CustomerExportService customerExportService,
+                                  CustomerPurgeService customerPurgeService,
+                                  @Value("${sokoplace.customers.export.async-timeout:30m}") Duration exportTimeout) {
+        this.customerExportService = customerExportService;
+        this.customerPurgeService = customerPurgeService;
+        this.exportTimeout = exportTimeout;
+    }
+
+    // NDJSON, gzip-compressed when the client's Accept-Encoding allows gzip. The body is written after the
+    // handler returns, so the database connection is only taken while the rows are being written.
+    // Only this request gets the long async timeout.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCustomers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        if (createdFrom != null && createdTo != null && createdFrom.isAfter(createdTo)) {
+            // Checked here as well: once streaming has started the status can no longer change to 400
+            throw new BadRequestException("createdFrom must not be after createdTo");
+        }
+        boolean gzip = StreamingResponses.acceptsGzip(acceptEncoding);
+        StreamingResponses.setAsyncTimeout(request, exportTimeout);
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                customerExportService.exportCustomers(createdFrom, createdTo, compressed);
+                compressed.finish();
+            } else {
+                customerExportService.exportCustomers(createdFrom, createdTo, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"customers.ndjson\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // Only matches with ?purge=true; without it CustomerController deletes the customer right away.
+    // 202 Accepted: the customer disappears once all of their orders have been deleted in batches.
+    @DeleteMapping(value = "/{Id}", params = "purge=true")
+    public ResponseEntity<Void> purgeCustomer(@PathVariable Long Id) {
+        customerPurgeService.purge(Id);
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.sokoplace.customer.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customer.CustomerService;
+import com.sokoplace.customer.dto.CustomerResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+// Customer export for admins as NDJSON (one CustomerResponse per line), optionally limited to customers
+// created in [from, to). Works like the product export: rows come from a server-side cursor inside a
+// read-only transaction (PostgreSQL only honours the fetch size with autocommit off) and each row is written
+// as soon as it is read, so memory use stays constant however many customers there are.
+
+@Slf4j
+@Service
+public class CustomerExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT id, name, email, updated_at
+            FROM customer
+            WHERE created_at >= ? AND created_at < ?
+            ORDER BY id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter customerWriter;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    @Autowired
+    public CustomerExportService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 @Value("${sokoplace.customers.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.customerWriter = objectMapper.writerFor(CustomerResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    // Writes the customers to `out` and returns the number of rows written. `out` is flushed but not closed.
+    // A null bound leaves that side of the range open.
+    public long exportCustomers(LocalDateTime createdFrom, LocalDateTime createdTo, OutputStream out) throws IOException {
+        LocalDateTime from = createdFrom == null ? CustomerService.EARLIEST : createdFrom;
+        LocalDateTime to = createdTo == null ? CustomerService.LATEST : createdTo;
+        if (from.isAfter(to)) {
+            throw new BadRequestException("createdFrom must not be after createdTo");
+        }
+        long started = System.nanoTime();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);  // we end each row with a newline ourselves
+
+        long[] rows = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setTimestamp(1, Timestamp.valueOf(from));
+                statement.setTimestamp(2, Timestamp.valueOf(to));
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, resultSet -> {
+                CustomerResponse customer = new CustomerResponse(
+                        resultSet.getLong("id"),
+                        resultSet.getString("name"),
+                        resultSet.getString("email"),
+                        resultSet.getTimestamp("updated_at").toLocalDateTime());
+                try {
+                    customerWriter.writeValue(generator, customer);
+                    generator.writeRaw('\n');
+                } catch (IOException ex) {
+                    // Usually the client went away; aborting the query releases the cursor and the connection
+                    throw new UncheckedIOException(ex);
+                }
+                rows[0]++;
+            }));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        generator.flush();
+        log.info("Exported {} customers in {} ms", rows[0], (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+}
@@ -0,0 +1,157 @@
+package com.sokoplace.customer.bulk;
+
+import com.sokoplace.customerOrder.OrderItemId;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Background deletion of customers with very long order histories: DELETE /api/v1/customers/{id}?purge=true.
+// A plain delete cascades to every order in one statement and one transaction, which holds the locks and
+// the WAL for the whole history at once. A purge deletes the orders in batches of batch-size instead, each
+// batch in its own short transaction (order_item rows follow through ON DELETE CASCADE), and deletes the
+// customer row last, so memory and lock time per step stay bounded however many orders there are.
+// Orders placed while the purge runs are deleted in the final transaction, together with the customer.
+// Like a plain delete, each batch publishes an OrderItemsChangedEvent per deleted order, so the related
+// products and suggestion order counts drop them once the batch commits, and deliberately does not return
+// the units to product.stock_quantity: the customer's history is erased, their orders are not cancelled.
+// Purges run one at a time on a single worker with a bounded queue: when it is full the request gets 503.
+// A second request for a customer already being purged gets the running purge.
+
+@Slf4j
+@Service
+public class CustomerPurgeService {
+
+    private static final String CUSTOMER_EXISTS_SQL = "SELECT EXISTS (SELECT 1 FROM customer WHERE id = ?)";
+    // The ids come from idx_customer_order_customer_created_at, batch-size at a time, and the rows from the
+    // primary key. As an array rather than IN (subquery): the planner would hash-join that against a full
+    // scan of customer_order. Returns one row per deleted order and product (product_id null for an order
+    // without items): the join sees order_item as it was when the statement started, before the cascade.
+    private static final String DELETE_ORDERS_SQL = """
+            WITH deleted AS (
+                DELETE FROM customer_order
+                WHERE id = ANY (ARRAY(SELECT id FROM customer_order WHERE customer_id = ? LIMIT ?))
+                RETURNING id
+            )
+            SELECT d.id, i.product_id FROM deleted d LEFT JOIN order_item i ON i.customer_order_id = d.id
+            """;
+    private static final String DELETE_CUSTOMER_SQL = "DELETE FROM customer WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final ThreadPoolExecutor worker;
+    private final Map<Long, CompletableFuture<Long>> running = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CustomerPurgeService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${sokoplace.customers.purge.batch-size:5000}") int batchSize,
+                                @Value("${sokoplace.customers.purge.queue-capacity:16}") int queueCapacity) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("sokoplace.customers.purge.batch-size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "customer-purge");
+            thread.setDaemon(true);
+            return thread;
+        });  // the default AbortPolicy throws RejectedExecutionException when the queue is full
+    }
+
+    // An interrupted purge leaves the customer with fewer orders; requesting it again finishes the job
+    @PreDestroy
+    void stop() {
+        worker.shutdownNow();
+    }
+
+    // Returns once the purge is queued (404 if there is no such customer); the future completes with the
+    // number of orders deleted once the customer is gone
+    public CompletableFuture<Long> purge(Long customerId) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(CUSTOMER_EXISTS_SQL, Boolean.class, customerId))) {
+            throw new EntityNotFoundException("Customer not found");
+        }
+        CompletableFuture<Long> purge = new CompletableFuture<>();
+        CompletableFuture<Long> existing = running.putIfAbsent(customerId, purge);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    purge.complete(purgeNow(customerId));
+                } catch (RuntimeException ex) {
+                    log.error("Purge of customer {} failed", customerId, ex);
+                    purge.completeExceptionally(ex);
+                } finally {
+                    running.remove(customerId, purge);
+                }
+            });
+        } catch (RuntimeException ex) {
+            running.remove(customerId, purge);
+            throw ex;
+        }
+        return purge;
+    }
+
+    private long purgeNow(Long customerId) {
+        long started = System.nanoTime();
+        long orders = 0;
+        int deleted;
+        do {
+            deleted = transaction.execute(status -> deleteOrders(customerId, batchSize));
+            orders += deleted;
+        } while (deleted == batchSize && !Thread.currentThread().isInterrupted());
+        if (Thread.currentThread().isInterrupted()) {
+            throw new IllegalStateException("Purge of customer " + customerId + " interrupted after " + orders + " orders");
+        }
+        orders += transaction.execute(status -> {
+            int placedMeanwhile = deleteOrders(customerId, Integer.MAX_VALUE);
+            jdbcTemplate.update(DELETE_CUSTOMER_SQL, customerId);
+            return placedMeanwhile;
+        });
+        log.info("Purged customer {} with {} orders in {} ms", customerId, orders, (System.nanoTime() - started) / 1_000_000);
+        return orders;
+    }
+
+    // The events are published inside the batch's transaction; the @TransactionalEventListener read models
+    // apply them once it commits
+    private int deleteOrders(Long customerId, int limit) {
+        Set<Long> orderIds = new HashSet<>();
+        List<OrderItemId> items = new ArrayList<>();
+        jdbcTemplate.query(DELETE_ORDERS_SQL, rs -> {
+            long orderId = rs.getLong(1);
+            orderIds.add(orderId);
+            long productId = rs.getLong(2);
+            if (!rs.wasNull()) {
+                items.add(new OrderItemId(orderId, productId));
+            }
+        }, customerId, limit);
+        OrderItemsChangedEvent.ordersDeleted(items).forEach(eventPublisher::publishEvent);
+        return orderIds.size();
+    }
+}
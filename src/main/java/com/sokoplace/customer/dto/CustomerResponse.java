@@ -1,5 +1,7 @@
 package com.sokoplace.customer.dto;
 
+import java.time.LocalDateTime;
+
 // DTO: Data Transfer Object
 
 // DTOs are designed to separate the internal representation of your domain model,
@@ -8,5 +10,6 @@ package com.sokoplace.customer.dto;
 public record CustomerResponse(
         Long Id,
         String name,
-        String email
+        String email,
+        LocalDateTime updatedAt  // also the version behind the ETag / Last-Modified headers
 ) {}
@@ -0,0 +1,85 @@
+package com.sokoplace.customer.email;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A set that answers "definitely not present" or "maybe present" in a fixed number of bits, whatever the
+// length of the values. Each value sets k bits chosen by hashing; a value whose k bits aren't all set was
+// never added. Values can't be removed, so a filter is rebuilt from scratch to forget them.
+// Adds and lookups are thread-safe (bits are set with CAS), so it can be filled while it is being read.
+
+class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong setBits = new AtomicLong();
+
+    // Sized for `expectedEntries` values at the given false-positive probability;
+    // with more values than that the rate rises, which estimatedFalsePositiveRate() shows
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size");
+        }
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = Math.toIntExact((bits + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+    }
+
+    void put(String value) {
+        long hash1 = mix(fnv1a(value));
+        long hash2 = mix(hash1) | 1;  // odd, so the k positions differ
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << bit;  // shift uses the low 6 bits
+            int word = (int) (bit >>> 6);
+            if ((words.getAndUpdate(word, current -> current | mask) & mask) == 0) {
+                setBits.incrementAndGet();
+            }
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash1 = mix(fnv1a(value));
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Chance that a value never added is reported as present: every one of its k bits happens to be set
+    double estimatedFalsePositiveRate() {
+        return Math.pow((double) setBits.get() / bitCount, hashCount);
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer: spreads FNV's bits, and derives a second, independent-looking hash from the first
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
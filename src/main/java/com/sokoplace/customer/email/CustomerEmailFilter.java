@@ -0,0 +1,191 @@
+package com.sokoplace.customer.email;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-memory Bloom filter of every customer email, so signups with a new email (nearly all of them)
+// skip the existsByEmail query. "Not present" is certain; "maybe present" is checked against the database.
+// The unique constraint on customer.email still decides: two signups racing for one email both pass the
+// filter and the second insert fails with 409 as before.
+// Emails are normalized (trimmed, lower case), which can only turn a "not present" into a "maybe".
+// New emails are added as they are saved. Deleted or changed emails stay in the filter until the periodic
+// rebuild, which reads all emails into a new filter (sized for the current count) and swaps it in. Emails
+// saved while a rebuild runs go into both filters. Until the first build finishes, every check says "maybe".
+// Metrics (/actuator/metrics/customers.email.filter.*): checks and skipped queries, false positives and
+// the measured and estimated false-positive rate, and the duration of the last rebuild.
+
+@Slf4j
+@Component
+public class CustomerEmailFilter implements MeterBinder {
+
+    private static final String EMAILS_SQL = "SELECT email FROM customer";
+    private static final String COUNT_SQL = "SELECT count(*) FROM customer";
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final double falsePositiveRate;
+    private final long minimumCapacity;
+    private final Duration rebuildInterval;
+
+    private volatile BloomFilter filter;  // null until the first build
+    private volatile BloomFilter building;  // the filter being rebuilt, which also gets new emails
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long lastRebuildNanos;
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-email-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public CustomerEmailFilter(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${sokoplace.customers.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${sokoplace.customers.email-filter.minimum-capacity:100000}") long minimumCapacity,
+                               @Value("${sokoplace.customers.email-filter.rebuild-interval:6h}") Duration rebuildInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Postgres only streams with a fetch size inside a transaction; otherwise it buffers every row
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.falsePositiveRate = falsePositiveRate;
+        this.minimumCapacity = minimumCapacity;
+        this.rebuildInterval = rebuildInterval;
+        new BloomFilter(minimumCapacity, falsePositiveRate);  // fails fast on invalid settings
+    }
+
+    // The first build runs in the background, so startup doesn't wait for a full scan of the customer table
+    @PostConstruct
+    void startRebuilding() {
+        rebuilder.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException ex) {
+                log.error("Customer email filter rebuild failed", ex);  // the previous filter stays in use
+            }
+        }, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopRebuilding() {
+        rebuilder.shutdownNow();
+    }
+
+    // False means no customer has this email; true means one may have
+    public boolean mightContain(String email) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        checks.increment();
+        if (!current.mightContain(normalize(email))) {
+            negatives.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // The database had no such email after mightContain said it might
+    public void recordFalsePositive() {
+        if (filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    // Called once the email is saved (a rolled back save only adds a false positive).
+    // Reads 'building' before 'filter': a rebuild publishes its filter before clearing 'building', so the
+    // email lands in the new filter either way. An email missed by a rebuild (saved but not yet committed when
+    // the scan ran) is a false negative, which the unique constraint still catches.
+    public void add(String email) {
+        String normalized = normalize(email);
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(normalized);
+        }
+        BloomFilter current = filter;
+        if (current != null && current != next) {
+            current.put(normalized);
+        }
+    }
+
+    // Streams all emails into a new filter, sized for twice the current count so it has room to grow
+    synchronized void rebuild() {
+        long started = System.nanoTime();
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        BloomFilter next = new BloomFilter(Math.max(minimumCapacity, (count == null ? 0 : count) * 2), falsePositiveRate);
+        building = next;  // from here on, new emails go into both filters
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EMAILS_SQL);
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) resultSet -> next.put(normalize(resultSet.getString(1)))));
+            filter = next;
+        } finally {
+            building = null;
+        }
+        lastRebuildNanos = System.nanoTime() - started;
+        rebuilds.incrementAndGet();
+        log.info("Customer email filter rebuilt: {} customers, {} bits, {} hashes in {} ms",
+                count, next.bitCount(), next.hashCount(), lastRebuildNanos / 1_000_000);
+    }
+
+    // Share of checks for emails the database didn't have that the filter still answered "maybe" for
+    double measuredFalsePositiveRate() {
+        long absent = negatives.sum() + falsePositives.sum();
+        return absent == 0 ? 0.0 : (double) falsePositives.sum() / absent;
+    }
+
+    double estimatedFalsePositiveRate() {
+        BloomFilter current = filter;
+        return current == null ? 1.0 : current.estimatedFalsePositiveRate();
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("customers.email.filter.checks", checks, LongAdder::sum)
+                .description("Email uniqueness checks answered by the filter").register(registry);
+        FunctionCounter.builder("customers.email.filter.queries.skipped", negatives, LongAdder::sum)
+                .description("Checks where the filter ruled the email out, so no query ran").register(registry);
+        FunctionCounter.builder("customers.email.filter.false.positives", falsePositives, LongAdder::sum)
+                .description("Checks where the filter said maybe and the database had no such email").register(registry);
+        Gauge.builder("customers.email.filter.false.positive.rate", this, CustomerEmailFilter::measuredFalsePositiveRate)
+                .description("Measured share of absent emails the filter reported as maybe present").register(registry);
+        Gauge.builder("customers.email.filter.false.positive.rate.estimated", this, CustomerEmailFilter::estimatedFalsePositiveRate)
+                .description("False-positive rate expected from the filter's fill").register(registry);
+        FunctionCounter.builder("customers.email.filter.rebuilds", rebuilds, AtomicLong::get).register(registry);
+        TimeGauge.builder("customers.email.filter.rebuild.duration", this, TimeUnit.NANOSECONDS, filter -> filter.lastRebuildNanos)
+                .description("Duration of the last rebuild").register(registry);
+    }
+}
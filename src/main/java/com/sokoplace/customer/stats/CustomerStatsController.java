@@ -0,0 +1,36 @@
+package com.sokoplace.customer.stats;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+// Lifetime order aggregates of a customer, for account pages and CRM exports
+
+@RestController
+@RequestMapping("/api/v1/customers")
+public class CustomerStatsController {
+
+    private final CustomerStatsService customerStatsService;
+
+    @Autowired
+    public CustomerStatsController(CustomerStatsService customerStatsService) {
+        this.customerStatsService = customerStatsService;
+    }
+
+    @GetMapping("/{Id}/stats")
+    public ResponseEntity<CustomerStatsResponse> getCustomerStats(@PathVariable Long Id) {
+        return ResponseEntity.ok(customerStatsService.findStats(Id));
+    }
+
+    // One-shot job after the customer_stats migration: recomputes every customer's row from their orders.
+    // 202 Accepted: it runs in the background; asking again while it runs does not start a second one.
+    @PostMapping("/stats/backfill")
+    public ResponseEntity<Void> backfillCustomerStats() {
+        customerStatsService.backfill();
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.sokoplace.customer.stats;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Lifetime order aggregates of one customer; lastOrderAt is null when they have no orders
+
+public record CustomerStatsResponse(
+        Long customerId,
+        long orderCount,
+        BigDecimal totalSpend,
+        LocalDateTime lastOrderAt
+) {}
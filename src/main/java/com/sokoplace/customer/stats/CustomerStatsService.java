@@ -0,0 +1,237 @@
+package com.sokoplace.customer.stats;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Lifetime aggregates per customer (order count, total spend, last order date) in customer_stats.
+// CustomerOrderService applies each order change as a difference, inside the order's own transaction, so the
+// aggregates commit or roll back together with the order and a read is one primary key lookup instead of
+// loading the customer's order history.
+// The updates are single atomic statements on the customer's row, so concurrent orders of one customer add up.
+// Each first takes a KEY SHARE lock on the customer row (the lock an order insert takes anyway); the backfill
+// takes FOR UPDATE on the customers it recomputes, so it waits for in-flight order changes to commit and holds
+// off new ones until its totals are written. Without that, it could overwrite a change made after its read.
+// CustomerOrderService passes each order's total as captured on customer_order, so the aggregates are exact.
+// OrderIngestService adds a whole batch of orders with one lock statement and one upsert; both go through the
+// customers in id order, so two concurrent batches (or a batch and the backfill) cannot deadlock.
+
+@Slf4j
+@Service
+public class CustomerStatsService {
+
+    private static final String LOCK_CUSTOMER_SQL = "SELECT id FROM customer WHERE id = ? FOR KEY SHARE";
+    private static final String ADD_ORDER_SQL = """
+            INSERT INTO customer_stats (customer_id, order_count, total_spend, last_order_at)
+            VALUES (?, 1, ?, ?)
+            ON CONFLICT (customer_id) DO UPDATE SET
+                order_count = customer_stats.order_count + 1,
+                total_spend = customer_stats.total_spend + EXCLUDED.total_spend,
+                last_order_at = GREATEST(customer_stats.last_order_at, EXCLUDED.last_order_at)
+            """;
+    private static final String LOCK_CUSTOMERS_SQL =
+            "SELECT id FROM customer WHERE id = ANY(?) ORDER BY id FOR KEY SHARE";
+    private static final String ADD_ORDERS_SQL = """
+            INSERT INTO customer_stats (customer_id, order_count, total_spend, last_order_at)
+            SELECT batch.*, CAST(? AS timestamp)
+            FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS numeric[]))
+                AS batch(customer_id, order_count, total_spend)
+            ON CONFLICT (customer_id) DO UPDATE SET
+                order_count = customer_stats.order_count + EXCLUDED.order_count,
+                total_spend = customer_stats.total_spend + EXCLUDED.total_spend,
+                last_order_at = GREATEST(customer_stats.last_order_at, EXCLUDED.last_order_at)
+            """;
+    private static final String CHANGE_SPEND_SQL = """
+            UPDATE customer_stats SET total_spend = total_spend + ? WHERE customer_id = ?
+            """;
+    // Only when the latest order goes is the previous one looked up, with one read of the
+    // (customer_id, created_at, id) index
+    private static final String REMOVE_ORDER_SQL = """
+            UPDATE customer_stats SET
+                order_count = order_count - 1,
+                total_spend = total_spend - ?,
+                last_order_at = CASE WHEN last_order_at > ? THEN last_order_at ELSE
+                    (SELECT max(created_at) FROM customer_order WHERE customer_id = ? AND id <> ?) END
+            WHERE customer_id = ?
+            """;
+    private static final String FIND_SQL = """
+            SELECT customer_id, order_count, total_spend, last_order_at FROM customer_stats WHERE customer_id = ?
+            """;
+    private static final String CUSTOMER_EXISTS_SQL = "SELECT EXISTS (SELECT 1 FROM customer WHERE id = ?)";
+
+    // Backfill, one batch of customers per transaction
+    private static final String LOCK_BATCH_SQL = "SELECT id FROM customer WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String BACKFILL_SQL = """
+            INSERT INTO customer_stats (customer_id, order_count, total_spend, last_order_at)
+            SELECT c.id, count(o.id), COALESCE(sum(o.total), 0), max(o.created_at)
+            FROM customer c
+            LEFT JOIN customer_order o ON o.customer_id = c.id AND o.customer_id BETWEEN ? AND ?
+            WHERE c.id BETWEEN ? AND ?
+            GROUP BY c.id
+            ON CONFLICT (customer_id) DO UPDATE SET
+                order_count = EXCLUDED.order_count,
+                total_spend = EXCLUDED.total_spend,
+                last_order_at = EXCLUDED.last_order_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final int backfillBatchSize;
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-stats-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Long> backfill;  // guarded by this
+
+    @Autowired
+    public CustomerStatsService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${sokoplace.customers.stats.backfill-batch-size:1000}") int backfillBatchSize) {
+        if (backfillBatchSize < 1) {
+            throw new IllegalArgumentException("sokoplace.customers.stats.backfill-batch-size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.backfillBatchSize = backfillBatchSize;
+    }
+
+    // An interrupted backfill leaves the remaining customers without up-to-date rows; run it again
+    @PreDestroy
+    void stop() {
+        backfiller.shutdownNow();
+    }
+
+    // --- Called by CustomerOrderService inside the order's transaction ---
+
+    public void orderPlaced(Long customerId, BigDecimal total, LocalDateTime orderedAt) {
+        lockCustomer(customerId);
+        jdbcTemplate.update(ADD_ORDER_SQL, customerId, total, Timestamp.valueOf(orderedAt));
+    }
+
+    // Orders placed together at orderedAt, one entry per order (customer ids and totals by position)
+    public void ordersPlaced(List<Long> customerIds, List<BigDecimal> totals, LocalDateTime orderedAt) {
+        if (customerIds.size() != totals.size()) {
+            throw new IllegalArgumentException("One total per order is required");
+        }
+        Map<Long, Long> counts = new TreeMap<>();
+        Map<Long, BigDecimal> spend = new TreeMap<>();
+        for (int i = 0; i < customerIds.size(); i++) {
+            counts.merge(customerIds.get(i), 1L, Long::sum);
+            spend.merge(customerIds.get(i), totals.get(i), BigDecimal::add);
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        Long[] ids = counts.keySet().toArray(Long[]::new);
+        Long[] orderCounts = counts.values().toArray(Long[]::new);
+        BigDecimal[] totalSpend = spend.values().toArray(BigDecimal[]::new);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(LOCK_CUSTOMERS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", ids));
+            return statement;
+        }, (resultSet, row) -> resultSet.getLong(1));
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ADD_ORDERS_SQL);
+            statement.setTimestamp(1, Timestamp.valueOf(orderedAt));
+            statement.setArray(2, connection.createArrayOf("bigint", ids));
+            statement.setArray(3, connection.createArrayOf("bigint", orderCounts));
+            statement.setArray(4, connection.createArrayOf("numeric", totalSpend));
+            return statement;
+        });
+    }
+
+    public void orderChanged(Long customerId, BigDecimal previousTotal, BigDecimal total) {
+        BigDecimal difference = total.subtract(previousTotal);
+        if (difference.signum() == 0) {
+            return;  // same spend
+        }
+        lockCustomer(customerId);
+        jdbcTemplate.update(CHANGE_SPEND_SQL, difference, customerId);
+    }
+
+    public void orderRemoved(Long customerId, Long orderId, BigDecimal total, LocalDateTime orderedAt) {
+        lockCustomer(customerId);
+        jdbcTemplate.update(REMOVE_ORDER_SQL,
+                total, Timestamp.valueOf(orderedAt), customerId, orderId, customerId);
+    }
+
+    // --- Reads ---
+
+    public CustomerStatsResponse findStats(Long customerId) {
+        List<CustomerStatsResponse> stats = jdbcTemplate.query(FIND_SQL, (resultSet, row) -> {
+            Timestamp lastOrderAt = resultSet.getTimestamp("last_order_at");
+            return new CustomerStatsResponse(
+                    resultSet.getLong("customer_id"),
+                    resultSet.getLong("order_count"),
+                    resultSet.getBigDecimal("total_spend"),
+                    lastOrderAt == null ? null : lastOrderAt.toLocalDateTime());
+        }, customerId);
+        if (!stats.isEmpty()) {
+            return stats.get(0);
+        }
+        // No row: the customer has not ordered since the migration and the backfill has not reached them
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(CUSTOMER_EXISTS_SQL, Boolean.class, customerId))) {
+            throw new EntityNotFoundException("Customer not found");
+        }
+        return new CustomerStatsResponse(customerId, 0, BigDecimal.ZERO.setScale(2), null);
+    }
+
+    // --- Backfill ---
+
+    // Recomputes every customer's row from the orders, batch by batch in id order, on a background thread.
+    // Returns the running backfill if one is already in progress; the future completes with the number of
+    // customers written.
+    public synchronized CompletableFuture<Long> backfill() {
+        if (backfill == null || backfill.isDone()) {
+            backfill = CompletableFuture.supplyAsync(this::backfillNow, backfiller);
+        }
+        return backfill;
+    }
+
+    private long backfillNow() {
+        long started = System.nanoTime();
+        long customers = 0;
+        long afterId = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long from = afterId;
+            List<Long> batch = transaction.execute(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(LOCK_BATCH_SQL, Long.class, from, backfillBatchSize);
+                if (!ids.isEmpty()) {
+                    long first = ids.get(0);
+                    long last = ids.get(ids.size() - 1);
+                    jdbcTemplate.update(BACKFILL_SQL, first, last, first, last);
+                }
+                return ids;
+            });
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            customers += batch.size();
+            afterId = batch.get(batch.size() - 1);
+        }
+        log.info("Backfilled stats of {} customers in {} ms", customers, (System.nanoTime() - started) / 1_000_000);
+        return customers;
+    }
+
+    private void lockCustomer(Long customerId) {
+        jdbcTemplate.queryForList(LOCK_CUSTOMER_SQL, Long.class, customerId);
+    }
+}
@@ -1,12 +1,12 @@
 package com.sokoplace.customerOrder;
 
 import com.sokoplace.customer.Customer;
-import com.sokoplace.product.Product;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,15 +33,14 @@ public class CustomerOrder {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    // Many orders can have many products
-    // JPA provider, Hibernate, creates a new table called 'order_item'
-    @ManyToMany
-    @JoinTable(
-            name = "order_item",
-            joinColumns = @JoinColumn(name = "customer_order_id"),
-            inverseJoinColumns = @JoinColumn(name = "product_id")
-    )
-    private List<Product> products = new ArrayList<>();
+    // Sum of the lines' unit price x quantity, computed when the order is written
+    @Column(name = "total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+    // An order has many lines, each a product with a quantity (table 'order_item').
+    // Lines are saved and removed together with the order.
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<OrderItem> items = new ArrayList<>();
 
     @PrePersist
     protected void onCreate() {
@@ -1,5 +1,6 @@
 package com.sokoplace.customerOrder;
 
+import com.sokoplace.common.CursorPage;
 import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
 import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
 import jakarta.validation.Valid;
@@ -8,22 +9,35 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/orders")  // It's best practice to version your API
 public class CustomerOrderController {
     private final CustomerOrderService orderService;
+    private final OrderIngestService orderIngestService;
+    private final OrderIdempotencyService orderIdempotencyService;
 
     @Autowired
-    public CustomerOrderController(CustomerOrderService orderService) {
+    public CustomerOrderController(CustomerOrderService orderService,
+                                   OrderIngestService orderIngestService,
+                                   OrderIdempotencyService orderIdempotencyService) {
         this.orderService = orderService;
+        this.orderIngestService = orderIngestService;
+        this.orderIdempotencyService = orderIdempotencyService;
     }
 
+    // Async: with group commit enabled, the response is sent once the order's batch has committed.
+    // Otherwise the order is written before this returns.
+    // With an Idempotency-Key header, a retry of the request returns the order created the first time.
     @PostMapping
-    public ResponseEntity<CustomerOrderResponse> createOrder(@Valid @RequestBody CustomerOrderRequest orderRequest) {
-        CustomerOrderResponse responseObject = orderService.createOrder(orderRequest);
-        return ResponseEntity.status(HttpStatus.CREATED).body(responseObject);  // HTTP 201 -> created successfully
+    public CompletableFuture<ResponseEntity<CustomerOrderResponse>> createOrder(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody CustomerOrderRequest orderRequest) {
+        CompletableFuture<CustomerOrderResponse> order = idempotencyKey == null
+                ? orderIngestService.submit(orderRequest)
+                : orderIdempotencyService.submit(idempotencyKey, orderRequest);
+        return order.thenApply(responseObject -> ResponseEntity.status(HttpStatus.CREATED).body(responseObject));  // HTTP 201
     }
 
     @PutMapping("/{id}")
@@ -40,10 +54,14 @@ public class CustomerOrderController {
         return ResponseEntity.ok(responseObject);  // HTTP 200 -> ok
     }
 
+    // Order history, newest first. Cursor paginated: pass the 'next' value of a page as 'cursor' to get the
+    // following (older) orders.
     @GetMapping("/customer/{id}")
-    public ResponseEntity<List<CustomerOrderResponse>> getOrderByCustomerId(
-            @PathVariable Long id) {
-        List<CustomerOrderResponse> responseObject = orderService.findOrdersByCustomerId(id);
+    public ResponseEntity<CursorPage<CustomerOrderResponse>> getOrderByCustomerId(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${sokoplace.pagination.default-page-size:20}") int size) {
+        CursorPage<CustomerOrderResponse> responseObject = orderService.findOrdersByCustomerId(id, cursor, size);
         return ResponseEntity.ok(responseObject);
     }
 
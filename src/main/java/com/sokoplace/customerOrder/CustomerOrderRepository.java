@@ -1,15 +1,35 @@
 package com.sokoplace.customerOrder;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CustomerOrderRepository extends JpaRepository<CustomerOrder, Long> {
 
-    // JPA passes method names and creates custom SQL queries
-    Optional<CustomerOrder> findOrdersByCustomerId(Long Id);
+    // The order with its customer and lines in one query, instead of one query per line.
+    // Lines carry their own prices, so the product table is not read.
+    @Query("SELECT DISTINCT o FROM CustomerOrder o JOIN FETCH o.customer LEFT JOIN FETCH o.items WHERE o.id = :id")
+    Optional<CustomerOrder> findWithItemsById(Long id);
+
+    // Keyset page of a customer's order ids, newest first: resumes before the (createdAt, id) of the previous
+    // page's last order, reading idx_customer_order_customer_created_at backwards, so every page costs the same
+    // however deep it is
+    @Query("SELECT o.id FROM CustomerOrder o WHERE o.customer.Id = :customerId " +
+            "AND (o.createdAt, o.id) < (:beforeCreatedAt, :beforeId) ORDER BY o.createdAt DESC, o.id DESC")
+    List<Long> findIdsByCustomerBefore(Long customerId, LocalDateTime beforeCreatedAt, Long beforeId, Limit limit);
+
+    // The orders of one page with their customer and lines in one query. The page is cut by id first:
+    // with a collection fetch join, Hibernate would apply the limit in memory after loading every row.
+    @Query("SELECT DISTINCT o FROM CustomerOrder o JOIN FETCH o.customer " +
+            "LEFT JOIN FETCH o.items WHERE o.id IN :ids ORDER BY o.createdAt DESC, o.id DESC")
+    List<CustomerOrder> findWithItemsByIdIn(Collection<Long> ids);
 
     //List<Order> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
 }
@@ -1,88 +1,292 @@
 package com.sokoplace.customerOrder;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
 import com.sokoplace.customer.Customer;
 import com.sokoplace.customer.CustomerRepository;
+import com.sokoplace.customer.CustomerService;
+import com.sokoplace.customer.stats.CustomerStatsService;
 import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
 import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
+import com.sokoplace.customerOrder.dto.OrderItemResponse;
 import com.sokoplace.product.Product;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.inventory.InventoryService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Orders are made of lines (OrderItem): a product and a quantity, one line per product.
+// Requests name products by id only. All of an order's products are loaded with one IN query and the
+// order is priced from them, so clients neither send nor set prices.
+// Prices are captured when the order is written (each line's unit price and the order total, as BigDecimal
+// with two decimal places) and reads return them as stored, without reading the product table.
+// A new order's stock is held from this instance's lease (see InventoryService) before its transaction starts,
+// since holding may claim more units in a transaction of its own; it goes back if the order is not written.
 
 @Service
 public class CustomerOrderService {
 
+    // Upper bound on a client-requested page size
+    static final int MAX_PAGE_SIZE = 100;
+
     private final CustomerOrderRepository orderRepository;
     private final CustomerRepository customerRepository;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryService inventoryService;
+    private final CustomerStatsService customerStatsService;
+    private final TransactionTemplate transaction;
 
     @Autowired
-    public CustomerOrderService(CustomerOrderRepository orderRepository, CustomerRepository customerRepository) {
+    public CustomerOrderService(CustomerOrderRepository orderRepository,
+                                CustomerRepository customerRepository,
+                                ProductRepository productRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                InventoryService inventoryService,
+                                CustomerStatsService customerStatsService,
+                                PlatformTransactionManager transactionManager) {
         this.orderRepository = orderRepository;
         this.customerRepository = customerRepository;
+        this.productRepository = productRepository;
+        this.eventPublisher = eventPublisher;
+        this.inventoryService = inventoryService;
+        this.customerStatsService = customerStatsService;
+        this.transaction = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
     public CustomerOrderResponse createOrder(CustomerOrderRequest orderRequest) {
-        Customer customer = customerRepository.findById(orderRequest.customerId())
+        return createOrder(orderRequest, null);
+    }
+
+    // onWrite (optional) runs inside the transaction that writes the order, so whatever it writes commits or
+    // rolls back together with the order. Not to be called inside a transaction: the order gets its own.
+    public CustomerOrderResponse createOrder(CustomerOrderRequest orderRequest,
+                                             Consumer<CustomerOrderResponse> onWrite) {
+        Map<Long, Integer> quantities = quantities(orderRequest.orderItems());
+        // Throws InsufficientStockException (409) when a product is sold out. An unknown product holds nothing
+        // and is refused with 404 below, giving the rest back.
+        Map<Long, Integer> held = inventoryService.hold(quantities);
+        try {
+            return transaction.execute(status -> {
+                CustomerOrderResponse order = writeOrder(orderRequest.customerId(), quantities);
+                if (onWrite != null) {
+                    onWrite.accept(order);
+                }
+                return order;
+            });
+        } catch (RuntimeException ex) {
+            inventoryService.releaseHold(held);
+            throw ex;
+        }
+    }
+
+    private CustomerOrderResponse writeOrder(Long customerId, Map<Long, Integer> quantities) {
+        Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new EntityNotFoundException("Customer not found"));
+        Map<Long, Product> products = findProducts(quantities);
 
         CustomerOrder order = new CustomerOrder();
         order.setCustomer(customer);
-        order.setProducts(orderRequest.orderItems());
+        quantities.forEach((productId, quantity) ->
+                order.getItems().add(new OrderItem(order, products.get(productId), quantity)));
+        order.setTotal(total(order.getItems()));
 
         CustomerOrder savedOrder = orderRepository.save(order);
+        // Same transaction: the customer's lifetime aggregates roll back with the order
+        customerStatsService.orderPlaced(customer.getId(), savedOrder.getTotal(), savedOrder.getCreatedAt());
+        eventPublisher.publishEvent(new OrderItemsChangedEvent(
+                savedOrder.getId(), List.of(), productIds(savedOrder.getItems())));
         return mapToOrderResponse(savedOrder);
     }
 
     @Transactional
     public CustomerOrderResponse updateOrder(Long Id, CustomerOrderRequest orderRequest) {
-        CustomerOrder order = orderRepository.findById(Id)
+        CustomerOrder order = orderRepository.findWithItemsById(Id)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
 
-        order.setProducts(orderRequest.orderItems());
+        List<Long> previousProductIds = productIds(order.getItems());  // read before they are replaced
+        Map<Long, Integer> previous = quantities(order);
+        BigDecimal previousTotal = order.getTotal();
+        Map<Long, Integer> current = quantities(orderRequest.orderItems());
+        Map<Long, Product> products = findProducts(current);
+        inventoryService.reserve(difference(current, previous));  // units added to the order
+        inventoryService.restock(difference(previous, current));  // units taken out
+        replaceItems(order, current, products);
+        order.setTotal(total(order.getItems()));
 
         CustomerOrder updatedOrder = orderRepository.save(order);
+        customerStatsService.orderChanged(order.getCustomer().getId(), previousTotal, updatedOrder.getTotal());
+        eventPublisher.publishEvent(new OrderItemsChangedEvent(
+                Id, previousProductIds, productIds(updatedOrder.getItems())));
         return mapToOrderResponse(updatedOrder);
     }
 
     @Transactional
     public CustomerOrderResponse findOrderById(Long Id) {
-        CustomerOrder order = orderRepository.findById(Id)
+        CustomerOrder order = orderRepository.findWithItemsById(Id)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
         return mapToOrderResponse(order);
     }
 
+    // A customer's orders, newest first, cursor paginated. Two queries per page whatever its size: the ids of
+    // the page, then those orders with their customer and lines, so mapping them loads nothing lazily.
     @Transactional
-    public List<CustomerOrderResponse> findOrdersByCustomerId(Long Id) {
-        Optional<CustomerOrder> orders = orderRepository.findOrdersByCustomerId(Id);
-        return orders.stream()
-                .map(this::mapToOrderResponse)
-                .toList();
+    public CursorPage<CustomerOrderResponse> findOrdersByCustomerId(Long Id, String cursor, int size) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        Cursor before = Cursor.decode(cursor);
+        LocalDateTime beforeCreatedAt = before == null ? CustomerService.LATEST : cursorCreatedAt(before);
+        long beforeId = before == null ? Long.MAX_VALUE : before.id();
+
+        // Fetch one extra id: if it comes back, there is a next page
+        List<Long> ids = orderRepository.findIdsByCustomerBefore(Id, beforeCreatedAt, beforeId, Limit.of(pageSize + 1));
+        if (ids.isEmpty() && before == null && !customerRepository.existsById(Id)) {
+            throw new EntityNotFoundException("Customer not found");  // only checked when there is nothing to show
+        }
+        boolean hasNext = ids.size() > pageSize;
+        List<Long> pageIds = hasNext ? ids.subList(0, pageSize) : ids;
+        List<CustomerOrder> orders = pageIds.isEmpty() ? List.of() : orderRepository.findWithItemsByIdIn(pageIds);
+
+        String next = null;
+        if (hasNext && !orders.isEmpty()) {
+            CustomerOrder last = orders.get(orders.size() - 1);
+            next = new Cursor(last.getId(), last.getCreatedAt().toString()).encode();
+        }
+        return new CursorPage<>(orders.stream().map(this::mapToOrderResponse).toList(), next);
     }
 
     @Transactional
     public void deleteOrder(Long Id) {
-        CustomerOrder order = orderRepository.findById(Id)
+        CustomerOrder order = orderRepository.findWithItemsById(Id)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        List<Long> previousProductIds = productIds(order.getItems());
         orderRepository.delete(order);
+        // Stock before stats, as in updateOrder: product rows are locked before the customer's
+        inventoryService.restock(quantities(order));
+        customerStatsService.orderRemoved(order.getCustomer().getId(), Id, order.getTotal(), order.getCreatedAt());
+        eventPublisher.publishEvent(new OrderItemsChangedEvent(Id, previousProductIds, List.of()));
+    }
+
+    // Order history pages carry the last order's createdAt (ISO-8601) in the cursor key
+    private static LocalDateTime cursorCreatedAt(Cursor cursor) {
+        try {
+            return LocalDateTime.parse(cursor.key());
+        } catch (NullPointerException | DateTimeParseException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    // One IN query for all of the order's products; an unknown id is a 404 before the order is written
+    private Map<Long, Product> findProducts(Map<Long, Integer> quantities) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        for (Long productId : quantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new EntityNotFoundException("Product not found: " + productId);
+            }
+        }
+        return products;
+    }
+
+    // Updates lines in place rather than clearing and re-adding them: a removed and re-added line has the
+    // same primary key, and Hibernate inserts new rows before it deletes orphans.
+    // A kept line keeps the unit price it was ordered at; only new lines take the current price.
+    private static void replaceItems(CustomerOrder order, Map<Long, Integer> quantities, Map<Long, Product> products) {
+        Map<Long, Integer> remaining = new LinkedHashMap<>(quantities);
+        Iterator<OrderItem> items = order.getItems().iterator();
+        while (items.hasNext()) {
+            OrderItem item = items.next();
+            Integer quantity = remaining.remove(item.getId().getProductId());
+            if (quantity == null) {
+                items.remove();  // orphanRemoval deletes the row
+            } else {
+                item.setQuantity(quantity);
+            }
+        }
+        remaining.forEach((productId, quantity) ->
+                order.getItems().add(new OrderItem(order, products.get(productId), quantity)));
+    }
+
+    private static List<Long> productIds(List<OrderItem> items) {
+        return items.stream().map(item -> item.getId().getProductId()).toList();
+    }
+
+    // Units per product, in request order; repeated lines for a product are added together
+    static Map<Long, Integer> quantities(List<OrderItemRequest> orderItems) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItemRequest item : orderItems) {
+            quantities.merge(item.productId(), item.quantity(), Integer::sum);
+        }
+        return quantities;
     }
 
+    private static Map<Long, Integer> quantities(CustomerOrder order) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.put(item.getId().getProductId(), item.getQuantity());
+        }
+        return quantities;
+    }
+
+    // Units in 'from' beyond those in 'to'
+    private static Map<Long, Integer> difference(Map<Long, Integer> from, Map<Long, Integer> to) {
+        Map<Long, Integer> difference = new HashMap<>();
+        from.forEach((productId, quantity) -> {
+            int extra = quantity - to.getOrDefault(productId, 0);
+            if (extra > 0) {
+                difference.put(productId, extra);
+            }
+        });
+        return difference;
+    }
+
+    private static BigDecimal total(List<OrderItem> items) {
+        BigDecimal total = BigDecimal.ZERO.setScale(2);
+        for (OrderItem item : items) {
+            total = total.add(item.lineTotal());
+        }
+        return total;
+    }
+
+    // Uses the stored prices only; the lines' products are not loaded
     private CustomerOrderResponse mapToOrderResponse(CustomerOrder order) {
-        Double totalPrice = 0.0;
-        for (Product product : order.getProducts()) {
-            totalPrice += product.getPrice();
+        int totalItems = 0;
+        for (OrderItem item : order.getItems()) {
+            totalItems += item.getQuantity();
         }
+        List<OrderItemResponse> items = order.getItems().stream()
+                .map(item -> new OrderItemResponse(
+                        item.getId().getProductId(), item.getUnitPrice(), item.getQuantity(), item.lineTotal()))
+                .toList();
         return new CustomerOrderResponse(
                 order.getId(),
                 order.getCustomer().getId(),
                 order.getCustomer().getName(),  // getter and setter methods offered by Lombok in entity class
-                order.getProducts(),
-                order.getProducts().size(),
-                totalPrice
+                items,
+                totalItems,
+                order.getTotal()
         );
     }
 }
@@ -0,0 +1,9 @@
+package com.sokoplace.customerOrder;
+
+// Thrown when another instance is still creating the order of an Idempotency-Key; mapped to 409 Conflict
+public class IdempotencyKeyInUseException extends RuntimeException {
+
+    public IdempotencyKeyInUseException() {
+        super("A request with this Idempotency-Key is in progress");
+    }
+}
@@ -0,0 +1,279 @@
+package com.sokoplace.customerOrder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Idempotency-Key support for POST /api/v1/orders: a retried request with the same key gets the order created
+// by the first one instead of a duplicate.
+// Keys live in the idempotency_key table, whose primary key makes each key unique across instances. A request
+// first claims its key with an INSERT (response NULL); the order's response is then written to the row inside
+// the transaction that writes the order, so the two commit together. If the order fails, the claim is deleted
+// and the key can be used again.
+// Recent keys are kept in a bounded in-memory cache, so most repeats are answered without a query. Duplicates
+// arriving while the first request is running wait for its result on this instance; on another instance they
+// get 409 until it finishes. A key reused with a different request body is refused (400).
+// Keys expire after the TTL; expired rows are deleted in batches by a background sweep. A claim without a
+// response older than claim-timeout is treated as abandoned (the instance stopped mid-request) and taken over.
+
+@Slf4j
+@Service
+public class OrderIdempotencyService implements MeterBinder {
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    // Inserts the claim, or takes over a row that has expired or was abandoned; returns the key if claimed
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_key (key, request_hash, created_at) VALUES (?, ?, ?)
+            ON CONFLICT (key) DO UPDATE SET
+                request_hash = EXCLUDED.request_hash,
+                response = NULL,
+                created_at = EXCLUDED.created_at
+            WHERE idempotency_key.created_at < ?
+               OR (idempotency_key.response IS NULL AND idempotency_key.created_at < ?)
+            RETURNING key
+            """;
+    private static final String COMPLETE_SQL = "UPDATE idempotency_key SET response = ? WHERE key = ?";
+    private static final String RELEASE_SQL = "DELETE FROM idempotency_key WHERE key = ? AND response IS NULL";
+    private static final String FIND_SQL = "SELECT request_hash, response FROM idempotency_key WHERE key = ?";
+    // Uses idx_idempotency_key_created_at; SKIP LOCKED leaves rows being taken over by a claim alone
+    private static final String SWEEP_SQL = """
+            DELETE FROM idempotency_key
+            WHERE key IN (SELECT key FROM idempotency_key WHERE created_at < ?
+                          ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED)
+            """;
+
+    private final OrderIngestService orderIngestService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration claimTimeout;
+    private final Duration sweepInterval;
+    private final int sweepBatchSize;
+
+    private final Cache<String, StoredOrder> recent;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder replays = new LongAdder();
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public OrderIdempotencyService(OrderIngestService orderIngestService,
+                                   JdbcTemplate jdbcTemplate,
+                                   ObjectMapper objectMapper,
+                                   @Value("${sokoplace.orders.idempotency.ttl:24h}") Duration ttl,
+                                   @Value("${sokoplace.orders.idempotency.claim-timeout:1m}") Duration claimTimeout,
+                                   @Value("${sokoplace.orders.idempotency.cache-size:10000}") long cacheSize,
+                                   @Value("${sokoplace.orders.idempotency.sweep-interval:1h}") Duration sweepInterval,
+                                   @Value("${sokoplace.orders.idempotency.sweep-batch-size:1000}") int sweepBatchSize) {
+        if (sweepBatchSize < 1) {
+            throw new IllegalArgumentException("sokoplace.orders.idempotency.sweep-batch-size must be at least 1");
+        }
+        this.orderIngestService = orderIngestService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.claimTimeout = claimTimeout;
+        this.sweepInterval = sweepInterval;
+        this.sweepBatchSize = sweepBatchSize;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @PostConstruct
+    void startSweeping() {
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException ex) {
+                log.error("Idempotency key sweep failed", ex);  // caught, or the executor would stop scheduling sweeps
+            }
+        }, sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopSweeping() {
+        sweeper.shutdownNow();
+    }
+
+    // Returns the order created for this key, creating it through OrderIngestService if the key is new
+    public CompletableFuture<CustomerOrderResponse> submit(String key, CustomerOrderRequest orderRequest) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(orderRequest);
+
+        StoredOrder stored = recent.getIfPresent(key);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(replay(stored, requestHash));
+        }
+        InFlight running = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(key, running);
+        if (existing != null) {
+            // Same key on this instance, still running: wait for its result
+            if (!existing.requestHash().equals(requestHash)) {
+                throw reusedKey();
+            }
+            replays.increment();
+            return existing.future();
+        }
+
+        boolean claimed = false;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            claimed = !jdbcTemplate.queryForList(CLAIM_SQL, String.class, key, requestHash, Timestamp.valueOf(now),
+                    Timestamp.valueOf(now.minus(ttl)), Timestamp.valueOf(now.minus(claimTimeout))).isEmpty();
+            if (!claimed) {
+                finish(key, running, replay(find(key), requestHash));  // claimed before, here or elsewhere
+                return running.future();
+            }
+            orderIngestService.submit(orderRequest, order -> jdbcTemplate.update(COMPLETE_SQL, toJson(order), key))
+                    .whenComplete((order, ex) -> {
+                        if (ex == null) {
+                            finish(key, running, order);
+                        } else {
+                            fail(key, running, ex, true);
+                        }
+                    });
+        } catch (RuntimeException ex) {
+            fail(key, running, ex, claimed);
+            throw ex;
+        }
+        return running.future();
+    }
+
+    // Deletes the keys that have expired, sweep-batch-size rows per statement; returns the number deleted
+    int sweep() {
+        Timestamp expired = Timestamp.valueOf(LocalDateTime.now().minus(ttl));
+        int swept = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(SWEEP_SQL, expired, sweepBatchSize);
+            swept += deleted;
+        } while (deleted == sweepBatchSize && !Thread.currentThread().isInterrupted());
+        if (swept > 0) {
+            log.info("Deleted {} expired idempotency keys", swept);
+        }
+        return swept;
+    }
+
+    private StoredOrder find(String key) {
+        List<StoredOrder> rows = jdbcTemplate.query(FIND_SQL, (resultSet, row) -> {
+            String response = resultSet.getString("response");
+            return new StoredOrder(resultSet.getString("request_hash"), response == null ? null : fromJson(response));
+        }, key);
+        // No response yet: another instance is creating the order. No row: its claim was just released.
+        if (rows.isEmpty() || rows.get(0).order() == null) {
+            throw new IdempotencyKeyInUseException();
+        }
+        return rows.get(0);
+    }
+
+    private CustomerOrderResponse replay(StoredOrder stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw reusedKey();
+        }
+        replays.increment();
+        return stored.order();
+    }
+
+    private void finish(String key, InFlight running, CustomerOrderResponse order) {
+        recent.put(key, new StoredOrder(running.requestHash(), order));  // before the key leaves inFlight
+        inFlight.remove(key, running);
+        running.future().complete(order);
+    }
+
+    // Waiting duplicates get the same error. A claim of this request is deleted, so the key can be retried.
+    private void fail(String key, InFlight running, Throwable ex, boolean claimed) {
+        try {
+            if (claimed) {
+                jdbcTemplate.update(RELEASE_SQL, key);
+            }
+        } catch (RuntimeException releaseFailure) {
+            log.warn("Could not release Idempotency-Key {}; it is reusable after the claim timeout", key, releaseFailure);
+        } finally {
+            inFlight.remove(key, running);
+            running.future().completeExceptionally(ex);
+        }
+    }
+
+    private static BadRequestException reusedKey() {
+        return new BadRequestException("Idempotency-Key was already used with a different request");
+    }
+
+    // SHA-256 of the request as JSON; records serialize their fields in declaration order
+    String hash(CustomerOrderRequest orderRequest) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(orderRequest));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot hash order request", ex);
+        }
+    }
+
+    private String toJson(CustomerOrderResponse order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize order " + order.Id(), ex);
+        }
+    }
+
+    private CustomerOrderResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, CustomerOrderResponse.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot read stored order response", ex);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, recent, "orders.idempotency");
+        FunctionCounter.builder("orders.idempotency.replays", replays, LongAdder::sum)
+                .description("Requests answered with the order of an earlier request with the same key")
+                .register(registry);
+    }
+
+    // A completed key: the request it was first used with and the order it created
+    private record StoredOrder(String requestHash, CustomerOrderResponse order) {}
+
+    private record InFlight(String requestHash, CompletableFuture<CustomerOrderResponse> future) {}
+}
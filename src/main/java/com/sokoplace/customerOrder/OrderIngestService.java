@@ -0,0 +1,391 @@
+package com.sokoplace.customerOrder;
+
+import com.sokoplace.customer.stats.CustomerStatsService;
+import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemResponse;
+import com.sokoplace.product.inventory.InventoryService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Group commit for order creation at peak checkout load (sokoplace.orders.ingest.enabled=true).
+// The request thread holds the order's stock from this instance's lease (sold out: refused right away) and puts
+// the order on a bounded queue. A few writer threads take whatever has queued up, up to max-batch-size orders,
+// and write it in one transaction: one statement each to read the customers and the prices, allocate the order
+// ids from customer_order_id_seq, update the customers' stats, insert the orders and insert their lines
+// (columns sent as arrays and expanded with unnest). The cost of a commit and its WAL flush is shared by the
+// whole batch instead of paid per order.
+// Each request's future completes once its batch has committed.
+// When the queue is full the order is refused with 429 and its stock given back, instead of requests piling up.
+// A batch that fails is retried one order per transaction, so a bad order fails alone. An order that is not
+// written gives its held stock back.
+// Disabled (the default), orders are written one per transaction by CustomerOrderService.
+
+@Slf4j
+@Service
+public class OrderIngestService implements MeterBinder {
+
+    private static final String CUSTOMERS_SQL = "SELECT id, name FROM customer WHERE id = ANY(?)";
+    private static final String PRICES_SQL = "SELECT id, price FROM product WHERE id = ANY(?)";
+    private static final String NEXT_IDS_SQL = "SELECT nextval('customer_order_id_seq') FROM generate_series(1, ?)";
+    private static final String INSERT_ORDERS_SQL = """
+            INSERT INTO customer_order (id, customer_id, total, created_at, updated_at)
+            SELECT batch.*, CAST(? AS timestamp), CAST(? AS timestamp)
+            FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS numeric[])) AS batch(id, customer_id, total)
+            """;
+    private static final String INSERT_ITEMS_SQL = """
+            INSERT INTO order_item (customer_order_id, product_id, quantity, unit_price)
+            SELECT * FROM unnest(CAST(? AS bigint[]), CAST(? AS bigint[]), CAST(? AS int[]), CAST(? AS numeric[]))
+            """;
+
+    private final CustomerOrderService orderService;
+    private final InventoryService inventoryService;
+    private final CustomerStatsService customerStatsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final int writerCount;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingOrder> queue;  // null when disabled
+    private ExecutorService writers;
+    private volatile boolean stopping;
+
+    // Metrics
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder committedOrders = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+
+    @Autowired
+    public OrderIngestService(CustomerOrderService orderService,
+                              InventoryService inventoryService,
+                              CustomerStatsService customerStatsService,
+                              ApplicationEventPublisher eventPublisher,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${sokoplace.orders.ingest.enabled:false}") boolean enabled,
+                              @Value("${sokoplace.orders.ingest.writers:2}") int writerCount,
+                              @Value("${sokoplace.orders.ingest.max-batch-size:100}") int maxBatchSize,
+                              @Value("${sokoplace.orders.ingest.queue-capacity:2000}") int queueCapacity) {
+        if (writerCount < 1 || maxBatchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "sokoplace.orders.ingest.writers, max-batch-size and queue-capacity must be at least 1");
+        }
+        this.orderService = orderService;
+        this.inventoryService = inventoryService;
+        this.customerStatsService = customerStatsService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.writerCount = writerCount;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = enabled ? new ArrayBlockingQueue<>(queueCapacity) : null;
+    }
+
+    @PostConstruct
+    void startWriters() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerCount, runnable -> {
+            Thread thread = new Thread(runnable, "order-ingest-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < writerCount; i++) {
+            writers.execute(this::writeLoop);
+        }
+    }
+
+    // Stops taking orders and lets the writers commit what is queued before the connection pool closes.
+    // Orders still queued after that fail and get their stock back.
+    @PreDestroy
+    void stopWriters() throws InterruptedException {
+        stopping = true;
+        if (!enabled) {
+            return;
+        }
+        if (writers != null) {
+            writers.shutdown();
+            if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+                writers.shutdownNow();
+            }
+        }
+        PendingOrder order;
+        while ((order = queue.poll()) != null) {
+            fail(order, new RejectedExecutionException("Order ingest stopped"));
+        }
+    }
+
+    // Runs on the request thread. Sold out: 409 right away; queue full: 429. The future completes with the
+    // order once its batch has committed, or with the reason it was not written (e.g. unknown customer: 404).
+    public CompletableFuture<CustomerOrderResponse> submit(CustomerOrderRequest orderRequest) {
+        return submit(orderRequest, null);
+    }
+
+    // onWrite (optional) runs inside the transaction that writes the order, so whatever it writes commits or
+    // rolls back together with the order; used to store the response of an idempotent request
+    public CompletableFuture<CustomerOrderResponse> submit(CustomerOrderRequest orderRequest,
+                                                           Consumer<CustomerOrderResponse> onWrite) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(orderService.createOrder(orderRequest, onWrite));
+        }
+        if (stopping) {
+            rejected.increment();
+            throw new OrderQueueFullException();
+        }
+        Map<Long, Integer> quantities = CustomerOrderService.quantities(orderRequest.orderItems());
+        // Every path below that drops the order gives the hold back
+        Map<Long, Integer> held = inventoryService.hold(quantities);
+        PendingOrder order = new PendingOrder(orderRequest.customerId(), quantities, held, onWrite,
+                new CompletableFuture<>());
+        if (!queue.offer(order)) {
+            inventoryService.releaseHold(held);
+            rejected.increment();
+            throw new OrderQueueFullException();
+        }
+        // Shutdown may have begun after the check above and drained the queue already. Whoever takes the order
+        // off the queue completes its future: a writer, stopWriters, or this thread if it is still there.
+        if (stopping && queue.remove(order)) {
+            inventoryService.releaseHold(held);
+            rejected.increment();
+            throw new OrderQueueFullException();
+        }
+        return order.future();
+    }
+
+    private void writeLoop() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);  // wakes up to notice a shutdown
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Completes the future of every order in the batch
+    private void write(List<PendingOrder> batch) {
+        long started = System.nanoTime();
+        Outcome[] outcomes;
+        try {
+            outcomes = transaction.execute(status -> insert(batch));
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), ex);
+                return;
+            }
+            log.warn("Order batch of {} failed; writing its orders one by one", batch.size(), ex);
+            for (PendingOrder order : batch) {
+                write(List.of(order));
+            }
+            return;
+        }
+        batches.increment();
+        commitNanos.add(System.nanoTime() - started);
+        lastBatchSize.set(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (outcomes[i].failure() == null) {
+                committedOrders.increment();
+                batch.get(i).future().complete(outcomes[i].order());
+            } else {
+                fail(batch.get(i), outcomes[i].failure());
+            }
+        }
+    }
+
+    // Runs inside the batch's transaction; orders with an unknown customer or product are left out of it
+    private Outcome[] insert(List<PendingOrder> batch) {
+        Set<Long> customerIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (PendingOrder order : batch) {
+            customerIds.add(order.customerId());
+            productIds.addAll(order.quantities().keySet());
+        }
+        Map<Long, String> customerNames = new HashMap<>();
+        selectByIds(CUSTOMERS_SQL, customerIds, resultSet ->
+                customerNames.put(resultSet.getLong("id"), resultSet.getString("name")));
+        Map<Long, BigDecimal> unitPrices = new HashMap<>();
+        selectByIds(PRICES_SQL, productIds, resultSet ->
+                unitPrices.put(resultSet.getLong("id"), OrderItem.unitPrice(resultSet.getDouble("price"))));
+
+        Outcome[] outcomes = new Outcome[batch.size()];
+        List<Integer> accepted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            RuntimeException refusal = refusal(batch.get(i), customerNames, unitPrices);
+            if (refusal == null) {
+                accepted.add(i);
+            } else {
+                outcomes[i] = new Outcome(null, refusal);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return outcomes;
+        }
+        List<Long> orderIds = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, accepted.size());
+        LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);  // as Postgres stores it
+        List<Long> orderCustomerIds = new ArrayList<>(accepted.size());
+        List<BigDecimal> totals = new ArrayList<>(accepted.size());
+        List<Long> itemOrderIds = new ArrayList<>();
+        List<Long> itemProductIds = new ArrayList<>();
+        List<Integer> itemQuantities = new ArrayList<>();
+        List<BigDecimal> itemPrices = new ArrayList<>();
+        for (int j = 0; j < accepted.size(); j++) {
+            int i = accepted.get(j);
+            PendingOrder order = batch.get(i);
+            Long orderId = orderIds.get(j);
+            List<OrderItemResponse> items = new ArrayList<>(order.quantities().size());
+            int totalItems = 0;
+            BigDecimal total = BigDecimal.ZERO.setScale(2);
+            for (Map.Entry<Long, Integer> line : order.quantities().entrySet()) {
+                BigDecimal unitPrice = unitPrices.get(line.getKey());
+                BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(line.getValue()));
+                items.add(new OrderItemResponse(line.getKey(), unitPrice, line.getValue(), lineTotal));
+                totalItems += line.getValue();
+                total = total.add(lineTotal);
+                itemOrderIds.add(orderId);
+                itemProductIds.add(line.getKey());
+                itemQuantities.add(line.getValue());
+                itemPrices.add(unitPrice);
+            }
+            orderCustomerIds.add(order.customerId());
+            totals.add(total);
+            outcomes[i] = new Outcome(new CustomerOrderResponse(
+                    orderId, order.customerId(), customerNames.get(order.customerId()), items, totalItems, total), null);
+        }
+
+        // Stats first: they lock the customers in id order, ahead of the order inserts' foreign key checks
+        customerStatsService.ordersPlaced(orderCustomerIds, totals, createdAt);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_ORDERS_SQL);
+            statement.setTimestamp(1, Timestamp.valueOf(createdAt));
+            statement.setTimestamp(2, Timestamp.valueOf(createdAt));
+            statement.setArray(3, connection.createArrayOf("bigint", orderIds.toArray(Long[]::new)));
+            statement.setArray(4, connection.createArrayOf("bigint", orderCustomerIds.toArray(Long[]::new)));
+            statement.setArray(5, connection.createArrayOf("numeric", totals.toArray(BigDecimal[]::new)));
+            return statement;
+        });
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_ITEMS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", itemOrderIds.toArray(Long[]::new)));
+            statement.setArray(2, connection.createArrayOf("bigint", itemProductIds.toArray(Long[]::new)));
+            statement.setArray(3, connection.createArrayOf("integer", itemQuantities.toArray(Integer[]::new)));
+            statement.setArray(4, connection.createArrayOf("numeric", itemPrices.toArray(BigDecimal[]::new)));
+            return statement;
+        });
+        for (int i : accepted) {
+            CustomerOrderResponse order = outcomes[i].order();
+            if (batch.get(i).onWrite() != null) {
+                batch.get(i).onWrite().accept(order);
+            }
+            // Delivered to @TransactionalEventListener methods once the batch commits
+            eventPublisher.publishEvent(new OrderItemsChangedEvent(order.Id(), List.of(),
+                    order.orderItems().stream().map(OrderItemResponse::productId).toList()));
+        }
+        return outcomes;
+    }
+
+    private static RuntimeException refusal(PendingOrder order, Map<Long, String> customerNames,
+                                            Map<Long, BigDecimal> unitPrices) {
+        if (!customerNames.containsKey(order.customerId())) {
+            return new EntityNotFoundException("Customer not found");
+        }
+        for (Long productId : order.quantities().keySet()) {
+            if (!unitPrices.containsKey(productId)) {
+                return new EntityNotFoundException("Product not found: " + productId);
+            }
+        }
+        return null;
+    }
+
+    private void selectByIds(String sql, Set<Long> ids, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray(Long[]::new)));
+            return statement;
+        }, handler);
+    }
+
+    private void fail(PendingOrder order, RuntimeException ex) {
+        inventoryService.releaseHold(order.held());
+        order.future().completeExceptionally(ex);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (queue != null) {
+            Gauge.builder("orders.ingest.queue.depth", queue, BlockingQueue::size)
+                    .description("Orders waiting for a writer").register(registry);
+        }
+        FunctionTimer.builder("orders.ingest.commit", this,
+                        service -> service.batches.sum(), service -> service.commitNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Batch transactions committed and their duration").register(registry);
+        FunctionCounter.builder("orders.ingest.orders", committedOrders, LongAdder::sum)
+                .description("Orders committed by the writers; divided by the commit count, the mean batch size")
+                .register(registry);
+        Gauge.builder("orders.ingest.batch.size", lastBatchSize, AtomicInteger::get)
+                .description("Orders in the last committed batch").register(registry);
+        FunctionCounter.builder("orders.ingest.rejected", rejected, LongAdder::sum)
+                .description("Orders refused with 429 because the queue was full").register(registry);
+    }
+
+    // An order waiting for a writer; `held` is the stock held for it on this instance
+    private record PendingOrder(Long customerId, Map<Long, Integer> quantities, Map<Long, Integer> held,
+                                Consumer<CustomerOrderResponse> onWrite,
+                                CompletableFuture<CustomerOrderResponse> future) {}
+
+    // What became of one order of a batch: written, or refused with an exception
+    private record Outcome(CustomerOrderResponse order, RuntimeException failure) {}
+}
@@ -0,0 +1,64 @@
+package com.sokoplace.customerOrder;
+
+import com.sokoplace.product.Product;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// A line of an order: a product and how many units of it.
+// @MapsId: the two halves of the primary key are the ids of the order and the product, so there are no
+// separate key columns to keep in sync with the associations.
+// The unit price is the product's price when the line was created, so the order keeps what the customer paid.
+
+@Entity
+@Table(name = "order_item")
+@Data  // Lombok annotation: generates getters, setters, toString, equals, hashCode
+@NoArgsConstructor
+public class OrderItem {
+
+    @EmbeddedId
+    private OrderItemId id = new OrderItemId();
+
+    // The associations are left out of equals/hashCode/toString, which would otherwise load them or recurse
+    @MapsId("customerOrderId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_order_id")
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private CustomerOrder order;
+
+    @MapsId("productId")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Product product;
+
+    @Column(name = "quantity", nullable = false)
+    private int quantity;
+
+    @Column(name = "unit_price", nullable = false, precision = 19, scale = 2)
+    private BigDecimal unitPrice;
+
+    public OrderItem(CustomerOrder order, Product product, int quantity) {
+        this.id = new OrderItemId(order.getId(), product.getId());
+        this.order = order;
+        this.product = product;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice(product.getPrice());
+    }
+
+    // Product prices are doubles; order prices are fixed-point with two decimal places
+    static BigDecimal unitPrice(double price) {
+        return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    public BigDecimal lineTotal() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
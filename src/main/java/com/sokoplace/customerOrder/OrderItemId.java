@@ -0,0 +1,24 @@
+package com.sokoplace.customerOrder;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// Composite primary key of order_item: one row per product in an order
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderItemId implements Serializable {
+
+    @Column(name = "customer_order_id")
+    private Long customerOrderId;
+
+    @Column(name = "product_id")
+    private Long productId;
+}
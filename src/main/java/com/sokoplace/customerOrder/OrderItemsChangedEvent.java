@@ -0,0 +1,31 @@
+package com.sokoplace.customerOrder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Published by CustomerOrderService whenever the products of an order change: on create (no previous
+// products), update, and delete (no products left), and by CustomerService / CustomerPurgeService for the
+// orders deleted with a customer. Read models built from order_item, such as the "frequently bought
+// together" counts, listen with @TransactionalEventListener and apply the difference once the transaction
+// has committed.
+
+public record OrderItemsChangedEvent(
+        Long orderId,
+        List<Long> previousProductIds,
+        List<Long> productIds
+) {
+
+    // One delete event per order, from the keys of the order_item rows the deleted orders had
+    public static List<OrderItemsChangedEvent> ordersDeleted(Collection<OrderItemId> items) {
+        Map<Long, List<Long>> productIdsByOrder = new LinkedHashMap<>();
+        for (OrderItemId item : items) {
+            productIdsByOrder.computeIfAbsent(item.getCustomerOrderId(), orderId -> new ArrayList<>()).add(item.getProductId());
+        }
+        List<OrderItemsChangedEvent> events = new ArrayList<>(productIdsByOrder.size());
+        productIdsByOrder.forEach((orderId, productIds) -> events.add(new OrderItemsChangedEvent(orderId, productIds, List.of())));
+        return events;
+    }
+}
@@ -0,0 +1,9 @@
+package com.sokoplace.customerOrder;
+
+// Thrown when the order ingest queue has no room for another order; mapped to 429 Too Many Requests
+public class OrderQueueFullException extends RuntimeException {
+
+    public OrderQueueFullException() {
+        super("Order queue is full");
+    }
+}
@@ -1,11 +1,13 @@
 package com.sokoplace.customerOrder.dto;
 
-import com.sokoplace.product.Product;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.List;
 
+// Lines name products by id; lines for the same product are added together
+
 public record CustomerOrderRequest(
 
         @NotNull(message = "Customer ID is required")
@@ -13,5 +15,5 @@ public record CustomerOrderRequest(
 
         @NotNull(message = "Order list is required")
         @NotEmpty(message = "Order items cannot be empty")
-        List<Product> orderItems
+        List<@Valid @NotNull OrderItemRequest> orderItems
 ) {}
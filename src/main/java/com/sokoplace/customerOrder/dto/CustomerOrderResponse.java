@@ -1,14 +1,13 @@
 package com.sokoplace.customerOrder.dto;
 
-import com.sokoplace.product.Product;
-
+import java.math.BigDecimal;
 import java.util.List;
 
 public record CustomerOrderResponse(
         Long Id,
         Long customerId,
         String customerName,
-        List<Product> orderItems,
-        int totalItems,
-        Double totalPrice
+        List<OrderItemResponse> orderItems,
+        int totalItems,  // units across all lines
+        BigDecimal totalPrice
 ) {}
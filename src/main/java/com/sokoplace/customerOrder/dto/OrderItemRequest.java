@@ -0,0 +1,16 @@
+package com.sokoplace.customerOrder.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+// One line of an order request: which product, and how many units. The price is looked up by the server.
+
+public record OrderItemRequest(
+
+        @NotNull(message = "Product ID is required")
+        Long productId,
+
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        Integer quantity
+) {}
@@ -0,0 +1,12 @@
+package com.sokoplace.customerOrder.dto;
+
+import java.math.BigDecimal;
+
+// Prices are those captured when the line was ordered. Product details: GET /api/v1/products/batch?ids=...
+
+public record OrderItemResponse(
+        Long productId,
+        BigDecimal unitPrice,
+        int quantity,
+        BigDecimal lineTotal  // unitPrice x quantity
+) {}
@@ -0,0 +1,49 @@
+package com.sokoplace.image;
+
+// One byte range of a file, from a Range header such as "bytes=0-1023", "bytes=1024-" or "bytes=-500".
+// Only single ranges are served; for anything else the whole file is sent, which RFC 9110 allows.
+
+record ByteRange(long start, long end) {  // end inclusive, as in Content-Range
+
+    // Marker for a range that lies outside the file (416)
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    // The range to send, UNSATISFIABLE, or null to send the whole file
+    static ByteRange parse(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long start = Long.parseLong(first);
+            Long requestedEnd = last.isEmpty() ? null : Long.parseLong(last);
+            if (requestedEnd != null && requestedEnd < start) {
+                return null;  // invalid, so ignored
+            }
+            if (start >= length) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(start, requestedEnd == null ? length - 1 : Math.min(requestedEnd, length - 1));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.sokoplace.image;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+// Product images, at the URLs products already carry (imageUrl: /images/{category}/{file}).
+// Without parameters the stored file is sent from the ImageStore directory without passing through the heap:
+// through Tomcat's sendfile where the connector supports it, otherwise FileChannel.transferTo to the response.
+// Range requests get 206 with the requested bytes, and the ETag (content hash) answers If-None-Match with 304.
+// URLs with the current ?v= (what ProductService stores) are immutable, so browsers and CDNs never revalidate.
+// With ?w= the image is scaled down to that width, e.g. listing cards ask for /images/phone/phone.jpg?w=320
+// and get a few kilobytes instead of the full-size file; ?format=png|jpeg changes the output format.
+
+@RestController
+@RequestMapping("/images")
+public class ImageController {
+
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    // Unversioned (or outdated) URLs may change content, so caches revalidate, which is a cheap 304
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageStore imageStore;
+    private final ImageResizeService imageResizeService;
+
+    @Autowired
+    public ImageController(ImageStore imageStore, ImageResizeService imageResizeService) {
+        this.imageStore = imageStore;
+        this.imageResizeService = imageResizeService;
+    }
+
+    @GetMapping(value = "/{category}/{fileName}", params = {"!w", "!format"})
+    public void getOriginal(
+            @PathVariable String category,
+            @PathVariable String fileName,
+            @RequestParam(name = "v", required = false) String version,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Path file = imageStore.resolve(category, fileName);
+        ImageStore.Fingerprint fingerprint = imageStore.fingerprint(file);
+        CacheControl cacheControl = fingerprint.version().equals(version) ? IMMUTABLE : REVALIDATE;
+
+        response.setHeader(HttpHeaders.ETAG, fingerprint.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), fingerprint.etag())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long length = fingerprint.size();
+        // If-Range: only send the range if the client's partial copy is still this version
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        ByteRange range = ifRange == null || ifRange.equals(fingerprint.etag())
+                ? ByteRange.parse(request.getHeader(HttpHeaders.RANGE), length)
+                : null;
+        if (range == ByteRange.UNSATISFIABLE) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        if (range == null) {
+            range = new ByteRange(0, length - 1);
+        } else {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(range.length());
+        if ("HEAD".equals(request.getMethod()) || range.length() == 0) {
+            return;
+        }
+        send(file, range, request, response);
+    }
+
+    @GetMapping("/{category}/{fileName}")
+    public ResponseEntity<Resource> getResized(
+            @PathVariable String category,
+            @PathVariable String fileName,
+            @RequestParam(name = "w", required = false) Integer width,
+            @RequestParam(required = false) String format) {
+        // A format change alone keeps the largest configured width
+        ResizedImage image = imageResizeService.resize(category, fileName,
+                width != null ? width : Integer.MAX_VALUE, format);
+        return ResponseEntity.ok()
+                .cacheControl(CACHE_CONTROL)
+                .contentType(image.mediaType())
+                .contentLength(image.size())
+                .body(new InputStreamResource(image.content()));  // closed once written
+    }
+
+    private static void send(Path file, ByteRange range, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file from the kernel once the request returns
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);  // exclusive
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;  // file shrank underneath us; Content-Length is already out, nothing to fix
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
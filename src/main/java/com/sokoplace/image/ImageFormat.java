@@ -0,0 +1,71 @@
+package com.sokoplace.image;
+
+import com.sokoplace.common.BadRequestException;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Output formats for resized images, chosen with ?format=
+// These are the formats javax.imageio can write out of the box (it has no WebP encoder).
+
+public enum ImageFormat {
+    JPEG("jpeg", "jpg", MediaType.IMAGE_JPEG),
+    PNG("png", "png", MediaType.IMAGE_PNG);
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String writerName;
+    private final String extension;
+    private final MediaType mediaType;
+
+    ImageFormat(String writerName, String extension, MediaType mediaType) {
+        this.writerName = writerName;
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String writerName() {
+        return writerName;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    // A missing value keeps the source's format; an unknown one is a 400 (BadRequestException)
+    public static ImageFormat fromParameter(String value, String sourceFileName) {
+        if (value == null || value.isBlank()) {
+            return fromFileName(sourceFileName);
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (ImageFormat format : values()) {
+            if (format.writerName.equals(normalized) || format.extension.equals(normalized)) {
+                return format;
+            }
+        }
+        throw new BadRequestException("Unknown image format: " + value);
+    }
+
+    // Anything that isn't a PNG is re-encoded as JPEG
+    public static ImageFormat fromFileName(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".png") ? PNG : JPEG;
+    }
+
+    // The format of a file from its first bytes (magic numbers), whatever its name or declared content type.
+    // Null for anything else, including formats javax.imageio can't decode (WebP, HEIC, ...).
+    public static ImageFormat fromMagicBytes(byte[] header) {
+        if (header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (header.length >= PNG_SIGNATURE.length
+                && Arrays.equals(header, 0, PNG_SIGNATURE.length, PNG_SIGNATURE, 0, PNG_SIGNATURE.length)) {
+            return PNG;
+        }
+        return null;
+    }
+}
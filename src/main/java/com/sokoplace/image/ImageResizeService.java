@@ -0,0 +1,257 @@
+package com.sokoplace.image;
+
+import com.sokoplace.common.BadRequestException;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Product images scaled down to the width a page actually displays, e.g. /images/phone/phone.jpg?w=320.
+// Widths are snapped to a short list, so the number of variants per image stays small and they cache well.
+// Each variant is resized once with javax.imageio and kept in a ThumbnailCache on disk (LRU, size budget).
+// Concurrent requests for a variant that isn't cached yet wait for a single resize instead of all doing it.
+// The cache key includes the source's modification time, so replacing an image produces new variants;
+// the old ones age out of the cache.
+
+@Slf4j
+@Service
+public class ImageResizeService {
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final int[] widths;
+    private final ThumbnailCache cache;
+
+    // Variants being resized right now: key -> completes when the file is in the cache
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong resizes = new AtomicLong();
+
+    @Autowired
+    public ImageResizeService(ResourceLoader resourceLoader,
+                              @Value("${sokoplace.images.location:file:${sokoplace.images.directory:${user.dir}/data/images}/}") String location,
+                              @Value("${sokoplace.images.widths:80,160,320,640,1024}") int[] widths,
+                              @Value("${sokoplace.images.cache.directory:${java.io.tmpdir}/sokoplace/thumbnails}") Path cacheDirectory,
+                              @Value("${sokoplace.images.cache.max-size:256MB}") DataSize cacheMaxSize) {
+        if (widths.length == 0 || Arrays.stream(widths).anyMatch(width -> width < 1)) {
+            throw new IllegalArgumentException("Image widths must be positive");
+        }
+        this.resourceLoader = resourceLoader;
+        this.location = location.endsWith("/") ? location : location + "/";
+        this.widths = Arrays.stream(widths).sorted().distinct().toArray();
+        this.cache = new ThumbnailCache(cacheDirectory, cacheMaxSize.toBytes());
+    }
+
+    // The image at (about) the requested width, never wider than the source
+    public ResizedImage resize(String category, String fileName, int width, String format) {
+        if (width < 1) {
+            throw new BadRequestException("Width must be at least 1");
+        }
+        Resource source = source(category, fileName);
+        ImageFormat target = ImageFormat.fromParameter(format, fileName);
+        int snapped = snap(width);
+        String key = key(category, fileName, lastModified(source), snapped, target);
+
+        ResizedImage cached = cache.open(key, target.mediaType());
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            await(running);
+        } else {
+            try {
+                if (!cache.contains(key)) {  // finished just before we registered?
+                    cache.put(key, render(source, snapped, target));
+                }
+                mine.complete(null);
+            } catch (RuntimeException ex) {
+                mine.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+        cached = cache.open(key, target.mediaType());
+        if (cached == null) {
+            // Already evicted again: only when the budget is smaller than the traffic. Serve it uncached.
+            byte[] content = render(source, snapped, target);
+            return new ResizedImage(new ByteArrayInputStream(content), content.length, target.mediaType());
+        }
+        return cached;
+    }
+
+    // The configured widths, ascending
+    public int[] widths() {
+        return widths.clone();
+    }
+
+    // Number of resizes done, for tests and monitoring
+    public long resizeCount() {
+        return resizes.get();
+    }
+
+    // Smallest configured width that covers the request, or the largest one
+    int snap(int width) {
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private Resource source(String category, String fileName) {
+        if (!ImageStore.SEGMENT.matcher(category).matches() || !ImageStore.SEGMENT.matcher(fileName).matches()) {
+            throw new BadRequestException("Invalid image path");
+        }
+        Resource resource = resourceLoader.getResource(location + category + "/" + fileName);
+        if (!resource.isReadable()) {
+            throw new EntityNotFoundException("Image not found");
+        }
+        return resource;
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException ex) {
+            return 0L;  // e.g. a resource without a timestamp; variants then live until evicted
+        }
+    }
+
+    // Readable, and unique per source path, source version, width and format
+    private static String key(String category, String fileName, long version, int width, ImageFormat format) {
+        String stem = fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((category + "/" + fileName + "@" + version).getBytes(StandardCharsets.UTF_8));
+            String hash = HexFormat.of().formatHex(digest, 0, 8);
+            return stem + "-" + hash + "-" + width + "w." + format.extension();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);  // every JVM has SHA-256
+        }
+    }
+
+    private static void await(CompletableFuture<Void> running) {
+        try {
+            running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private byte[] render(Resource source, int width, ImageFormat format) {
+        long started = System.nanoTime();
+        BufferedImage decoded;
+        try (InputStream in = source.getInputStream();
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IllegalStateException("Unsupported image format: " + source.getDescription());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Decode only every n-th pixel when the source is far wider than the target:
+                // less memory and less work, and the scaling below still has 2x the pixels it needs
+                int subsampling = Math.max(1, reader.getWidth(0) / (width * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read image " + source.getDescription(), ex);
+        }
+        BufferedImage scaled = scale(decoded, Math.min(width, decoded.getWidth()), format);
+        byte[] content = encode(scaled, format);
+        resizes.incrementAndGet();
+        log.debug("Resized {} to {}px {} ({} bytes) in {} ms", source.getDescription(), scaled.getWidth(),
+                format, content.length, (System.nanoTime() - started) / 1_000_000);
+        return content;
+    }
+
+    // Halves the image with bilinear filtering until one last step reaches the width: a single bilinear
+    // step from far away would skip most source pixels and alias
+    private static BufferedImage scale(BufferedImage image, int width, ImageFormat format) {
+        int type = format == ImageFormat.PNG && image.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_ARGB
+                : BufferedImage.TYPE_INT_RGB;  // JPEG has no alpha channel
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(1, (int) Math.round((double) image.getHeight() * nextWidth / image.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, ImageFormat format) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.writerName()).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == ImageFormat.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,170 @@
+package com.sokoplace.image;
+
+import com.sokoplace.common.BadRequestException;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// The product images on the filesystem: {directory}/{category}/{file}, served by ImageController.
+// Images are files rather than classpath resources so they can be sent with sendfile (no copy through the heap)
+// and replaced without a redeploy. On startup, images bundled in the jar (static/images) are copied into the
+// directory unless a file with that name is already there.
+// Each file has a fingerprint: a SHA-256 of its content, computed once per size and modification time.
+// It is the ETag, and its first characters are the ?v= of versioned URLs, which can be cached forever:
+// a new image has a new hash and so a new URL.
+
+@Slf4j
+@Component
+public class ImageStore {
+
+    // One path segment: no slashes, no leading dot (so no '..')
+    static final Pattern SEGMENT = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,99}");
+    private static final int VERSION_LENGTH = 16;
+
+    private final Path directory;
+    private final String seedLocation;
+    private final ConcurrentHashMap<Path, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ImageStore(@Value("${sokoplace.images.directory:${user.dir}/data/images}") Path directory,
+                      @Value("${sokoplace.images.seed-location:classpath*:static/images/}") String seedLocation) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.seedLocation = seedLocation.endsWith("/") ? seedLocation : seedLocation + "/";
+    }
+
+    // Content hash plus the file attributes it was computed for
+    public record Fingerprint(String hash, long size, long lastModified) {
+
+        public String etag() {
+            return "\"" + hash + "\"";
+        }
+
+        public String version() {
+            return hash.substring(0, VERSION_LENGTH);
+        }
+    }
+
+    @PostConstruct
+    void seed() {
+        try {
+            Files.createDirectories(directory);
+            int copied = 0;
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources(seedLocation + "*/*")) {
+                String category = categoryOf(resource);
+                String fileName = resource.getFilename();
+                // Skips anything that couldn't be served anyway (e.g. Windows "file.jpg:Zone.Identifier" streams)
+                if (category == null || fileName == null || !SEGMENT.matcher(fileName).matches()) {
+                    continue;
+                }
+                Path target = directory.resolve(category).resolve(fileName);
+                if (Files.exists(target)) {
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                Path temporary = target.resolveSibling(fileName + ".tmp");
+                try (InputStream in = resource.getInputStream()) {
+                    Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+                copied++;
+            }
+            log.info("Serving images from {} ({} bundled images copied)", directory, copied);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot prepare image directory " + directory, ex);
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    // The file of an image. Invalid names give 400 (BadRequestException), unknown images 404.
+    public Path resolve(String category, String fileName) {
+        if (!SEGMENT.matcher(category).matches() || !SEGMENT.matcher(fileName).matches()) {
+            throw new BadRequestException("Invalid image path");
+        }
+        Path file = directory.resolve(category).resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new EntityNotFoundException("Image not found");
+        }
+        return file;
+    }
+
+    // Hashes the file the first time and after it changes; otherwise one stat call
+    public Fingerprint fingerprint(Path file) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            throw new EntityNotFoundException("Image not found");
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Fingerprint known = fingerprints.get(file);
+        if (known != null && known.size() == size && known.lastModified() == lastModified) {
+            return known;
+        }
+        Fingerprint computed = new Fingerprint(hash(file), size, lastModified);
+        fingerprints.put(file, computed);
+        return computed;
+    }
+
+    // URL of an image, versioned when the file exists, e.g. /images/phone/phone.jpg?v=3f2a...
+    public String url(String category, String fileName) {
+        String url = "/images/" + category + "/" + fileName;
+        try {
+            return url + "?v=" + fingerprint(resolve(category, fileName)).version();
+        } catch (BadRequestException | EntityNotFoundException ex) {
+            return url;  // not there (yet): the plain URL still resolves once it is
+        }
+    }
+
+    private static String categoryOf(Resource resource) {
+        try {
+            String url = resource.getURL().toString();
+            String parent = url.substring(0, url.lastIndexOf('/'));
+            String category = parent.substring(parent.lastIndexOf('/') + 1);
+            return SEGMENT.matcher(category).matches() ? category : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static String hash(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read image " + file, ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);  // every JVM has SHA-256
+        }
+    }
+}
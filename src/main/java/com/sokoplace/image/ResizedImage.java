@@ -0,0 +1,12 @@
+package com.sokoplace.image;
+
+import org.springframework.http.MediaType;
+
+import java.io.InputStream;
+
+// An image variant ready to send: the caller must close 'content'
+public record ResizedImage(
+        InputStream content,
+        long size,
+        MediaType mediaType
+) {}
@@ -0,0 +1,159 @@
+package com.sokoplace.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Resized images on disk, in one directory, under a total size budget.
+// An access-ordered LinkedHashMap tracks the files from least to most recently used; when a new file
+// takes the total over the budget, the least recently used files are deleted until it fits again.
+// Files are written under a temporary name and renamed into place, so a reader never sees half a file.
+// On startup the directory is re-indexed (by modification time), so the cache survives restarts.
+// Not a Spring bean: ImageResizeService owns it.
+
+@Slf4j
+final class ThumbnailCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // key (the file name) -> size in bytes, least recently used first; guarded by 'this'
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    ThumbnailCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            index();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot use thumbnail cache directory " + directory, ex);
+        }
+    }
+
+    // Opens a cached file, or returns null on a miss. The stream stays readable even if the file is
+    // evicted while it is being sent.
+    ResizedImage open(String key, MediaType mediaType) {
+        Long size;
+        synchronized (this) {
+            size = entries.get(key);  // also marks the entry as most recently used
+        }
+        if (size == null) {
+            return null;
+        }
+        try {
+            return new ResizedImage(Files.newInputStream(directory.resolve(key)), size, mediaType);
+        } catch (NoSuchFileException ex) {
+            remove(key);  // deleted behind our back
+            return null;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    // Stores a file and evicts least recently used files beyond the budget
+    void put(String key, byte[] content) {
+        Path target = directory.resolve(key);
+        Path temp = directory.resolve(key + TEMP_SUFFIX);
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write thumbnail " + key, ex);
+        }
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = entries.put(key, (long) content.length);
+            totalBytes += content.length - (previous == null ? 0 : previous);
+            evicted = evict(key);
+        }
+        evicted.forEach(this::delete);  // file system work outside the lock
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    synchronized int count() {
+        return entries.size();
+    }
+
+    // Least recently used first; never the entry just added, even if it alone exceeds the budget
+    private List<String> evict(String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> oldestFirst = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && oldestFirst.hasNext()) {
+            Map.Entry<String, Long> entry = oldestFirst.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= entry.getValue();
+            evicted.add(entry.getKey());
+            oldestFirst.remove();
+        }
+        return evicted;
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key));
+        } catch (IOException ex) {
+            log.warn("Cannot delete evicted thumbnail {}", key, ex);
+        }
+    }
+
+    private void index() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        record CachedFile(Path path, long size, FileTime modified) {}
+        List<CachedFile> cached = new ArrayList<>();
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);  // left over from a crash mid-write
+            } else {
+                cached.add(new CachedFile(file, Files.size(file), Files.getLastModifiedTime(file)));
+            }
+        }
+        cached.sort(Comparator.comparing(CachedFile::modified));
+        List<String> evicted;
+        synchronized (this) {
+            for (CachedFile file : cached) {
+                entries.put(file.path().getFileName().toString(), file.size());
+                totalBytes += file.size();
+            }
+            evicted = evict(null);
+        }
+        evicted.forEach(this::delete);
+        log.info("Thumbnail cache: {} files, {} bytes in {}", count(), totalBytes(), directory);
+    }
+}
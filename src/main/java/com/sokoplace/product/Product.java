@@ -1,6 +1,6 @@
 package com.sokoplace.product;
 
-import com.sokoplace.customerOrder.CustomerOrder;
+import com.sokoplace.customerOrder.OrderItem;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -42,9 +42,9 @@ public class Product {
     @Column(name = "image_url", length = 255)
     private String imageUrl;
 
-    // Many products can be in many orders
-    @ManyToMany(mappedBy = "products")
-    private List<CustomerOrder> orders = new ArrayList<>();
+    // A product can be in many orders, one order line per order
+    @OneToMany(mappedBy = "product")
+    private List<OrderItem> orders = new ArrayList<>();
 
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
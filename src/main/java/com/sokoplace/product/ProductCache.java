@@ -0,0 +1,95 @@
+package com.sokoplace.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sokoplace.product.dto.ProductResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Bounded in-process read-through cache of ProductResponse, keyed by id and by SKU.
+// Entries are evicted by size (least recently / frequently used first) and by age (TTL),
+// so a missed invalidation can never serve a stale product for longer than the TTL.
+// Hit, miss and eviction counts are published as 'cache.*' metrics (tagged cache=products.id / products.sku)
+// through the MeterBinder interface, which Spring Boot Actuator picks up automatically.
+
+@Component
+public class ProductCache implements MeterBinder {
+
+    private final Cache<Long, ProductResponse> byId;
+    private final Cache<String, ProductResponse> bySku;
+
+    @Autowired
+    public ProductCache(
+            @Value("${sokoplace.cache.products.maximum-size:10000}") long maximumSize,
+            @Value("${sokoplace.cache.products.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.byId = newCache(maximumSize, expireAfterWrite);
+        this.bySku = newCache(maximumSize, expireAfterWrite);
+    }
+
+    private static <K> Cache<K, ProductResponse> newCache(long maximumSize, Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    // Returns the cached product, or calls the loader once and caches its result.
+    // Exceptions thrown by the loader (e.g. EntityNotFoundException) propagate and nothing is cached.
+    public ProductResponse getById(Long id, Function<Long, ProductResponse> loader) {
+        return byId.get(id, loader);
+    }
+
+    // Bulk version of getById: the ids not cached are handed to the loader in one call.
+    // Ids the loader doesn't return are left out of the result and aren't cached.
+    public Map<Long, ProductResponse> getAllById(Iterable<Long> ids,
+                                                 Function<Set<? extends Long>, Map<Long, ProductResponse>> loader) {
+        return byId.getAll(ids, loader);
+    }
+
+    public ProductResponse getBySku(String sku, Function<String, ProductResponse> loader) {
+        return bySku.get(sku, loader);
+    }
+
+    // Evicts now and again once the surrounding transaction commits.
+    // The second eviction drops any entry a concurrent reader re-loaded from the old, not yet committed, row.
+    public void evict(Long id, String... skus) {
+        evictNow(id, skus);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(id, skus);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Long id, String... skus) {
+        if (id != null) {
+            byId.invalidate(id);
+        }
+        for (String sku : skus) {
+            if (sku != null) {
+                bySku.invalidate(sku);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, byId, "products.id");
+        CaffeineCacheMetrics.monitor(registry, bySku, "products.sku");
+    }
+}
@@ -0,0 +1,18 @@
+package com.sokoplace.product;
+
+import com.sokoplace.product.dto.ProductResponse;
+
+// Published by ProductService whenever a product is created, updated or deleted.
+// In-memory read models (search index, etc.) listen with @TransactionalEventListener,
+// so they only see changes once the transaction has committed.
+// 'product' holds the new state, or null when the product was deleted.
+
+public record ProductChangedEvent(
+        Long productId,
+        ProductResponse product
+) {
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
@@ -1,12 +1,28 @@
 package com.sokoplace.product;
 
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.common.ResourceVersion;
+import com.sokoplace.product.dto.ProductBatchResponse;
+import com.sokoplace.product.dto.ProductFacetsResponse;
 import com.sokoplace.product.dto.ProductRequest;
 import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.product.dto.ProductSuggestion;
+import com.sokoplace.product.dto.StockRequest;
+import com.sokoplace.product.dto.StockResponse;
+import com.sokoplace.product.facet.ProductFacetService;
+import com.sokoplace.product.image.ProductImageService;
+import com.sokoplace.product.inventory.InventoryService;
+import com.sokoplace.product.related.RelatedProductService;
+import com.sokoplace.product.search.ProductSearchService;
+import com.sokoplace.product.suggest.ProductSuggestService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -15,41 +31,153 @@ import java.util.List;
 // ResponseEntity.notFound(), ResponseEntity.badRequest().body("Invalid"), etc.
 // Create a custom header 'customHeaders' object, then ResponseEntity.ok().headers(customHeaders).body(...)
 // @Valid: corresponds to validation in DTO; for incoming @RequestBody
+// Single-product GETs are conditional: they carry ETag / Last-Modified, and a client sending back
+// If-None-Match / If-Modified-Since gets 304 Not Modified with no body when its copy is still current.
 
 @RestController
 @RequestMapping("/api/v1/products")
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final ProductFacetService productFacetService;
+    private final ProductSuggestService productSuggestService;
+    private final RelatedProductService relatedProductService;
+    private final InventoryService inventoryService;
+    private final ProductImageService productImageService;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                            ProductSearchService productSearchService,
+                            ProductFacetService productFacetService,
+                            ProductSuggestService productSuggestService,
+                            RelatedProductService relatedProductService,
+                            InventoryService inventoryService,
+                            ProductImageService productImageService) {
         this.productService = productService;
+        this.productSearchService = productSearchService;
+        this.productFacetService = productFacetService;
+        this.productSuggestService = productSuggestService;
+        this.relatedProductService = relatedProductService;
+        this.inventoryService = inventoryService;
+        this.productImageService = productImageService;
     }
 
+    // The product comes from the cache, so a 304 costs no query and no JSON serialization.
+    // The validators are taken from the same object as the body, so they always describe it.
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id, WebRequest request) {
         ProductResponse responseObject = productService.findProductById(id);
-        return ResponseEntity.ok(responseObject);
+        return conditionalResponse(responseObject, request);
     }
 
     @GetMapping("/sku/{sku}")
-    public ResponseEntity<ProductResponse> getProductBySku(@PathVariable String sku) {
+    public ResponseEntity<ProductResponse> getProductBySku(@PathVariable String sku, WebRequest request) {
         ProductResponse responseObject = productService.findProductBySku(sku);
+        return conditionalResponse(responseObject, request);
+    }
+
+    // Multi-get: /batch?ids=3,1,2 replaces one GET per product with a single request.
+    // Products come back in the order asked for; ids that don't exist are listed under missingIds.
+    @GetMapping("/batch")
+    public ResponseEntity<ProductBatchResponse> getProductsByIds(@RequestParam List<Long> ids) {
+        ProductBatchResponse responseObject = productService.findProductsByIds(ids);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // "Frequently bought together": the products most often ordered with this one, most frequent first
+    @GetMapping("/{id}/related")
+    public ResponseEntity<List<ProductResponse>> getRelatedProducts(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<ProductResponse> responseObject = relatedProductService.findRelatedProducts(id, limit);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Units that can still be ordered; 'available' is null when the product's stock isn't tracked
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<StockResponse> getProductStock(@PathVariable Long id) {
+        StockResponse responseObject = inventoryService.findStock(id);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Sets the stock to an absolute quantity; a product's stock is tracked from its first PUT on
+    @PutMapping("/{id}/stock")
+    public ResponseEntity<StockResponse> updateProductStock(
+            @PathVariable Long id,
+            @Valid @RequestBody StockRequest stockRequest) {
+        StockResponse responseObject = inventoryService.setStock(id, stockRequest.quantity());
         return ResponseEntity.ok(responseObject);
     }
 
+    // Replaces the product's picture (JPEG or PNG, multipart part "file"). Returns 202 once the upload is stored
+    // and queued; the product's imageUrl changes when the resized variants are ready.
+    @PostMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Void> uploadProductImage(
+            @PathVariable Long id,
+            @RequestParam("file") MultipartFile file) {
+        productImageService.upload(id, file);
+        return ResponseEntity.accepted().build();
+    }
+
+    // Listings are cursor paginated: pass the 'next' value of a page as 'cursor' to get the following page.
+    // Optional filters and order: minPrice / maxPrice (inclusive), sort=price_asc|price_desc|newest (default: id).
+    // Keep the same filters and sort while following the cursors.
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<ProductResponse>> getProductByCategory(@PathVariable String category) {
-        List<ProductResponse> responseObject = productService.findProductByCategory(category);
+    public ResponseEntity<CursorPage<ProductResponse>> getProductByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${sokoplace.pagination.default-page-size:20}") int size) {
+        CursorPage<ProductResponse> responseObject = productService.findProductByCategory(
+                category, minPrice, maxPrice, sort, cursor, size);
         return ResponseEntity.ok(responseObject);
     }
 
     @GetMapping("/brand/{category}/{brand}")
-    public ResponseEntity<List<ProductResponse>> getProductByBrand(
+    public ResponseEntity<CursorPage<ProductResponse>> getProductByBrand(
             @PathVariable String category,
-            @PathVariable String brand) {
-        List<ProductResponse> responseObject = productService.findProductByBrand(category, brand);
+            @PathVariable String brand,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "${sokoplace.pagination.default-page-size:20}") int size) {
+        CursorPage<ProductResponse> responseObject = productService.findProductByBrand(
+                category, brand, minPrice, maxPrice, sort, cursor, size);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Full-text search over brand, model, category and description, best matches first.
+    // Served from the in-memory index: no query reaches the database.
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductResponse>> searchProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        List<ProductResponse> responseObject = productSearchService.search(q, limit);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Search-box typeahead: brands and models starting with the typed text (or with a later word of it,
+    // so "s25" finds "Galaxy S25"), most ordered first. Called on every keystroke; answered from memory.
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestion>> suggestProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<ProductSuggestion> responseObject = productSuggestService.suggest(q, limit);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Sidebar counts per category, brand and price band for the current filter.
+    // Repeat a parameter to select several values, e.g. ?brand=dell&brand=hp&priceBand=2
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetsResponse> getProductFacets(
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<Integer> priceBand) {
+        ProductFacetsResponse responseObject = productFacetService.findFacets(category, brand, priceBand);
         return ResponseEntity.ok(responseObject);
     }
 
@@ -72,6 +200,12 @@ public class ProductController {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
-}
-
 
+    private ResponseEntity<ProductResponse> conditionalResponse(ProductResponse product, WebRequest request) {
+        ResourceVersion version = new ResourceVersion(product.Id(), product.updatedAt());
+        if (version.isNotModified(request)) {
+            return null;  // 304 already written
+        }
+        return version.ok(product);
+    }
+}
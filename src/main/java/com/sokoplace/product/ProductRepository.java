@@ -1,8 +1,13 @@
 package com.sokoplace.product;
 
+import com.sokoplace.product.dto.ProductResponse;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +24,93 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByCategoryAndBrandAndModel(String category, String brand, String model);
 
     Product findBySku(String sku);
+
+    // --- Read-only projections ---
+    // Keyset (seek) pagination: the listings resume after the last id of the previous page instead of using
+    // OFFSET, so the database jumps straight to the next rows via the index, however deep the page is.
+    // Limit caps the number of rows fetched (SQL: FETCH FIRST n ROWS ONLY)
+    // The constructor expressions select straight into ProductResponse: no entities are hydrated,
+    // registered in the persistence context or dirty-checked, and no `orders` collection proxy is created.
+    // readOnly = true also switches Hibernate to manual flushing, so these reads never trigger a flush.
+
+    String PRODUCT_RESPONSE = "SELECT new com.sokoplace.product.dto.ProductResponse(p.Id, p.sku, p.category, " +
+            "p.brand, p.model, p.price, p.description, p.imageUrl, p.updatedAt) FROM Product p ";
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.Id = :id")
+    Optional<ProductResponse> findResponseById(Long id);
+
+    // One IN query for a batch of ids; ids with no product are simply absent from the result
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.Id IN :ids")
+    List<ProductResponse> findResponsesByIdIn(Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.sku = :sku")
+    Optional<ProductResponse> findResponseBySku(String sku);
+
+    // --- Listings (category, or category and brand), filtered by a price range ---
+    // Each sort order has its own query, shaped so that one index serves both the filter and the order,
+    // and the database can stop after `limit` rows instead of sorting the whole category:
+    //   id order, newest first  -> (category, id) and (category, brand, id), walked forwards or backwards
+    //   price order             -> (category, price, id) and (category, brand, price, id)
+    // For price order the cursor is a (price, id) pair and the seek is a row comparison, so the page
+    // resumes right after the last row shown even when many products share a price. The price bound on
+    // the seek side doubles as the cursor's first-page position, e.g. (minPrice, 0) for cheapest first.
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.price BETWEEN :minPrice AND :maxPrice " +
+            "AND p.Id > :afterId ORDER BY p.Id")
+    List<ProductResponse> findResponsesByCategoryAfter(String category, double minPrice, double maxPrice,
+                                                      Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.price BETWEEN :minPrice AND :maxPrice " +
+            "AND p.Id < :beforeId ORDER BY p.Id DESC")
+    List<ProductResponse> findResponsesByCategoryBefore(String category, double minPrice, double maxPrice,
+                                                       Long beforeId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND (p.price, p.Id) > (:afterPrice, :afterId) " +
+            "AND p.price <= :maxPrice ORDER BY p.price, p.Id")
+    List<ProductResponse> findResponsesByCategoryAndPriceAfter(String category, double maxPrice,
+                                                               double afterPrice, Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND (p.price, p.Id) < (:beforePrice, :beforeId) " +
+            "AND p.price >= :minPrice ORDER BY p.price DESC, p.Id DESC")
+    List<ProductResponse> findResponsesByCategoryAndPriceBefore(String category, double minPrice,
+                                                                double beforePrice, Long beforeId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.brand = :brand " +
+            "AND p.price BETWEEN :minPrice AND :maxPrice AND p.Id > :afterId ORDER BY p.Id")
+    List<ProductResponse> findResponsesByCategoryAndBrandAfter(String category, String brand, double minPrice,
+                                                              double maxPrice, Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.brand = :brand " +
+            "AND p.price BETWEEN :minPrice AND :maxPrice AND p.Id < :beforeId ORDER BY p.Id DESC")
+    List<ProductResponse> findResponsesByCategoryAndBrandBefore(String category, String brand, double minPrice,
+                                                               double maxPrice, Long beforeId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.brand = :brand " +
+            "AND (p.price, p.Id) > (:afterPrice, :afterId) AND p.price <= :maxPrice ORDER BY p.price, p.Id")
+    List<ProductResponse> findResponsesByCategoryAndBrandAndPriceAfter(String category, String brand, double maxPrice,
+                                                                       double afterPrice, Long afterId, Limit limit);
+
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.category = :category AND p.brand = :brand " +
+            "AND (p.price, p.Id) < (:beforePrice, :beforeId) AND p.price >= :minPrice " +
+            "ORDER BY p.price DESC, p.Id DESC")
+    List<ProductResponse> findResponsesByCategoryAndBrandAndPriceBefore(String category, String brand, double minPrice,
+                                                                        double beforePrice, Long beforeId, Limit limit);
+
+    // Walks the whole catalog in id order, one batch at a time, for building in-memory indexes.
+    @Transactional(readOnly = true)
+    @Query(PRODUCT_RESPONSE + "WHERE p.Id > :afterId ORDER BY p.Id")
+    List<ProductResponse> findResponsesAfter(Long afterId, Limit limit);
 }
 
 // JPA provides default methods for CRUD operations:
@@ -3,24 +3,53 @@ package com.sokoplace.product;
 //  Though you could inject repositories directly into controllers,
 //  it is best practice to have a service layer.
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.image.ProductImageService;
+import com.sokoplace.product.dto.ProductBatchResponse;
 import com.sokoplace.product.dto.ProductRequest;
 import com.sokoplace.product.dto.ProductResponse;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    // Upper bound on a client-requested page size, so one request can't pull a whole category
+    static final int MAX_PAGE_SIZE = 100;
+    // Upper bound on the ids in one multi-get, which also bounds the size of the IN list
+    static final int MAX_BATCH_SIZE = 100;
+
     private final ProductRepository productRepository;
+    private final ProductCache productCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageStore imageStore;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductCache productCache,
+                          ApplicationEventPublisher eventPublisher,
+                          ImageStore imageStore) {
         this.productRepository = productRepository;
+        this.productCache = productCache;
+        this.eventPublisher = eventPublisher;
+        this.imageStore = imageStore;
     }
 
     @Transactional
@@ -37,50 +66,97 @@ public class ProductService {
         Product product = new Product();
         Product createdProduct = getProduct(product, productRequest);
         Product savedProduct = productRepository.save(createdProduct);
-        return mapToProductResponse(savedProduct);
+        productCache.evict(savedProduct.getId(), savedProduct.getSku());
+
+        ProductResponse response = mapToProductResponse(savedProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(response.Id(), response));
+        return response;
     }
 
-    @Transactional
+    // Reads select straight into ProductResponse (see the projections in ProductRepository), each in its own
+    // read-only transaction, so no Product entities are loaded. They are deliberately not @Transactional here:
+    // single-product reads are served from the cache, and a transaction would check out a pooled connection
+    // even on a cache hit.
     public ProductResponse findProductById(Long Id) {
-        Product product = productRepository.findById(Id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
-        return mapToProductResponse(product);
+        return productCache.getById(Id, id -> productRepository.findResponseById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found")));
     }
 
-    @Transactional
-    public List<ProductResponse> findProductByCategory(String category) {
-        List<Product> products = productRepository.findByCategory(category);
+    // Multi-get for pages showing many products at once (cart, order history): cached products are
+    // returned from memory and the rest are read with a single IN query, which also caches them.
+    // Products come back in request order (repeated ids once); unknown ids are listed, not an error.
+    public ProductBatchResponse findProductsByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("At least one id is required");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {  // e.g. ?ids=1,,2
+            throw new BadRequestException("Ids must not be blank");
+        }
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " ids can be requested at once");
+        }
+
+        Map<Long, ProductResponse> found = productCache.getAllById(requested, missing ->
+                productRepository.findResponsesByIdIn(List.copyOf(missing)).stream()
+                        .collect(Collectors.toMap(ProductResponse::Id, Function.identity())));
 
-        return products.stream()
-                .map(this::mapToProductResponse)
-                .toList();
+        List<ProductResponse> products = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            ProductResponse product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new ProductBatchResponse(products, missingIds);
     }
 
-    @Transactional
-    public List<ProductResponse> findProductByBrand(String category, String brand) {
-        List<Product> products = productRepository.findByCategoryAndBrand(category, brand);
-        return products.stream()
-                .map(this::mapToProductResponse)
-                .toList();
+    // Listings take an optional price range (either bound may be null) and a sort order (null for id order)
+    public CursorPage<ProductResponse> findProductByCategory(String category, Double minPrice, Double maxPrice,
+                                                             String sort, String cursor, int size) {
+        return findPage(category, null, minPrice, maxPrice, sort, cursor, size);
+    }
+
+    public CursorPage<ProductResponse> findProductByBrand(String category, String brand, Double minPrice,
+                                                          Double maxPrice, String sort, String cursor, int size) {
+        return findPage(category, brand, minPrice, maxPrice, sort, cursor, size);
     }
 
-    @Transactional
     public ProductResponse findProductBySku(String sku) {
-        Product product = productRepository.findBySku(sku);
-        if (product == null) {
-            throw new EntityNotFoundException("Product not found");
-        }
-        return mapToProductResponse(product);
+        return productCache.getBySku(sku, key -> productRepository.findResponseBySku(key)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found")));
     }
 
     @Transactional
     public ProductResponse updateProduct(Long Id, ProductRequest productRequest) {
         Product product = productRepository.findById(Id)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        String previousSku = product.getSku();  // the SKU may change, so evict both the old and new keys
 
         Product updatedProduct = getProduct(product, productRequest);
-        productRepository.save(updatedProduct);
-        return mapToProductResponse(updatedProduct);
+        productRepository.saveAndFlush(updatedProduct);  // flushing runs @PreUpdate, so the response has the new updatedAt
+        productCache.evict(Id, previousSku, updatedProduct.getSku());
+
+        ProductResponse response = mapToProductResponse(updatedProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(Id, response));
+        return response;
+    }
+
+    // Points the product at its uploaded image, once ProductImageService has stored it and its variants
+    @Transactional
+    public ProductResponse updateImageUrl(Long Id, String imageUrl) {
+        Product product = productRepository.findById(Id)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        product.setImageUrl(imageUrl);
+        productRepository.saveAndFlush(product);
+        productCache.evict(Id, product.getSku());
+
+        ProductResponse response = mapToProductResponse(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(Id, response));
+        return response;
     }
 
     @Transactional
@@ -88,6 +164,8 @@ public class ProductService {
         Product product = productRepository.findById(Id)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found"));
         productRepository.delete(product);
+        productCache.evict(Id, product.getSku());
+        eventPublisher.publishEvent(new ProductChangedEvent(Id, null));
     }
 
     // Similar lines repeated for createProduct and updateProduct. Common method created
@@ -98,11 +176,94 @@ public class ProductService {
         product.setModel(productRequest.model());  // setter method, generated through @Data (Lombok) in model file
         product.setPrice(productRequest.price());
         product.setDescription(productRequest.description());
-        product.setImageUrl("/images/" + productRequest.category() + "/"
-                + productRequest.category() + ".jpg");
+        // An uploaded image is kept; otherwise the category's picture, which follows a change of category.
+        // Versioned (?v=content hash), so the image can be cached as immutable; see ImageController
+        if (product.getImageUrl() == null || !product.getImageUrl().startsWith(ProductImageService.URL_PREFIX)) {
+            String category = productRequest.category();
+            product.setImageUrl(imageStore.url(category, category + ".jpg"));
+        }
         return product;
     }
 
+    private int resolvePageSize(int size) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    // Runs the listing query matching the sort order; `brand` is null for a whole category.
+    // Ids are BIGSERIAL (start at 1), so 0 (or Long.MAX_VALUE going backwards) positions the first page
+    // before every row. Missing price bounds become the widest range a double allows.
+    private CursorPage<ProductResponse> findPage(String category, String brand, Double minPrice, Double maxPrice,
+                                                 String sortParameter, String cursor, int size) {
+        int pageSize = resolvePageSize(size);
+        ProductSort sort = ProductSort.fromParameter(sortParameter);
+        double min = minPrice == null ? -Double.MAX_VALUE : minPrice;
+        double max = maxPrice == null ? Double.MAX_VALUE : maxPrice;
+        if (!(min <= max)) {  // also rejects NaN
+            throw new BadRequestException("minPrice must not be greater than maxPrice");
+        }
+        Cursor after = Cursor.decode(cursor);
+        // Fetch one extra row: if it comes back, there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<ProductResponse> products = switch (sort) {
+            case ID -> {
+                long afterId = after == null ? 0L : after.id();
+                yield brand == null
+                        ? productRepository.findResponsesByCategoryAfter(category, min, max, afterId, limit)
+                        : productRepository.findResponsesByCategoryAndBrandAfter(category, brand, min, max, afterId, limit);
+            }
+            case NEWEST -> {
+                long beforeId = after == null ? Long.MAX_VALUE : after.id();
+                yield brand == null
+                        ? productRepository.findResponsesByCategoryBefore(category, min, max, beforeId, limit)
+                        : productRepository.findResponsesByCategoryAndBrandBefore(category, brand, min, max, beforeId, limit);
+            }
+            case PRICE_ASC -> {
+                // A cursor from before the range was narrowed restarts at the lower bound
+                double afterPrice = after == null ? min : Math.max(cursorPrice(after), min);
+                long afterId = after == null || afterPrice != cursorPrice(after) ? 0L : after.id();
+                yield brand == null
+                        ? productRepository.findResponsesByCategoryAndPriceAfter(category, max, afterPrice, afterId, limit)
+                        : productRepository.findResponsesByCategoryAndBrandAndPriceAfter(
+                                category, brand, max, afterPrice, afterId, limit);
+            }
+            case PRICE_DESC -> {
+                double beforePrice = after == null ? max : Math.min(cursorPrice(after), max);
+                long beforeId = after == null || beforePrice != cursorPrice(after) ? Long.MAX_VALUE : after.id();
+                yield brand == null
+                        ? productRepository.findResponsesByCategoryAndPriceBefore(category, min, beforePrice, beforeId, limit)
+                        : productRepository.findResponsesByCategoryAndBrandAndPriceBefore(
+                                category, brand, min, beforePrice, beforeId, limit);
+            }
+        };
+        return toPage(products, pageSize, sort);
+    }
+
+    // Price-sorted pages carry the last row's price in the cursor key
+    private double cursorPrice(Cursor cursor) {
+        try {
+            return Double.parseDouble(cursor.key());
+        } catch (NullPointerException | NumberFormatException ex) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private CursorPage<ProductResponse> toPage(List<ProductResponse> products, int pageSize, ProductSort sort) {
+        boolean hasNext = products.size() > pageSize;
+        List<ProductResponse> page = hasNext ? List.copyOf(products.subList(0, pageSize)) : products;
+        String next = null;
+        if (hasNext) {
+            ProductResponse last = page.get(page.size() - 1);
+            // Double.toString round-trips exactly, so the next page starts right after this price
+            String key = sort.byPrice() ? Double.toString(last.price()) : null;
+            next = new Cursor(last.Id(), key).encode();
+        }
+        return new CursorPage<>(page, next);
+    }
+
     private ProductResponse mapToProductResponse(Product product) {
         return new ProductResponse(
                 product.getId(),
@@ -112,7 +273,8 @@ public class ProductService {
                 product.getModel(),
                 product.getPrice(),
                 product.getDescription(),
-                product.getImageUrl()
+                product.getImageUrl(),
+                product.getUpdatedAt()
         );
     }
 
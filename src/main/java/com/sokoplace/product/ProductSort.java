@@ -0,0 +1,41 @@
+package com.sokoplace.product;
+
+import com.sokoplace.common.BadRequestException;
+
+import java.util.Locale;
+
+// Sort orders for the category and brand listings, chosen with ?sort=
+// Ids come from a sequence, so id order is also the order products were added in: "newest" is simply
+// descending id, and needs no extra column or index.
+
+public enum ProductSort {
+    ID("id"),
+    NEWEST("newest"),
+    PRICE_ASC("price_asc"),
+    PRICE_DESC("price_desc");
+
+    private final String parameter;
+
+    ProductSort(String parameter) {
+        this.parameter = parameter;
+    }
+
+    // Price orders page with a (price, id) cursor, the others with the id alone
+    public boolean byPrice() {
+        return this == PRICE_ASC || this == PRICE_DESC;
+    }
+
+    // A missing value means id order; an unknown one is a 400 (BadRequestException)
+    public static ProductSort fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (ProductSort sort : values()) {
+            if (sort.parameter.equals(normalized)) {
+                return sort;
+            }
+        }
+        throw new BadRequestException("Unknown sort: " + value);
+    }
+}
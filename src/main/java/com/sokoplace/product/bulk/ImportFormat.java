@@ -0,0 +1,7 @@
+package com.sokoplace.product.bulk;
+
+// Supported bulk import body formats
+public enum ImportFormat {
+    CSV,     // text/csv with a header row naming the ProductRequest fields
+    NDJSON   // application/x-ndjson: one ProductRequest JSON object per line
+}
@@ -0,0 +1,86 @@
+package com.sokoplace.product.bulk;
+
+import com.sokoplace.common.StreamingResponses;
+import com.sokoplace.product.dto.ProductImportResponse;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Bulk catalog operations for supplier onboarding and partner feeds.
+// The raw request body is passed on as an InputStream, so uploads are read as they arrive
+// instead of being buffered into memory first.
+
+@RestController
+@RequestMapping("/api/v1/products")
+public class ProductBulkController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ProductImportService productImportService;
+    private final ProductExportService productExportService;
+    private final Duration exportTimeout;
+
+    @Autowired
+    public ProductBulkController(ProductImportService productImportService,
+                                 ProductExportService productExportService,
+                                 @Value("${sokoplace.products.export.async-timeout:30m}") Duration exportTimeout) {
+        this.productImportService = productImportService;
+        this.productExportService = productExportService;
+        this.exportTimeout = exportTimeout;
+    }
+
+    @PostMapping(path = "/import", consumes = "text/csv")
+    public ResponseEntity<ProductImportResponse> importCsv(InputStream body) {
+        ProductImportResponse responseObject = productImportService.importProducts(body, ImportFormat.CSV);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    @PostMapping(path = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ProductImportResponse> importNdjson(InputStream body) {
+        ProductImportResponse responseObject = productImportService.importProducts(body, ImportFormat.NDJSON);
+        return ResponseEntity.ok(responseObject);
+    }
+
+    // Streams the whole catalog as NDJSON, gzip-compressed when the client's Accept-Encoding allows gzip.
+    // The body is written after the handler returns, so the database connection is only taken
+    // for as long as the rows are actually being written. Only this request gets the long async timeout.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        boolean gzip = StreamingResponses.acceptsGzip(acceptEncoding);
+        StreamingResponses.setAsyncTimeout(request, exportTimeout);
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                productExportService.exportProducts(compressed);
+                compressed.finish();
+            } else {
+                productExportService.exportProducts(out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products.ndjson\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
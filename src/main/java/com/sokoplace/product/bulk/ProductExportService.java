@@ -0,0 +1,101 @@
+package com.sokoplace.product.bulk;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sokoplace.product.dto.ProductResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+// Full catalog export as NDJSON (one ProductResponse per line), the same shape the import endpoint reads back.
+// Rows come from a server-side cursor: the PostgreSQL driver only fetches `fetchSize` rows at a time when
+// autocommit is off, so the query runs inside a read-only transaction. Each row is written to the output
+// as soon as it is read, so memory use stays constant however large the catalog grows.
+// The connection is borrowed when the export starts and returned as soon as the last row is written.
+
+@Slf4j
+@Service
+public class ProductExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT id, sku, category, brand, model, price, description, image_url, updated_at
+            FROM product
+            ORDER BY id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter productWriter;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    @Autowired
+    public ProductExportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                @Value("${sokoplace.products.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        // Flushing after every row would send one tiny chunk per product; let the buffers fill instead
+        this.productWriter = objectMapper.writerFor(ProductResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    // Writes every product to `out` and returns the number of rows written. `out` is flushed but not closed.
+    public long exportProducts(OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);  // we end each row with a newline ourselves
+
+        long[] rows = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, resultSet -> {
+                ProductResponse product = new ProductResponse(
+                        resultSet.getLong("id"),
+                        resultSet.getString("sku"),
+                        resultSet.getString("category"),
+                        resultSet.getString("brand"),
+                        resultSet.getString("model"),
+                        resultSet.getDouble("price"),
+                        resultSet.getString("description"),
+                        resultSet.getString("image_url"),
+                        resultSet.getTimestamp("updated_at").toLocalDateTime());
+                try {
+                    productWriter.writeValue(generator, product);
+                    generator.writeRaw('\n');
+                } catch (IOException ex) {
+                    // Usually the client went away; aborting the query releases the cursor and the connection
+                    throw new UncheckedIOException(ex);
+                }
+                rows[0]++;
+            }));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        generator.flush();
+        log.info("Exported {} products in {} ms", rows[0], (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+}
@@ -0,0 +1,334 @@
+package com.sokoplace.product.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.dto.ProductImportResponse;
+import com.sokoplace.product.dto.ProductImportResponse.RowError;
+import com.sokoplace.product.dto.ProductRequest;
+import com.sokoplace.product.dto.ProductResponse;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bulk product import that streams the request body line by line, so memory use depends on the
+// batch size, never on the file size. Each row is validated against the ProductRequest constraints.
+// Valid rows are written in batches, one statement per batch: the batch's columns are sent as arrays
+// and expanded with unnest(), and ids come from the product id sequence. Each batch commits on its own,
+// so a failed row or batch never rolls back rows that were already imported.
+// Rows follow the same rules as createProduct: a SKU or a (category, brand, model) that already exists is
+// refused, and the product gets its category's picture under the same versioned URL (see ImageStore.url).
+
+@Slf4j
+@Service
+public class ProductImportService {
+
+    // ON CONFLICT skips SKUs that already exist, NOT EXISTS products that already exist. One row comes back per
+    // batch row: its id and image_url when it was inserted, and whether its product existed before (the final
+    // SELECT doesn't see the rows this statement inserts), which tells the two refusals apart.
+    private static final String INSERT_BATCH_SQL = """
+            WITH batch AS (
+                SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS varchar[]), CAST(? AS varchar[]), CAST(? AS varchar[]),
+                                     CAST(? AS float8[]), CAST(? AS varchar[]), CAST(? AS varchar[]))
+                    AS row(sku, category, brand, model, price, description, image_url)
+            ), inserted AS (
+                INSERT INTO product (sku, category, brand, model, price, description, image_url, created_at, updated_at)
+                SELECT batch.*, CAST(? AS timestamp), CAST(? AS timestamp)
+                FROM batch
+                WHERE NOT EXISTS (SELECT 1 FROM product p
+                                  WHERE p.category = batch.category AND p.brand = batch.brand AND p.model = batch.model)
+                ON CONFLICT (sku) DO NOTHING
+                RETURNING id, sku, image_url
+            )
+            SELECT batch.sku, inserted.id, inserted.image_url,
+                   EXISTS (SELECT 1 FROM product p
+                           WHERE p.category = batch.category AND p.brand = batch.brand AND p.model = batch.model)
+                       AS product_exists
+            FROM batch LEFT JOIN inserted ON inserted.sku = batch.sku
+            """;
+
+    private static final List<String> CSV_REQUIRED_COLUMNS = List.of("sku", "category", "brand", "model", "price");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageStore imageStore;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectReader productRequestReader;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    @Autowired
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                ImageStore imageStore,
+                                Validator validator,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                @Value("${sokoplace.products.import.batch-size:1000}") int batchSize,
+                                @Value("${sokoplace.products.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageStore = imageStore;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.productRequestReader = objectMapper.readerFor(ProductRequest.class);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ProductImportResponse importProducts(InputStream body, ImportFormat format) {
+        ImportReport report = new ImportReport();
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            Map<String, Integer> csvColumns = null;
+            if (format == ImportFormat.CSV) {
+                csvColumns = readCsvHeader(reader.readLine());
+                lineNumber++;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.rowsRead++;
+
+                ProductRequest request;
+                try {
+                    request = format == ImportFormat.CSV
+                            ? parseCsvRow(line, csvColumns)
+                            : parseNdjsonRow(line);
+                } catch (IllegalArgumentException | JsonProcessingException ex) {
+                    report.fail(lineNumber, null, "Malformed row");
+                    continue;
+                }
+
+                Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                    report.fail(lineNumber, request.sku(), violations.stream()
+                            .map(ConstraintViolation::getMessage)
+                            .sorted()
+                            .collect(Collectors.joining("; ")));
+                    continue;
+                }
+
+                batch.add(new ImportRow(lineNumber, request));
+                if (batch.size() == batchSize) {
+                    insertBatch(batch, report);
+                    batch.clear();
+                }
+            }
+            insertBatch(batch, report);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return report.toResponse();
+    }
+
+    private void insertBatch(List<ImportRow> batch, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // A SKU repeated within one batch would be silently dropped by ON CONFLICT, and a product repeated within
+        // one batch would pass NOT EXISTS twice; report them instead
+        Map<String, ImportRow> rowsBySku = new LinkedHashMap<>();
+        Set<List<String>> products = new HashSet<>();
+        for (ImportRow row : batch) {
+            ProductRequest request = row.request();
+            if (rowsBySku.containsKey(request.sku())) {
+                report.fail(row.line(), request.sku(), "Duplicate SKU in import");
+            } else if (!products.add(List.of(request.category(), request.brand(), request.model()))) {
+                report.fail(row.line(), request.sku(), "Duplicate product in import");
+            } else {
+                rowsBySku.put(request.sku(), row);
+            }
+        }
+        List<ImportRow> rows = new ArrayList<>(rowsBySku.values());
+        Map<String, String> imageUrls = new HashMap<>();  // one lookup per category
+        for (ImportRow row : rows) {
+            imageUrls.computeIfAbsent(row.request().category(), category -> imageStore.url(category, category + ".jpg"));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<InsertOutcome> outcomes;
+        try {
+            outcomes = jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_BATCH_SQL);
+                statement.setArray(1, connection.createArrayOf("varchar", column(rows, ProductRequest::sku)));
+                statement.setArray(2, connection.createArrayOf("varchar", column(rows, ProductRequest::category)));
+                statement.setArray(3, connection.createArrayOf("varchar", column(rows, ProductRequest::brand)));
+                statement.setArray(4, connection.createArrayOf("varchar", column(rows, ProductRequest::model)));
+                statement.setArray(5, connection.createArrayOf("float8",
+                        rows.stream().map(row -> row.request().price()).toArray(Double[]::new)));
+                statement.setArray(6, connection.createArrayOf("varchar", column(rows, ProductRequest::description)));
+                statement.setArray(7, connection.createArrayOf("varchar", column(rows, request -> imageUrls.get(request.category()))));
+                statement.setTimestamp(8, Timestamp.valueOf(now));
+                statement.setTimestamp(9, Timestamp.valueOf(now));
+                return statement;
+            }, (resultSet, rowNum) -> new InsertOutcome(resultSet.getString("sku"), resultSet.getObject("id", Long.class),
+                    resultSet.getString("image_url"), resultSet.getBoolean("product_exists")));
+        } catch (DataAccessException ex) {
+            log.warn("Product import batch of {} rows failed", rows.size(), ex);
+            rows.forEach(row -> report.fail(row.line(), row.request().sku(), "Could not be saved"));
+            return;
+        }
+
+        Map<String, InsertOutcome> outcomesBySku = new HashMap<>();
+        outcomes.forEach(outcome -> outcomesBySku.put(outcome.sku(), outcome));
+        for (ImportRow row : rows) {
+            ProductRequest request = row.request();
+            InsertOutcome outcome = outcomesBySku.get(request.sku());
+            if (outcome.id() == null) {
+                report.fail(row.line(), request.sku(), outcome.productExists() ? "Product already exists" : "SKU already exists");
+                continue;
+            }
+            report.imported++;
+            // Keeps the in-memory search index and facets in step; there is no transaction, so listeners run now
+            eventPublisher.publishEvent(new ProductChangedEvent(outcome.id(), new ProductResponse(outcome.id(),
+                    request.sku(), request.category(), request.brand(), request.model(), request.price(),
+                    request.description(), outcome.imageUrl(), now)));
+        }
+    }
+
+    private static String[] column(List<ImportRow> rows, Function<ProductRequest, String> field) {
+        return rows.stream().map(row -> field.apply(row.request())).toArray(String[]::new);
+    }
+
+    // --- CSV ---
+
+    // Maps lowercase column names to their position; columns may come in any order
+    private static Map<String, Integer> readCsvHeader(String header) {
+        if (header == null) {
+            throw new BadRequestException("CSV header row is missing");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : CSV_REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new BadRequestException("CSV header is missing column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    // Empty cells become null, so they fail the @NotBlank / @NotNull checks like missing JSON fields
+    private static ProductRequest parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> cells = splitCsvLine(line);
+        String price = cell(cells, columns, "price");
+        return new ProductRequest(
+                cell(cells, columns, "sku"),
+                cell(cells, columns, "category"),
+                cell(cells, columns, "brand"),
+                cell(cells, columns, "model"),
+                price == null ? null : Double.valueOf(price),  // NumberFormatException is an IllegalArgumentException
+                cell(cells, columns, "description"));
+    }
+
+    // A line like null, 42 or [] is valid JSON but not a product: readValue would return null or coerce it
+    private ProductRequest parseNdjsonRow(String line) throws JsonProcessingException {
+        JsonNode row = productRequestReader.readTree(line);
+        if (row == null || !row.isObject()) {
+            throw new IllegalArgumentException("NDJSON row is not a JSON object");
+        }
+        return productRequestReader.treeToValue(row, ProductRequest.class);
+    }
+
+    private static String cell(List<String> cells, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= cells.size() || cells.get(index).isEmpty()) {
+            return null;
+        }
+        return cells.get(index);
+    }
+
+    // RFC 4180 fields on a single line: "quoted, with commas" and "" for a literal quote
+    static List<String> splitCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    // --- Bookkeeping ---
+
+    private record ImportRow(long line, ProductRequest request) {}
+
+    // id and imageUrl are null when the row was not inserted
+    private record InsertOutcome(String sku, Long id, String imageUrl, boolean productExists) {}
+
+    private final class ImportReport {
+        long rowsRead;
+        long imported;
+        long failed;
+        final List<RowError> errors = new ArrayList<>();
+
+        void fail(long line, String sku, String error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(line, sku, error));
+            }
+        }
+
+        ProductImportResponse toResponse() {
+            return new ProductImportResponse(rowsRead, imported, failed, errors);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.sokoplace.product.dto;
+
+import java.util.List;
+
+// Result of a multi-get: the products found, in the order their ids were requested,
+// and the requested ids that have no product (deleted, or never existed).
+public record ProductBatchResponse(
+        List<ProductResponse> products,
+        List<Long> missingIds
+) {}
@@ -0,0 +1,19 @@
+package com.sokoplace.product.dto;
+
+import java.util.List;
+
+// Sidebar counts for the current filter. Each facet is counted with every filter applied
+// except its own, so a shopper who picked one brand still sees how many products the other brands have.
+
+public record ProductFacetsResponse(
+        long total,
+        List<FacetCount> categories,
+        List<FacetCount> brands,
+        List<PriceBandCount> priceBands
+) {
+
+    public record FacetCount(String value, long count) {}
+
+    // 'max' is null for the open-ended top band
+    public record PriceBandCount(int band, Double min, Double max, long count) {}
+}
@@ -0,0 +1,16 @@
+package com.sokoplace.product.dto;
+
+import java.util.List;
+
+// Outcome of a bulk import. Rows are numbered by their line in the uploaded file (the CSV header is line 1).
+// At most a configured number of row errors are listed; 'failed' always holds the full count.
+
+public record ProductImportResponse(
+        long rowsRead,
+        long imported,
+        long failed,
+        List<RowError> errors
+) {
+
+    public record RowError(long line, String sku, String error) {}
+}
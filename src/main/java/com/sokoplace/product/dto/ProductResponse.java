@@ -1,5 +1,7 @@
 package com.sokoplace.product.dto;
 
+import java.time.LocalDateTime;
+
 public record ProductResponse(
 
         Long Id,
@@ -9,5 +11,6 @@ public record ProductResponse(
         String model,
         Double price,
         String description,
-        String imageUrl
+        String imageUrl,
+        LocalDateTime updatedAt  // also the version behind the ETag / Last-Modified headers
 ) {}
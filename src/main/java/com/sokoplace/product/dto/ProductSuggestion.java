@@ -0,0 +1,7 @@
+package com.sokoplace.product.dto;
+
+// One typeahead completion: the brand or model text to offer, and which field it completes
+public record ProductSuggestion(
+        String text,
+        String field
+) {}
@@ -0,0 +1,12 @@
+package com.sokoplace.product.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+// Sets a product's stock to an absolute quantity (restock, stock take)
+public record StockRequest(
+
+        @NotNull(message = "Quantity is required")
+        @PositiveOrZero(message = "Quantity must not be negative")
+        Integer quantity
+) {}
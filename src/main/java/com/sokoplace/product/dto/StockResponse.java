@@ -0,0 +1,8 @@
+package com.sokoplace.product.dto;
+
+// Units that can still be ordered. 'available' is null when the product's stock is not tracked,
+// in which case it can always be ordered.
+public record StockResponse(
+        Long productId,
+        Integer available
+) {}
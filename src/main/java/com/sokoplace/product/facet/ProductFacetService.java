@@ -0,0 +1,412 @@
+package com.sokoplace.product.facet;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductFacetsResponse;
+import com.sokoplace.product.dto.ProductFacetsResponse.FacetCount;
+import com.sokoplace.product.dto.ProductFacetsResponse.PriceBandCount;
+import com.sokoplace.product.dto.ProductResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Columnar in-memory snapshot of the catalog for sidebar facet counts.
+// Each product is a row: category and brand are dictionary-encoded to int ids, price is kept in
+// minor units (cents) in a long[] column. For every category, brand and price band there is a bitset
+// of the rows holding that value, so a facet count is a word-by-word AND + popcount of two bitsets.
+// Built when the application is ready and updated row by row from ProductChangedEvents.
+
+@Slf4j
+@Service
+public class ProductFacetService {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;  // rows; a multiple of 64
+
+    private final ProductRepository productRepository;
+    private final double[] bandBoundaries;  // lower bound of each price band, ascending
+    private final long[] bandLowerBounds;  // the same in minor units
+
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by 'lock'
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary brands = new Dictionary();
+    private final Map<Long, Integer> rows = new HashMap<>();  // product id -> row
+    private int capacity = INITIAL_CAPACITY;
+    private long[] idColumn = new long[INITIAL_CAPACITY];
+    private int[] categoryColumn = new int[INITIAL_CAPACITY];
+    private int[] brandColumn = new int[INITIAL_CAPACITY];
+    private long[] priceColumn = new long[INITIAL_CAPACITY];
+    private int rowCount;  // rows handed out, including deleted ones
+    private long[] live = Bits.create(INITIAL_CAPACITY);
+    private final List<long[]> categoryBits = new ArrayList<>();
+    private final List<long[]> brandBits = new ArrayList<>();
+    private final long[][] bandBits;
+
+    @Autowired
+    public ProductFacetService(
+            ProductRepository productRepository,
+            @Value("${sokoplace.facets.price-bands:0,25000,50000,100000,200000}") double[] bandBoundaries) {
+        if (bandBoundaries.length == 0) {
+            throw new IllegalArgumentException("At least one price band is required");
+        }
+        this.productRepository = productRepository;
+        this.bandBoundaries = bandBoundaries.clone();
+        Arrays.sort(this.bandBoundaries);
+        this.bandLowerBounds = Arrays.stream(this.bandBoundaries).mapToLong(ProductFacetService::toMinorUnits).toArray();
+        this.bandBits = new long[bandBoundaries.length][];
+        for (int band = 0; band < bandBits.length; band++) {
+            bandBits[band] = Bits.create(INITIAL_CAPACITY);
+        }
+    }
+
+    // Any filter left null or empty matches every product; values within one filter are OR-ed
+    public ProductFacetsResponse findFacets(List<String> categoryFilter, List<String> brandFilter,
+                                            List<Integer> bandFilter) {
+        lock.readLock().lock();
+        try {
+            long[] byCategory = union(categoryFilter, categories, categoryBits);
+            long[] byBrand = union(brandFilter, brands, brandBits);
+            long[] byBand = unionBands(bandFilter);
+
+            long total = Bits.cardinality(Bits.and(live, byCategory, byBrand, byBand));
+
+            // Each facet ignores its own filter (disjunctive faceting)
+            long[] forCategories = Bits.and(live, byBrand, byBand);
+            long[] forBrands = Bits.and(live, byCategory, byBand);
+            long[] forBands = Bits.and(live, byCategory, byBrand);
+
+            List<PriceBandCount> bandCounts = new ArrayList<>(bandBits.length);
+            for (int band = 0; band < bandBits.length; band++) {
+                Double max = band + 1 < bandBoundaries.length ? bandBoundaries[band + 1] : null;
+                bandCounts.add(new PriceBandCount(band, bandBoundaries[band], max,
+                        Bits.andCardinality(forBands, bandBits[band])));
+            }
+            return new ProductFacetsResponse(total,
+                    counts(forCategories, categories, categoryBits),
+                    counts(forBrands, brands, brandBits),
+                    bandCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildSnapshot() {
+        long started = System.nanoTime();
+        building = true;
+        try {
+            long afterId = 0L;
+            List<ProductResponse> batch;
+            do {
+                batch = productRepository.findResponsesAfter(afterId, Limit.of(BUILD_BATCH_SIZE));
+                lock.writeLock().lock();
+                try {
+                    for (ProductResponse product : batch) {
+                        if (!changedDuringBuild.contains(product.Id())) {
+                            upsert(product.Id(), product.category(), product.brand(), toMinorUnits(product.price()));
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).Id();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+        } finally {
+            building = false;
+            changedDuringBuild.clear();
+        }
+        log.info("Product facet snapshot built: {} products, {} categories, {} brands in {} ms",
+                rows.size(), categories.size(), brands.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (building) {
+            changedDuringBuild.add(event.productId());
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                remove(event.productId());
+            } else {
+                ProductResponse product = event.product();
+                upsert(product.Id(), product.category(), product.brand(), toMinorUnits(product.price()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Updates (caller holds the write lock) ---
+
+    private void upsert(long productId, String category, String brand, long price) {
+        Integer existing = rows.get(productId);
+        int row;
+        if (existing != null) {
+            row = existing;
+            clearValueBits(row);  // the row is rewritten in place
+        } else {
+            if (rowCount == capacity) {
+                grow();
+            }
+            row = rowCount++;
+            rows.put(productId, row);
+            Bits.set(live, row);
+        }
+        idColumn[row] = productId;
+        categoryColumn[row] = categories.encode(category, categoryBits, capacity);
+        brandColumn[row] = brands.encode(brand, brandBits, capacity);
+        priceColumn[row] = price;
+        Bits.set(categoryBits.get(categoryColumn[row]), row);
+        Bits.set(brandBits.get(brandColumn[row]), row);
+        Bits.set(bandBits[band(price)], row);
+    }
+
+    // A deleted row stays behind as dead space until there is as much of it as live data
+    private void remove(long productId) {
+        Integer row = rows.remove(productId);
+        if (row == null) {
+            return;
+        }
+        clearValueBits(row);
+        Bits.clear(live, row);
+        if (rowCount - rows.size() > Math.max(INITIAL_CAPACITY, rows.size())) {
+            compact();
+        }
+    }
+
+    private void clearValueBits(int row) {
+        Bits.clear(categoryBits.get(categoryColumn[row]), row);
+        Bits.clear(brandBits.get(brandColumn[row]), row);
+        Bits.clear(bandBits[band(priceColumn[row])], row);
+    }
+
+    private void grow() {
+        capacity *= 2;
+        idColumn = Arrays.copyOf(idColumn, capacity);
+        categoryColumn = Arrays.copyOf(categoryColumn, capacity);
+        brandColumn = Arrays.copyOf(brandColumn, capacity);
+        priceColumn = Arrays.copyOf(priceColumn, capacity);
+        live = Bits.grow(live, capacity);
+        categoryBits.replaceAll(bits -> Bits.grow(bits, capacity));
+        brandBits.replaceAll(bits -> Bits.grow(bits, capacity));
+        for (int band = 0; band < bandBits.length; band++) {
+            bandBits[band] = Bits.grow(bandBits[band], capacity);
+        }
+    }
+
+    // Rewrites the live rows contiguously; dictionary ids are kept, so the value bitsets are just refilled
+    private void compact() {
+        int liveRows = rows.size();
+        long[] ids = new long[liveRows];
+        int[] categoryIds = new int[liveRows];
+        int[] brandIds = new int[liveRows];
+        long[] prices = new long[liveRows];
+        int next = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (Bits.get(live, row)) {
+                ids[next] = idColumn[row];
+                categoryIds[next] = categoryColumn[row];
+                brandIds[next] = brandColumn[row];
+                prices[next] = priceColumn[row];
+                next++;
+            }
+        }
+
+        capacity = Math.max(INITIAL_CAPACITY, Bits.roundUp(liveRows * 2));
+        idColumn = Arrays.copyOf(ids, capacity);
+        categoryColumn = Arrays.copyOf(categoryIds, capacity);
+        brandColumn = Arrays.copyOf(brandIds, capacity);
+        priceColumn = Arrays.copyOf(prices, capacity);
+        rowCount = liveRows;
+        rows.clear();
+        live = Bits.create(capacity);
+        categoryBits.replaceAll(bits -> Bits.create(capacity));
+        brandBits.replaceAll(bits -> Bits.create(capacity));
+        for (int band = 0; band < bandBits.length; band++) {
+            bandBits[band] = Bits.create(capacity);
+        }
+        for (int row = 0; row < liveRows; row++) {
+            rows.put(idColumn[row], row);
+            Bits.set(live, row);
+            Bits.set(categoryBits.get(categoryColumn[row]), row);
+            Bits.set(brandBits.get(brandColumn[row]), row);
+            Bits.set(bandBits[band(priceColumn[row])], row);
+        }
+    }
+
+    // --- Queries (caller holds the read lock) ---
+
+    // Null means "no filter"; unknown values contribute no rows
+    private long[] union(List<String> values, Dictionary dictionary, List<long[]> valueBits) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        long[] result = Bits.create(capacity);
+        for (String value : values) {
+            Integer id = dictionary.idOf(value);
+            if (id != null) {
+                Bits.or(result, valueBits.get(id));
+            }
+        }
+        return result;
+    }
+
+    private long[] unionBands(List<Integer> bands) {
+        if (bands == null || bands.isEmpty()) {
+            return null;
+        }
+        long[] result = Bits.create(capacity);
+        for (int band : bands) {
+            if (band < 0 || band >= bandBits.length) {
+                throw new BadRequestException("Unknown price band: " + band);
+            }
+            Bits.or(result, bandBits[band]);
+        }
+        return result;
+    }
+
+    // Values with no matching products are left out; the rest are sorted by count, most first
+    private static List<FacetCount> counts(long[] filter, Dictionary dictionary, List<long[]> valueBits) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (int id = 0; id < valueBits.size(); id++) {
+            long count = Bits.andCardinality(filter, valueBits.get(id));
+            if (count > 0) {
+                counts.add(new FacetCount(dictionary.valueOf(id), count));
+            }
+        }
+        counts.sort(Comparator.comparingLong(FacetCount::count).reversed().thenComparing(FacetCount::value));
+        return counts;
+    }
+
+    private int band(long price) {
+        int band = Arrays.binarySearch(bandLowerBounds, price);
+        if (band < 0) {
+            band = -band - 2;  // insertion point - 1: the last band starting below the price
+        }
+        return Math.max(band, 0);  // prices below the first boundary are counted in the first band
+    }
+
+    private static long toMinorUnits(double price) {
+        return Math.round(price * 100);
+    }
+
+    // --- Structures ---
+
+    // Maps each distinct value to a dense int id and keeps the value bitsets in step with new ids
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value, List<long[]> valueBits, int capacity) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+                valueBits.add(Bits.create(capacity));
+            }
+            return id;
+        }
+
+        Integer idOf(String value) {
+            return ids.get(value);
+        }
+
+        String valueOf(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    // Fixed-size bitsets over rows, stored as long[] words (64 rows per word).
+    // All bitsets share the same capacity, so binary operations can run word by word.
+    private static final class Bits {
+
+        static long[] create(int capacity) {
+            return new long[capacity >>> 6];
+        }
+
+        static long[] grow(long[] bits, int capacity) {
+            return Arrays.copyOf(bits, capacity >>> 6);
+        }
+
+        static int roundUp(int rows) {
+            return (rows + 63) & ~63;
+        }
+
+        static void set(long[] bits, int row) {
+            bits[row >>> 6] |= 1L << row;
+        }
+
+        static void clear(long[] bits, int row) {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+
+        static boolean get(long[] bits, int row) {
+            return (bits[row >>> 6] & (1L << row)) != 0;
+        }
+
+        static void or(long[] target, long[] other) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] |= other[i];
+            }
+        }
+
+        // Intersection of 'first' with every non-null filter, as a new bitset
+        static long[] and(long[] first, long[]... filters) {
+            long[] result = first.clone();
+            for (long[] filter : filters) {
+                if (filter != null) {
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] &= filter[i];
+                    }
+                }
+            }
+            return result;
+        }
+
+        static long cardinality(long[] bits) {
+            long count = 0;
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        // |a AND b| without materialising the intersection
+        static long andCardinality(long[] a, long[] b) {
+            long count = 0;
+            for (int i = 0; i < a.length; i++) {
+                count += Long.bitCount(a[i] & b[i]);
+            }
+            return count;
+        }
+    }
+}
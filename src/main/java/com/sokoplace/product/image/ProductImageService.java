@@ -0,0 +1,203 @@
+package com.sokoplace.product.image;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.image.ImageFormat;
+import com.sokoplace.image.ImageResizeService;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.ProductService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Product image uploads: POST /api/v1/products/{id}/image (multipart, part "file").
+// The request thread only moves the upload to disk and checks its type from the first bytes. Tomcat has already
+// spooled the part to a temporary file (file-size-threshold=0), so the move is a rename or a streamed copy and
+// the image never sits in the heap. Everything else runs on a small worker pool with a bounded queue: when the
+// queue is full the upload is refused with 503 instead of piling up work.
+// A worker checks the dimensions (from the header, before decoding), stores the file as
+// /images/products/{id}.{jpg|png}, renders the resized variants through ImageResizeService so they are cached
+// before anyone asks for them, and only then points Product.imageUrl at the new (versioned) URL.
+
+@Slf4j
+@Service
+public class ProductImageService {
+
+    // Uploaded images live in their own directory of the ImageStore, next to the category pictures
+    public static final String IMAGE_CATEGORY = "products";
+    public static final String URL_PREFIX = "/images/" + IMAGE_CATEGORY + "/";
+    // Enough for the JPEG and PNG signatures
+    private static final int MAGIC_BYTES = 8;
+
+    private final ProductService productService;
+    private final ImageStore imageStore;
+    private final ImageResizeService imageResizeService;
+    private final long maxPixels;
+    private final Path uploads;
+    private final ThreadPoolExecutor workers;
+
+    @Autowired
+    public ProductImageService(ProductService productService,
+                               ImageStore imageStore,
+                               ImageResizeService imageResizeService,
+                               @Value("${sokoplace.images.upload.workers:2}") int workers,
+                               @Value("${sokoplace.images.upload.queue-capacity:16}") int queueCapacity,
+                               @Value("${sokoplace.images.upload.max-pixels:40000000}") long maxPixels) {
+        this.productService = productService;
+        this.imageStore = imageStore;
+        this.imageResizeService = imageResizeService;
+        this.maxPixels = maxPixels;
+        // A leading dot keeps unprocessed uploads out of reach of /images (see ImageStore.SEGMENT)
+        this.uploads = imageStore.directory().resolve(".uploads");
+        this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "product-image-worker");
+            thread.setDaemon(true);
+            return thread;
+        });  // the default AbortPolicy throws RejectedExecutionException when the queue is full
+    }
+
+    // Drops uploads a previous run accepted but never processed
+    @PostConstruct
+    void prepare() throws IOException {
+        Files.createDirectories(uploads);
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(uploads)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    // Lets queued uploads finish; whatever is still waiting after that is cleaned up by prepare() on next start
+    @PreDestroy
+    void stop() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    // Runs on the request thread and returns once the upload is queued; the product shows the new image once a
+    // worker has processed it (an unusable upload is logged and dropped). Not an image: 400; queue full: 503.
+    public void upload(Long productId, MultipartFile file) {
+        productService.findProductById(productId);  // 404 before storing anything
+        Path upload = uploads.resolve(productId + "-" + UUID.randomUUID() + ".upload");
+        try {
+            file.transferTo(upload);
+            ImageFormat format = ImageFormat.fromMagicBytes(readMagicBytes(upload));
+            if (format == null) {
+                throw new BadRequestException("Only JPEG and PNG images can be uploaded");
+            }
+            workers.execute(() -> {
+                try {
+                    process(productId, upload, format);
+                } catch (RuntimeException ex) {
+                    log.warn("Image upload for product {} failed", productId, ex);
+                }
+            });
+        } catch (IOException ex) {
+            deleteQuietly(upload);
+            throw new UncheckedIOException("Cannot store upload for product " + productId, ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(upload);
+            throw ex;
+        }
+    }
+
+    // Number of uploads waiting for a worker, for tests and monitoring
+    public int queuedUploads() {
+        return workers.getQueue().size();
+    }
+
+    private void process(Long productId, Path upload, ImageFormat format) {
+        String fileName = productId + "." + format.extension();
+        Path target = imageStore.directory().resolve(IMAGE_CATEGORY).resolve(fileName);
+        try {
+            int sourceWidth = checkDimensions(upload);
+            Files.createDirectories(target.getParent());
+            Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);  // same directory tree, so a rename
+
+            // Variants up to the first width that covers the source; wider ones would be the same image
+            for (int width : imageResizeService.widths()) {
+                try (InputStream ignored = imageResizeService.resize(IMAGE_CATEGORY, fileName, width, null).content()) {
+                    // only rendered into the cache here
+                }
+                if (width >= sourceWidth) {
+                    break;
+                }
+            }
+
+            try {
+                productService.updateImageUrl(productId, imageStore.url(IMAGE_CATEGORY, fileName));
+            } catch (EntityNotFoundException ex) {
+                Files.deleteIfExists(target);  // the product was deleted while the image was processed
+                return;
+            }
+            // An earlier upload in the other format
+            for (ImageFormat other : ImageFormat.values()) {
+                if (other != format) {
+                    Files.deleteIfExists(target.resolveSibling(productId + "." + other.extension()));
+                }
+            }
+            log.info("Product {} now shows image {}", productId, fileName);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            deleteQuietly(upload);  // still there unless it was moved
+        }
+    }
+
+    // Reads the width and height from the image header, so oversized images are refused before decoding
+    private int checkDimensions(Path image) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Unreadable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IllegalArgumentException("Image too large: " + width + "x" + height);
+                }
+                return width;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] readMagicBytes(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.readNBytes(MAGIC_BYTES);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Cannot delete {}", file, ex);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.sokoplace.product.inventory;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.dto.StockResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Product stock, reserved when orders are placed and returned when they are cancelled.
+// product.stock_quantity is the stock no instance has claimed yet. Each instance claims units from it in chunks
+// of chunk-size with a conditional UPDATE in a short transaction of its own, which the CHECK constraint on the
+// column backs up, and keeps them in a StockCounter per product (its lease). Orders are held against the lease
+// only, so no order waits on a product's row lock, and no unit can be sold by two instances.
+// A product whose stored stock could not cover a claim is refused for recheck-interval before this instance
+// asks again (stock added, or leases given back elsewhere). A lease no order has claimed more for within
+// recheck-interval is given back to the database by a background sweep, and all leases are given back when the
+// instance stops; units of an instance that dies without stopping stay lost until the stock is set again.
+// Cancelled orders put their units straight back in product.stock_quantity.
+// Products with a NULL stock_quantity are not tracked and can always be ordered.
+
+@Slf4j
+@Service
+public class InventoryService {
+
+    private static final String LOAD_SQL = "SELECT id, stock_quantity FROM product WHERE id = ANY(?)";
+    private static final String SET_SQL = "UPDATE product SET stock_quantity = ? WHERE id = ?";
+    private static final String STORED_SQL = "SELECT stock_quantity FROM product WHERE id = ?";
+    private static final String CLAIM_SQL =
+            "UPDATE product SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String GIVE_BACK_SQL =
+            "UPDATE product SET stock_quantity = stock_quantity + ? WHERE id = ? AND stock_quantity IS NOT NULL";
+    // Locks the rows in id order, so cancellations sharing products can't deadlock
+    private static final String RETURN_SQL = """
+            WITH returned AS (
+                SELECT * FROM unnest(CAST(? AS bigint[]), CAST(? AS int[])) AS r(id, quantity)
+            ), locked AS (
+                SELECT p.id FROM product p JOIN returned r ON r.id = p.id
+                WHERE p.stock_quantity IS NOT NULL
+                ORDER BY p.id FOR NO KEY UPDATE OF p
+            )
+            UPDATE product p SET stock_quantity = p.stock_quantity + r.quantity
+            FROM locked l JOIN returned r ON r.id = l.id
+            WHERE p.id = l.id
+            """;
+
+    // Stands in for every product whose stock is not tracked
+    private static final StockCounter UNTRACKED = new StockCounter(0, 0, 1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate leaseTransaction;
+    private final int counterCells;
+    private final int chunkSize;
+    private final Duration recheckInterval;
+    private final long recheckNanos;
+
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public InventoryService(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${sokoplace.inventory.counter-cells:8}") int counterCells,
+                            @Value("${sokoplace.inventory.chunk-size:20}") int chunkSize,
+                            @Value("${sokoplace.inventory.recheck-interval:1s}") Duration recheckInterval) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("sokoplace.inventory.chunk-size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        // Claims and give-backs commit on their own, even when an order's transaction is running
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.counterCells = counterCells;
+        this.chunkSize = chunkSize;
+        this.recheckInterval = recheckInterval;
+        this.recheckNanos = recheckInterval.toNanos();
+        new StockCounter(0, 0, counterCells);  // fails fast when the cell count isn't a power of two
+    }
+
+    @PostConstruct
+    void startSweeping() {
+        long interval = Math.max(1, recheckInterval.toMillis());
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException ex) {
+                log.error("Inventory lease sweep failed", ex);  // caught, or the executor would stop scheduling sweeps
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Gives every lease back, so the units can be sold by the other instances
+    @PreDestroy
+    void close() {
+        closed = true;
+        sweeper.shutdownNow();
+        counters.forEach((id, counter) -> {
+            if (counter != UNTRACKED) {
+                giveBack(counter, counter.drain());
+            }
+        });
+    }
+
+    // The stock not leased by any instance: units held in leases are not counted
+    public StockResponse findStock(Long productId) {
+        try {
+            return new StockResponse(productId, jdbcTemplate.queryForObject(STORED_SQL, Integer.class, productId));
+        } catch (EmptyResultDataAccessException ex) {
+            throw new EntityNotFoundException("Product not found");
+        }
+    }
+
+    // Replaces the stock, leases included: this instance's lease is dropped, while the other instances may still
+    // sell what they hold (at most a chunk each) and add their leftovers to the new figure when they give it back
+    public StockResponse setStock(Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new BadRequestException("Quantity must not be negative");
+        }
+        if (jdbcTemplate.update(SET_SQL, quantity, productId) == 0) {
+            throw new EntityNotFoundException("Product not found");
+        }
+        counters.compute(productId, (id, current) -> {
+            if (current != null && current != UNTRACKED) {
+                current.drain();
+                current.clearShort();
+                return current;
+            }
+            return new StockCounter(id, 0, counterCells);
+        });
+        return new StockResponse(productId, quantity);
+    }
+
+    // hold() for a caller already inside a transaction (updateOrder): the units go back to the lease if it rolls
+    // back. A claim made here needs a second connection while the caller's is held, so new orders are held
+    // before their transaction starts instead.
+    public void reserve(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> held = hold(quantities);
+        if (!held.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        releaseHold(held);
+                    }
+                }
+            });
+        }
+    }
+
+    // Takes the units of an order (product id -> quantity) from this instance's leases, claiming more from the
+    // database when a lease runs short, or none of them: throws InsufficientStockException when a product is
+    // short. Returns the units held, for releaseHold when the order is not written after all.
+    public Map<Long, Integer> hold(Map<Long, Integer> quantities) {
+        if (quantities.keySet().stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("Product id is required");
+        }
+        if (quantities.values().stream().anyMatch(quantity -> quantity < 1)) {
+            throw new BadRequestException("Quantity must be at least 1");
+        }
+        Map<Long, StockCounter> tracked = trackedCounters(quantities.keySet());
+        Map<Long, Integer> held = new HashMap<>();
+        try {
+            for (Map.Entry<Long, Integer> item : quantities.entrySet()) {
+                StockCounter counter = tracked.get(item.getKey());
+                if (counter != null && take(counter, item.getValue())) {
+                    held.put(item.getKey(), item.getValue());
+                }
+            }
+        } catch (RuntimeException ex) {
+            releaseHold(held);
+            throw ex;
+        }
+        return held;
+    }
+
+    // Gives back units held by hold() for an order that was not written
+    public void releaseHold(Map<Long, Integer> held) {
+        held.forEach((id, quantity) -> {
+            StockCounter counter = counters.get(id);
+            if (counter != null && counter != UNTRACKED) {
+                release(counter, quantity);
+            }
+        });
+    }
+
+    // Puts a cancelled order's units back in product.stock_quantity, within the cancelling transaction
+    public void restock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Long[] ids = quantities.keySet().toArray(Long[]::new);
+        Integer[] returned = quantities.values().toArray(Integer[]::new);
+        jdbcTemplate.update(RETURN_SQL, statement -> {
+            statement.setArray(1, statement.getConnection().createArrayOf("bigint", ids));
+            statement.setArray(2, statement.getConnection().createArrayOf("integer", returned));
+        });
+    }
+
+    // A deleted product's row is gone, and with it its lease
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            counters.remove(event.productId());
+        }
+    }
+
+    // Gives back the leases no order has claimed more for within recheck-interval, and forgets untracked products
+    // so stock tracking turned on by another instance is noticed
+    void sweep() {
+        counters.forEach((id, counter) -> {
+            if (counter == UNTRACKED) {
+                counters.remove(id, UNTRACKED);
+            } else if (!counter.claimedWithin(recheckNanos)) {
+                giveBack(counter, counter.drain());
+            }
+        });
+    }
+
+    // Takes `quantity` units from the product's lease, claiming more while it is short. Returns false (nothing
+    // held) when the product turns out not to be tracked.
+    private boolean take(StockCounter counter, int quantity) {
+        if (counter.tryReserve(quantity)) {
+            return true;
+        }
+        // One claim per product at a time: orders arriving meanwhile wait here and take from what it brings in
+        synchronized (counter) {
+            while (!counter.tryReserve(quantity)) {
+                if (closed || counter.isShort()) {
+                    throw new InsufficientStockException(counter.productId);
+                }
+                int claimed = claim(counter.productId, Math.max(1, quantity - counter.available()));
+                if (claimed < 0) {
+                    counters.replace(counter.productId, counter, UNTRACKED);
+                    return false;
+                }
+                if (claimed == 0) {
+                    counter.markShort(recheckNanos);
+                    throw new InsufficientStockException(counter.productId);
+                }
+                counter.leased(claimed);
+            }
+            return true;
+        }
+    }
+
+    // Moves chunk-size units, or `missing` if more, from product.stock_quantity to this instance. When fewer are
+    // stored, takes what is left as long as it covers `missing`. Returns the units claimed, 0 when the stored
+    // stock is short of `missing`, or -1 when the product is not tracked (or gone).
+    private int claim(long productId, int missing) {
+        int chunk = Math.max(chunkSize, missing);
+        Integer claimed = leaseTransaction.execute(status -> {
+            if (jdbcTemplate.update(CLAIM_SQL, chunk, productId, chunk) == 1) {
+                return chunk;
+            }
+            while (true) {
+                List<Integer> stored = jdbcTemplate.queryForList(STORED_SQL, Integer.class, productId);
+                if (stored.isEmpty() || stored.get(0) == null) {
+                    return -1;
+                }
+                int units = Math.min(stored.get(0), chunk);
+                if (units < missing) {
+                    return 0;
+                }
+                if (jdbcTemplate.update(CLAIM_SQL, units, productId, units) == 1) {
+                    return units;
+                }
+                // Another instance claimed in between: look again
+            }
+        });
+        return Objects.requireNonNull(claimed);
+    }
+
+    // Under the counter's monitor, so a release can't land in a lease close() has already given back
+    private void release(StockCounter counter, int quantity) {
+        synchronized (counter) {
+            if (!closed) {
+                counter.release(quantity);
+                return;
+            }
+        }
+        giveBack(counter, quantity);
+    }
+
+    // Adds leased units back to product.stock_quantity; if the database can't be reached they stay in the lease
+    private void giveBack(StockCounter counter, int units) {
+        if (units == 0) {
+            return;
+        }
+        try {
+            leaseTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.update(GIVE_BACK_SQL, units, counter.productId));
+        } catch (DataAccessException ex) {
+            log.warn("Could not give back {} units of product {}", units, counter.productId, ex);
+            counter.release(units);
+        }
+    }
+
+    // Counters of the tracked products among `productIds`, loading the ones not seen yet in one query
+    private Map<Long, StockCounter> trackedCounters(Collection<Long> productIds) {
+        List<Long> unloaded = productIds.stream().filter(id -> !counters.containsKey(id)).toList();
+        if (!unloaded.isEmpty()) {
+            load(unloaded);
+        }
+        Map<Long, StockCounter> tracked = new HashMap<>();
+        for (Long id : productIds) {
+            StockCounter counter = counters.get(id);
+            if (counter != null && counter != UNTRACKED) {
+                tracked.put(id, counter);
+            }
+        }
+        return tracked;
+    }
+
+    // A new lease starts empty: the first order claims its units. putIfAbsent: a counter already in the map may
+    // hold units of orders in flight.
+    private void load(List<Long> productIds) {
+        jdbcTemplate.query(LOAD_SQL, statement ->
+                statement.setArray(1, statement.getConnection().createArrayOf("bigint", productIds.toArray())), resultSet -> {
+            long id = resultSet.getLong(1);
+            boolean untracked = resultSet.getObject(2) == null;
+            counters.putIfAbsent(id, untracked ? UNTRACKED : new StockCounter(id, 0, counterCells));
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package com.sokoplace.product.inventory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// The units of one product this instance has claimed from product.stock_quantity and not sold yet (its lease,
+// see InventoryService), split across several cells so concurrent reservations of a hot product don't all
+// compare-and-set the same memory word.
+// A reservation takes units from the calling thread's home cell with a CAS that never lets the cell go below
+// zero, trying the other cells when it runs short. Every unit sits in exactly one cell, so no two reservations
+// on this instance can take the same unit.
+// When no single cell holds enough (say 3 units spread 1/1/1), the slow path briefly collects all cells
+// under the counter's monitor, takes what it needs and spreads the rest back.
+// Cells are padded apart so neighbouring cells don't share a CPU cache line.
+// InventoryService claims more units under the counter's monitor too, so a product has one claim in flight.
+
+final class StockCounter {
+
+    private static final int PAD = 16;  // ints between cells: 64 bytes, one cache line
+
+    final long productId;
+    private final int cellCount;  // a power of two
+    private final AtomicIntegerArray cells;
+
+    // System.nanoTime() of the last claim from the database, and until when the stored stock is known to be short
+    private volatile long claimedAt;
+    private volatile long shortUntil;
+
+    StockCounter(long productId, int available, int cellCount) {
+        if (Integer.bitCount(cellCount) != 1) {
+            throw new IllegalArgumentException("Cell count must be a power of two");
+        }
+        this.productId = productId;
+        this.cellCount = cellCount;
+        this.cells = new AtomicIntegerArray(cellCount * PAD);
+        spread(available);
+        this.claimedAt = System.nanoTime();
+        this.shortUntil = claimedAt;
+    }
+
+    // Takes `quantity` units if available; false (and nothing taken) otherwise
+    boolean tryReserve(int quantity) {
+        int home = homeCell();
+        for (int i = 0; i < cellCount; i++) {
+            int index = ((home + i) & (cellCount - 1)) * PAD;
+            int available = cells.get(index);
+            while (available >= quantity) {
+                if (cells.compareAndSet(index, available, available - quantity)) {
+                    return true;
+                }
+                available = cells.get(index);
+            }
+        }
+        return reserveFromAllCells(quantity);
+    }
+
+    // Returns `quantity` units held for an order that was not written
+    void release(int quantity) {
+        cells.addAndGet(homeCell() * PAD, quantity);
+    }
+
+    // Adds `units` just claimed from the database
+    void leased(int units) {
+        spread(units);
+        claimedAt = System.nanoTime();
+    }
+
+    // Takes every unit out of the lease, to give back to the database or discard; returns how many
+    synchronized int drain() {
+        return drainAvailable();
+    }
+
+    // True when the last claim was less than `maxAgeNanos` ago
+    boolean claimedWithin(long maxAgeNanos) {
+        return System.nanoTime() - claimedAt < maxAgeNanos;
+    }
+
+    // Refuses further claims for `nanos`: the stored stock could not cover one
+    void markShort(long nanos) {
+        shortUntil = System.nanoTime() + nanos;
+    }
+
+    void clearShort() {
+        shortUntil = System.nanoTime();
+    }
+
+    boolean isShort() {
+        return System.nanoTime() - shortUntil < 0;
+    }
+
+    // Sum of the cells; exact when no reservation is in flight
+    int available() {
+        int total = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            total += cells.get(cell * PAD);
+        }
+        return total;
+    }
+
+    private synchronized boolean reserveFromAllCells(int quantity) {
+        int total = drainAvailable();
+        boolean reserved = total >= quantity;
+        if (reserved) {
+            total -= quantity;
+        }
+        spread(total);
+        return reserved;
+    }
+
+    // Moves every available unit out of the cells. Releases racing with this land in cells afterwards
+    // and are kept, since spread() adds rather than overwrites.
+    private int drainAvailable() {
+        int total = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            total += cells.getAndSet(cell * PAD, 0);
+        }
+        return total;
+    }
+
+    private void spread(int units) {
+        int share = units / cellCount;
+        int extra = units % cellCount;
+        for (int cell = 0; cell < cellCount; cell++) {
+            cells.addAndGet(cell * PAD, share + (cell < extra ? 1 : 0));
+        }
+    }
+
+    // Threads start at different cells, so the CAS traffic of a hot product is spread out
+    private int homeCell() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) * 0x9E3779B9 >>> 16 & (cellCount - 1);
+    }
+}
@@ -0,0 +1,236 @@
+package com.sokoplace.product.related;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// How often each pair of products was bought in the same order.
+// Every product with purchases has a row: a sparse LongIntHashMap from each co-purchased product id
+// to the number of orders containing both. Counts are symmetric, so a product's row also lists the
+// rows that mention it.
+// Rows are spread over STRIPES stripes by product id, each with its own read/write lock, so updates for
+// different products don't block each other and lookups only wait for writers on the same stripe.
+// Each row caches its top related products; a change to the row drops the cache.
+
+final class CoOccurrenceModel {
+
+    static final int STRIPES = 16;  // a power of two
+    static final int TOP_CACHED = 20;
+    // Baskets larger than this (wholesale orders, say) say little about which products go together
+    // and would cost size² updates, so they are not counted
+    static final int MAX_BASKET_SIZE = 200;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    CoOccurrenceModel() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Counts (delta = 1) or uncounts (delta = -1) one order's products: every ordered pair of distinct ids
+    void addBasket(long[] products, int delta) {
+        long[] basket = distinct(products);
+        if (basket.length < 2 || basket.length > MAX_BASKET_SIZE) {
+            return;
+        }
+        for (long product : basket) {
+            Stripe stripe = stripes[stripeOf(product)];
+            stripe.lock.writeLock().lock();
+            try {
+                Row row = delta > 0 ? stripe.rowOrCreate(product) : stripe.row(product);
+                if (row != null) {
+                    for (long other : basket) {
+                        if (other != product) {
+                            row.counts.addTo(other, delta);
+                        }
+                    }
+                    row.top = null;
+                }
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Used while building, before the model is shared: counts the pairs whose first product lives in one
+    // of the stripes this worker owns (stripe % workers == worker), so workers never touch the same row
+    void countOwned(long[] items, int[] basketStarts, int basketCount, int worker, int workers) {
+        for (int b = 0; b < basketCount; b++) {
+            int start = basketStarts[b];
+            int end = basketStarts[b + 1];
+            int length = end - start;
+            if (length < 2 || length > MAX_BASKET_SIZE) {
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                long product = items[i];
+                int stripe = stripeOf(product);
+                if (stripe % workers != worker) {
+                    continue;
+                }
+                Row row = stripes[stripe].rowOrCreate(product);
+                for (int j = start; j < end; j++) {
+                    if (j != i) {
+                        row.counts.addTo(items[j], 1);
+                    }
+                }
+            }
+        }
+    }
+
+    // Drops a deleted product: its row, and its entries in the rows of every product bought with it
+    void removeProduct(long product) {
+        LongIntHashMap counts;
+        Stripe own = stripes[stripeOf(product)];
+        own.lock.writeLock().lock();
+        try {
+            Row row = own.remove(product);
+            if (row == null) {
+                return;
+            }
+            counts = row.counts;
+        } finally {
+            own.lock.writeLock().unlock();
+        }
+        // One stripe lock at a time, like addBasket, so the two can never deadlock
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            long other = counts.keyAt(slot);
+            if (other == 0) {
+                continue;
+            }
+            Stripe stripe = stripes[stripeOf(other)];
+            stripe.lock.writeLock().lock();
+            try {
+                Row row = stripe.row(other);
+                if (row != null) {
+                    row.counts.addTo(product, -counts.valueAt(slot));
+                    row.top = null;
+                }
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Ids of the products most often bought with `product`, most frequent first (ties: lower id first).
+    // Served from the row's cached top list; a miss computes it once under the read lock.
+    long[] topRelated(long product, int limit) {
+        Stripe stripe = stripes[stripeOf(product)];
+        stripe.lock.readLock().lock();
+        try {
+            Row row = stripe.row(product);
+            if (row == null) {
+                return new long[0];
+            }
+            long[] top = row.top;
+            if (top == null) {
+                top = selectTop(row.counts, TOP_CACHED);
+                row.top = top;  // racing readers compute the same list; writers are excluded by the lock
+            }
+            return Arrays.copyOf(top, Math.min(limit, top.length));
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    // Number of products with a row, for logging
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                size += stripe.rows.size() - stripe.freeRows.size();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    static int stripeOf(long product) {
+        long hash = product * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (STRIPES - 1);
+    }
+
+    // Keeps the k best entries in arrays sorted best-first; most rows are short, and k is small
+    private static long[] selectTop(LongIntHashMap counts, int k) {
+        long[] ids = new long[k];
+        int[] scores = new int[k];
+        int size = 0;
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            long id = counts.keyAt(slot);
+            if (id == 0) {
+                continue;
+            }
+            int score = counts.valueAt(slot);
+            if (size == k && !better(score, id, scores[k - 1], ids[k - 1])) {
+                continue;
+            }
+            int position = size < k ? size++ : k - 1;
+            while (position > 0 && better(score, id, scores[position - 1], ids[position - 1])) {
+                ids[position] = ids[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            ids[position] = id;
+            scores[position] = score;
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    private static boolean better(int score, long id, int otherScore, long otherId) {
+        return score > otherScore || (score == otherScore && id < otherId);
+    }
+
+    private static long[] distinct(long[] products) {
+        return Arrays.stream(products).filter(id -> id > 0).distinct().toArray();
+    }
+
+    private static final class Row {
+        final LongIntHashMap counts = new LongIntHashMap();
+        volatile long[] top;  // cached best-first ids, null when stale
+    }
+
+    // Rows are stored in a list and found through a product id -> index map; freed indexes are reused
+    private static final class Stripe {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final LongIntHashMap index = new LongIntHashMap();  // product id -> row index + 1 (0 means none)
+        final List<Row> rows = new ArrayList<>();
+        final List<Integer> freeRows = new ArrayList<>();
+
+        Row row(long product) {
+            int position = index.get(product);
+            return position == 0 ? null : rows.get(position - 1);
+        }
+
+        Row rowOrCreate(long product) {
+            Row row = row(product);
+            if (row == null) {
+                row = new Row();
+                int position;
+                if (freeRows.isEmpty()) {
+                    rows.add(row);
+                    position = rows.size();
+                } else {
+                    position = freeRows.remove(freeRows.size() - 1) + 1;
+                    rows.set(position - 1, row);
+                }
+                index.addTo(product, position);
+            }
+            return row;
+        }
+
+        Row remove(long product) {
+            int position = index.get(product);
+            if (position == 0) {
+                return null;
+            }
+            index.addTo(product, -position);  // drops the key
+            Row row = rows.set(position - 1, null);
+            freeRows.add(position - 1);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.sokoplace.product.related;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductService;
+import com.sokoplace.product.dto.ProductResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// "Frequently bought together": the products that most often share an order with a given product,
+// counted from order_item and kept in memory (see CoOccurrenceModel).
+//
+// The model is built when the application is ready. One query streams order_item in order id order
+// through a database cursor, so it reads a single consistent snapshot, into two flat arrays (all product
+// ids, plus where each order starts). The pairs are then counted in parallel: each worker owns a subset
+// of the model's stripes and counts only the pairs whose first product falls in them, so no locks or
+// merging are needed. After that, every committed order change is applied as a difference: the previous
+// basket is uncounted and the new one counted.
+// Order changes that commit while the build is running are queued and applied to the new model before
+// it replaces the empty one. (An order committing at the very instant the snapshot is taken may be counted
+// twice; these counts only rank recommendations, so that is tolerated.)
+
+@Slf4j
+@Service
+public class RelatedProductService {
+
+    static final int MAX_RELATED = CoOccurrenceModel.TOP_CACHED;
+    private static final int FETCH_SIZE = 10_000;
+    private static final String ORDER_ITEMS_SQL =
+            "SELECT customer_order_id, product_id FROM order_item ORDER BY customer_order_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ProductService productService;
+    private final int buildThreads;
+
+    private volatile CoOccurrenceModel model = new CoOccurrenceModel();
+
+    // Guards 'building' and 'pending': changes committed during the build are queued here
+    private final Object buildLock = new Object();
+    private boolean building;
+    private final List<Consumer<CoOccurrenceModel>> pending = new ArrayList<>();
+
+    @Autowired
+    public RelatedProductService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ProductService productService,
+                                 @Value("${sokoplace.related.build-threads:4}") int buildThreads) {
+        if (buildThreads < 1) {
+            throw new IllegalArgumentException("At least one build thread is required");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.productService = productService;
+        this.buildThreads = Math.min(buildThreads, CoOccurrenceModel.STRIPES);
+    }
+
+    // Top related products, best first. Unknown products give 404 (EntityNotFoundException);
+    // products without orders give an empty list.
+    public List<ProductResponse> findRelatedProducts(Long productId, int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be at least 1");
+        }
+        productService.findProductById(productId);  // cached; throws when the product doesn't exist
+        List<Long> ids = findRelatedIds(productId, Math.min(limit, MAX_RELATED));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return productService.findProductsByIds(ids).products();
+    }
+
+    List<Long> findRelatedIds(long productId, int limit) {
+        return Arrays.stream(model.topRelated(productId, limit)).boxed().toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildModel() {
+        synchronized (buildLock) {
+            building = true;
+        }
+        CoOccurrenceModel built = new CoOccurrenceModel();
+        try {
+            long started = System.nanoTime();
+            Baskets baskets = readBaskets();
+            long read = System.nanoTime();
+            countInParallel(built, baskets);
+            log.info("Related products model built: {} orders, {} products in {} ms (read {} ms, count {} ms, {} threads)",
+                    baskets.count, built.size(), (System.nanoTime() - started) / 1_000_000,
+                    (read - started) / 1_000_000, (System.nanoTime() - read) / 1_000_000, buildThreads);
+        } catch (RuntimeException ex) {
+            // Start empty rather than half counted; new orders still fill the model from here on
+            log.error("Related products build failed; starting with an empty model", ex);
+            built = new CoOccurrenceModel();
+        } finally {
+            synchronized (buildLock) {
+                for (Consumer<CoOccurrenceModel> change : pending) {
+                    change.accept(built);
+                }
+                pending.clear();
+                model = built;
+                building = false;
+            }
+        }
+    }
+
+    // Runs after the order's transaction commits
+    @TransactionalEventListener
+    public void onOrderItemsChanged(OrderItemsChangedEvent event) {
+        long[] previous = toArray(event.previousProductIds());
+        long[] current = toArray(event.productIds());
+        apply(target -> {
+            target.addBasket(previous, -1);
+            target.addBasket(current, 1);
+        });
+    }
+
+    // A deleted product's order_item rows are deleted with it (ON DELETE CASCADE); drop it from the counts too
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            long productId = event.productId();
+            apply(target -> target.removeProduct(productId));
+        }
+    }
+
+    private void apply(Consumer<CoOccurrenceModel> change) {
+        synchronized (buildLock) {
+            if (building) {
+                pending.add(change);
+                return;
+            }
+        }
+        change.accept(model);
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Streams order_item into flat arrays: the product ids of order b are items[starts[b] .. starts[b + 1])
+    private Baskets readBaskets() {
+        Baskets baskets = new Baskets();
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ORDER_ITEMS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, resultSet -> {
+            baskets.add(resultSet.getLong(1), resultSet.getLong(2));
+        }));
+        baskets.finish();
+        return baskets;
+    }
+
+    private void countInParallel(CoOccurrenceModel target, Baskets baskets) {
+        ExecutorService workers = Executors.newFixedThreadPool(buildThreads, runnable -> {
+            Thread thread = new Thread(runnable, "related-products-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int worker = 0; worker < buildThreads; worker++) {
+                int owner = worker;
+                results.add(workers.submit(() -> target.countOwned(
+                        baskets.items, baskets.starts, baskets.count, owner, buildThreads)));
+            }
+            for (Future<?> result : results) {
+                result.get();  // also makes the workers' writes visible to this thread
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Related products build interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Related products build failed", ex.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Growable flat arrays of the order baskets, filled in order id order
+    private static final class Baskets {
+        long[] items = new long[1024];
+        int[] starts = new int[256];
+        int count;
+        int size;
+        long currentOrder = -1;
+
+        void add(long orderId, long productId) {
+            if (orderId != currentOrder) {
+                if (count + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[count++] = size;
+                currentOrder = orderId;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, items.length + (items.length >> 1));
+            }
+            items[size++] = productId;
+        }
+
+        void finish() {
+            starts[count] = size;  // end of the last basket
+        }
+    }
+}
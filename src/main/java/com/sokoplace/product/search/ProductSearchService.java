@@ -0,0 +1,440 @@
+package com.sokoplace.product.search;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over product brand, model, category and description.
+// Built from the product table once the application is ready, then kept current by the
+// ProductChangedEvents that ProductService publishes after each committed write.
+//
+// Every query term must match (AND). A term matches exactly, as a prefix ("lap" -> laptop),
+// or, when neither finds anything, with one typo ("lenvo" -> lenovo). Matches are ranked with BM25.
+// Searches take a shared read lock; writes take the exclusive lock for the few microseconds an update needs.
+
+@Slf4j
+@Service
+public class ProductSearchService {
+
+    // BM25 tuning: K1 controls term-frequency saturation, B how strongly long documents are penalised
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field boosts: a term in the brand or model says more about a product than one in its description
+    private static final int BRAND_WEIGHT = 3;
+    private static final int MODEL_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Prefix and typo matches score lower than an exact term match
+    private static final double PREFIX_FACTOR = 0.7;
+    private static final double TYPO_FACTOR = 0.5;
+    private static final int MAX_EXPANSIONS = 50;  // index terms a single query term may expand to
+    private static final int MIN_TYPO_LENGTH = 4;  // shorter terms have too many one-edit neighbours
+
+    static final int MAX_RESULTS = 100;
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ProductRepository productRepository;
+
+    // Products changed by events while the initial build is running; the build must not overwrite them
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by 'lock'.
+    // Each indexed product gets an int ordinal; postings lists reference products by ordinal.
+    private final TreeMap<String, Postings> terms = new TreeMap<>();  // sorted, for prefix range scans
+    private final Map<String, List<String>> deletions = new HashMap<>();  // term minus one char -> terms
+    private final Map<Long, Integer> ordinals = new HashMap<>();  // product id -> ordinal
+    private ProductResponse[] docs = new ProductResponse[INITIAL_CAPACITY];  // null once deleted
+    private int[] docLengths = new int[INITIAL_CAPACITY];  // weighted term count per product
+    private int docCount;  // ordinals handed out so far, including deleted products
+    private int liveDocs;
+    private long totalLength;
+
+    @Autowired
+    public ProductSearchService(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public List<ProductResponse> search(String query, int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be at least 1");
+        }
+        List<String> tokens = SearchTokenizer.tokenize(query).stream().distinct().toList();
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Matches> matchesPerToken = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Matches matches = match(token);
+                if (matches.size == 0) {
+                    return List.of();  // every query term has to match
+                }
+                matchesPerToken.add(matches);
+            }
+            return topResults(matchesPerToken, Math.min(limit, MAX_RESULTS));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Loads the catalog in id order, batch by batch, so only one batch is held in memory at a time
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long started = System.nanoTime();
+        building = true;
+        try {
+            long afterId = 0L;
+            List<ProductResponse> batch;
+            do {
+                batch = productRepository.findResponsesAfter(afterId, Limit.of(BUILD_BATCH_SIZE));
+                lock.writeLock().lock();
+                try {
+                    for (ProductResponse product : batch) {
+                        if (!changedDuringBuild.contains(product.Id())) {
+                            upsert(product);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).Id();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+        } finally {
+            building = false;
+            changedDuringBuild.clear();
+        }
+        log.info("Product search index built: {} products, {} terms in {} ms",
+                liveDocs, terms.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Runs after the publishing transaction commits (or immediately when there is no transaction)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (building) {
+            changedDuringBuild.add(event.productId());
+        }
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                remove(event.productId());
+            } else {
+                upsert(event.product());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Indexing (caller holds the write lock) ---
+
+    private void upsert(ProductResponse product) {
+        remove(product.Id());
+
+        int ordinal = docCount++;
+        if (ordinal == docs.length) {
+            docs = Arrays.copyOf(docs, ordinal * 2);
+            docLengths = Arrays.copyOf(docLengths, ordinal * 2);
+        }
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : termFrequencies(product).entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), this::newTerm).add(ordinal, entry.getValue());
+            length += entry.getValue();
+        }
+        docs[ordinal] = product;
+        docLengths[ordinal] = length;
+        ordinals.put(product.Id(), ordinal);
+        liveDocs++;
+        totalLength += length;
+    }
+
+    // Deleted products stay in the postings lists as tombstones until the next compaction
+    private void remove(Long productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        for (String term : termFrequencies(docs[ordinal]).keySet()) {
+            terms.get(term).liveDocs--;
+        }
+        liveDocs--;
+        totalLength -= docLengths[ordinal];
+        docs[ordinal] = null;
+
+        if (docCount - liveDocs > Math.max(INITIAL_CAPACITY, liveDocs)) {
+            compact();
+        }
+    }
+
+    // Re-indexes the live products from scratch, dropping tombstones and terms no product uses any more
+    private void compact() {
+        List<ProductResponse> live = new ArrayList<>(liveDocs);
+        for (int ordinal = 0; ordinal < docCount; ordinal++) {
+            if (docs[ordinal] != null) {
+                live.add(docs[ordinal]);
+            }
+        }
+        terms.clear();
+        deletions.clear();
+        ordinals.clear();
+        docs = new ProductResponse[Math.max(INITIAL_CAPACITY, live.size() * 2)];
+        docLengths = new int[docs.length];
+        docCount = 0;
+        liveDocs = 0;
+        totalLength = 0;
+        live.forEach(this::upsert);
+    }
+
+    private Postings newTerm(String term) {
+        if (term.length() >= MIN_TYPO_LENGTH) {
+            for (String deletion : deletionsOf(term)) {
+                deletions.computeIfAbsent(deletion, key -> new ArrayList<>(1)).add(term);
+            }
+        }
+        return new Postings();
+    }
+
+    private static Map<String, Integer> termFrequencies(ProductResponse product) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        addTerms(frequencies, product.brand(), BRAND_WEIGHT);
+        addTerms(frequencies, product.model(), MODEL_WEIGHT);
+        addTerms(frequencies, product.category(), CATEGORY_WEIGHT);
+        addTerms(frequencies, product.description(), DESCRIPTION_WEIGHT);
+        return frequencies;
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String token : SearchTokenizer.tokenize(text)) {
+            frequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // --- Querying (caller holds the read lock) ---
+
+    private Matches match(String token) {
+        List<Expansion> expansions = new ArrayList<>();
+        addExpansion(expansions, terms.get(token), 1.0);
+        for (Postings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+            if (expansions.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            addExpansion(expansions, postings, PREFIX_FACTOR);
+        }
+        if (expansions.isEmpty() && token.length() >= MIN_TYPO_LENGTH) {
+            for (String candidate : typoCandidates(token)) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                addExpansion(expansions, terms.get(candidate), TYPO_FACTOR);
+            }
+        }
+        return score(expansions);
+    }
+
+    private static void addExpansion(List<Expansion> expansions, Postings postings, double factor) {
+        if (postings != null && postings.liveDocs > 0) {
+            expansions.add(new Expansion(postings, factor));
+        }
+    }
+
+    // Symmetric-delete lookup: two strings are one edit apart only if they share a one-char deletion
+    // (or one is a deletion of the other). Candidates are confirmed with an exact edit-distance check.
+    private Set<String> typoCandidates(String token) {
+        Set<String> candidates = new LinkedHashSet<>(deletions.getOrDefault(token, List.of()));
+        for (String deletion : deletionsOf(token)) {
+            if (terms.containsKey(deletion)) {
+                candidates.add(deletion);
+            }
+            for (String term : deletions.getOrDefault(deletion, List.of())) {
+                if (withinOneEdit(token, term)) {
+                    candidates.add(term);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Scores every product the expansions match; a product matched by several expansions keeps its best score.
+    // Results are sorted by ordinal so the per-token lists can be intersected with binary search.
+    private Matches score(List<Expansion> expansions) {
+        int total = 0;
+        for (Expansion expansion : expansions) {
+            total += expansion.postings().size;
+        }
+        long[] packed = new long[total];  // ordinal in the high 32 bits, float score bits in the low 32
+        int count = 0;
+        double averageLength = (double) totalLength / liveDocs;
+        for (Expansion expansion : expansions) {
+            Postings postings = expansion.postings();
+            double idf = Math.log(1 + (liveDocs - postings.liveDocs + 0.5) / (postings.liveDocs + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int ordinal = postings.ordinals[i];
+                if (docs[ordinal] == null) {
+                    continue;
+                }
+                double tf = postings.frequencies[i];
+                double norm = K1 * (1 - B + B * docLengths[ordinal] / averageLength);
+                float score = (float) (expansion.factor() * idf * tf * (K1 + 1) / (tf + norm));
+                packed[count++] = ((long) ordinal << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(packed, 0, count);
+
+        Matches matches = new Matches(count);
+        for (int i = 0; i < count; i++) {
+            int ordinal = (int) (packed[i] >>> 32);
+            float score = Float.intBitsToFloat((int) packed[i]);
+            if (matches.size > 0 && matches.ordinals[matches.size - 1] == ordinal) {
+                matches.scores[matches.size - 1] = Math.max(matches.scores[matches.size - 1], score);
+            } else {
+                matches.ordinals[matches.size] = ordinal;
+                matches.scores[matches.size] = score;
+                matches.size++;
+            }
+        }
+        return matches;
+    }
+
+    // Intersects the per-token matches, driving from the shortest list, and keeps the best 'limit' in a min-heap
+    private List<ProductResponse> topResults(List<Matches> matchesPerToken, int limit) {
+        matchesPerToken.sort(Comparator.comparingInt(matches -> matches.size));
+        Matches shortest = matchesPerToken.get(0);
+
+        // Lowest score at the head; on equal scores the older product (lower ordinal) ranks first
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(Hit::score).thenComparing(Hit::ordinal, Comparator.reverseOrder()));
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int ordinal = shortest.ordinals[i];
+            double score = shortest.scores[i];
+            for (int t = 1; t < matchesPerToken.size(); t++) {
+                Matches other = matchesPerToken.get(t);
+                int index = Arrays.binarySearch(other.ordinals, 0, other.size, ordinal);
+                if (index < 0) {
+                    continue candidates;
+                }
+                score += other.scores[index];
+            }
+            top.offer(new Hit(ordinal, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<ProductResponse> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            results.add(docs[top.poll().ordinal()]);
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    // --- Edit distance helpers ---
+
+    private static Set<String> deletionsOf(String term) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < term.length(); i++) {
+            result.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return result;
+    }
+
+    // True when one substitution, insertion, deletion or adjacent transposition turns a into b
+    static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        if (a.length() == b.length()) {
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < a.length(); i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    if (first < 0) {
+                        first = i;
+                    } else if (second < 0) {
+                        second = i;
+                    } else {
+                        return false;
+                    }
+                }
+            }
+            return second < 0 || (second == first + 1
+                    && a.charAt(first) == b.charAt(second) && a.charAt(second) == b.charAt(first));
+        }
+        String shorter = a.length() < b.length() ? a : b;
+        String longer = a.length() < b.length() ? b : a;
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) {
+            i++;
+        }
+        return shorter.substring(i).equals(longer.substring(i + 1));
+    }
+
+    // --- Index structures ---
+
+    // Products containing a term, in ascending ordinal order (ordinals only ever grow)
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+        int liveDocs;  // document frequency, not counting deleted products
+
+        void add(int ordinal, int frequency) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ordinals[size] = ordinal;
+            frequencies[size] = frequency;
+            size++;
+            liveDocs++;
+        }
+    }
+
+    private static final class Matches {
+        final int[] ordinals;
+        final float[] scores;
+        int size;
+
+        Matches(int capacity) {
+            ordinals = new int[capacity];
+            scores = new float[capacity];
+        }
+    }
+
+    private record Expansion(Postings postings, double factor) {}
+
+    private record Hit(int ordinal, double score) {}
+}
@@ -0,0 +1,209 @@
+package com.sokoplace.product.suggest;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.product.dto.ProductSuggestion;
+import com.sokoplace.product.suggest.SuggestionIndex.SuggestSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Typeahead for the search box: completions of a brand or model prefix, most ordered first
+// (order_item rows per product), then cheapest.
+//
+// Lookups read the current SuggestionIndex through a volatile field and never lock. The index is
+// immutable; when ProductService publishes a change, the product's brand, model and price are updated here
+// and a rebuild is scheduled on a background thread. Changes arriving within the rebuild delay
+// (a bulk import, say) are folded into one rebuild, and the new index replaces the old one in one write.
+//
+// Order counts are read from order_item once, when the application is ready, and then kept up to date from
+// each committed OrderItemsChangedEvent. Orders change far more often than the catalog, so they don't
+// schedule a rebuild of their own: a rebuild for a catalog change picks up the current counts, and
+// otherwise the index is rebuilt every popularity-refresh-interval when counts have changed. Like the
+// related products model, the counts only see the orders changed through this instance since it started.
+
+@Slf4j
+@Service
+public class ProductSuggestService {
+
+    static final int MAX_SUGGESTIONS = 20;
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final String ORDERS_PER_PRODUCT_SQL =
+            "SELECT product_id, COUNT(*) AS orders FROM order_item GROUP BY product_id";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration rebuildDelay;
+    private final Duration popularityRefreshInterval;
+
+    // Source data for rebuilds: product id -> the fields the index uses
+    private final Map<Long, SuggestSource> products = new ConcurrentHashMap<>();
+    // Products changed by events while the initial load is running; the load must not overwrite them
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    // Product id -> order_item rows for it; changes since the last rebuild set popularityChanged
+    private final Map<Long, Integer> ordersByProduct = new ConcurrentHashMap<>();
+    private final AtomicBoolean popularityChanged = new AtomicBoolean();
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-suggest-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private volatile SuggestionIndex index = SuggestionIndex.EMPTY;
+
+    @Autowired
+    public ProductSuggestService(ProductRepository productRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 @Value("${sokoplace.suggest.rebuild-delay:1s}") Duration rebuildDelay,
+                                 @Value("${sokoplace.suggest.popularity-refresh-interval:1m}") Duration popularityRefreshInterval) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rebuildDelay = rebuildDelay;
+        this.popularityRefreshInterval = popularityRefreshInterval;
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        if (limit < 1) {
+            throw new BadRequestException("Limit must be at least 1");
+        }
+        if (prefix == null) {
+            return List.of();
+        }
+        return index.complete(prefix, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    // Loads the catalog in id order, batch by batch, and the order counts, then builds the first index
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        building = true;
+        try {
+            loadOrderCounts();
+            long afterId = 0L;
+            List<ProductResponse> batch;
+            do {
+                batch = productRepository.findResponsesAfter(afterId, Limit.of(BUILD_BATCH_SIZE));
+                for (ProductResponse product : batch) {
+                    if (!changedDuringBuild.contains(product.Id())) {
+                        products.put(product.Id(), toSource(product));
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).Id();
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+        } finally {
+            building = false;
+            changedDuringBuild.clear();
+        }
+        rebuild();
+        long refreshMillis = popularityRefreshInterval.toMillis();
+        rebuilder.scheduleWithFixedDelay(this::refreshPopularity, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs after the publishing transaction commits (or immediately when there is no transaction)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (building) {
+            changedDuringBuild.add(event.productId());
+        }
+        if (event.isDeleted()) {
+            products.remove(event.productId());
+            ordersByProduct.remove(event.productId());  // its order_item rows went with it (ON DELETE CASCADE)
+        } else {
+            products.put(event.productId(), toSource(event.product()));
+        }
+        scheduleRebuild();
+    }
+
+    // Runs after the order's transaction commits: one order_item row less for each previous product, one
+    // more for each current one
+    @TransactionalEventListener
+    public void onOrderItemsChanged(OrderItemsChangedEvent event) {
+        event.previousProductIds().forEach(productId -> addOrders(productId, -1));
+        event.productIds().forEach(productId -> addOrders(productId, 1));
+        popularityChanged.set(true);
+    }
+
+    private void addOrders(Long productId, int delta) {
+        ordersByProduct.merge(productId, delta, (count, added) -> count + added == 0 ? null : count + added);
+    }
+
+    private void refreshPopularity() {
+        if (popularityChanged.get()) {
+            try {
+                rebuild();
+            } catch (RuntimeException ex) {
+                log.error("Product suggestion index rebuild failed; keeping the previous index", ex);
+            }
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildScheduled.set(false);  // changes from here on schedule the next rebuild
+                try {
+                    rebuild();
+                } catch (RuntimeException ex) {
+                    log.error("Product suggestion index rebuild failed; keeping the previous index", ex);
+                }
+            }, rebuildDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void rebuild() {
+        long started = System.nanoTime();
+        popularityChanged.set(false);  // counts changing from here on are picked up by the next rebuild
+        SuggestionIndex rebuilt = SuggestionIndex.build(
+                SuggestionIndex.candidates(products.values(), ordersByProduct));
+        index = rebuilt;
+        log.info("Product suggestion index built: {} completions in {} ms",
+                rebuilt.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Added to what events may already have counted: an order committing while the query runs can be
+    // counted twice, which only nudges a ranking
+    private void loadOrderCounts() {
+        Map<Long, Integer> loaded = new HashMap<>();
+        jdbcTemplate.query(ORDERS_PER_PRODUCT_SQL,
+                resultSet -> {
+                    loaded.put(resultSet.getLong("product_id"), resultSet.getInt("orders"));
+                });
+        loaded.forEach(this::addOrders);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private static SuggestSource toSource(ProductResponse product) {
+        return SuggestSource.of(product.Id(), product.brand(), product.model(),
+                product.price() == null ? Double.MAX_VALUE : product.price());
+    }
+}
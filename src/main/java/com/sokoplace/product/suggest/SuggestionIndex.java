@@ -0,0 +1,274 @@
+package com.sokoplace.product.suggest;
+
+import com.sokoplace.product.dto.ProductSuggestion;
+import com.sokoplace.product.search.SearchTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Immutable prefix index over the distinct brand and model texts of the catalog.
+//
+// Every word start of every text is a key ("galaxy s25 plus" -> "galaxy s25 plus", "s25 plus", "plus"),
+// and the keys are kept sorted, so all completions of a prefix form one contiguous range that two binary
+// searches find. This is a trie flattened into arrays: no node objects, a few bytes per key.
+// Texts are numbered by rank (most popular first), and a min-tree over the keys' ranks returns the
+// best-ranked key of any range in O(log n), so the top N of a range of any size costs O(N log n).
+//
+// Nothing is modified after construction: readers need no lock, and a new index is swapped in whole.
+
+final class SuggestionIndex {
+
+    static final SuggestionIndex EMPTY = build(List.of());
+
+    // Key offsets are stored in a byte. Brand and model columns hold at most 50 characters; words starting
+    // further in than this (only possible if normalization expands a text a lot) are not indexed.
+    private static final int MAX_OFFSET = Byte.MAX_VALUE;
+
+    // The fields of a product the index is built from. Texts are normalized once, when the product
+    // is added, so rebuilds don't repeat that work for the whole catalog.
+    record SuggestSource(long id, String brand, String normalizedBrand, String model, String normalizedModel,
+                         double price) {
+
+        static SuggestSource of(long id, String brand, String model, double price) {
+            return new SuggestSource(id, brand, normalize(brand), model, normalize(model), price);
+        }
+    }
+
+    // One distinct completion with what the ranking needs; text is the display form
+    record Candidate(String text, String normalized, String field, long popularity, double lowestPrice) {}
+
+    private final String[] texts;       // by rank
+    private final String[] fields;      // by rank
+    private final String[] normalized;  // by rank: lowercase, accents stripped, words separated by one space
+    private final int[] keyText;        // sorted keys: rank of the text the key points into
+    private final byte[] keyOffset;     // sorted keys: where the key starts in that text
+    private final int[] tree;           // iterative segment tree over keys; each node holds its best key
+
+    private SuggestionIndex(String[] texts, String[] fields, String[] normalized, int[] keyText, byte[] keyOffset) {
+        this.texts = texts;
+        this.fields = fields;
+        this.normalized = normalized;
+        this.keyText = keyText;
+        this.keyOffset = keyOffset;
+
+        int n = keyText.length;
+        this.tree = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            tree[n + i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+    }
+
+    // Ranks candidates by popularity, then lowest price, then shorter and alphabetically first text
+    static SuggestionIndex build(List<Candidate> candidates) {
+        List<Candidate> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingLong(Candidate::popularity).reversed()
+                .thenComparingDouble(Candidate::lowestPrice)
+                .thenComparingInt(candidate -> candidate.text().length())
+                .thenComparing(Candidate::text));
+
+        int count = ranked.size();
+        String[] texts = new String[count];
+        String[] fields = new String[count];
+        String[] normalized = new String[count];
+        int keys = 0;
+        for (int rank = 0; rank < count; rank++) {
+            texts[rank] = ranked.get(rank).text();
+            fields[rank] = ranked.get(rank).field();
+            normalized[rank] = ranked.get(rank).normalized();
+            keys += wordStarts(normalized[rank]);
+        }
+
+        // Collect (rank, offset) for every word start, then sort the keys by the text that follows
+        int[] unsortedText = new int[keys];
+        byte[] unsortedOffset = new byte[keys];
+        int k = 0;
+        for (int rank = 0; rank < count; rank++) {
+            String text = normalized[rank];
+            for (int i = 0; i < text.length() && i <= MAX_OFFSET; i++) {
+                if (isWordStart(text, i)) {
+                    unsortedText[k] = rank;
+                    unsortedOffset[k] = (byte) i;
+                    k++;
+                }
+            }
+        }
+        Integer[] order = new Integer[keys];
+        for (int i = 0; i < keys; i++) {
+            order[i] = i;
+        }
+        Arrays.parallelSort(order, (a, b) -> compareSuffixes(
+                normalized[unsortedText[a]], unsortedOffset[a], normalized[unsortedText[b]], unsortedOffset[b]));
+
+        int[] keyText = new int[keys];
+        byte[] keyOffset = new byte[keys];
+        for (int i = 0; i < keys; i++) {
+            keyText[i] = unsortedText[order[i]];
+            keyOffset[i] = unsortedOffset[order[i]];
+        }
+        return new SuggestionIndex(texts, fields, normalized, keyText, keyOffset);
+    }
+
+    int size() {
+        return texts.length;
+    }
+
+    // Top `limit` distinct completions of `prefix`, best ranked first
+    List<ProductSuggestion> complete(String prefix, int limit) {
+        String query = normalize(prefix);
+        if (query.isEmpty() || keyText.length == 0) {
+            return List.of();
+        }
+        int from = firstKey(query, false);
+        int to = firstKey(query, true);
+        if (from >= to) {
+            return List.of();
+        }
+
+        // Best-first expansion: take the best key of a range, then consider the two ranges either side of it
+        List<ProductSuggestion> suggestions = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();  // a text can match at more than one of its word starts
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(Comparator.comparingInt(range -> keyText[range[2]]));
+        ranges.add(new int[]{from, to, best(from, to)});
+        while (!ranges.isEmpty() && suggestions.size() < limit) {
+            int[] range = ranges.poll();
+            int key = range[2];
+            int rank = keyText[key];
+            if (seen.add(rank)) {
+                suggestions.add(new ProductSuggestion(texts[rank], fields[rank]));
+            }
+            if (range[0] < key) {
+                ranges.add(new int[]{range[0], key, best(range[0], key)});
+            }
+            if (key + 1 < range[1]) {
+                ranges.add(new int[]{key + 1, range[1], best(key + 1, range[1])});
+            }
+        }
+        return suggestions;
+    }
+
+    // Index of the first key that starts with `query` (or, with `after`, the first key past all of them)
+    private int firstKey(String query, boolean after) {
+        int low = 0;
+        int high = keyText.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(normalized[keyText[mid]], keyOffset[mid], query);
+            if (cmp < 0 || (after && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Best-ranked key in [from, to)
+    private int best(int from, int to) {
+        int n = keyText.length;
+        int result = -1;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                result = result < 0 ? tree[l] : better(result, tree[l]);
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                result = result < 0 ? tree[r] : better(result, tree[r]);
+            }
+        }
+        return result;
+    }
+
+    private int better(int keyA, int keyB) {
+        return keyText[keyA] <= keyText[keyB] ? keyA : keyB;
+    }
+
+    // --- Text handling ---
+
+    // Same folding as the search index, with every run of separators collapsed into a single space.
+    // Returns the text itself when it is already normalized, so no second copy is kept.
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = String.join(" ", SearchTokenizer.tokenize(text));
+        return normalized.equals(text) ? text : normalized;
+    }
+
+    private static boolean isWordStart(String normalized, int i) {
+        return i == 0 || normalized.charAt(i - 1) == ' ';
+    }
+
+    private static int wordStarts(String normalized) {
+        int words = 0;
+        for (int i = 0; i < normalized.length() && i <= MAX_OFFSET; i++) {
+            if (isWordStart(normalized, i)) {
+                words++;
+            }
+        }
+        return words;
+    }
+
+    private static int compareSuffixes(String a, int offsetA, String b, int offsetB) {
+        int lengthA = a.length() - offsetA;
+        int lengthB = b.length() - offsetB;
+        for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+            int cmp = Character.compare(a.charAt(offsetA + i), b.charAt(offsetB + i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(lengthA, lengthB);
+    }
+
+    // 0 when the suffix starts with `query`; otherwise the order of the suffix relative to `query`
+    private static int comparePrefix(String text, int offset, String query) {
+        int length = text.length() - offset;
+        for (int i = 0; i < Math.min(length, query.length()); i++) {
+            int cmp = Character.compare(text.charAt(offset + i), query.charAt(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length >= query.length() ? 0 : -1;
+    }
+
+    // Groups products by field and normalized text: popularity adds up, price keeps the lowest
+    static List<Candidate> candidates(Iterable<SuggestSource> products, Map<Long, Integer> ordersByProduct) {
+        Map<String, Candidate> brands = new HashMap<>();
+        Map<String, Candidate> models = new HashMap<>();
+        for (SuggestSource product : products) {
+            long popularity = ordersByProduct.getOrDefault(product.id(), 0);
+            merge(brands, "brand", product.brand(), product.normalizedBrand(), popularity, product.price());
+            merge(models, "model", product.model(), product.normalizedModel(), popularity, product.price());
+        }
+        List<Candidate> candidates = new ArrayList<>(brands.size() + models.size());
+        candidates.addAll(brands.values());
+        candidates.addAll(models.values());
+        return candidates;
+    }
+
+    private static void merge(Map<String, Candidate> byText, String field, String text, String normalized,
+                              long popularity, double price) {
+        if (normalized.isEmpty()) {
+            return;
+        }
+        Candidate existing = byText.get(normalized);
+        if (existing == null) {
+            byText.put(normalized, new Candidate(text, normalized, field, popularity, price));
+        } else if (popularity > 0 || price < existing.lowestPrice()) {
+            byText.put(normalized, new Candidate(existing.text(), normalized, field,
+                    existing.popularity() + popularity, Math.min(existing.lowestPrice(), price)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+-- Idempotency-Key values of POST /api/v1/orders. The primary key is the unique constraint: one row per key.
+-- A row is claimed (response NULL) before the order is written, and its response is stored in the same
+-- transaction as the order, so a retry either finds the response or finds no order.
+-- request_hash is the SHA-256 of the request body; a key reused with a different body is refused.
+CREATE TABLE idempotency_key (
+                                 key VARCHAR(255) PRIMARY KEY,
+                                 request_hash CHAR(64) NOT NULL,
+                                 response TEXT,
+                                 created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- Expired keys are deleted in created_at order, in batches
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key (created_at);
@@ -0,0 +1,8 @@
+-- Composite indexes backing the keyset (cursor) paginated product listings.
+-- "WHERE category = ? AND id > ? ORDER BY id LIMIT n" can then walk the index from the cursor position
+-- and stop after n rows, instead of collecting and sorting every product in the category.
+CREATE INDEX idx_product_category_id ON product(category, id);
+CREATE INDEX idx_product_category_brand_id ON product(category, brand, id);
+
+-- The single-column category index is a prefix of the composite indexes above, so it is redundant.
+DROP INDEX idx_product_category;
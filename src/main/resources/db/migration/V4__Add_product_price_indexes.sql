@@ -0,0 +1,10 @@
+-- Composite indexes backing the price-sorted listings.
+-- "WHERE category = ? [AND brand = ?] AND (price, id) > (?, ?) AND price <= ? ORDER BY price, id LIMIT n"
+-- starts at the cursor position inside the category (or category and brand) and reads the next n entries
+-- in order, whichever way the listing is sorted (the index is scanned backwards for most expensive first).
+-- id is the tie-breaker that keeps the order, and therefore the cursor, stable among equal prices.
+CREATE INDEX idx_product_category_price_id ON product(category, price, id);
+CREATE INDEX idx_product_category_brand_price_id ON product(category, brand, price, id);
+
+-- Id-ordered and newest-first listings with a price range keep using (category, id) and (category, brand, id):
+-- they walk the index in id order and skip entries outside the range.
@@ -0,0 +1,6 @@
+-- Stock on hand per product. NULL means stock is not tracked for the product (everything created before
+-- this migration, until stock is set), and such products can always be ordered.
+-- The CHECK constraint is the last line of defence against overselling: reservations are made in memory
+-- (see InventoryService), but no flush of their deltas can ever take a row below zero.
+ALTER TABLE product ADD COLUMN stock_quantity INTEGER;
+ALTER TABLE product ADD CONSTRAINT chk_product_stock_quantity_non_negative CHECK (stock_quantity >= 0);
@@ -0,0 +1,4 @@
+-- Backs the customer listing filtered by creation time:
+-- "WHERE created_at >= ? AND created_at < ? AND id > ? ORDER BY id LIMIT n" and the export over the same range.
+-- A narrow range is read from this index instead of walking the primary key past every customer outside it.
+CREATE INDEX idx_customer_created_at_id ON customer(created_at, id);
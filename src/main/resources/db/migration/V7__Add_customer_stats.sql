@@ -0,0 +1,19 @@
+-- Lifetime order aggregates per customer, kept up to date by CustomerOrderService in the same transaction
+-- as each order change (see CustomerStatsService), so reading them is a single primary key lookup.
+-- Rows for customers who ordered before this migration are written by the backfill job
+-- (POST /api/v1/customers/stats/backfill); a customer without a row has no orders counted yet.
+CREATE TABLE customer_stats (
+                                customer_id BIGINT PRIMARY KEY,
+                                order_count BIGINT NOT NULL DEFAULT 0,
+                                total_spend NUMERIC(19, 2) NOT NULL DEFAULT 0,
+                                last_order_at TIMESTAMP WITHOUT TIME ZONE,
+                                CONSTRAINT fk_customer_stats_customer
+                                    FOREIGN KEY(customer_id)
+                                        REFERENCES customer(id)
+                                        ON DELETE CASCADE
+);
+
+-- Finds a customer's latest remaining order when their latest one is deleted, by reading one index entry.
+-- The single-column customer_id index is a prefix of this one, so it is redundant.
+CREATE INDEX idx_customer_order_customer_created_at ON customer_order(customer_id, created_at, id);
+DROP INDEX idx_customer_order_customer_id;
@@ -0,0 +1,6 @@
+-- Units of the product in the order. Until now an order listed a product once per unit, which the
+-- (customer_order_id, product_id) primary key could not represent beyond one unit; now each product
+-- appears once per order with its quantity. Existing rows were single units.
+-- A constant default makes this a catalog-only change: existing rows are not rewritten.
+ALTER TABLE order_item ADD COLUMN quantity INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE order_item ADD CONSTRAINT chk_order_item_quantity_positive CHECK (quantity > 0);
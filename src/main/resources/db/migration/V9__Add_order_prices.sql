@@ -0,0 +1,14 @@
+-- Prices captured when an order is placed, in fixed-point currency (two decimal places, like
+-- customer_stats.total_spend): each line's unit price and the order's total. Reading an order no longer
+-- prices it from the product table, so totals are exact and stay what the customer paid when prices change.
+-- Existing orders were never priced at checkout; they get today's product prices, the closest record there is.
+ALTER TABLE order_item ADD COLUMN unit_price NUMERIC(19, 2);
+UPDATE order_item oi SET unit_price = ROUND(p.price::numeric, 2) FROM product p WHERE p.id = oi.product_id;
+ALTER TABLE order_item ALTER COLUMN unit_price SET NOT NULL;
+ALTER TABLE order_item ADD CONSTRAINT chk_order_item_unit_price_non_negative CHECK (unit_price >= 0);
+
+ALTER TABLE customer_order ADD COLUMN total NUMERIC(19, 2);
+UPDATE customer_order o SET total = COALESCE(
+        (SELECT sum(oi.unit_price * oi.quantity) FROM order_item oi WHERE oi.customer_order_id = o.id), 0);
+ALTER TABLE customer_order ALTER COLUMN total SET NOT NULL;
+ALTER TABLE customer_order ADD CONSTRAINT chk_customer_order_total_non_negative CHECK (total >= 0);
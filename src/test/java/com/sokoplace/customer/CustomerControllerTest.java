@@ -1,6 +1,9 @@
 package com.sokoplace.customer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.common.ResourceVersion;
 import com.sokoplace.customer.dto.CustomerRequest;
 import com.sokoplace.customer.dto.CustomerResponse;
 import jakarta.persistence.EntityNotFoundException;
@@ -14,10 +17,11 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.util.Collections;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
@@ -29,6 +33,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WithMockUser // Simulate an authenticated user for all tests (Spring Security)
 public class CustomerControllerTest {
 
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 6, 1, 12, 30, 15, 123_456_000);
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -48,8 +54,8 @@ public class CustomerControllerTest {
         validCustomerRequest = new CustomerRequest("test", "test@gmail.com");
         // Assuming @Valid on the DTO will handle this.
         invalidCustomerRequest = new CustomerRequest("", "not-a-valid-email");
-        customerResponse1 = new CustomerResponse(1L, "test", "test@gmail.com");
-        customerResponse2 = new CustomerResponse(2L, "test2", "test2@gmail.com");
+        customerResponse1 = new CustomerResponse(1L, "test", "test@gmail.com", UPDATED_AT);
+        customerResponse2 = new CustomerResponse(2L, "test2", "test2@gmail.com", UPDATED_AT);
     }
 
     // --- GET /api/v1/customers/{id} ---
@@ -58,6 +64,7 @@ public class CustomerControllerTest {
     @DisplayName("GET /api/v1/customers/{id} - Should return customer if found")
     void getCustomerById_whenCustomerExists_shouldReturnCustomer() throws Exception {
         Long customerId = 1L;
+        given(customerService.findCustomerVersion(customerId)).willReturn(new ResourceVersion(customerId, UPDATED_AT));
         given(customerService.findCustomerById(customerId)).willReturn(customerResponse1);
 
         mockMvc.perform(get("/api/v1/customers/{id}", customerId))
@@ -74,12 +81,13 @@ public class CustomerControllerTest {
     @DisplayName("GET /api/v1/customers/{id} - Should return 404 Not Found if customer does not exist")
     void getCustomerById_whenCustomerDoesNotExist_shouldReturnNotFound() throws Exception {
         Long customerId = 99L;
-        given(customerService.findCustomerById(customerId)).willThrow(new EntityNotFoundException("Customer not found"));
+        given(customerService.findCustomerVersion(customerId)).willThrow(new EntityNotFoundException("Customer not found"));
 
         mockMvc.perform(get("/api/v1/customers/{id}", customerId))
                 .andExpect(status().isNotFound());
 
-        verify(customerService).findCustomerById(customerId);
+        verify(customerService).findCustomerVersion(customerId);
+        verify(customerService, never()).findCustomerById(customerId);
     }
 
     // --- GET /api/v1/customers/email/{email} ---
@@ -88,6 +96,7 @@ public class CustomerControllerTest {
     @DisplayName("GET /api/v1/customers/email/{email} - Should return customer if found")
     void getCustomerByEmail_whenCustomerExists_shouldReturnCustomer() throws Exception {
         String customerEmail = "test@gmail.com";
+        given(customerService.findCustomerVersionByEmail(customerEmail)).willReturn(new ResourceVersion(1L, UPDATED_AT));
         given(customerService.findCustomerByEmail(customerEmail)).willReturn(customerResponse1);
 
         mockMvc.perform(get("/api/v1/customers/email/{email}", customerEmail))
@@ -104,43 +113,96 @@ public class CustomerControllerTest {
     @DisplayName("GET /api/v1/customers/email/{email} - Should return 404 Not Found if customer does not exist")
     void getCustomerByEmail_whenCustomerDoesNotExist_shouldReturnNotFound() throws Exception {
         String customerEmail = "nonexistent@gmail.com";
-        given(customerService.findCustomerByEmail(customerEmail)).willThrow(new EntityNotFoundException("Customer not found"));
+        given(customerService.findCustomerVersionByEmail(customerEmail)).willThrow(new EntityNotFoundException("Customer not found"));
 
         mockMvc.perform(get("/api/v1/customers/email/{email}", customerEmail))
                 .andExpect(status().isNotFound());
 
-        verify(customerService).findCustomerByEmail(customerEmail);
+        verify(customerService).findCustomerVersionByEmail(customerEmail);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/{id} - Should send ETag and Last-Modified headers")
+    void getCustomerById_shouldSendValidators() throws Exception {
+        ResourceVersion version = new ResourceVersion(1L, UPDATED_AT);
+        given(customerService.findCustomerVersion(1L)).willReturn(version);
+        given(customerService.findCustomerById(1L)).willReturn(customerResponse1);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", version.eTag()))
+                .andExpect(header().dateValue("Last-Modified", version.lastModified() / 1000 * 1000));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/{id} - Should return 304 without loading the customer when the ETag matches")
+    void getCustomerById_whenETagMatches_shouldReturnNotModified() throws Exception {
+        ResourceVersion version = new ResourceVersion(1L, UPDATED_AT);
+        given(customerService.findCustomerVersion(1L)).willReturn(version);
+
+        mockMvc.perform(get("/api/v1/customers/{id}", 1L).header("If-None-Match", version.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", version.eTag()))
+                .andExpect(content().string(""));
+
+        verify(customerService, never()).findCustomerById(anyLong());
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/email/{email} - Should return the customer again once it has changed")
+    void getCustomerByEmail_whenETagIsStale_shouldReturnCustomer() throws Exception {
+        ResourceVersion previous = new ResourceVersion(1L, UPDATED_AT.minusMinutes(5));
+        given(customerService.findCustomerVersionByEmail("test@gmail.com")).willReturn(new ResourceVersion(1L, UPDATED_AT));
+        given(customerService.findCustomerByEmail("test@gmail.com")).willReturn(customerResponse1);
+
+        mockMvc.perform(get("/api/v1/customers/email/{email}", "test@gmail.com").header("If-None-Match", previous.eTag()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("test@gmail.com"));
     }
 
     // --- GET /api/v1/customers ---
 
     @Test
-    @DisplayName("GET /api/v1/customers - Should return a list of all customers")
-    void getAllCustomers_shouldReturnListOfCustomers() throws Exception {
-        List<CustomerResponse> customers = List.of(customerResponse1, customerResponse2);
-        given(customerService.findAllCustomers()).willReturn(customers);
+    @DisplayName("GET /api/v1/customers - Should return the first page and the cursor for the next")
+    void getAllCustomers_shouldReturnFirstPage() throws Exception {
+        CursorPage<CustomerResponse> page = new CursorPage<>(List.of(customerResponse1, customerResponse2), "Mg");
+        given(customerService.findCustomers(null, null, null, 20)).willReturn(page);
 
         mockMvc.perform(get("/api/v1/customers"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.size()").value(2))
-                .andExpect(jsonPath("$[0].name").value("test"))
-                .andExpect(jsonPath("$[1].name").value("test2"));
+                .andExpect(jsonPath("$.items.size()").value(2))
+                .andExpect(jsonPath("$.items[0].name").value("test"))
+                .andExpect(jsonPath("$.items[1].name").value("test2"))
+                .andExpect(jsonPath("$.next").value("Mg"));
 
-        verify(customerService).findAllCustomers();
+        verify(customerService).findCustomers(null, null, null, 20);
     }
 
     @Test
-    @DisplayName("GET /api/v1/customers - Should return an empty list when no customers exist")
-    void getAllCustomers_whenNoCustomers_shouldReturnEmptyList() throws Exception {
-        given(customerService.findAllCustomers()).willReturn(Collections.emptyList());
-
-        mockMvc.perform(get("/api/v1/customers"))
+    @DisplayName("GET /api/v1/customers - Should pass the createdAt range, cursor and size on")
+    void getAllCustomers_withFilters_shouldPassThem() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        given(customerService.findCustomers(from, to, "Mg", 50)).willReturn(new CursorPage<>(List.of(), null));
+
+        mockMvc.perform(get("/api/v1/customers")
+                        .param("createdFrom", "2025-01-01T00:00:00")
+                        .param("createdTo", "2025-02-01T00:00:00")
+                        .param("cursor", "Mg")
+                        .param("size", "50"))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.size()").value(0));
+                .andExpect(jsonPath("$.items.size()").value(0))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
 
-        verify(customerService).findAllCustomers();
+    @Test
+    @DisplayName("GET /api/v1/customers - Should return 400 for an invalid cursor")
+    void getAllCustomers_invalidCursor_shouldReturnBadRequest() throws Exception {
+        given(customerService.findCustomers(null, null, "bad", 20)).willThrow(new BadRequestException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/v1/customers").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
     }
 
     // --- POST /api/v1/customers ---
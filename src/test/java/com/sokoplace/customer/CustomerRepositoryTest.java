@@ -1,5 +1,10 @@
 package com.sokoplace.customer;
 
+import com.sokoplace.customer.dto.CustomerResponse;
+import com.sokoplace.customerOrder.CustomerOrder;
+import com.sokoplace.customerOrder.OrderItem;
+import com.sokoplace.customerOrder.OrderItemId;
+import com.sokoplace.product.Product;
 import com.sokoplace.test.TestcontainersConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -8,7 +13,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -119,4 +128,72 @@ public class CustomerRepositoryTest {
         boolean doesNotExist = customerRepository.existsByEmail("nonexistent@gmail.com");
         assertThat(doesNotExist).isFalse();
     }
+
+    @Test
+    @DisplayName("Should page customers by id, resuming after the given id within the createdAt range")
+    void findResponsesAfter() {
+        // Arrange
+        customerRepository.saveAll(List.of(customer1, customer2));
+        LocalDateTime from = LocalDateTime.now().minusDays(1);
+        LocalDateTime to = LocalDateTime.now().plusDays(1);
+
+        // Act
+        List<CustomerResponse> firstPage = customerRepository.findResponsesAfter(0L, from, to, Limit.of(1));
+        List<CustomerResponse> secondPage = customerRepository.findResponsesAfter(firstPage.get(0).Id(), from, to, Limit.of(1));
+        List<CustomerResponse> outOfRange = customerRepository.findResponsesAfter(0L, to, to.plusDays(1), Limit.of(10));
+
+        // Assert
+        assertThat(firstPage).extracting(CustomerResponse::name).containsExactly("test1");
+        assertThat(secondPage).extracting(CustomerResponse::name).containsExactly("test2");
+        assertThat(outOfRange).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should delete a customer with a single statement and report whether one was deleted")
+    void deleteCustomerById() {
+        // Arrange
+        Customer persistedCustomer = testEntityManager.persistAndFlush(customer1);
+
+        // Act
+        int deleted = customerRepository.deleteCustomerById(persistedCustomer.getId());
+        int deletedAgain = customerRepository.deleteCustomerById(persistedCustomer.getId());
+
+        // Assert
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isZero();
+        assertThat(customerRepository.findById(persistedCustomer.getId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should delete a customer's orders and return the items they had")
+    void deleteOrdersByCustomerId() {
+        // Arrange
+        Customer persistedCustomer = testEntityManager.persist(customer1);
+        Customer otherCustomer = testEntityManager.persist(customer2);
+        Product phone = testEntityManager.persist(new Product(null, "SK001", "Electronics", "Nokia", "3310", 199.00, "Latest feature phone", "/path/to/image.jpg", new ArrayList<>(), null, null));
+        Product charger = testEntityManager.persist(new Product(null, "SK002", "Electronics", "Nokia", "Charger", 19.00, "Charger", "/path/to/image.jpg", new ArrayList<>(), null, null));
+        CustomerOrder order = new CustomerOrder(null, persistedCustomer, null, null, BigDecimal.ZERO, new ArrayList<>());
+        order.getItems().add(new OrderItem(order, phone, 1));
+        order.getItems().add(new OrderItem(order, charger, 2));
+        CustomerOrder emptyOrder = new CustomerOrder(null, persistedCustomer, null, null, BigDecimal.ZERO, new ArrayList<>());
+        CustomerOrder otherOrder = new CustomerOrder(null, otherCustomer, null, null, BigDecimal.ZERO, new ArrayList<>());
+        otherOrder.getItems().add(new OrderItem(otherOrder, phone, 1));
+        testEntityManager.persist(order);
+        testEntityManager.persist(emptyOrder);
+        testEntityManager.persist(otherOrder);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        // Act
+        List<OrderItemId> deleted = customerRepository.deleteOrdersByCustomerId(persistedCustomer.getId()).stream()
+                .map(CustomerRepository.DeletedOrderItem::toId)
+                .toList();
+
+        // Assert - the items of both orders come back, and only the other customer's order is left
+        assertThat(deleted).containsExactlyInAnyOrder(
+                new OrderItemId(order.getId(), phone.getId()),
+                new OrderItemId(order.getId(), charger.getId()));
+        assertThat(testEntityManager.find(CustomerOrder.class, emptyOrder.getId())).isNull();
+        assertThat(testEntityManager.find(CustomerOrder.class, otherOrder.getId())).isNotNull();
+    }
 }
\ No newline at end of file
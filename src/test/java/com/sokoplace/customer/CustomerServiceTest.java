@@ -1,7 +1,12 @@
 package com.sokoplace.customer;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
 import com.sokoplace.customer.dto.CustomerRequest;
 import com.sokoplace.customer.dto.CustomerResponse;
+import com.sokoplace.customer.email.CustomerEmailFilter;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,9 +15,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +35,12 @@ public class CustomerServiceTest {
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CustomerService customerService;
 
@@ -43,16 +56,50 @@ public class CustomerServiceTest {
     }
 
     @Test
-    @DisplayName("Should return all customers")
-    void shouldReturnAllCustomers() {
+    @DisplayName("Should return a page of customers with a cursor to the next page")
+    void shouldReturnPageOfCustomers() {
+        // Given - one extra row comes back, so there is a next page
+        List<CustomerResponse> rows = List.of(
+                new CustomerResponse(1L, "one", "one@gmail.com", null),
+                new CustomerResponse(2L, "two", "two@gmail.com", null),
+                new CustomerResponse(3L, "three", "three@gmail.com", null));
+        given(customerRepository.findResponsesAfter(0L, CustomerService.EARLIEST, CustomerService.LATEST, Limit.of(3)))
+                .willReturn(rows);
+
+        // When
+        CursorPage<CustomerResponse> page = customerService.findCustomers(null, null, null, 2);
+
+        // Then
+        assertThat(page.items()).extracting(CustomerResponse::Id).containsExactly(1L, 2L);
+        assertThat(Cursor.decode(page.next()).id()).isEqualTo(2L);
+        verify(customerRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("Should resume after the cursor within the createdAt range, and end without a next cursor")
+    void shouldResumeAfterCursorWithinRange() {
         // Given
-        given(customerRepository.findAll()).willReturn(Arrays.asList(customer1, customer2));
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        given(customerRepository.findResponsesAfter(2L, from, to, Limit.of(21)))
+                .willReturn(List.of(new CustomerResponse(5L, "five", "five@gmail.com", null)));
+
         // When
-        List<CustomerResponse> customers = customerService.findAllCustomers();
+        CursorPage<CustomerResponse> page = customerService.findCustomers(from, to, new Cursor(2L, null).encode(), 20);
+
         // Then
-        assertThat(customers).isNotNull();
-        assertThat(customers).hasSize(2);
-        verify(customerRepository, times(1)).findAll();
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject an inverted createdAt range and invalid page sizes")
+    void shouldRejectInvalidListingArguments() {
+        LocalDateTime now = LocalDateTime.now();
+        assertThatThrownBy(() -> customerService.findCustomers(now, now.minusDays(1), null, 20))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> customerService.findCustomers(null, null, null, 0))
+                .isInstanceOf(BadRequestException.class);
     }
 
     @Test
@@ -93,7 +140,7 @@ public class CustomerServiceTest {
 
         Customer savedCustomer = new Customer(1L, customerRequest.name(), customerRequest.email(), null, LocalDateTime.now(), LocalDateTime.now());
 
-        given(customerRepository.existsByEmail(customerRequest.email())).willReturn(false);
+        given(customerEmailFilter.mightContain(customerRequest.email())).willReturn(false);
         given(customerRepository.save(any(Customer.class))).willReturn(savedCustomer);
 
         // When
@@ -104,6 +151,39 @@ public class CustomerServiceTest {
         assertThat(createdCustomer.name()).isEqualTo(customerRequest.name());
         assertThat(createdCustomer.Id()).isEqualTo(1L);
         verify(customerRepository).save(any(Customer.class));
+        verify(customerRepository, never()).existsByEmail(anyString());  // ruled out by the filter
+        verify(customerEmailFilter).add(customerRequest.email());
+    }
+
+    @Test
+    @DisplayName("Should check the database when the filter may contain the email, and count a false positive")
+    void createCustomer_filterMaybe_shouldQueryDatabase() {
+        // Given
+        Customer savedCustomer = new Customer(1L, customerRequest.name(), customerRequest.email(), null, null, null);
+        given(customerEmailFilter.mightContain(customerRequest.email())).willReturn(true);
+        given(customerRepository.existsByEmail(customerRequest.email())).willReturn(false);
+        given(customerRepository.save(any(Customer.class))).willReturn(savedCustomer);
+
+        // When
+        customerService.createCustomer(customerRequest);
+
+        // Then
+        verify(customerRepository).existsByEmail(customerRequest.email());
+        verify(customerEmailFilter).recordFalsePositive();
+    }
+
+    @Test
+    @DisplayName("Should reject an email that already exists")
+    void createCustomer_existingEmail_shouldThrow() {
+        // Given
+        given(customerEmailFilter.mightContain(customerRequest.email())).willReturn(true);
+        given(customerRepository.existsByEmail(customerRequest.email())).willReturn(true);
+
+        // When & Then
+        assertThatThrownBy(() -> customerService.createCustomer(customerRequest))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verify(customerRepository, never()).save(any(Customer.class));
+        verify(customerEmailFilter, never()).recordFalsePositive();
     }
 
     @Test
@@ -118,7 +198,7 @@ public class CustomerServiceTest {
 
         given(customerRepository.findById(customerId)).willReturn(Optional.of(customer1));
         // IMPROVEMENT: Mock the save call to return the updated entity
-        given(customerRepository.save(any(Customer.class))).willReturn(updatedEntity);
+        given(customerRepository.saveAndFlush(any(Customer.class))).willReturn(updatedEntity);
 
         // When
         CustomerResponse updatedCustomer = customerService.updateCustomer(customerId, updateRequest);
@@ -130,21 +210,52 @@ public class CustomerServiceTest {
         assertThat(updatedCustomer.Id()).isEqualTo(customerId);
 
         verify(customerRepository).findById(customerId);
-        verify(customerRepository).save(any(Customer.class));
+        verify(customerRepository).saveAndFlush(any(Customer.class));
+    }
+
+    private static CustomerRepository.DeletedOrderItem deletedItem(Long orderId, Long productId) {
+        return new CustomerRepository.DeletedOrderItem() {
+            @Override
+            public Long getCustomerOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+        };
     }
 
     @Test
-    @DisplayName("Should delete customer when found")
+    @DisplayName("Should delete customer when found and publish a delete event per deleted order")
     void deleteCustomer() {
         // Given
         Long customerId = 1L;
-        given(customerRepository.existsById(customerId)).willReturn(true);
-        doNothing().when(customerRepository).deleteById(customerId);
+        given(customerRepository.deleteOrdersByCustomerId(customerId)).willReturn(List.of(
+                deletedItem(10L, 101L), deletedItem(10L, 102L), deletedItem(11L, 101L)));
+        given(customerRepository.deleteCustomerById(customerId)).willReturn(1);
 
         // When
         customerService.deleteCustomer(customerId);
 
-        // Then
-        verify(customerRepository, times(1)).deleteById(customerId);
+        // Then - set-based deletes; the entity (and its orders) is never loaded
+        verify(customerRepository, times(1)).deleteCustomerById(customerId);
+        verify(customerRepository, never()).findById(customerId);
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(10L, List.of(101L, 102L), List.of()));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(11L, List.of(101L), List.of()));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should throw EntityNotFoundException when deleting a missing customer")
+    void deleteCustomer_whenNotFound_shouldThrow() {
+        // Given
+        given(customerRepository.deleteCustomerById(99L)).willReturn(0);
+
+        // When & Then
+        assertThatThrownBy(() -> customerService.deleteCustomer(99L))
+                .isInstanceOf(EntityNotFoundException.class);
+        verifyNoInteractions(eventPublisher);
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.sokoplace.customer.bulk;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// No printing of results: the streamed body commits the response (and Spring Security adds its headers)
+// on the async thread, while the printer would still be reading the headers on the test thread.
+@WebMvcTest(CustomerBulkController.class)
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@WithMockUser
+public class CustomerBulkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CustomerExportService customerExportService;
+
+    @MockitoBean
+    private CustomerPurgeService customerPurgeService;
+
+    // --- GET /api/v1/customers/export ---
+
+    @Test
+    @DisplayName("GET /api/v1/customers/export - Should stream the customers created in the range as NDJSON")
+    void export_shouldStreamNdjson() throws Exception {
+        willAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("{\"Id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).given(customerExportService).exportCustomers(eq(LocalDateTime.of(2025, 1, 1, 0, 0)), isNull(), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/customers/export").param("createdFrom", "2025-01-01T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"customers.ndjson\""))
+                .andExpect(content().string("{\"Id\":1}\n"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/export - Should gzip the stream when the client prefers it by q-value")
+    void export_withGzipQuality_shouldCompress() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/customers/export").header("Accept-Encoding", "identity;q=0.1, gzip;q=0.9"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/export - Should not gzip the stream when the client refuses it with q=0")
+    void export_withGzipQualityZero_shouldNotCompress() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/customers/export").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/export - Should return 400 before streaming for an inverted range")
+    void export_invertedRange_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/customers/export")
+                        .param("createdFrom", "2025-02-01T00:00:00")
+                        .param("createdTo", "2025-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(customerExportService);
+    }
+
+    // --- DELETE /api/v1/customers/{id}?purge=true ---
+
+    @Test
+    @DisplayName("DELETE /api/v1/customers/{id}?purge=true - Should queue a background purge and return 202")
+    void purge_shouldReturnAccepted() throws Exception {
+        mockMvc.perform(delete("/api/v1/customers/{id}", 7L).param("purge", "true").with(csrf()))
+                .andExpect(status().isAccepted());
+
+        verify(customerPurgeService).purge(7L);
+    }
+
+    @Test
+    @DisplayName("DELETE /api/v1/customers/{id}?purge=true - Should return 404 for a missing customer")
+    void purge_missingCustomer_shouldReturnNotFound() throws Exception {
+        willThrow(new EntityNotFoundException("Customer not found")).given(customerPurgeService).purge(99L);
+
+        mockMvc.perform(delete("/api/v1/customers/{id}", 99L).param("purge", "true").with(csrf()))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,104 @@
+package com.sokoplace.customer.bulk;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customer.CustomerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerExportService exportService;
+
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    @BeforeEach
+    void setup() {
+        exportService = new CustomerExportService(jdbcTemplate, transactionManager, Jackson2ObjectMapperBuilder.json().build(), 500);
+    }
+
+    // Feeds `rows` customers through the row callback, the way JdbcTemplate walks a result set
+    private void givenCustomers(int rows) throws Exception {
+        willAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            given(connection.prepareStatement(anyString(), anyInt(), anyInt())).willReturn(statement);
+            invocation.getArgument(0, PreparedStatementCreator.class).createPreparedStatement(connection);
+
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long id = 1; id <= rows; id++) {
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getLong("id")).willReturn(id);
+                given(resultSet.getString("name")).willReturn("customer" + id);
+                given(resultSet.getString("email")).willReturn("customer" + id + "@gmail.com");
+                given(resultSet.getTimestamp("updated_at")).willReturn(Timestamp.valueOf("2025-06-01 12:30:15"));
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).given(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("Should write one JSON object per line from a cursor, bounded by the createdAt range")
+    void shouldWriteNdjsonFromCursor() throws Exception {
+        givenCustomers(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        long exported = exportService.exportCustomers(from, null, out);
+
+        assertThat(exported).isEqualTo(2);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"Id\":1,\"name\":\"customer1\",\"email\":\"customer1@gmail.com\"");
+        assertThat(lines[1]).startsWith("{\"Id\":2,");
+        assertThat(lines[2]).isEmpty();
+        verify(statement).setTimestamp(1, Timestamp.valueOf(from));
+        verify(statement).setTimestamp(2, Timestamp.valueOf(CustomerService.LATEST));
+        verify(statement).setFetchSize(500);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Should reject an inverted range without touching the database")
+    void shouldRejectInvertedRange() {
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThatThrownBy(() -> exportService.exportCustomers(now, now.minusDays(1), new ByteArrayOutputStream()))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
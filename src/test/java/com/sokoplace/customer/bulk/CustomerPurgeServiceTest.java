@@ -0,0 +1,134 @@
+package com.sokoplace.customer.bulk;
+
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerPurgeServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private CustomerPurgeService purgeService;
+
+    @BeforeEach
+    void setup() {
+        purgeService = new CustomerPurgeService(jdbcTemplate, transactionManager, eventPublisher, 2, 4);
+    }
+
+    // Each call of the orders delete with this limit hands the next batch's rows to the row handler:
+    // {orderId, productId}, with productId 0 for an order without items
+    private void givenDeletedOrders(int limit, long[][]... batches) {
+        AtomicInteger call = new AtomicInteger();
+        willAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long[] row : batches[call.getAndIncrement()]) {
+                ResultSet rs = mock(ResultSet.class);
+                given(rs.getLong(1)).willReturn(row[0]);
+                given(rs.getLong(2)).willReturn(row[1]);
+                given(rs.wasNull()).willReturn(row[1] == 0);
+                handler.processRow(rs);
+            }
+            return null;
+        }).given(jdbcTemplate).query(contains("customer_order"), any(RowCallbackHandler.class), eq(7L), eq(limit));
+    }
+
+    @Test
+    @DisplayName("Should delete the orders in batches, each in its own transaction, then the customer")
+    void shouldPurgeOrdersInBatchesThenCustomer() throws Exception {
+        // Given - five orders, deleted two at a time, and one placed while the purge ran
+        given(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(7L))).willReturn(true);
+        givenDeletedOrders(2,
+                new long[][] {{1, 101}, {1, 102}, {2, 101}},
+                new long[][] {{3, 0}, {4, 103}},
+                new long[][] {{5, 101}});
+        givenDeletedOrders(Integer.MAX_VALUE, new long[][] {{6, 102}});
+        given(jdbcTemplate.update(contains("FROM customer WHERE"), eq(7L))).willReturn(1);
+
+        // When
+        long orders = purgeService.purge(7L).get(5, TimeUnit.SECONDS);
+
+        // Then - an event per deleted order with items, for the read models built from order_item
+        assertThat(orders).isEqualTo(6);
+        var order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate, times(3)).query(contains("customer_order"), any(RowCallbackHandler.class), eq(7L), eq(2));
+        order.verify(jdbcTemplate).query(contains("customer_order"), any(RowCallbackHandler.class), eq(7L), eq(Integer.MAX_VALUE));
+        order.verify(jdbcTemplate).update(contains("FROM customer WHERE"), eq(7L));
+        verify(transactionManager, times(4)).commit(any());
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(1L, List.of(101L, 102L), List.of()));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(2L, List.of(101L), List.of()));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(4L, List.of(103L), List.of()));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(5L, List.of(101L), List.of()));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(6L, List.of(102L), List.of()));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should throw EntityNotFoundException before queueing a purge of a missing customer")
+    void shouldRejectMissingCustomer() {
+        given(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(99L))).willReturn(false);
+
+        assertThatThrownBy(() -> purgeService.purge(99L)).isInstanceOf(EntityNotFoundException.class);
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should return the running purge when the same customer is purged again")
+    void shouldJoinRunningPurge() throws Exception {
+        // Given - the first purge blocks in its first batch until released
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        given(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(7L))).willReturn(true);
+        willAnswer(invocation -> {
+            release.get(5, TimeUnit.SECONDS);
+            return null;
+        }).given(jdbcTemplate).query(contains("customer_order"), any(RowCallbackHandler.class), eq(7L), eq(2));
+
+        // When
+        CompletableFuture<Long> first = purgeService.purge(7L);
+        CompletableFuture<Long> second = purgeService.purge(7L);
+        release.complete(null);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isZero();
+        verify(jdbcTemplate, times(1)).query(contains("customer_order"), any(RowCallbackHandler.class), eq(7L), eq(2));
+    }
+}
@@ -0,0 +1,41 @@
+package com.sokoplace.customer.email;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BloomFilterTest {
+
+    @Test
+    @DisplayName("Should never miss an added value and stay near the configured false-positive rate")
+    void shouldHaveNoFalseNegativesAndBoundedFalsePositives() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("customer" + i + "@gmail.com");
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(filter.mightContain("customer" + i + "@gmail.com")).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("prospect" + i + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+        assertThat(filter.estimatedFalsePositiveRate()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    @DisplayName("Should report a rising false-positive rate when filled past its capacity")
+    void shouldReportOverfilling() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("customer" + i + "@gmail.com");
+        }
+
+        assertThat(filter.estimatedFalsePositiveRate()).isGreaterThan(0.1);
+    }
+}
@@ -0,0 +1,114 @@
+package com.sokoplace.customer.email;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerEmailFilterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerEmailFilter customerEmailFilter;
+
+    @BeforeEach
+    void setup() {
+        customerEmailFilter = new CustomerEmailFilter(jdbcTemplate, transactionManager, 0.01, 1_000, Duration.ofHours(6));
+    }
+
+    // Feeds the emails through the row callback like the rebuild query; `duringRead` runs halfway through
+    private void givenCustomerEmails(List<String> emails, Runnable duringRead) {
+        given(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).willReturn((long) emails.size());
+        willAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            given(connection.prepareStatement(anyString())).willReturn(mock(PreparedStatement.class));
+            invocation.getArgument(0, PreparedStatementCreator.class).createPreparedStatement(connection);
+
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 0; i < emails.size(); i++) {
+                if (i == emails.size() / 2) {
+                    duringRead.run();
+                }
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getString(1)).willReturn(emails.get(i));
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).given(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("Should answer maybe for every email until the first build")
+    void shouldSayMaybeBeforeFirstBuild() {
+        assertThat(customerEmailFilter.mightContain("new@gmail.com")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should contain every stored email, normalized, and emails saved during or after a rebuild")
+    void shouldContainStoredAndAddedEmails() {
+        // Given
+        givenCustomerEmails(List.of("one@gmail.com", "Two@Gmail.com ", "three@gmail.com"),
+                () -> customerEmailFilter.add("during@gmail.com"));
+
+        // When
+        customerEmailFilter.rebuild();
+        customerEmailFilter.add("after@gmail.com");
+
+        // Then
+        assertThat(customerEmailFilter.mightContain("one@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightContain("two@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightContain(" THREE@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightContain("during@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightContain("after@gmail.com")).isTrue();
+        assertThat(customerEmailFilter.mightContain("someone.else@gmail.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should publish checks, skipped queries, false-positive rates and rebuild timing")
+    void shouldPublishMetrics() {
+        // Given
+        givenCustomerEmails(List.of("one@gmail.com"), () -> { });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        customerEmailFilter.bindTo(registry);
+        customerEmailFilter.rebuild();
+
+        // When - one email ruled out, one "maybe" that the database didn't have
+        customerEmailFilter.mightContain("new@gmail.com");
+        customerEmailFilter.mightContain("one@gmail.com");
+        customerEmailFilter.recordFalsePositive();
+
+        // Then
+        assertThat(registry.get("customers.email.filter.checks").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("customers.email.filter.queries.skipped").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("customers.email.filter.false.positive.rate").gauge().value()).isEqualTo(0.5);
+        assertThat(registry.get("customers.email.filter.false.positive.rate.estimated").gauge().value()).isLessThan(0.01);
+        assertThat(registry.get("customers.email.filter.rebuilds").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("customers.email.filter.rebuild.duration").timeGauge().value()).isPositive();
+    }
+}
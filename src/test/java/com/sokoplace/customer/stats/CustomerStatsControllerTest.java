@@ -0,0 +1,68 @@
+package com.sokoplace.customer.stats;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(CustomerStatsController.class)
+@WithMockUser
+public class CustomerStatsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private CustomerStatsService customerStatsService;
+
+    // --- GET /api/v1/customers/{id}/stats ---
+
+    @Test
+    @DisplayName("GET /api/v1/customers/{id}/stats - Should return the customer's lifetime aggregates")
+    void getCustomerStats_shouldReturnStats() throws Exception {
+        given(customerStatsService.findStats(1L)).willReturn(
+                new CustomerStatsResponse(1L, 3, new BigDecimal("1045.50"), LocalDateTime.of(2025, 6, 1, 12, 0)));
+
+        mockMvc.perform(get("/api/v1/customers/{id}/stats", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.customerId").value(1))
+                .andExpect(jsonPath("$.orderCount").value(3))
+                .andExpect(jsonPath("$.totalSpend").value(1045.50))
+                .andExpect(jsonPath("$.lastOrderAt").value("2025-06-01T12:00:00"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/customers/{id}/stats - Should return 404 for a missing customer")
+    void getCustomerStats_missingCustomer_shouldReturnNotFound() throws Exception {
+        given(customerStatsService.findStats(99L)).willThrow(new EntityNotFoundException("Customer not found"));
+
+        mockMvc.perform(get("/api/v1/customers/{id}/stats", 99L))
+                .andExpect(status().isNotFound());
+    }
+
+    // --- POST /api/v1/customers/stats/backfill ---
+
+    @Test
+    @DisplayName("POST /api/v1/customers/stats/backfill - Should start the backfill and return 202")
+    void backfill_shouldReturnAccepted() throws Exception {
+        mockMvc.perform(post("/api/v1/customers/stats/backfill").with(csrf()))
+                .andExpect(status().isAccepted());
+
+        verify(customerStatsService).backfill();
+    }
+}
@@ -0,0 +1,145 @@
+package com.sokoplace.customer.stats;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerStatsServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerStatsService customerStatsService;
+
+    private final LocalDateTime orderedAt = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @BeforeEach
+    void setup() {
+        customerStatsService = new CustomerStatsService(jdbcTemplate, transactionManager, 2);
+    }
+
+    @Test
+    @DisplayName("Should lock the customer, then add the order to their row")
+    void shouldAddPlacedOrder() {
+        // When
+        customerStatsService.orderPlaced(1L, new BigDecimal("0.30"), orderedAt);
+
+        // Then
+        var order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).queryForList(contains("FOR KEY SHARE"), eq(Long.class), eq(1L));
+        order.verify(jdbcTemplate).update(contains("ON CONFLICT"), eq(1L), eq(new BigDecimal("0.30")), eq(Timestamp.valueOf(orderedAt)));
+    }
+
+    @Test
+    @DisplayName("Should add a batch of orders per customer, in customer id order, with one statement")
+    void shouldAddPlacedOrdersPerCustomer() throws Exception {
+        // Given - three orders of customer 3 and 1; the statement is built on a mocked connection
+        Connection connection = mock(Connection.class);
+        given(connection.prepareStatement(anyString())).willReturn(mock(PreparedStatement.class));
+
+        // When
+        customerStatsService.ordersPlaced(List.of(3L, 1L, 3L),
+                List.of(new BigDecimal("10.00"), new BigDecimal("5.50"), new BigDecimal("2.25")), orderedAt);
+
+        // Then
+        ArgumentCaptor<PreparedStatementCreator> upsert = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).update(upsert.capture());
+        upsert.getValue().createPreparedStatement(connection);
+        verify(connection).prepareStatement(contains("order_count = customer_stats.order_count + EXCLUDED.order_count"));
+        verify(connection).createArrayOf("bigint", new Long[]{1L, 3L});
+        verify(connection).createArrayOf("bigint", new Long[]{1L, 2L});
+        verify(connection).createArrayOf("numeric", new BigDecimal[]{new BigDecimal("5.50"), new BigDecimal("12.25")});
+    }
+
+    @Test
+    @DisplayName("Should apply the difference in spend when an order changes, and skip orders whose total is unchanged")
+    void shouldApplySpendDifference() {
+        // When
+        customerStatsService.orderChanged(1L, new BigDecimal("498.00"), new BigDecimal("149.00"));
+        customerStatsService.orderChanged(1L, new BigDecimal("498.00"), new BigDecimal("498.0"));
+
+        // Then
+        verify(jdbcTemplate, times(1)).update(contains("total_spend +"), eq(new BigDecimal("-349.00")), eq(1L));
+        verify(jdbcTemplate, times(1)).queryForList(contains("FOR KEY SHARE"), eq(Long.class), eq(1L));
+    }
+
+    @Test
+    @DisplayName("Should subtract a removed order, excluding it when looking up the latest remaining order")
+    void shouldRemoveOrder() {
+        // When
+        customerStatsService.orderRemoved(1L, 7L, new BigDecimal("498.00"), orderedAt);
+
+        // Then
+        verify(jdbcTemplate).update(contains("order_count - 1"),
+                eq(new BigDecimal("498.00")), eq(Timestamp.valueOf(orderedAt)), eq(1L), eq(7L), eq(1L));
+    }
+
+    @Test
+    @DisplayName("Should return zero aggregates for a customer without a row, and 404 for a missing customer")
+    @SuppressWarnings("unchecked")
+    void shouldHandleMissingRows() {
+        // Given
+        given(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).willReturn(List.of());
+        given(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(99L))).willReturn(List.of());
+        given(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(1L))).willReturn(true);
+        given(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(99L))).willReturn(false);
+
+        // When
+        CustomerStatsResponse stats = customerStatsService.findStats(1L);
+
+        // Then
+        assertThat(stats).isEqualTo(new CustomerStatsResponse(1L, 0, new BigDecimal("0.00"), null));
+        assertThatThrownBy(() -> customerStatsService.findStats(99L)).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should backfill the customers batch by batch, each locked and recomputed in its own transaction")
+    void shouldBackfillInBatches() throws Exception {
+        // Given - three customers, two per batch
+        given(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), eq(0L), eq(2))).willReturn(List.of(1L, 2L));
+        given(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), eq(2L), eq(2))).willReturn(List.of(5L));
+        given(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), eq(5L), eq(2))).willReturn(List.of());
+
+        // When
+        long customers = customerStatsService.backfill().get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(customers).isEqualTo(3);
+        verify(jdbcTemplate).update(contains("GROUP BY c.id"), eq(1L), eq(2L), eq(1L), eq(2L));
+        verify(jdbcTemplate).update(contains("GROUP BY c.id"), eq(5L), eq(5L), eq(5L), eq(5L));
+        verify(transactionManager, times(3)).commit(any());
+    }
+}
@@ -1,9 +1,13 @@
 package com.sokoplace.customerOrder;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.CursorPage;
 import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
 import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
-import com.sokoplace.product.Product;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
+import com.sokoplace.customerOrder.dto.OrderItemResponse;
+import com.sokoplace.product.inventory.InsufficientStockException;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -14,10 +18,12 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import java.util.ArrayList;
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -37,6 +43,12 @@ public class CustomerOrderControllerTest {
     @MockitoBean // Use @MockitoBean to mock the service layer in a @WebMvcTest
     private CustomerOrderService orderService;
 
+    @MockitoBean
+    private OrderIngestService orderIngestService;
+
+    @MockitoBean
+    private OrderIdempotencyService orderIdempotencyService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -47,20 +59,19 @@ public class CustomerOrderControllerTest {
 
     @BeforeEach
     void setup() {
-        // Assuming a Product class/record with a constructor for test data setup.
-        Product product1 = new Product(101L, "SK101", "Electronics", "Samsung", "A15", 299.00, "Latest smartphone", "/path/to/image.jpg", new ArrayList<>(), null, null);
-        Product product2 = new Product(102L, "SK102", "Electronics", "Nokia", "3310", 199.00, "Latest feature phone", "/path/to/image.jpg", new ArrayList<>(), null, null);
-        List<Product> products = List.of(product1, product2);
+        // Order lines as returned by the service, with the prices captured when they were ordered
+        OrderItemResponse item1 = new OrderItemResponse(101L, new BigDecimal("299.00"), 2, new BigDecimal("598.00"));
+        OrderItemResponse item2 = new OrderItemResponse(102L, new BigDecimal("199.00"), 1, new BigDecimal("199.00"));
 
-        // A valid request to create/update an order
-        validOrderRequest = new CustomerOrderRequest(1L, products);
+        // A valid request to create/update an order: product ids and quantities only
+        validOrderRequest = new CustomerOrderRequest(1L, List.of(new OrderItemRequest(101L, 2), new OrderItemRequest(102L, 1)));
 
         // An invalid request that should be caught by @Valid
         invalidOrderRequest = new CustomerOrderRequest(null, Collections.emptyList());
 
         // Sample responses returned from the mocked service
-        orderResponse1 = new CustomerOrderResponse(1L, 1L, "Test Customer", products, 2, 1225.50);
-        orderResponse2 = new CustomerOrderResponse(2L, 2L, "Another Customer", List.of(product1), 1, 1200.50);
+        orderResponse1 = new CustomerOrderResponse(1L, 1L, "Test Customer", List.of(item1, item2), 3, new BigDecimal("797.00"));
+        orderResponse2 = new CustomerOrderResponse(2L, 2L, "Another Customer", List.of(item2), 1, new BigDecimal("199.00"));
     }
 
     // --- POST /api/v1/orders ---
@@ -68,21 +79,79 @@ public class CustomerOrderControllerTest {
     @Test
     @DisplayName("POST /api/v1/orders - Should create a new order with valid data")
     void createOrder_withValidRequest_shouldReturnCreated() throws Exception {
-        given(orderService.createOrder(any(CustomerOrderRequest.class))).willReturn(orderResponse1);
+        given(orderIngestService.submit(any(CustomerOrderRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(orderResponse1));
 
-        mockMvc.perform(post("/api/v1/orders")
+        MvcResult result = mockMvc.perform(post("/api/v1/orders")
                         .with(csrf()) // Add CSRF token for security
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isCreated())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.Id").value(orderResponse1.Id()))
                 .andExpect(jsonPath("$.customerId").value(orderResponse1.customerId()))
                 .andExpect(jsonPath("$.customerName").value(orderResponse1.customerName()))
                 .andExpect(jsonPath("$.totalItems").value(orderResponse1.totalItems()))
-                .andExpect(jsonPath("$.totalPrice").value(orderResponse1.totalPrice()));
+                .andExpect(jsonPath("$.totalPrice").value(797.00))
+                .andExpect(jsonPath("$.orderItems[0].quantity").value(2))
+                .andExpect(jsonPath("$.orderItems[0].lineTotal").value(598.00));
+
+        verify(orderIngestService).submit(any(CustomerOrderRequest.class));
+        verifyNoInteractions(orderIdempotencyService);
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/orders - Should create the order through the idempotency keys when a key is sent")
+    void createOrder_withIdempotencyKey_shouldUseKey() throws Exception {
+        given(orderIdempotencyService.submit(eq("checkout-42"), any(CustomerOrderRequest.class)))
+                .willReturn(CompletableFuture.completedFuture(orderResponse1));
+
+        MvcResult result = mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .header("Idempotency-Key", "checkout-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.Id").value(orderResponse1.Id()));
+
+        verifyNoInteractions(orderIngestService);
+    }
 
-        verify(orderService).createOrder(any(CustomerOrderRequest.class));
+    @Test
+    @DisplayName("POST /api/v1/orders - Should return 409 Conflict while the key's first request runs elsewhere")
+    void createOrder_whenKeyInUse_shouldReturnConflict() throws Exception {
+        given(orderIdempotencyService.submit(eq("checkout-42"), any(CustomerOrderRequest.class)))
+                .willThrow(new IdempotencyKeyInUseException());
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .header("Idempotency-Key", "checkout-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("REQUEST WITH THIS IDEMPOTENCY KEY IN PROGRESS"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/orders - Should return 400 Bad Request for a line with a quantity below 1")
+    void createOrder_withZeroQuantity_shouldReturnBadRequest() throws Exception {
+        CustomerOrderRequest request = new CustomerOrderRequest(1L, List.of(new OrderItemRequest(101L, 0)));
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(orderIngestService);
     }
 
     @Test
@@ -95,7 +164,51 @@ public class CustomerOrderControllerTest {
                         .content(objectMapper.writeValueAsString(invalidOrderRequest)))
                 .andExpect(status().isBadRequest());
 
-        verifyNoInteractions(orderService);
+        verifyNoInteractions(orderIngestService);
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/orders - Should return 409 Conflict when a product is out of stock")
+    void createOrder_whenOutOfStock_shouldReturnConflict() throws Exception {
+        given(orderIngestService.submit(any(CustomerOrderRequest.class))).willThrow(new InsufficientStockException(101L));
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("INSUFFICIENT STOCK"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/orders - Should return 429 Too Many Requests when the order queue is full")
+    void createOrder_whenQueueFull_shouldReturnTooManyRequests() throws Exception {
+        given(orderIngestService.submit(any(CustomerOrderRequest.class))).willThrow(new OrderQueueFullException());
+
+        mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.error").value("TOO MANY ORDERS - TRY AGAIN LATER"));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/orders - Should return 404 when the queued order's customer does not exist")
+    void createOrder_whenQueuedOrderFails_shouldReturnError() throws Exception {
+        given(orderIngestService.submit(any(CustomerOrderRequest.class)))
+                .willReturn(CompletableFuture.failedFuture(new EntityNotFoundException("Customer not found")));
+
+        MvcResult result = mockMvc.perform(post("/api/v1/orders")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validOrderRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
     }
 
     // --- PUT /api/v1/orders/{id} ---
@@ -167,33 +280,45 @@ public class CustomerOrderControllerTest {
     // --- GET /api/v1/orders/customer/{id} ---
 
     @Test
-    @DisplayName("GET /api/v1/orders/customer/{id} - Should return list of orders for a customer")
-    void getOrdersByCustomerId_whenOrdersExist_shouldReturnListOfOrders() throws Exception {
+    @DisplayName("GET /api/v1/orders/customer/{id} - Should return the first page of orders and the cursor for the next")
+    void getOrdersByCustomerId_whenOrdersExist_shouldReturnPage() throws Exception {
         Long customerId = 1L;
-        List<CustomerOrderResponse> customerOrders = List.of(orderResponse1, orderResponse2);
-        given(orderService.findOrdersByCustomerId(customerId)).willReturn(customerOrders);
+        CursorPage<CustomerOrderResponse> page = new CursorPage<>(List.of(orderResponse1, orderResponse2), "Mg");
+        given(orderService.findOrdersByCustomerId(customerId, null, 20)).willReturn(page);
 
         mockMvc.perform(get("/api/v1/orders/customer/{id}", customerId))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.size()").value(2))
-                .andExpect(jsonPath("$[0].Id").value(orderResponse1.Id()));
+                .andExpect(jsonPath("$.items.size()").value(2))
+                .andExpect(jsonPath("$.items[0].Id").value(orderResponse1.Id()))
+                .andExpect(jsonPath("$.next").value("Mg"));
 
-        verify(orderService).findOrdersByCustomerId(customerId);
+        verify(orderService).findOrdersByCustomerId(customerId, null, 20);
     }
 
     @Test
-    @DisplayName("GET /api/v1/orders/customer/{id} - Should return empty list if customer has no orders")
-    void getOrdersByCustomerId_whenNoOrdersExist_shouldReturnEmptyList() throws Exception {
+    @DisplayName("GET /api/v1/orders/customer/{id} - Should pass the cursor and size on")
+    void getOrdersByCustomerId_withCursor_shouldReturnNextPage() throws Exception {
         Long customerId = 3L;
-        given(orderService.findOrdersByCustomerId(customerId)).willReturn(Collections.emptyList());
+        given(orderService.findOrdersByCustomerId(customerId, "Mg", 50)).willReturn(new CursorPage<>(List.of(), null));
 
-        mockMvc.perform(get("/api/v1/orders/customer/{id}", customerId))
+        mockMvc.perform(get("/api/v1/orders/customer/{id}", customerId)
+                        .param("cursor", "Mg")
+                        .param("size", "50"))
                 .andExpect(status().isOk())
-                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.size()").value(0));
+                .andExpect(jsonPath("$.items.size()").value(0))
+                .andExpect(jsonPath("$.next").isEmpty());
+
+        verify(orderService).findOrdersByCustomerId(customerId, "Mg", 50);
+    }
 
-        verify(orderService).findOrdersByCustomerId(customerId);
+    @Test
+    @DisplayName("GET /api/v1/orders/customer/{id} - Should return 400 for an invalid cursor")
+    void getOrdersByCustomerId_withInvalidCursor_shouldReturnBadRequest() throws Exception {
+        given(orderService.findOrdersByCustomerId(1L, "bad", 20)).willThrow(new BadRequestException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/v1/orders/customer/{id}", 1L).param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
     }
 
     // --- DELETE /api/v1/orders/{id} ---
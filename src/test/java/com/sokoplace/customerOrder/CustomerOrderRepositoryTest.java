@@ -14,6 +14,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
 
 // import java.time.LocalDateTime;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -51,8 +52,8 @@ public class CustomerOrderRepositoryTest {
         customer = new Customer(null, "Test Customer", "customer@test.com", null, null, null);
         testEntityManager.persistAndFlush(customer);
 
-        order1 = new CustomerOrder(null,  customer, null, null, new ArrayList<>());
-        order2 = new CustomerOrder(null,  customer, null, null, new ArrayList<>());
+        order1 = new CustomerOrder(null,  customer, null, null, BigDecimal.ZERO, new ArrayList<>());
+        order2 = new CustomerOrder(null,  customer, null, null, BigDecimal.ZERO, new ArrayList<>());
     }
 
     @Test
@@ -117,14 +118,14 @@ public class CustomerOrderRepositoryTest {
         Thread.sleep(10);
 
         // Act
-        persistedOrder.getProducts().add(product);
+        persistedOrder.getItems().add(new OrderItem(persistedOrder, product, 1));
         CustomerOrder updatedOrder = orderRepository.saveAndFlush(persistedOrder);
 
         // Assert
         CustomerOrder reloadedOrder = testEntityManager.find(CustomerOrder.class, updatedOrder.getId());
         assertThat(reloadedOrder).isNotNull();
-        assertThat(reloadedOrder.getProducts()).hasSize(1);
-        assertThat(reloadedOrder.getProducts().get(0).getBrand()).isEqualTo("Nokia");
+        assertThat(reloadedOrder.getItems()).hasSize(1);
+        assertThat(reloadedOrder.getItems().get(0).getProduct().getBrand()).isEqualTo("Nokia");
         // assertThat(reloadedOrder.getUpdatedAt()).isAfter(initialUpdateTime);
     }
 
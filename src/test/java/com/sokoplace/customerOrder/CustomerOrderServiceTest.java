@@ -1,10 +1,19 @@
 package com.sokoplace.customerOrder;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
 import com.sokoplace.customer.Customer;
 import com.sokoplace.customer.CustomerRepository;
+import com.sokoplace.customer.CustomerService;
+import com.sokoplace.customer.stats.CustomerStatsService;
 import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
 import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
 import com.sokoplace.product.Product;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.inventory.InsufficientStockException;
+import com.sokoplace.product.inventory.InventoryService;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,17 +22,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
@@ -36,12 +51,29 @@ public class CustomerOrderServiceTest {
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private CustomerStatsService customerStatsService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private CustomerOrderService orderService;
 
     private CustomerOrder order1;
     private CustomerOrderRequest orderRequest;
     private Customer customer;
+    private Product product1;
+    private Product product2;
 
     @BeforeEach
     void setup() {
@@ -49,14 +81,17 @@ public class CustomerOrderServiceTest {
         customer = new Customer(1L, "Test Customer", "test@customer.com", null, LocalDateTime.now(), LocalDateTime.now());
 
         // Setup products to be included in orders
-        Product product1 = new Product(101L, "SK101", "Electronics", "Samsung", "A15", 299.00, "Latest smartphone", "/path/to/image.jpg", new ArrayList<>(), null, null);
-        Product product2 = new Product(102L, "SK102", "Electronics", "Nokia", "3310", 199.00, "Latest feature phone", "/path/to/image.jpg", new ArrayList<>(), null, null);
+        product1 = new Product(101L, "SK101", "Electronics", "Samsung", "A15", 299.00, "Latest smartphone", "/path/to/image.jpg", new ArrayList<>(), null, null);
+        product2 = new Product(102L, "SK102", "Electronics", "Nokia", "3310", 199.00, "Latest feature phone", "/path/to/image.jpg", new ArrayList<>(), null, null);
 
         // Set up an order request DTO for create/update operations
-        orderRequest = new CustomerOrderRequest(customer.getId(), Arrays.asList(product1, product2));
+        orderRequest = new CustomerOrderRequest(customer.getId(),
+                List.of(new OrderItemRequest(101L, 1), new OrderItemRequest(102L, 1)));
 
-        // Set up a complete order entity for retrieval tests
-        order1 = new CustomerOrder(1L,  customer, LocalDateTime.now(), LocalDateTime.now(), Arrays.asList(product1, product2));
+        // Set up a complete order entity for retrieval tests, one unit of each product
+        order1 = new CustomerOrder(1L,  customer, LocalDateTime.now(), LocalDateTime.now(), new BigDecimal("498.00"), new ArrayList<>());
+        order1.getItems().add(new OrderItem(order1, product1, 1));
+        order1.getItems().add(new OrderItem(order1, product2, 1));
     }
 
     @Test
@@ -64,6 +99,7 @@ public class CustomerOrderServiceTest {
     void shouldCreateOrder() {
         // Given
         given(customerRepository.findById(customer.getId())).willReturn(Optional.of(customer));
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(product1, product2));
         given(orderRepository.save(any(CustomerOrder.class))).willReturn(order1);
 
         // When
@@ -75,13 +111,90 @@ public class CustomerOrderServiceTest {
         assertThat(createdOrder.customerId()).isEqualTo(customer.getId());
         assertThat(createdOrder.customerName()).isEqualTo(customer.getName());
         assertThat(createdOrder.totalItems()).isEqualTo(2);
-        assertThat(createdOrder.totalPrice()).isEqualTo(498.00);
+        assertThat(createdOrder.totalPrice()).isEqualTo(new BigDecimal("498.00"));
         assertThat(createdOrder.orderItems()).hasSize(2);
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(1L, List.of(), List.of(101L, 102L)));
+        verify(inventoryService).hold(Map.of(101L, 1, 102L, 1));
+        verify(transactionManager).commit(any());
+        verify(customerStatsService).orderPlaced(customer.getId(), new BigDecimal("498.00"), order1.getCreatedAt());
 
         verify(customerRepository).findById(customer.getId());
+        verify(productRepository, times(1)).findAllById(anyCollection());
         verify(orderRepository).save(any(CustomerOrder.class));
     }
 
+    @Test
+    @DisplayName("Should store ten units of a product as one line, adding up repeated lines")
+    void shouldCreateOneLinePerProduct() {
+        // Given
+        CustomerOrderRequest request = new CustomerOrderRequest(customer.getId(),
+                List.of(new OrderItemRequest(101L, 4), new OrderItemRequest(101L, 6)));
+        given(customerRepository.findById(customer.getId())).willReturn(Optional.of(customer));
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(product1));
+        given(orderRepository.save(any(CustomerOrder.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        CustomerOrderResponse createdOrder = orderService.createOrder(request);
+
+        // Then
+        assertThat(createdOrder.orderItems()).hasSize(1);
+        assertThat(createdOrder.orderItems().get(0).quantity()).isEqualTo(10);
+        assertThat(createdOrder.orderItems().get(0).unitPrice()).isEqualTo(new BigDecimal("299.00"));
+        assertThat(createdOrder.orderItems().get(0).lineTotal()).isEqualTo(new BigDecimal("2990.00"));
+        assertThat(createdOrder.totalItems()).isEqualTo(10);
+        assertThat(createdOrder.totalPrice()).isEqualTo(new BigDecimal("2990.00"));
+        verify(inventoryService).hold(Map.of(101L, 10));
+    }
+
+    @Test
+    @DisplayName("Should throw EntityNotFoundException for an unknown product and give the held stock back")
+    void shouldThrowExceptionWhenProductNotFound() {
+        // Given - the unknown product holds nothing
+        given(inventoryService.hold(Map.of(101L, 1, 102L, 1))).willReturn(Map.of(101L, 1));
+        given(customerRepository.findById(customer.getId())).willReturn(Optional.of(customer));
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(product1));
+
+        // When & Then
+        assertThatThrownBy(() -> orderService.createOrder(orderRequest))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("Product not found: 102");
+
+        verify(inventoryService).releaseHold(Map.of(101L, 1));
+        verify(orderRepository, never()).save(any(CustomerOrder.class));
+    }
+
+    @Test
+    @DisplayName("Should not save an order when a product is out of stock")
+    void shouldNotCreateOrderWhenOutOfStock() {
+        // Given
+        given(inventoryService.hold(anyMap())).willThrow(new InsufficientStockException(102L));
+
+        // When & Then
+        assertThatThrownBy(() -> orderService.createOrder(orderRequest))
+                .isInstanceOf(InsufficientStockException.class);
+
+        verify(orderRepository, never()).save(any(CustomerOrder.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("Should give the held stock back when the order is not written")
+    void shouldReleaseHoldWhenWriteFails() {
+        // Given
+        given(customerRepository.findById(customer.getId())).willReturn(Optional.of(customer));
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(product1, product2));
+        given(inventoryService.hold(Map.of(101L, 1, 102L, 1))).willReturn(Map.of(101L, 1, 102L, 1));
+        given(orderRepository.save(any(CustomerOrder.class))).willThrow(new IllegalStateException("write failed"));
+
+        // When & Then
+        assertThatThrownBy(() -> orderService.createOrder(orderRequest))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(transactionManager).rollback(any());
+        verify(inventoryService).releaseHold(Map.of(101L, 1, 102L, 1));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
     @Test
     @DisplayName("Should throw EntityNotFoundException when creating order for non-existent customer")
     void shouldThrowExceptionWhenCustomerNotFoundOnCreate() {
@@ -101,7 +214,7 @@ public class CustomerOrderServiceTest {
     @DisplayName("Should find and return order by ID")
     void shouldFindOrderById() {
         // Given
-        given(orderRepository.findById(order1.getId())).willReturn(Optional.of(order1));
+        given(orderRepository.findWithItemsById(order1.getId())).willReturn(Optional.of(order1));
 
         // When
         CustomerOrderResponse foundOrder = orderService.findOrderById(order1.getId());
@@ -111,9 +224,9 @@ public class CustomerOrderServiceTest {
         assertThat(foundOrder.Id()).isEqualTo(order1.getId());
         assertThat(foundOrder.customerName()).isEqualTo(customer.getName());
         assertThat(foundOrder.totalItems()).isEqualTo(2);
-        assertThat(foundOrder.totalPrice()).isEqualTo(498.00);
+        assertThat(foundOrder.totalPrice()).isEqualTo(new BigDecimal("498.00"));
 
-        verify(orderRepository).findById(order1.getId());
+        verify(orderRepository).findWithItemsById(order1.getId());
     }
 
     @Test
@@ -121,14 +234,14 @@ public class CustomerOrderServiceTest {
     void shouldThrowExceptionWhenOrderIdNotFound() {
         // Given
         long nonExistentId = 99L;
-        given(orderRepository.findById(nonExistentId)).willReturn(Optional.empty());
+        given(orderRepository.findWithItemsById(nonExistentId)).willReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> orderService.findOrderById(nonExistentId))
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Order not found");
 
-        verify(orderRepository).findById(nonExistentId);
+        verify(orderRepository).findWithItemsById(nonExistentId);
     }
 
     @Test
@@ -137,15 +250,11 @@ public class CustomerOrderServiceTest {
         // Given
         Long orderId = order1.getId();
         Product newProduct = new Product(103L, "SK103", "Electronics", "Oppo", "2350", 149.00, "Good smartphone", "/path/to/oppo.img", new ArrayList<>(), null, null);
-        CustomerOrderRequest updateRequest = new CustomerOrderRequest(customer.getId(), List.of(newProduct));
+        CustomerOrderRequest updateRequest = new CustomerOrderRequest(customer.getId(), List.of(new OrderItemRequest(103L, 1)));
 
-        CustomerOrder updatedOrderEntity = new CustomerOrder();
-        updatedOrderEntity.setId(orderId);
-        updatedOrderEntity.setCustomer(customer);
-        updatedOrderEntity.setProducts(List.of(newProduct));
-
-        given(orderRepository.findById(orderId)).willReturn(Optional.of(order1));
-        given(orderRepository.save(any(CustomerOrder.class))).willReturn(updatedOrderEntity);
+        given(orderRepository.findWithItemsById(orderId)).willReturn(Optional.of(order1));
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(newProduct));
+        given(orderRepository.save(any(CustomerOrder.class))).willAnswer(invocation -> invocation.getArgument(0));
 
         // When
         CustomerOrderResponse updatedOrderResponse = orderService.updateOrder(orderId, updateRequest);
@@ -154,11 +263,15 @@ public class CustomerOrderServiceTest {
         assertThat(updatedOrderResponse).isNotNull();
         assertThat(updatedOrderResponse.Id()).isEqualTo(orderId);
         assertThat(updatedOrderResponse.totalItems()).isEqualTo(1);
-        assertThat(updatedOrderResponse.orderItems().get(0).getBrand()).isEqualTo("Oppo");
-        assertThat(updatedOrderResponse.totalPrice()).isEqualTo(149.00);
+        assertThat(updatedOrderResponse.orderItems().get(0).productId()).isEqualTo(103L);
+        assertThat(updatedOrderResponse.totalPrice()).isEqualTo(new BigDecimal("149.00"));
 
-        verify(orderRepository).findById(orderId);
+        verify(orderRepository).findWithItemsById(orderId);
         verify(orderRepository).save(any(CustomerOrder.class));
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(orderId, List.of(101L, 102L), List.of(103L)));
+        verify(inventoryService).reserve(Map.of(103L, 1));
+        verify(inventoryService).restock(Map.of(101L, 1, 102L, 1));
+        verify(customerStatsService).orderChanged(customer.getId(), new BigDecimal("498.00"), new BigDecimal("149.00"));
     }
 
     @Test
@@ -166,53 +279,86 @@ public class CustomerOrderServiceTest {
     void shouldThrowExceptionWhenUpdatingNonExistentOrder() {
         // Given
         Long nonExistentId = 99L;
-        given(orderRepository.findById(nonExistentId)).willReturn(Optional.empty());
+        given(orderRepository.findWithItemsById(nonExistentId)).willReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> orderService.updateOrder(nonExistentId, orderRequest))
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Order not found");
 
-        verify(orderRepository).findById(nonExistentId);
+        verify(orderRepository).findWithItemsById(nonExistentId);
         verify(orderRepository, never()).save(any(CustomerOrder.class));
     }
 
 
     @Test
-    @DisplayName("Should find orders by customer ID")
+    @DisplayName("Should return a page of a customer's orders, newest first, with a cursor for the next page")
     void shouldFindOrdersByCustomerId() {
-        // NOTE: The service's use of `Optional<Order>` from `findOrdersByCustomerId` suggests a customer
-        // can only have one order returned, which is unusual. This test validates the current behavior.
-        // A more robust implementation might return `List<Order>`.
+        // Given - three orders, two per page
+        Long customerId = customer.getId();
+        CustomerOrder order2 = new CustomerOrder(2L, customer, order1.getCreatedAt().minusHours(1), null, BigDecimal.ZERO, new ArrayList<>());
+        given(orderRepository.findIdsByCustomerBefore(customerId, CustomerService.LATEST, Long.MAX_VALUE, Limit.of(3)))
+                .willReturn(List.of(1L, 2L, 3L));
+        given(orderRepository.findWithItemsByIdIn(List.of(1L, 2L))).willReturn(List.of(order1, order2));
+
+        // When
+        CursorPage<CustomerOrderResponse> page = orderService.findOrdersByCustomerId(customerId, null, 2);
 
+        // Then
+        assertThat(page.items()).extracting(CustomerOrderResponse::Id).containsExactly(1L, 2L);
+        assertThat(page.items().get(0).orderItems()).hasSize(2);
+        assertThat(Cursor.decode(page.next())).isEqualTo(new Cursor(2L, order2.getCreatedAt().toString()));
+        verify(customerRepository, never()).existsById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should continue before the cursor's createdAt and id, and end without a cursor")
+    void shouldFindNextPageOfOrders() {
         // Given
         Long customerId = customer.getId();
-        given(orderRepository.findOrdersByCustomerId(customerId)).willReturn(Optional.of(order1));
+        LocalDateTime createdAt = LocalDateTime.of(2025, 6, 1, 12, 0, 0, 123456000);
+        String cursor = new Cursor(2L, createdAt.toString()).encode();
+        given(orderRepository.findIdsByCustomerBefore(customerId, createdAt, 2L, Limit.of(3))).willReturn(List.of(1L));
+        given(orderRepository.findWithItemsByIdIn(List.of(1L))).willReturn(List.of(order1));
 
         // When
-        List<CustomerOrderResponse> orders = orderService.findOrdersByCustomerId(customerId);
+        CursorPage<CustomerOrderResponse> page = orderService.findOrdersByCustomerId(customerId, cursor, 2);
 
         // Then
-        assertThat(orders).isNotNull().hasSize(1);
-        assertThat(orders.get(0).Id()).isEqualTo(order1.getId());
-
-        verify(orderRepository).findOrdersByCustomerId(customerId);
+        assertThat(page.items()).extracting(CustomerOrderResponse::Id).containsExactly(1L);
+        assertThat(page.next()).isNull();
     }
 
     @Test
-    @DisplayName("Should return empty list when no orders found for customer ID")
-    void shouldReturnEmptyListForCustomerWithNoOrders() {
+    @DisplayName("Should return an empty page for a customer without orders, and 404 for a missing customer")
+    void shouldReturnEmptyPageForCustomerWithNoOrders() {
         // Given
-        Long customerId = customer.getId();
-        given(orderRepository.findOrdersByCustomerId(customerId)).willReturn(Optional.empty());
+        given(orderRepository.findIdsByCustomerBefore(anyLong(), any(), anyLong(), any())).willReturn(List.of());
+        given(customerRepository.existsById(1L)).willReturn(true);
+        given(customerRepository.existsById(99L)).willReturn(false);
 
         // When
-        List<CustomerOrderResponse> orders = orderService.findOrdersByCustomerId(customerId);
+        CursorPage<CustomerOrderResponse> page = orderService.findOrdersByCustomerId(1L, null, 20);
 
         // Then
-        assertThat(orders).isNotNull().isEmpty();
+        assertThat(page.items()).isEmpty();
+        assertThat(page.next()).isNull();
+        assertThatThrownBy(() -> orderService.findOrdersByCustomerId(99L, null, 20))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("Customer not found");
+        verify(orderRepository, never()).findWithItemsByIdIn(any());
+    }
 
-        verify(orderRepository).findOrdersByCustomerId(customerId);
+    @Test
+    @DisplayName("Should reject a cursor without a createdAt and a page size below 1")
+    void shouldRejectInvalidOrderHistoryRequests() {
+        // When & Then
+        assertThatThrownBy(() -> orderService.findOrdersByCustomerId(1L, new Cursor(2L, null).encode(), 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Invalid cursor");
+        assertThatThrownBy(() -> orderService.findOrdersByCustomerId(1L, null, 0))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(orderRepository);
     }
 
     @Test
@@ -220,15 +366,18 @@ public class CustomerOrderServiceTest {
     void shouldDeleteOrder() {
         // Given
         Long orderId = order1.getId();
-        given(orderRepository.findById(orderId)).willReturn(Optional.of(order1));
+        given(orderRepository.findWithItemsById(orderId)).willReturn(Optional.of(order1));
         doNothing().when(orderRepository).delete(order1);
 
         // When
         orderService.deleteOrder(orderId);
 
         // Then
-        verify(orderRepository).findById(orderId);
+        verify(orderRepository).findWithItemsById(orderId);
         verify(orderRepository).delete(order1);
+        verify(eventPublisher).publishEvent(new OrderItemsChangedEvent(orderId, List.of(101L, 102L), List.of()));
+        verify(inventoryService).restock(Map.of(101L, 1, 102L, 1));
+        verify(customerStatsService).orderRemoved(customer.getId(), orderId, new BigDecimal("498.00"), order1.getCreatedAt());
     }
 
     @Test
@@ -236,14 +385,14 @@ public class CustomerOrderServiceTest {
     void shouldThrowExceptionWhenDeletingNonExistentOrder() {
         // Given
         Long nonExistentId = 99L;
-        given(orderRepository.findById(nonExistentId)).willReturn(Optional.empty());
+        given(orderRepository.findWithItemsById(nonExistentId)).willReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> orderService.deleteOrder(nonExistentId))
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Order not found");
 
-        verify(orderRepository).findById(nonExistentId);
+        verify(orderRepository).findWithItemsById(nonExistentId);
         verify(orderRepository, never()).delete(any(CustomerOrder.class));
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.sokoplace.customerOrder;
+
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.customer.stats.CustomerStatsService;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.product.inventory.InventoryService;
+import com.sokoplace.test.TestcontainersConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Integration test for the order history's fetch plan: seeds a customer with 60 orders of 3 products each,
+// then counts the JDBC statements Hibernate prepares for a page (Hibernate statistics). Loading a page must
+// take the same number of queries whatever its size; an N+1 would add queries per order or per line.
+// No test transaction, so every page is read in a fresh persistence context like a real request.
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({TestcontainersConfig.class, InventoryService.class, CustomerStatsService.class, CustomerOrderService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OrderHistoryQueryCountTest {
+
+    private static final int ORDERS = 60;
+
+    @Autowired
+    private CustomerOrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long customerId;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        customerId = jdbcTemplate.queryForObject("""
+                INSERT INTO customer (name, email, created_at, updated_at)
+                VALUES ('History Customer', 'history@test.com', now(), now()) RETURNING id
+                """, Long.class);
+        jdbcTemplate.update("""
+                INSERT INTO product (sku, category, brand, model, price, description, image_url, created_at, updated_at)
+                SELECT 'HIST' || i, 'history', 'brand' || i, 'Model ' || i, 100.0 * i, 'History test product',
+                       '/images/history.jpg', now(), now()
+                FROM generate_series(1, 3) AS i
+                """);
+        // One order a minute, the newest first in id order too
+        jdbcTemplate.update("""
+                INSERT INTO customer_order (customer_id, created_at, updated_at, total)
+                SELECT ?, now() - i * interval '1 minute', now(), 1200 FROM generate_series(1, ?) AS i
+                """, customerId, ORDERS);
+        jdbcTemplate.update("""
+                INSERT INTO order_item (customer_order_id, product_id, quantity, unit_price)
+                SELECT o.id, p.id, 2, p.price FROM customer_order o CROSS JOIN product p
+                WHERE o.customer_id = ? AND p.sku LIKE 'HIST%'
+                """, customerId);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        // The orders and their order_item rows go with the customer (ON DELETE CASCADE)
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", customerId);
+        jdbcTemplate.update("DELETE FROM product WHERE sku LIKE 'HIST%'");
+    }
+
+    @Test
+    @DisplayName("A page of order history should take the same number of queries for 1, 10 and 50 orders")
+    void queryCount_isConstantInPageSize() {
+        List<Long> counts = new ArrayList<>();
+        for (int size : new int[]{1, 10, 50}) {
+            statistics.clear();
+            CursorPage<CustomerOrderResponse> page = orderService.findOrdersByCustomerId(customerId, null, size);
+
+            assertThat(page.items()).hasSize(size);
+            assertThat(page.items()).allSatisfy(order -> assertThat(order.orderItems()).hasSize(3));
+            counts.add(statistics.getPrepareStatementCount());
+        }
+
+        // The page's ids, then its orders with customer and lines
+        assertThat(counts).containsOnly(2L);
+        assertThat(statistics.getEntityFetchCount()).isZero();
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Following the cursors should return every order once, newest first")
+    void cursors_walkTheWholeHistory() {
+        List<CustomerOrderResponse> orders = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<CustomerOrderResponse> page = orderService.findOrdersByCustomerId(customerId, cursor, 25);
+            orders.addAll(page.items());
+            cursor = page.next();
+        } while (cursor != null);
+
+        List<Long> ids = orders.stream().map(CustomerOrderResponse::Id).toList();
+        assertThat(ids).hasSize(ORDERS).doesNotHaveDuplicates();
+        // Orders were inserted newest first, so newest first is ascending id order here
+        assertThat(ids).isSorted();
+        assertThat(orders.get(0).totalItems()).isEqualTo(6);
+        assertThat(orders.get(0).totalPrice()).isEqualByComparingTo("1200");
+    }
+}
@@ -0,0 +1,210 @@
+package com.sokoplace.customerOrder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
+import com.sokoplace.customerOrder.dto.OrderItemResponse;
+import com.sokoplace.product.inventory.InsufficientStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderIdempotencyServiceTest {
+
+    @Mock
+    private OrderIngestService orderIngestService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OrderIdempotencyService idempotencyService;
+
+    private final CustomerOrderRequest request = new CustomerOrderRequest(1L, List.of(new OrderItemRequest(101L, 2)));
+    private final CustomerOrderResponse order = new CustomerOrderResponse(7L, 1L, "Test Customer",
+            List.of(new OrderItemResponse(101L, new BigDecimal("299.00"), 2, new BigDecimal("598.00"))),
+            2, new BigDecimal("598.00"));
+
+    @BeforeEach
+    void setup() {
+        idempotencyService = new OrderIdempotencyService(orderIngestService, jdbcTemplate, objectMapper,
+                Duration.ofHours(24), Duration.ofMinutes(1), 100, Duration.ofHours(1), 2);
+    }
+
+    private void givenClaim(boolean claimed) {
+        given(jdbcTemplate.queryForList(contains("INSERT INTO idempotency_key"), eq(String.class), any(Object[].class)))
+                .willReturn(claimed ? List.of("key-1") : List.of());
+    }
+
+    @Test
+    @DisplayName("A new key should be claimed, the order created once, and its response stored with the order")
+    @SuppressWarnings("unchecked")
+    void newKey_shouldCreateOrderAndStoreResponse() throws Exception {
+        // Given
+        givenClaim(true);
+        given(orderIngestService.submit(eq(request), any(Consumer.class))).willAnswer(invocation -> {
+            invocation.getArgument(1, Consumer.class).accept(order);  // what the writing transaction does
+            return CompletableFuture.completedFuture(order);
+        });
+
+        // When - the same request twice
+        CompletableFuture<CustomerOrderResponse> first = idempotencyService.submit("key-1", request);
+        CompletableFuture<CustomerOrderResponse> second = idempotencyService.submit("key-1", request);
+
+        // Then - the repeat comes from the cache: no second order, no second claim
+        assertThat(first).isCompletedWithValue(order);
+        assertThat(second).isCompletedWithValue(order);
+        verify(orderIngestService, times(1)).submit(eq(request), any(Consumer.class));
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class), any(Object[].class));
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(contains("SET response"), json.capture(), eq("key-1"));
+        assertThat(objectMapper.readValue(json.getValue(), CustomerOrderResponse.class)).isEqualTo(order);
+    }
+
+    @Test
+    @DisplayName("A duplicate arriving while the first request runs should wait for the first request's order")
+    @SuppressWarnings("unchecked")
+    void concurrentDuplicate_shouldWaitForFirst() {
+        // Given - the first order is still queued
+        givenClaim(true);
+        CompletableFuture<CustomerOrderResponse> written = new CompletableFuture<>();
+        given(orderIngestService.submit(eq(request), any(Consumer.class))).willReturn(written);
+
+        // When
+        CompletableFuture<CustomerOrderResponse> first = idempotencyService.submit("key-1", request);
+        CompletableFuture<CustomerOrderResponse> duplicate = idempotencyService.submit("key-1", request);
+
+        // Then
+        assertThat(duplicate).isNotDone();
+        written.complete(order);
+        assertThat(first).isCompletedWithValue(order);
+        assertThat(duplicate).isCompletedWithValue(order);
+        verify(orderIngestService, times(1)).submit(eq(request), any(Consumer.class));
+    }
+
+    @Test
+    @DisplayName("A key reused with a different request should be refused with BadRequestException")
+    @SuppressWarnings("unchecked")
+    void reusedKey_withDifferentRequest_shouldBeRefused() {
+        // Given
+        givenClaim(true);
+        given(orderIngestService.submit(eq(request), any(Consumer.class))).willReturn(CompletableFuture.completedFuture(order));
+        idempotencyService.submit("key-1", request);
+
+        // When / Then
+        CustomerOrderRequest other = new CustomerOrderRequest(1L, List.of(new OrderItemRequest(101L, 3)));
+        assertThatThrownBy(() -> idempotencyService.submit("key-1", other)).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    @DisplayName("A key completed earlier (e.g. by another instance) should return the stored response")
+    @SuppressWarnings("unchecked")
+    void storedKey_shouldReturnStoredResponse() {
+        // Given - the claim fails and the row holds a response for this very request
+        givenClaim(false);
+        String requestHash = idempotencyService.hash(request);
+        given(jdbcTemplate.query(contains("SELECT request_hash"), any(RowMapper.class), eq("key-1"))).willAnswer(invocation -> {
+            ResultSet resultSet = mock(ResultSet.class);
+            given(resultSet.getString("request_hash")).willReturn(requestHash);
+            given(resultSet.getString("response")).willReturn(objectMapper.writeValueAsString(order));
+            return List.of(invocation.getArgument(1, RowMapper.class).mapRow(resultSet, 0));
+        });
+
+        // When
+        CompletableFuture<CustomerOrderResponse> replay = idempotencyService.submit("key-1", request);
+
+        // Then
+        assertThat(replay).isCompletedWithValue(order);
+        verifyNoInteractions(orderIngestService);
+    }
+
+    @Test
+    @DisplayName("A key claimed elsewhere and still running should give IdempotencyKeyInUseException, leaving the claim")
+    @SuppressWarnings("unchecked")
+    void keyInProgressElsewhere_shouldThrowInUse() {
+        // Given - the row has no response yet
+        givenClaim(false);
+        String requestHash = idempotencyService.hash(request);
+        given(jdbcTemplate.query(contains("SELECT request_hash"), any(RowMapper.class), eq("key-1"))).willAnswer(invocation -> {
+            ResultSet resultSet = mock(ResultSet.class);
+            given(resultSet.getString("request_hash")).willReturn(requestHash);
+            given(resultSet.getString("response")).willReturn(null);
+            return List.of(invocation.getArgument(1, RowMapper.class).mapRow(resultSet, 0));
+        });
+
+        // When / Then
+        assertThatThrownBy(() -> idempotencyService.submit("key-1", request))
+                .isInstanceOf(IdempotencyKeyInUseException.class);
+        verify(jdbcTemplate, never()).update(contains("DELETE"), any(Object[].class));
+        verifyNoInteractions(orderIngestService);
+    }
+
+    @Test
+    @DisplayName("When the order fails, the claim should be deleted so the key can be retried")
+    @SuppressWarnings("unchecked")
+    void failedOrder_shouldReleaseClaim() {
+        // Given - out of stock the first time, then in stock
+        givenClaim(true);
+        given(orderIngestService.submit(eq(request), any(Consumer.class)))
+                .willThrow(new InsufficientStockException(101L))
+                .willReturn(CompletableFuture.completedFuture(order));
+
+        // When / Then
+        assertThatThrownBy(() -> idempotencyService.submit("key-1", request)).isInstanceOf(InsufficientStockException.class);
+        verify(jdbcTemplate).update(contains("DELETE FROM idempotency_key WHERE key = ?"), eq("key-1"));
+        assertThat(idempotencyService.submit("key-1", request)).isCompletedWithValue(order);
+    }
+
+    @Test
+    @DisplayName("Should refuse blank and over-long keys")
+    void invalidKey_shouldBeRefused() {
+        assertThatThrownBy(() -> idempotencyService.submit(" ", request)).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> idempotencyService.submit("k".repeat(256), request))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(jdbcTemplate, orderIngestService);
+    }
+
+    @Test
+    @DisplayName("Should delete expired keys batch by batch until a batch comes back short")
+    void sweep_shouldDeleteInBatches() {
+        // Given - five expired keys, two per statement
+        given(jdbcTemplate.update(contains("FOR UPDATE SKIP LOCKED"), any(), eq(2))).willReturn(2, 2, 1);
+
+        // When
+        int swept = idempotencyService.sweep();
+
+        // Then
+        assertThat(swept).isEqualTo(5);
+        verify(jdbcTemplate, times(3)).update(contains("FOR UPDATE SKIP LOCKED"), any(), eq(2));
+    }
+}
@@ -0,0 +1,172 @@
+package com.sokoplace.customerOrder;
+
+import com.sokoplace.customer.stats.CustomerStatsService;
+import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
+import com.sokoplace.product.inventory.InsufficientStockException;
+import com.sokoplace.product.inventory.InventoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+// The request side of group commit: queueing, backpressure and stock. The writers are not started here,
+// so queued orders stay queued.
+
+@ExtendWith(MockitoExtension.class)
+public class OrderIngestServiceTest {
+
+    @Mock
+    private CustomerOrderService orderService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private CustomerStatsService customerStatsService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final CustomerOrderRequest request = new CustomerOrderRequest(1L,
+            List.of(new OrderItemRequest(101L, 2), new OrderItemRequest(102L, 1), new OrderItemRequest(101L, 1)));
+
+    private OrderIngestService service(boolean enabled, int queueCapacity) {
+        return new OrderIngestService(orderService, inventoryService, customerStatsService, eventPublisher,
+                jdbcTemplate, transactionManager, enabled, 2, 100, queueCapacity);
+    }
+
+    @Test
+    @DisplayName("Disabled, an order should be written right away by CustomerOrderService")
+    void disabled_shouldCreateOrderDirectly() {
+        // Given
+        CustomerOrderResponse response = new CustomerOrderResponse(1L, 1L, "Test Customer", List.of(), 4, BigDecimal.TEN);
+        given(orderService.createOrder(request, null)).willReturn(response);
+
+        // When
+        CompletableFuture<CustomerOrderResponse> future = service(false, 10).submit(request);
+
+        // Then
+        assertThat(future).isCompletedWithValue(response);
+        verifyNoInteractions(inventoryService, jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Enabled, an order should hold its stock and wait in the queue for a writer")
+    void enabled_shouldReserveAndQueue() {
+        // When
+        CompletableFuture<CustomerOrderResponse> future = service(true, 10).submit(request);
+
+        // Then - lines for the same product are added together before holding
+        assertThat(future).isNotDone();
+        verify(inventoryService).hold(Map.of(101L, 3, 102L, 1));
+        verify(inventoryService, never()).releaseHold(any());
+        verifyNoInteractions(orderService, jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Should refuse an order with OrderQueueFullException and give its stock back when the queue is full")
+    void queueFull_shouldRejectAndReleaseStock() {
+        // Given
+        OrderIngestService service = service(true, 1);
+        given(inventoryService.hold(Map.of(101L, 3, 102L, 1))).willReturn(Map.of(101L, 3, 102L, 1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        service.submit(request);
+
+        // When / Then
+        assertThatThrownBy(() -> service.submit(request)).isInstanceOf(OrderQueueFullException.class);
+        verify(inventoryService).releaseHold(Map.of(101L, 3, 102L, 1));
+        assertThat(registry.get("orders.ingest.rejected").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("orders.ingest.queue.depth").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not queue an order whose stock cannot be held")
+    void outOfStock_shouldNotQueue() {
+        // Given
+        OrderIngestService service = service(true, 1);
+        given(inventoryService.hold(Map.of(101L, 3, 102L, 1))).willThrow(new InsufficientStockException(101L));
+
+        // When / Then - the queue still has room for the next order
+        assertThatThrownBy(() -> service.submit(request)).isInstanceOf(InsufficientStockException.class);
+        assertThat(service.submit(new CustomerOrderRequest(1L, List.of(new OrderItemRequest(102L, 1))))).isNotDone();
+    }
+
+    @Test
+    @DisplayName("An order queued just after shutdown drained the queue should be refused, not left waiting")
+    void stopDuringSubmit_shouldRejectAndReleaseStock() {
+        // Given - shutdown runs between submit's check and its offer to the queue
+        OrderIngestService service = service(true, 10);
+        given(inventoryService.hold(Map.of(101L, 3, 102L, 1))).willAnswer(invocation -> {
+            service.stopWriters();
+            return Map.of(101L, 3, 102L, 1);
+        });
+
+        // When / Then
+        assertThatThrownBy(() -> service.submit(request)).isInstanceOf(OrderQueueFullException.class);
+        verify(inventoryService).releaseHold(Map.of(101L, 3, 102L, 1));
+    }
+
+    @Test
+    @DisplayName("Disabled, no queue is created and shutdown has nothing to drain")
+    void disabled_shouldNotCreateQueue() throws Exception {
+        // Given
+        OrderIngestService service = service(false, 10);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        // When
+        service.bindTo(registry);
+        service.stopWriters();
+
+        // Then
+        assertThat(registry.find("orders.ingest.queue.depth").gauge()).isNull();
+    }
+
+    @Test
+    @DisplayName("On shutdown, orders still queued should fail and give their stock back")
+    void stop_shouldFailQueuedOrders() throws Exception {
+        // Given
+        OrderIngestService service = service(true, 10);
+        given(inventoryService.hold(Map.of(101L, 3, 102L, 1))).willReturn(Map.of(101L, 3, 102L, 1));
+        CompletableFuture<CustomerOrderResponse> future = service.submit(request);
+
+        // When
+        service.stopWriters();
+
+        // Then
+        assertThat(future).failsWithin(Duration.ZERO)
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(RejectedExecutionException.class);
+        verify(inventoryService).releaseHold(Map.of(101L, 3, 102L, 1));
+        assertThatThrownBy(() -> service.submit(request)).isInstanceOf(OrderQueueFullException.class);
+    }
+}
@@ -0,0 +1,142 @@
+package com.sokoplace.image;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ImageController.class)
+@WithMockUser
+public class ImageControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static final byte[] ORIGINAL = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @TempDir
+    Path directory;
+
+    @MockitoBean
+    private ImageStore imageStore;
+
+    @MockitoBean
+    private ImageResizeService imageResizeService;
+
+    @Test
+    @DisplayName("GET /images/{category}/{file}?w= - Should return the resized image")
+    void getImage_withWidth_shouldReturnResizedImage() throws Exception {
+        byte[] thumbnail = {1, 2, 3, 4};
+        given(imageResizeService.resize("phone", "phone.jpg", 320, null))
+                .willReturn(new ResizedImage(new ByteArrayInputStream(thumbnail), thumbnail.length, MediaType.IMAGE_JPEG));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg").param("w", "320"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"))
+                .andExpect(content().bytes(thumbnail));
+    }
+
+    @Test
+    @DisplayName("GET /images/{category}/{file}?v= - Should stream the original, immutable when the version matches")
+    void getImage_versioned_shouldReturnImmutableOriginal() throws Exception {
+        givenStoredOriginal();
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg").param("v", "0123456789abcdef"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0123456789abcdef0123456789abcdef\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(ORIGINAL));
+
+        verify(imageResizeService, never()).resize(anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("GET /images/{category}/{file} - Should revalidate unversioned URLs and answer 304 on a matching ETag")
+    void getImage_unversioned_shouldRevalidate() throws Exception {
+        givenStoredOriginal();
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0123456789abcdef0123456789abcdef\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("GET /images/{category}/{file} - Should serve byte ranges and reject ranges past the end")
+    void getImage_range_shouldReturnPartialContent() throws Exception {
+        givenStoredOriginal();
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().bytes(new byte[]{2, 3, 4, 5}));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg").header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+                .andExpect(content().bytes(new byte[]{7, 8, 9}));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg").header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+
+        // A range for an older version of the file: the whole current file instead
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "phone.jpg")
+                        .header(HttpHeaders.RANGE, "bytes=2-5")
+                        .header(HttpHeaders.IF_RANGE, "\"outdated\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(ORIGINAL));
+    }
+
+    @Test
+    @DisplayName("GET /images/{category}/{file} - Should return 404 for a missing original")
+    void getImage_missingOriginal_shouldReturnNotFound() throws Exception {
+        given(imageStore.resolve("phone", "missing.jpg")).willThrow(new EntityNotFoundException("Image not found"));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "missing.jpg"))
+                .andExpect(status().isNotFound());
+    }
+
+    private void givenStoredOriginal() throws Exception {
+        Path file = Files.write(directory.resolve("phone.jpg"), ORIGINAL);
+        given(imageStore.resolve("phone", "phone.jpg")).willReturn(file);
+        given(imageStore.fingerprint(file)).willReturn(
+                new ImageStore.Fingerprint("0123456789abcdef0123456789abcdef", ORIGINAL.length, 0L));
+    }
+
+    @Test
+    @DisplayName("GET /images/{category}/{file}?w= - Should return 404 for a missing image")
+    void getImage_missing_shouldReturnNotFound() throws Exception {
+        given(imageResizeService.resize("phone", "missing.jpg", 320, null))
+                .willThrow(new EntityNotFoundException("Image not found"));
+
+        mockMvc.perform(get("/images/{category}/{fileName}", "phone", "missing.jpg").param("w", "320"))
+                .andExpect(status().isNotFound());
+    }
+}
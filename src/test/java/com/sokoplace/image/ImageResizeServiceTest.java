@@ -0,0 +1,120 @@
+package com.sokoplace.image;
+
+import com.sokoplace.common.BadRequestException;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ImageResizeServiceTest {
+
+    @TempDir
+    Path images;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private ImageResizeService imageResizeService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // A 1600x1200 source image
+        BufferedImage source = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = source.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, 1600, 1200);
+        graphics.setColor(Color.BLUE);
+        graphics.fillOval(200, 200, 1200, 800);
+        graphics.dispose();
+        Files.createDirectories(images.resolve("phone"));
+        ImageIO.write(source, "jpeg", images.resolve("phone").resolve("phone.jpg").toFile());
+
+        imageResizeService = new ImageResizeService(new DefaultResourceLoader(), images.toUri().toString(),
+                new int[]{160, 320, 640}, cacheDirectory, DataSize.ofMegabytes(10));
+    }
+
+    @Test
+    @DisplayName("Should scale to the snapped width, keep the aspect ratio, and be much smaller")
+    void shouldResizeToSnappedWidth() throws Exception {
+        ResizedImage resized = imageResizeService.resize("phone", "phone.jpg", 300, null);
+
+        BufferedImage image = read(resized);
+        assertThat(image.getWidth()).isEqualTo(320);
+        assertThat(image.getHeight()).isEqualTo(240);
+        assertThat(resized.mediaType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(resized.size()).isLessThan(Files.size(images.resolve("phone").resolve("phone.jpg")) / 4);
+    }
+
+    @Test
+    @DisplayName("Should serve a variant from the disk cache after the first resize")
+    void shouldCacheVariants() throws Exception {
+        read(imageResizeService.resize("phone", "phone.jpg", 160, null));
+        read(imageResizeService.resize("phone", "phone.jpg", 150, null));  // snaps to the same 160
+        read(imageResizeService.resize("phone", "phone.jpg", 160, "png"));
+
+        assertThat(imageResizeService.resizeCount()).isEqualTo(2);
+        try (var files = Files.list(cacheDirectory)) {
+            assertThat(files.count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Should collapse concurrent requests for the same variant into one resize")
+    void shouldCollapseConcurrentResizes() throws Exception {
+        int requests = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        List<Future<BufferedImage>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return read(imageResizeService.resize("phone", "phone.jpg", 640, null));
+            }));
+        }
+        start.countDown();
+        for (Future<BufferedImage> result : results) {
+            assertThat(result.get().getWidth()).isEqualTo(640);
+        }
+        pool.shutdown();
+
+        assertThat(imageResizeService.resizeCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reject path traversal and unknown formats, and 404 on missing images")
+    void shouldValidateRequests() {
+        assertThatThrownBy(() -> imageResizeService.resize("..", "phone.jpg", 320, null))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> imageResizeService.resize("phone", "phone.jpg", 320, "gif"))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> imageResizeService.resize("phone", "missing.jpg", 320, null))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    private static BufferedImage read(ResizedImage resized) throws Exception {
+        try (InputStream content = resized.content()) {
+            return ImageIO.read(content);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.sokoplace.image;
+
+import com.sokoplace.common.BadRequestException;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ImageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should copy bundled images into the directory without overwriting existing files")
+    void shouldSeedFromClasspath() throws Exception {
+        Files.createDirectories(directory.resolve("phone"));
+        Files.write(directory.resolve("phone").resolve("phone.jpg"), new byte[]{1, 2, 3});
+        ImageStore imageStore = new ImageStore(directory, "classpath*:static/images/");
+
+        imageStore.seed();
+
+        assertThat(Files.size(directory.resolve("phone").resolve("phone.jpg"))).isEqualTo(3);
+        assertThat(directory.resolve("printer").resolve("printer.jpg")).isRegularFile();
+        // Windows download markers next to the bundled images are not images
+        assertThat(directory.resolve("printer").resolve("printer.jpg:Zone.Identifier")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should version URLs by content and change the version when the file changes")
+    void shouldVersionByContent() throws Exception {
+        Files.createDirectories(directory.resolve("phone"));
+        Path file = Files.write(directory.resolve("phone").resolve("phone.jpg"), new byte[]{1, 2, 3});
+        ImageStore imageStore = new ImageStore(directory, "classpath*:static/images/");
+
+        ImageStore.Fingerprint first = imageStore.fingerprint(file);
+        String url = imageStore.url("phone", "phone.jpg");
+        Files.write(file, new byte[]{4, 5, 6});
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+        ImageStore.Fingerprint second = imageStore.fingerprint(file);
+
+        assertThat(url).isEqualTo("/images/phone/phone.jpg?v=" + first.version());
+        assertThat(first.etag()).isEqualTo("\"" + first.hash() + "\"");
+        assertThat(second.hash()).isNotEqualTo(first.hash());
+        assertThat(imageStore.url("phone", "missing.jpg")).isEqualTo("/images/phone/missing.jpg");
+    }
+
+    @Test
+    @DisplayName("Should reject path traversal and 404 on missing images")
+    void shouldValidatePaths() {
+        ImageStore imageStore = new ImageStore(directory, "classpath*:static/images/");
+
+        assertThatThrownBy(() -> imageStore.resolve("..", "phone.jpg"))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> imageStore.resolve("phone", ".hidden"))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> imageStore.resolve("phone", "missing.jpg"))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package com.sokoplace.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThumbnailCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should evict the least recently used files once over the size budget")
+    void shouldEvictLeastRecentlyUsed() throws Exception {
+        ThumbnailCache cache = new ThumbnailCache(directory, 300);
+        cache.put("a.jpg", new byte[100]);
+        cache.put("b.jpg", new byte[100]);
+        cache.put("c.jpg", new byte[100]);
+        try (InputStream ignored = cache.open("a.jpg", MediaType.IMAGE_JPEG).content()) {
+            // reading 'a' makes 'b' the least recently used
+        }
+
+        cache.put("d.jpg", new byte[100]);
+
+        assertThat(cache.contains("b.jpg")).isFalse();
+        assertThat(Files.exists(directory.resolve("b.jpg"))).isFalse();
+        assertThat(cache.contains("a.jpg")).isTrue();
+        assertThat(cache.totalBytes()).isEqualTo(300);
+        assertThat(cache.count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should return the stored bytes and their size, and null on a miss")
+    void shouldOpenStoredFile() throws Exception {
+        ThumbnailCache cache = new ThumbnailCache(directory, 1_000);
+        cache.put("a.jpg", new byte[]{1, 2, 3});
+
+        ResizedImage hit = cache.open("a.jpg", MediaType.IMAGE_JPEG);
+
+        assertThat(hit.size()).isEqualTo(3);
+        try (InputStream content = hit.content()) {
+            assertThat(content.readAllBytes()).containsExactly(1, 2, 3);
+        }
+        assertThat(cache.open("missing.jpg", MediaType.IMAGE_JPEG)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should re-index files left from a previous run and drop partial writes")
+    void shouldReindexOnStartup() throws Exception {
+        Files.write(directory.resolve("old.jpg"), new byte[50]);
+        Files.write(directory.resolve("new.jpg"), new byte[50]);
+        Files.write(directory.resolve("half.jpg.tmp"), new byte[10]);
+
+        ThumbnailCache cache = new ThumbnailCache(directory, 1_000);
+
+        assertThat(cache.count()).isEqualTo(2);
+        assertThat(cache.totalBytes()).isEqualTo(100);
+        assertThat(Files.exists(directory.resolve("half.jpg.tmp"))).isFalse();
+    }
+}
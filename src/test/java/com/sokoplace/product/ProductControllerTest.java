@@ -1,22 +1,43 @@
 package com.sokoplace.product;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.common.ResourceVersion;
+import com.sokoplace.product.dto.ProductBatchResponse;
+import com.sokoplace.product.dto.ProductFacetsResponse;
+import com.sokoplace.product.dto.ProductFacetsResponse.FacetCount;
+import com.sokoplace.product.dto.ProductFacetsResponse.PriceBandCount;
 import com.sokoplace.product.dto.ProductRequest;
 import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.product.dto.ProductSuggestion;
+import com.sokoplace.product.dto.StockRequest;
+import com.sokoplace.product.dto.StockResponse;
+import com.sokoplace.product.facet.ProductFacetService;
+import com.sokoplace.product.image.ProductImageService;
+import com.sokoplace.product.inventory.InventoryService;
+import com.sokoplace.product.related.RelatedProductService;
+import com.sokoplace.product.search.ProductSearchService;
+import com.sokoplace.product.suggest.ProductSuggestService;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
@@ -29,12 +50,32 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WithMockUser
 public class ProductControllerTest {
 
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 6, 1, 12, 30, 15, 123_456_000);
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockitoBean
     private ProductService productService;
 
+    @MockitoBean
+    private ProductSearchService productSearchService;
+
+    @MockitoBean
+    private ProductFacetService productFacetService;
+
+    @MockitoBean
+    private ProductSuggestService productSuggestService;
+
+    @MockitoBean
+    private RelatedProductService relatedProductService;
+
+    @MockitoBean
+    private InventoryService inventoryService;
+
+    @MockitoBean
+    private ProductImageService productImageService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -47,8 +88,8 @@ public class ProductControllerTest {
     void setup() {
         validProductRequest = new ProductRequest("SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung phone");
         invalidProductRequest = new ProductRequest("", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung phone");
-        productResponse1 = new ProductResponse(1L, "SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung phone", "/images/Electronics/Electronics.jpg");
-        productResponse2 = new ProductResponse(2L, "SKU002", "Electronics", "Apple", "iPhone 15", 1099.99, "Latest Apple phone", "/images/Electronics/Electronics.jpg");
+        productResponse1 = new ProductResponse(1L, "SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung phone", "/images/Electronics/Electronics.jpg", UPDATED_AT);
+        productResponse2 = new ProductResponse(2L, "SKU002", "Electronics", "Apple", "iPhone 15", 1099.99, "Latest Apple phone", "/images/Electronics/Electronics.jpg", UPDATED_AT);
     }
 
     // --- GET /api/v1/products/{id} ---
@@ -81,6 +122,52 @@ public class ProductControllerTest {
         verify(productService).findProductById(productId);
     }
 
+    @Test
+    @DisplayName("GET /api/v1/products/{id} - Should send ETag and Last-Modified derived from id and updatedAt")
+    void getProductById_shouldSendValidators() throws Exception {
+        ResourceVersion version = new ResourceVersion(1L, UPDATED_AT);
+        given(productService.findProductById(1L)).willReturn(productResponse1);
+
+        mockMvc.perform(get("/api/v1/products/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", version.eTag()))
+                .andExpect(header().dateValue("Last-Modified", version.lastModified() / 1000 * 1000));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/{id} - Should return 304 with no body when the ETag matches")
+    void getProductById_whenETagMatches_shouldReturnNotModified() throws Exception {
+        String eTag = new ResourceVersion(1L, UPDATED_AT).eTag();
+        given(productService.findProductById(1L)).willReturn(productResponse1);
+
+        mockMvc.perform(get("/api/v1/products/{id}", 1L).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/sku/{sku} - Should return 304 when not modified since the client's copy")
+    void getProductBySku_whenNotModifiedSince_shouldReturnNotModified() throws Exception {
+        given(productService.findProductBySku("SKU001")).willReturn(productResponse1);
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfModifiedSince(new ResourceVersion(1L, UPDATED_AT).lastModified() + 1000);
+
+        mockMvc.perform(get("/api/v1/products/sku/{sku}", "SKU001").headers(conditional))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/{id} - Should return the product when it changed since the client's ETag")
+    void getProductById_whenETagIsStale_shouldReturnProduct() throws Exception {
+        String staleETag = new ResourceVersion(1L, UPDATED_AT.minusSeconds(1)).eTag();
+        given(productService.findProductById(1L)).willReturn(productResponse1);
+
+        mockMvc.perform(get("/api/v1/products/{id}", 1L).header("If-None-Match", staleETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sku").value("SKU001"));
+    }
+
     // --- GET /api/v1/products/sku/{sku} ---
 
     @Test
@@ -100,39 +187,265 @@ public class ProductControllerTest {
     // --- GET /api/v1/products/category/{category} ---
 
     @Test
-    @DisplayName("GET /api/v1/products/category/{category} - Should return a list of products")
-    void getProductByCategory_shouldReturnListOfProducts() throws Exception {
+    @DisplayName("GET /api/v1/products/category/{category} - Should return a page of products")
+    void getProductByCategory_shouldReturnPageOfProducts() throws Exception {
         String category = "Electronics";
-        List<ProductResponse> products = List.of(productResponse1, productResponse2);
-        given(productService.findProductByCategory(category)).willReturn(products);
+        CursorPage<ProductResponse> page = new CursorPage<>(List.of(productResponse1, productResponse2), "Mg");
+        given(productService.findProductByCategory(category, null, null, null, null, 20)).willReturn(page);
 
         mockMvc.perform(get("/api/v1/products/category/{category}", category))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.size()").value(2))
-                .andExpect(jsonPath("$[0].model").value("Galaxy S23"))
-                .andExpect(jsonPath("$[1].model").value("iPhone 15"));
+                .andExpect(jsonPath("$.items.size()").value(2))
+                .andExpect(jsonPath("$.items[0].model").value("Galaxy S23"))
+                .andExpect(jsonPath("$.items[1].model").value("iPhone 15"))
+                .andExpect(jsonPath("$.next").value("Mg"));
+
+        verify(productService).findProductByCategory(category, null, null, null, null, 20);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/category/{category} - Should pass cursor and size to the service")
+    void getProductByCategory_withCursor_shouldRequestNextPage() throws Exception {
+        String category = "Electronics";
+        given(productService.findProductByCategory(category, null, null, null, "Mg", 5))
+                .willReturn(new CursorPage<>(List.of(productResponse2), null));
+
+        mockMvc.perform(get("/api/v1/products/category/{category}", category)
+                        .param("cursor", "Mg")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].Id").value(2L))
+                .andExpect(jsonPath("$.next").doesNotExist());
+
+        verify(productService).findProductByCategory(category, null, null, null, "Mg", 5);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/category/{category} - Should return 400 for an invalid cursor")
+    void getProductByCategory_withInvalidCursor_shouldReturnBadRequest() throws Exception {
+        given(productService.findProductByCategory("Electronics", null, null, null, "bad", 20))
+                .willThrow(new BadRequestException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/v1/products/category/{category}", "Electronics")
+                        .param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/category/{category} - Should pass price filters and sort to the service")
+    void getProductByCategory_withPriceFilterAndSort_shouldPassThem() throws Exception {
+        String category = "Electronics";
+        given(productService.findProductByCategory(category, 500.0, 1000.0, "price_desc", null, 20))
+                .willReturn(new CursorPage<>(List.of(productResponse1), null));
+
+        mockMvc.perform(get("/api/v1/products/category/{category}", category)
+                        .param("minPrice", "500")
+                        .param("maxPrice", "1000")
+                        .param("sort", "price_desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].Id").value(1L));
+
+        verify(productService).findProductByCategory(category, 500.0, 1000.0, "price_desc", null, 20);
+    }
+
+    // --- GET /api/v1/products/batch ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/batch - Should return the products found and the missing ids")
+    void getProductsByIds_shouldReturnBatch() throws Exception {
+        given(productService.findProductsByIds(List.of(2L, 1L, 99L)))
+                .willReturn(new ProductBatchResponse(List.of(productResponse2, productResponse1), List.of(99L)));
+
+        mockMvc.perform(get("/api/v1/products/batch").param("ids", "2,1,99"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].Id").value(2L))
+                .andExpect(jsonPath("$.products[1].Id").value(1L))
+                .andExpect(jsonPath("$.missingIds[0]").value(99L));
+
+        verify(productService).findProductsByIds(List.of(2L, 1L, 99L));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/batch - Should return 400 when the batch is too large")
+    void getProductsByIds_tooMany_shouldReturnBadRequest() throws Exception {
+        given(productService.findProductsByIds(anyList()))
+                .willThrow(new BadRequestException("At most 100 ids can be requested at once"));
+
+        mockMvc.perform(get("/api/v1/products/batch").param("ids", "1,2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/batch - Should return 500, not 400, for an IllegalArgumentException from a bug")
+    void getProductsByIds_illegalArgument_shouldReturnServerError() throws Exception {
+        given(productService.findProductsByIds(anyList())).willThrow(new IllegalArgumentException("bug"));
 
-        verify(productService).findProductByCategory(category);
+        mockMvc.perform(get("/api/v1/products/batch").param("ids", "1,2"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    // --- GET /api/v1/products/{id}/related ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/{id}/related - Should return the products bought together with it")
+    void getRelatedProducts_shouldReturnProducts() throws Exception {
+        given(relatedProductService.findRelatedProducts(1L, 5)).willReturn(List.of(productResponse2));
+
+        mockMvc.perform(get("/api/v1/products/{id}/related", 1L).param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(1))
+                .andExpect(jsonPath("$[0].Id").value(2L));
+
+        verify(relatedProductService).findRelatedProducts(1L, 5);
+    }
+
+    // --- GET, PUT /api/v1/products/{id}/stock ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/{id}/stock - Should return the units available")
+    void getProductStock_shouldReturnAvailableUnits() throws Exception {
+        given(inventoryService.findStock(1L)).willReturn(new StockResponse(1L, 42));
+
+        mockMvc.perform(get("/api/v1/products/{id}/stock", 1L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId").value(1L))
+                .andExpect(jsonPath("$.available").value(42));
+    }
+
+    @Test
+    @DisplayName("PUT /api/v1/products/{id}/stock - Should set the stock")
+    void updateProductStock_shouldSetStock() throws Exception {
+        given(inventoryService.setStock(1L, 100)).willReturn(new StockResponse(1L, 100));
+
+        mockMvc.perform(put("/api/v1/products/{id}/stock", 1L)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StockRequest(100))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(100));
+
+        verify(inventoryService).setStock(1L, 100);
+    }
+
+    @Test
+    @DisplayName("PUT /api/v1/products/{id}/stock - Should return 400 for a negative quantity")
+    void updateProductStock_negativeQuantity_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(put("/api/v1/products/{id}/stock", 1L)
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StockRequest(-1))))
+                .andExpect(status().isBadRequest());
+
+        verify(inventoryService, never()).setStock(anyLong(), anyInt());
+    }
+
+    // --- POST /api/v1/products/{id}/image ---
+
+    @Test
+    @DisplayName("POST /api/v1/products/{id}/image - Should accept the upload for processing")
+    void uploadProductImage_shouldReturnAccepted() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpg", "image/jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+
+        mockMvc.perform(multipart("/api/v1/products/{id}/image", 1L).file(file).with(csrf()))
+                .andExpect(status().isAccepted());
+
+        verify(productImageService).upload(1L, file);
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/products/{id}/image - Should return 503 when the image workers are saturated")
+    void uploadProductImage_queueFull_shouldReturnServiceUnavailable() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpg", "image/jpeg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+        doThrow(new RejectedExecutionException()).when(productImageService).upload(1L, file);
+
+        mockMvc.perform(multipart("/api/v1/products/{id}/image", 1L).file(file).with(csrf()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("SERVER BUSY - TRY AGAIN LATER"));
     }
 
     // --- GET /api/v1/products/brand/{category}/{brand} ---
 
     @Test
-    @DisplayName("GET /api/v1/products/brand/{category}/{brand} - Should return a list of products")
-    void getProductByBrand_shouldReturnListOfProducts() throws Exception {
+    @DisplayName("GET /api/v1/products/brand/{category}/{brand} - Should return a page of products")
+    void getProductByBrand_shouldReturnPageOfProducts() throws Exception {
         String category = "Electronics";
         String brand = "Samsung";
-        List<ProductResponse> products = List.of(productResponse1);
-        given(productService.findProductByBrand(category, brand)).willReturn(products);
+        CursorPage<ProductResponse> page = new CursorPage<>(List.of(productResponse1), null);
+        given(productService.findProductByBrand(category, brand, null, null, null, null, 20)).willReturn(page);
 
         mockMvc.perform(get("/api/v1/products/brand/{category}/{brand}", category, brand))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.items.size()").value(1))
+                .andExpect(jsonPath("$.items[0].brand").value("Samsung"));
+
+        verify(productService).findProductByBrand(category, brand, null, null, null, null, 20);
+    }
+
+    // --- GET /api/v1/products/search ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/search - Should return ranked matches")
+    void searchProducts_shouldReturnMatches() throws Exception {
+        given(productSearchService.search("galaxy", 20)).willReturn(List.of(productResponse1));
+
+        mockMvc.perform(get("/api/v1/products/search").param("q", "galaxy"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.size()").value(1))
-                .andExpect(jsonPath("$[0].brand").value("Samsung"));
+                .andExpect(jsonPath("$[0].model").value("Galaxy S23"));
+
+        verify(productSearchService).search("galaxy", 20);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/search - Should return 400 without a query")
+    void searchProducts_withoutQuery_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/products/search"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(productSearchService);
+    }
+
+    // --- GET /api/v1/products/suggest ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/suggest - Should return completions for the prefix")
+    void suggestProducts_shouldReturnCompletions() throws Exception {
+        given(productSuggestService.suggest("gal", 10)).willReturn(List.of(
+                new ProductSuggestion("Galaxy S23", "model"), new ProductSuggestion("Galaxy Tab S9", "model")));
+
+        mockMvc.perform(get("/api/v1/products/suggest").param("q", "gal"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()").value(2))
+                .andExpect(jsonPath("$[0].text").value("Galaxy S23"))
+                .andExpect(jsonPath("$[0].field").value("model"));
+
+        verify(productSuggestService).suggest("gal", 10);
+    }
+
+    // --- GET /api/v1/products/facets ---
+
+    @Test
+    @DisplayName("GET /api/v1/products/facets - Should return counts for the selected filters")
+    void getProductFacets_shouldReturnCounts() throws Exception {
+        ProductFacetsResponse facets = new ProductFacetsResponse(2,
+                List.of(new FacetCount("Electronics", 2)),
+                List.of(new FacetCount("Samsung", 1), new FacetCount("Apple", 1)),
+                List.of(new PriceBandCount(0, 0.0, null, 2)));
+        given(productFacetService.findFacets(List.of("Electronics"), List.of("Samsung", "Apple"), null))
+                .willReturn(facets);
+
+        mockMvc.perform(get("/api/v1/products/facets")
+                        .param("category", "Electronics")
+                        .param("brand", "Samsung", "Apple"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.brands.size()").value(2))
+                .andExpect(jsonPath("$.priceBands[0].count").value(2));
 
-        verify(productService).findProductByBrand(category, brand);
+        verify(productFacetService).findFacets(List.of("Electronics"), List.of("Samsung", "Apple"), null);
     }
 
     // --- POST /api/v1/products ---
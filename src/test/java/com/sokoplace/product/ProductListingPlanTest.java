@@ -0,0 +1,209 @@
+package com.sokoplace.product;
+
+import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.test.TestcontainersConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Integration test for the listing query plans: seeds a million products (50 categories of 20 brands),
+// then runs each kind of listing query through ProductRepository and EXPLAINs the statement Hibernate sent,
+// with the parameters it bound (captured on the way to the driver). An index must deliver the rows already in
+// order: an index scan on the expected index and no Sort node.
+// Tagged slow: the seed takes a while, so it only runs with mvn test -Pslow-tests.
+
+@Tag("slow")
+@DataJpaTest
+@Import(TestcontainersConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductListingPlanTest {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    // Statements run on the product table, in order
+    private static final List<ExecutedQuery> executed = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void seed() {
+        // Prices repeat (10,000 distinct values), so the id tie-breaker is exercised too
+        jdbcTemplate.update("""
+                INSERT INTO product (sku, category, brand, model, price, description, image_url, created_at, updated_at)
+                SELECT 'PLAN' || i, 'plan' || (i % 50), 'brand' || (i / 50 % 20), 'Model ' || i,
+                       (CAST(i AS bigint) * 7919 % 10000) / 10.0, 'Plan test product', '/images/plan/plan.jpg', now(), now()
+                FROM generate_series(1, ?) AS i
+                """, PRODUCTS);
+        jdbcTemplate.execute("ANALYZE product");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM product WHERE sku LIKE 'PLAN%'");
+    }
+
+    @Test
+    @DisplayName("Cheapest first in a category should walk (category, price, id) from the cursor without sorting")
+    void priceAscending_usesCategoryPriceIndex() {
+        List<String> plan = explain(() ->
+                productRepository.findResponsesByCategoryAndPriceAfter("plan7", 500.0, 250.0, 0L, Limit.of(21)));
+
+        assertThat(plan).anyMatch(line -> line.contains("Index Scan using idx_product_category_price_id"));
+        assertThat(plan).noneMatch(line -> line.contains("Sort"));
+    }
+
+    @Test
+    @DisplayName("Most expensive first for a brand should scan (category, brand, price, id) backwards")
+    void priceDescending_usesBrandPriceIndexBackwards() {
+        List<String> plan = explain(() -> productRepository.findResponsesByCategoryAndBrandAndPriceBefore(
+                "plan7", "brand3", 100.0, 900.0, Long.MAX_VALUE, Limit.of(21)));
+
+        assertThat(plan).anyMatch(line -> line.contains("Index Scan Backward using idx_product_category_brand_price_id"));
+        assertThat(plan).noneMatch(line -> line.contains("Sort"));
+    }
+
+    @Test
+    @DisplayName("Newest first with a price range should scan (category, id) backwards")
+    void newest_usesCategoryIdIndexBackwards() {
+        List<String> plan = explain(() ->
+                productRepository.findResponsesByCategoryBefore("plan7", 100.0, 900.0, Long.MAX_VALUE, Limit.of(21)));
+
+        assertThat(plan).anyMatch(line -> line.contains("Index Scan Backward using idx_product_category_id"));
+        assertThat(plan).noneMatch(line -> line.contains("Sort"));
+    }
+
+    @Test
+    @DisplayName("Id order for a brand with a price range should walk (category, brand, id)")
+    void idOrder_usesBrandIdIndex() {
+        List<String> plan = explain(() -> productRepository.findResponsesByCategoryAndBrandAfter(
+                "plan7", "brand3", 100.0, 900.0, 0L, Limit.of(21)));
+
+        assertThat(plan).anyMatch(line -> line.contains("Index Scan using idx_product_category_brand_id"));
+        assertThat(plan).noneMatch(line -> line.contains("Sort"));
+    }
+
+    @Test
+    @DisplayName("Price-sorted pages should follow each other in (price, id) order within the range")
+    void priceAscending_pagesFollowOrder() {
+        List<ProductResponse> first = productRepository.findResponsesByCategoryAndPriceAfter(
+                "plan7", 500.0, 250.0, 0L, Limit.of(50));
+        ProductResponse last = first.get(first.size() - 1);
+        List<ProductResponse> second = productRepository.findResponsesByCategoryAndPriceAfter(
+                "plan7", 500.0, last.price(), last.Id(), Limit.of(50));
+
+        List<ProductResponse> both = new ArrayList<>(first);
+        both.addAll(second);
+        assertThat(both).hasSize(100);
+        assertThat(both).isSortedAccordingTo(
+                Comparator.comparingDouble(ProductResponse::price).thenComparing(ProductResponse::Id));
+        assertThat(both).allMatch(product -> product.price() >= 250.0 && product.price() <= 500.0);
+        assertThat(both).extracting(ProductResponse::Id).doesNotHaveDuplicates();
+    }
+
+    // Runs `query`, then EXPLAINs the statement it sent with the same parameters
+    private List<String> explain(Runnable query) {
+        executed.clear();
+        query.run();
+        assertThat(executed).hasSize(1);
+        ExecutedQuery listing = executed.get(0);
+        return jdbcTemplate.queryForList("EXPLAIN " + listing.sql(), String.class, listing.parameters().toArray());
+    }
+
+    private record ExecutedQuery(String sql, List<Object> parameters) {}
+
+    // Wraps the DataSource so every prepared statement records its SQL and the parameters bound to it
+    @TestConfiguration(proxyBeanMethods = false)
+    static class CaptureStatements {
+
+        @Bean
+        static BeanPostProcessor capturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new CapturingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class CapturingDataSource extends DelegatingDataSource {
+
+        CapturingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, connection, (method, args) -> {
+                Object result = invoke(connection, method, args);
+                return method.getName().equals("prepareStatement") ? capturing((PreparedStatement) result, (String) args[0]) : result;
+            });
+        }
+
+        private static PreparedStatement capturing(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, statement, (method, args) -> {
+                if (method.getName().startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer index) {
+                    parameters.put(index, method.getName().equals("setNull") ? null : args[1]);
+                } else if (method.getName().equals("executeQuery") && sql.contains(" from product ")) {
+                    executed.add(new ExecutedQuery(sql, new ArrayList<>(parameters.values())));
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(method, args));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private interface Handler {
+            Object handle(Method method, Object[] args) throws Throwable;
+        }
+    }
+}
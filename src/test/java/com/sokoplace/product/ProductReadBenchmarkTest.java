@@ -0,0 +1,134 @@
+package com.sokoplace.product;
+
+import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.test.TestcontainersConfig;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Integration benchmark: entity reads (load managed Products in a read-write transaction, then copy
+// into ProductResponse, as ProductService used to) against the read-only DTO projections.
+// Allocation is measured per thread with com.sun.management.ThreadMXBean, so it is deterministic enough
+// to assert on; CPU time is logged for comparison only, since it depends on the machine.
+// Every operation runs in its own transaction, like a request would.
+// Tagged slow: thousands of timed iterations, so it only runs with mvn test -Pslow-tests.
+
+@Slf4j
+@Tag("slow")
+@DataJpaTest
+@Import(TestcontainersConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ProductReadBenchmarkTest {
+
+    private static final int PRODUCTS = 2_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TransactionTemplate readWrite;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        readWrite = new TransactionTemplate(transactionManager);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Product(null, "BENCH" + i, "bench", "brand" + (i % 10), "Model " + i, 1000.0 + i,
+                    "Benchmark product " + i, "/images/bench/bench.jpg", new ArrayList<>(), null, null));
+        }
+        ids = productRepository.saveAll(products).stream().map(Product::getId).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAllByIdInBatch(ids);
+    }
+
+    @Test
+    @DisplayName("Projection reads by id should allocate less than entity reads")
+    void findById_projectionAllocatesLess() {
+        Long id = ids.get(PRODUCTS / 2);
+
+        Result entity = measure("findById (entity)", () -> readWrite.execute(status ->
+                productRepository.findById(id).map(ProductReadBenchmarkTest::toResponse).orElseThrow()));
+        Result projection = measure("findResponseById (projection)", () ->
+                productRepository.findResponseById(id).orElseThrow());
+
+        assertThat(projection.bytesPerOp()).isLessThan(entity.bytesPerOp());
+    }
+
+    @Test
+    @DisplayName("Projection reads of a category page should allocate less than entity reads")
+    void findByCategory_projectionAllocatesLess() {
+        Result entity = measure("category page (entity)", () -> readWrite.execute(status -> entityManager
+                .createQuery("SELECT p FROM Product p WHERE p.category = :category AND p.Id > :afterId ORDER BY p.Id",
+                        Product.class)
+                .setParameter("category", "bench")
+                .setParameter("afterId", 0L)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList().stream()
+                .map(ProductReadBenchmarkTest::toResponse)
+                .toList()));
+        Result projection = measure("category page (projection)", () ->
+                productRepository.findResponsesByCategoryAfter("bench", -Double.MAX_VALUE, Double.MAX_VALUE, 0L,
+                        Limit.of(PAGE_SIZE)));
+
+        assertThat(projection.bytesPerOp()).isLessThan(entity.bytesPerOp());
+    }
+
+    private Result measure(String name, Supplier<?> operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.get();
+        }
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.get();
+        }
+        Result result = new Result(
+                (threads.getCurrentThreadAllocatedBytes() - bytesBefore) / ITERATIONS,
+                (threads.getCurrentThreadCpuTime() - cpuBefore) / ITERATIONS / 1_000);
+        log.info("{}: {} bytes/op, {} us cpu/op", name, result.bytesPerOp(), result.cpuMicrosPerOp());
+        return result;
+    }
+
+    private static ProductResponse toResponse(Product product) {
+        return new ProductResponse(product.getId(), product.getSku(), product.getCategory(), product.getBrand(),
+                product.getModel(), product.getPrice(), product.getDescription(), product.getImageUrl(),
+                product.getUpdatedAt());
+    }
+
+    private record Result(long bytesPerOp, long cpuMicrosPerOp) {}
+}
@@ -1,5 +1,6 @@
 package com.sokoplace.product;
 
+import com.sokoplace.product.dto.ProductResponse;
 import com.sokoplace.test.TestcontainersConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -8,6 +9,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -155,4 +157,46 @@ public class ProductRepositoryTest {
         // Act & Assert - The 'act' is saving the invalid product, and we 'assert' that it throws the correct exception.
         assertThrows(DataIntegrityViolationException.class, () -> productRepository.saveAndFlush(invalidProduct));
     }
+
+    @Test
+    @DisplayName("Should project a product by ID or SKU straight into a response")
+    void findResponseByIdAndSku() {
+        // Act
+        Optional<ProductResponse> byId = productRepository.findResponseById(product1.getId());
+        Optional<ProductResponse> bySku = productRepository.findResponseBySku("SKU001");
+
+        // Assert
+        assertThat(byId).hasValueSatisfying(p -> {
+            assertThat(p.sku()).isEqualTo("SKU001");
+            assertThat(p.imageUrl()).isEqualTo("https://example.com/s23.jpg");
+        });
+        assertThat(bySku).contains(byId.orElseThrow());
+        assertThat(productRepository.findResponseBySku("SKU999")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should project a keyset page of a category in id order")
+    void findResponsesByCategoryAfter() {
+        // Act
+        List<ProductResponse> firstPage = productRepository.findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(1));
+        List<ProductResponse> secondPage = productRepository.findResponsesByCategoryAfter(
+                "Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, firstPage.get(0).Id(), Limit.of(1));
+        List<ProductResponse> apple = productRepository.findResponsesByCategoryAndBrandAfter(
+                "Electronics", "Apple", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(10));
+
+        // Assert
+        assertThat(firstPage).extracting(ProductResponse::sku).containsExactly("SKU001");
+        assertThat(secondPage).extracting(ProductResponse::sku).containsExactly("SKU002");
+        assertThat(apple).extracting(ProductResponse::model).containsExactly("iPhone 15");
+    }
+
+    @Test
+    @DisplayName("Should project every existing product of an id batch in one query")
+    void findResponsesByIdIn() {
+        // Act
+        List<ProductResponse> found = productRepository.findResponsesByIdIn(List.of(product1.getId(), -1L));
+
+        // Assert
+        assertThat(found).extracting(ProductResponse::sku).containsExactly("SKU001");
+    }
 }
\ No newline at end of file
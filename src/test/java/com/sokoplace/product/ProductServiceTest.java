@@ -1,5 +1,10 @@
 package com.sokoplace.product;
 
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.common.Cursor;
+import com.sokoplace.common.CursorPage;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.dto.ProductBatchResponse;
 import com.sokoplace.product.dto.ProductRequest;
 import com.sokoplace.product.dto.ProductResponse;
 import jakarta.persistence.EntityNotFoundException;
@@ -10,20 +15,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,18 +44,30 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(10));
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ImageStore imageStore;
+
     @InjectMocks
     private ProductService productService;
 
     private Product product1;
-    private Product product2;
+    private ProductResponse response1;
+    private ProductResponse response2;
     private ProductRequest productRequest;
 
     @BeforeEach
     void setup() {
         productRequest = new ProductRequest("SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung smartphone");
         product1 = new Product(1L, "SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung smartphone", "/images/Electronics/Electronics.jpg", null, null, null);
-        product2 = new Product(2L, "SKU002", "Electronics", "Apple", "iPhone 15", 1099.99, "Latest Apple smartphone", "/images/Electronics/Electronics.jpg", null, null, null);
+        // Reads are projected straight into responses by the repository
+        response1 = new ProductResponse(1L, "SKU001", "Electronics", "Samsung", "Galaxy S23", 999.99, "Latest Samsung smartphone", "/images/Electronics/Electronics.jpg", null);
+        response2 = new ProductResponse(2L, "SKU002", "Electronics", "Apple", "iPhone 15", 1099.99, "Latest Apple smartphone", "/images/Electronics/Electronics.jpg", null);
     }
 
     @Test
@@ -57,6 +81,7 @@ public class ProductServiceTest {
 
         // Mock the save operation to return the product with an ID
         given(productRepository.save(any(Product.class))).willReturn(product1);
+        given(imageStore.url("Electronics", "Electronics.jpg")).willReturn("/images/Electronics/Electronics.jpg?v=0123456789abcdef");
 
         // When
         ProductResponse createdProduct = productService.createProduct(productRequest);
@@ -65,7 +90,10 @@ public class ProductServiceTest {
         assertThat(createdProduct).isNotNull();
         assertThat(createdProduct.Id()).isEqualTo(1L);
         assertThat(createdProduct.sku()).isEqualTo(productRequest.sku());
-        verify(productRepository).save(any(Product.class));
+        ArgumentCaptor<Product> saved = ArgumentCaptor.forClass(Product.class);
+        verify(productRepository).save(saved.capture());
+        assertThat(saved.getValue().getImageUrl()).isEqualTo("/images/Electronics/Electronics.jpg?v=0123456789abcdef");
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(1L, createdProduct));
     }
 
     @Test
@@ -88,7 +116,7 @@ public class ProductServiceTest {
     @DisplayName("Should find product by ID when it exists")
     void shouldFindProductById() {
         // Given
-        given(productRepository.findById(1L)).willReturn(Optional.of(product1));
+        given(productRepository.findResponseById(1L)).willReturn(Optional.of(response1));
 
         // When
         ProductResponse foundProduct = productService.findProductById(1L);
@@ -97,58 +125,333 @@ public class ProductServiceTest {
         assertThat(foundProduct).isNotNull();
         assertThat(foundProduct.Id()).isEqualTo(product1.getId());
         assertThat(foundProduct.model()).isEqualTo(product1.getModel());
-        verify(productRepository).findById(1L);
+        verify(productRepository).findResponseById(1L);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads by ID from the cache")
+    void shouldCacheProductById() {
+        // Given
+        given(productRepository.findResponseById(1L)).willReturn(Optional.of(response1));
+
+        // When
+        ProductResponse first = productService.findProductById(1L);
+        ProductResponse second = productService.findProductById(1L);
+
+        // Then - only the first call reaches the repository
+        assertThat(second).isEqualTo(first);
+        verify(productRepository, times(1)).findResponseById(1L);
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads by SKU from the cache")
+    void shouldCacheProductBySku() {
+        // Given
+        given(productRepository.findResponseBySku("SKU001")).willReturn(Optional.of(response1));
+
+        // When
+        productService.findProductBySku("SKU001");
+        ProductResponse cached = productService.findProductBySku("SKU001");
+
+        // Then
+        assertThat(cached.sku()).isEqualTo("SKU001");
+        verify(productRepository, times(1)).findResponseBySku("SKU001");
+    }
+
+    @Test
+    @DisplayName("Should reload a product after it is updated")
+    void shouldEvictCachedProductOnUpdate() {
+        // Given - cache both keys of product1
+        given(productRepository.findResponseById(1L)).willReturn(Optional.of(response1));
+        given(productRepository.findResponseBySku("SKU001")).willReturn(Optional.of(response1));
+        given(productRepository.findById(1L)).willReturn(Optional.of(product1));
+        productService.findProductById(1L);
+        productService.findProductBySku("SKU001");
+        given(productRepository.saveAndFlush(any(Product.class))).willReturn(product1);
+
+        // When
+        productService.updateProduct(1L, productRequest);
+        productService.findProductById(1L);
+        productService.findProductBySku("SKU001");
+
+        // Then - both lookups miss again after the update
+        verify(productRepository, times(2)).findResponseById(1L);
+        verify(productRepository, times(2)).findResponseBySku("SKU001");
+    }
+
+    @Test
+    @DisplayName("Should keep an uploaded image when the product is updated")
+    void shouldKeepUploadedImageOnUpdate() {
+        // Given
+        product1.setImageUrl("/images/products/1.jpg?v=0123456789abcdef");
+        given(productRepository.findById(1L)).willReturn(Optional.of(product1));
+
+        // When
+        ProductResponse updated = productService.updateProduct(1L, productRequest);
+
+        // Then
+        assertThat(updated.imageUrl()).isEqualTo("/images/products/1.jpg?v=0123456789abcdef");
+        verify(imageStore, never()).url(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should point the product at its uploaded image and announce the change")
+    void shouldUpdateImageUrl() {
+        // Given
+        given(productRepository.findById(1L)).willReturn(Optional.of(product1));
+
+        // When
+        ProductResponse updated = productService.updateImageUrl(1L, "/images/products/1.png?v=0123456789abcdef");
+
+        // Then
+        assertThat(updated.imageUrl()).isEqualTo("/images/products/1.png?v=0123456789abcdef");
+        verify(productRepository).saveAndFlush(product1);
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(1L, updated));
     }
 
     @Test
     @DisplayName("Should throw EntityNotFoundException when product ID does not exist")
     void shouldThrowExceptionWhenProductIdNotFound() {
         // Given
-        given(productRepository.findById(anyLong())).willReturn(Optional.empty());
+        given(productRepository.findResponseById(anyLong())).willReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> productService.findProductById(99L))
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Product not found");
-        verify(productRepository).findById(99L);
+        verify(productRepository).findResponseById(99L);
     }
 
     @Test
-    @DisplayName("Should find all products for a given category")
+    @DisplayName("Should return the first page of products for a given category")
     void shouldFindProductsByCategory() {
         // Given
-        given(productRepository.findByCategory("Electronics")).willReturn(Arrays.asList(product1, product2));
+        given(productRepository.findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(21)))
+                .willReturn(List.of(response1, response2));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByCategory("Electronics", null, null, null, null, 20);
+
+        // Then
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.next()).isNull();
+        verify(productRepository).findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(21));
+    }
+
+    @Test
+    @DisplayName("Should return a next cursor when more products follow the page")
+    void shouldReturnNextCursorWhenMoreProductsExist() {
+        // Given - one row more than the page size comes back
+        given(productRepository.findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(2)))
+                .willReturn(List.of(response1, response2));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByCategory("Electronics", null, null, null, null, 1);
+
+        // Then
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.items().get(0).Id()).isEqualTo(1L);
+        assertThat(page.next()).isNotNull();
+        assertThat(Cursor.decode(page.next()).id()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should seek past the cursor position for the following page")
+    void shouldSeekFromCursor() {
+        // Given
+        String cursor = new Cursor(1L, null).encode();
+        given(productRepository.findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 1L, Limit.of(2))).willReturn(List.of(response2));
 
         // When
-        List<ProductResponse> products = productService.findProductByCategory("Electronics");
+        CursorPage<ProductResponse> page = productService.findProductByCategory("Electronics", null, null, null, cursor, 1);
 
         // Then
-        assertThat(products).isNotNull();
-        assertThat(products).hasSize(2);
-        verify(productRepository).findByCategory("Electronics");
+        assertThat(page.items()).extracting(ProductResponse::Id).containsExactly(2L);
+        assertThat(page.next()).isNull();
     }
 
     @Test
-    @DisplayName("Should find all products for a given category and brand")
+    @DisplayName("Should cap the page size at the maximum")
+    void shouldCapPageSize() {
+        // Given
+        given(productRepository.findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(ProductService.MAX_PAGE_SIZE + 1)))
+                .willReturn(List.of(response1));
+
+        // When
+        productService.findProductByCategory("Electronics", null, null, null, null, 10_000);
+
+        // Then
+        verify(productRepository).findResponsesByCategoryAfter("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(ProductService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed cursor")
+    void shouldRejectInvalidCursor() {
+        assertThatThrownBy(() -> productService.findProductByCategory("Electronics", null, null, null, "not-a-cursor!", 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("Invalid cursor");
+    }
+
+    @Test
+    @DisplayName("Should find a page of products for a given category and brand")
     void shouldFindProductsByCategoryAndBrand() {
         // Given
-        given(productRepository.findByCategoryAndBrand("Electronics", "Samsung")).willReturn(List.of(product1));
+        given(productRepository.findResponsesByCategoryAndBrandAfter("Electronics", "Samsung", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(21)))
+                .willReturn(List.of(response1));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByBrand("Electronics", "Samsung", null, null, null, null, 20);
+
+        // Then
+        assertThat(page.items()).hasSize(1);
+        assertThat(page.items().get(0).brand()).isEqualTo("Samsung");
+        assertThat(page.next()).isNull();
+        verify(productRepository).findResponsesByCategoryAndBrandAfter("Electronics", "Samsung", -Double.MAX_VALUE, Double.MAX_VALUE, 0L, Limit.of(21));
+    }
+
+    @Test
+    @DisplayName("Should page cheapest first with a (price, id) cursor, starting at the lower price bound")
+    void shouldSortByPriceAscending() {
+        // Given
+        given(productRepository.findResponsesByCategoryAndPriceAfter("Electronics", 2000.0, 500.0, 0L, Limit.of(2)))
+                .willReturn(List.of(response1, response2));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByCategory(
+                "Electronics", 500.0, 2000.0, "price_asc", null, 1);
+
+        // Then - the cursor carries the last price, so the next page seeks past (999.99, 1)
+        Cursor next = Cursor.decode(page.next());
+        assertThat(next.id()).isEqualTo(1L);
+        assertThat(next.key()).isEqualTo("999.99");
+
+        given(productRepository.findResponsesByCategoryAndPriceAfter("Electronics", 2000.0, 999.99, 1L, Limit.of(2)))
+                .willReturn(List.of(response2));
+        CursorPage<ProductResponse> second = productService.findProductByCategory(
+                "Electronics", 500.0, 2000.0, "price_asc", page.next(), 1);
+        assertThat(second.items()).extracting(ProductResponse::Id).containsExactly(2L);
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should page most expensive first from the upper price bound")
+    void shouldSortByPriceDescending() {
+        // Given
+        given(productRepository.findResponsesByCategoryAndBrandAndPriceBefore(
+                "Electronics", "Samsung", -Double.MAX_VALUE, 1500.0, Long.MAX_VALUE, Limit.of(21)))
+                .willReturn(List.of(response1));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByBrand(
+                "Electronics", "Samsung", null, 1500.0, "price_desc", null, 20);
+
+        // Then
+        assertThat(page.items()).extracting(ProductResponse::Id).containsExactly(1L);
+        assertThat(page.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should restart at the lower bound when a price cursor falls below a narrowed range")
+    void shouldClampPriceCursorToRange() {
+        // Given
+        String cursor = new Cursor(7L, "100.0").encode();
+        given(productRepository.findResponsesByCategoryAndPriceAfter("Electronics", Double.MAX_VALUE, 500.0, 0L, Limit.of(21)))
+                .willReturn(List.of());
+
+        // When
+        productService.findProductByCategory("Electronics", 500.0, null, "price_asc", cursor, 20);
+
+        // Then
+        verify(productRepository).findResponsesByCategoryAndPriceAfter(
+                "Electronics", Double.MAX_VALUE, 500.0, 0L, Limit.of(21));
+    }
+
+    @Test
+    @DisplayName("Should list newest first by walking ids backwards")
+    void shouldSortByNewest() {
+        // Given
+        given(productRepository.findResponsesByCategoryBefore("Electronics", -Double.MAX_VALUE, Double.MAX_VALUE,
+                Long.MAX_VALUE, Limit.of(2)))
+                .willReturn(List.of(response2, response1));
+
+        // When
+        CursorPage<ProductResponse> page = productService.findProductByCategory(
+                "Electronics", null, null, "newest", null, 1);
+
+        // Then - newest cursors are id-only
+        assertThat(page.items()).extracting(ProductResponse::Id).containsExactly(2L);
+        assertThat(Cursor.decode(page.next())).isEqualTo(new Cursor(2L, null));
+    }
+
+    @Test
+    @DisplayName("Should reject an inverted price range, an unknown sort and an id cursor on a price sort")
+    void shouldRejectInvalidListingParameters() {
+        assertThatThrownBy(() -> productService.findProductByCategory("Electronics", 10.0, 5.0, null, null, 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("minPrice");
+        assertThatThrownBy(() -> productService.findProductByCategory("Electronics", null, null, "cheapest", null, 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("Unknown sort");
+        String idCursor = new Cursor(1L, null).encode();
+        assertThatThrownBy(() -> productService.findProductByCategory("Electronics", null, null, "price_asc", idCursor, 20))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("Invalid cursor");
+    }
+
+    @Test
+    @DisplayName("Should return a batch in request order and list the missing ids")
+    void shouldFindProductsByIdsInRequestOrder() {
+        // Given - only the uncached ids reach the repository, in one query
+        given(productRepository.findResponsesByIdIn(anyCollection())).willReturn(List.of(response1, response2));
 
         // When
-        List<ProductResponse> products = productService.findProductByBrand("Electronics", "Samsung");
+        ProductBatchResponse batch = productService.findProductsByIds(List.of(2L, 99L, 1L, 2L));
 
         // Then
-        assertThat(products).isNotNull();
-        assertThat(products).hasSize(1);
-        assertThat(products.get(0).brand()).isEqualTo("Samsung");
-        verify(productRepository).findByCategoryAndBrand("Electronics", "Samsung");
+        assertThat(batch.products()).extracting(ProductResponse::Id).containsExactly(2L, 1L);
+        assertThat(batch.missingIds()).containsExactly(99L);
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.captor();
+        verify(productRepository).findResponsesByIdIn(ids.capture());
+        assertThat(ids.getValue()).containsExactlyInAnyOrder(1L, 2L, 99L);
+    }
+
+    @Test
+    @DisplayName("Should serve cached products of a batch without querying them again")
+    void shouldServeBatchFromCache() {
+        // Given - product 1 is already cached by a single-product read
+        given(productRepository.findResponseById(1L)).willReturn(Optional.of(response1));
+        productService.findProductById(1L);
+        given(productRepository.findResponsesByIdIn(List.of(2L))).willReturn(List.of(response2));
+
+        // When
+        ProductBatchResponse batch = productService.findProductsByIds(List.of(1L, 2L));
+        ProductBatchResponse again = productService.findProductsByIds(List.of(2L, 1L));
+
+        // Then - one query for the uncached id, none the second time
+        assertThat(batch.products()).extracting(ProductResponse::Id).containsExactly(1L, 2L);
+        assertThat(again.products()).extracting(ProductResponse::Id).containsExactly(2L, 1L);
+        verify(productRepository, times(1)).findResponsesByIdIn(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should reject an empty batch and one over the maximum size")
+    void shouldRejectInvalidBatch() {
+        List<Long> tooMany = LongStream.rangeClosed(1, ProductService.MAX_BATCH_SIZE + 1)
+                .boxed().toList();
+
+        assertThatThrownBy(() -> productService.findProductsByIds(List.of()))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> productService.findProductsByIds(tooMany))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("At most");
+        verify(productRepository, never()).findResponsesByIdIn(anyCollection());
     }
 
     @Test
     @DisplayName("Should find product by SKU when it exists")
     void shouldFindProductBySku() {
         // Given
-        given(productRepository.findBySku("SKU001")).willReturn(product1);
+        given(productRepository.findResponseBySku("SKU001")).willReturn(Optional.of(response1));
 
         // When
         ProductResponse foundProduct = productService.findProductBySku("SKU001");
@@ -156,20 +459,20 @@ public class ProductServiceTest {
         // Then
         assertThat(foundProduct).isNotNull();
         assertThat(foundProduct.sku()).isEqualTo("SKU001");
-        verify(productRepository).findBySku("SKU001");
+        verify(productRepository).findResponseBySku("SKU001");
     }
 
     @Test
     @DisplayName("Should throw EntityNotFoundException when SKU does not exist")
     void shouldThrowExceptionWhenSkuNotFound() {
         // Given
-        given(productRepository.findBySku("SKU999")).willReturn(null);
+        given(productRepository.findResponseBySku("SKU999")).willReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> productService.findProductBySku("SKU999"))
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Product not found");
-        verify(productRepository).findBySku("SKU999");
+        verify(productRepository).findResponseBySku("SKU999");
     }
 
     @Test
@@ -182,7 +485,7 @@ public class ProductServiceTest {
         Product updatedEntity = new Product(productId, "SKU001-U", "Electronics", "Samsung", "Galaxy S23 Ultra", 1199.99, "Updated description", "/images/Electronics/Electronics.jpg", null, null, null);
 
         given(productRepository.findById(productId)).willReturn(Optional.of(product1));
-        given(productRepository.save(any(Product.class))).willReturn(updatedEntity);
+        given(productRepository.saveAndFlush(any(Product.class))).willReturn(updatedEntity);
 
         // When
         ProductResponse updatedProduct = productService.updateProduct(productId, updateRequest);
@@ -195,7 +498,7 @@ public class ProductServiceTest {
 
         // Capture the argument passed to save to verify its contents
         ArgumentCaptor<Product> productCaptor = ArgumentCaptor.forClass(Product.class);
-        verify(productRepository).save(productCaptor.capture());
+        verify(productRepository).saveAndFlush(productCaptor.capture());
         Product savedProduct = productCaptor.getValue();
 
         assertThat(savedProduct.getDescription()).isEqualTo("Updated description");
@@ -216,6 +519,7 @@ public class ProductServiceTest {
         // Then
         verify(productRepository).findById(productId);
         verify(productRepository).delete(product1);
+        verify(eventPublisher).publishEvent(new ProductChangedEvent(productId, null));
     }
 
     @Test
@@ -0,0 +1,163 @@
+package com.sokoplace.product.bulk;
+
+import com.sokoplace.product.dto.ProductImportResponse;
+import com.sokoplace.product.dto.ProductImportResponse.RowError;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// No printing of results: the streamed body commits the response (and Spring Security adds its headers)
+// on the async thread, while the printer would still be reading the headers on the test thread.
+@WebMvcTest(ProductBulkController.class)
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@WithMockUser
+public class ProductBulkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ProductImportService productImportService;
+
+    @MockitoBean
+    private ProductExportService productExportService;
+
+    // --- POST /api/v1/products/import ---
+
+    @Test
+    @DisplayName("POST /api/v1/products/import - Should import a CSV body and return the report")
+    void importCsv_shouldReturnReport() throws Exception {
+        ProductImportResponse report = new ProductImportResponse(2, 1, 1,
+                List.of(new RowError(3, "lp002", "SKU already exists")));
+        given(productImportService.importProducts(any(InputStream.class), eq(ImportFormat.CSV))).willReturn(report);
+
+        mockMvc.perform(post("/api/v1/products/import")
+                        .with(csrf())
+                        .contentType("text/csv")
+                        .content("sku,category,brand,model,price\nlp001,laptop,lenovo,Yoga,1\nlp002,laptop,lenovo,Yoga 2,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+
+        verify(productImportService).importProducts(any(InputStream.class), eq(ImportFormat.CSV));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/products/import - Should import an NDJSON body")
+    void importNdjson_shouldUseNdjsonFormat() throws Exception {
+        given(productImportService.importProducts(any(InputStream.class), eq(ImportFormat.NDJSON)))
+                .willReturn(new ProductImportResponse(0, 0, 0, List.of()));
+
+        mockMvc.perform(post("/api/v1/products/import")
+                        .with(csrf())
+                        .contentType("application/x-ndjson")
+                        .content(""))
+                .andExpect(status().isOk());
+
+        verify(productImportService).importProducts(any(InputStream.class), eq(ImportFormat.NDJSON));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/products/import - Should return 415 for other content types")
+    void import_withUnsupportedType_shouldReturnUnsupportedMediaType() throws Exception {
+        mockMvc.perform(post("/api/v1/products/import")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<products/>"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(productImportService);
+    }
+
+    // --- GET /api/v1/products/export ---
+
+    private void givenExportWrites(String ndjson) throws Exception {
+        willAnswer(invocation -> {
+            invocation.getArgument(0, OutputStream.class).write(ndjson.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).given(productExportService).exportProducts(any(OutputStream.class));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/export - Should stream the catalog as NDJSON")
+    void export_shouldStreamNdjson() throws Exception {
+        givenExportWrites("{\"Id\":1}\n");
+
+        MvcResult result = mockMvc.perform(get("/api/v1/products/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("{\"Id\":1}\n"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/export - Should not gzip the stream when the client refuses it with q=0")
+    void export_withGzipQualityZero_shouldNotCompress() throws Exception {
+        givenExportWrites("{\"Id\":1}\n");
+
+        MvcResult result = mockMvc.perform(get("/api/v1/products/export").header("Accept-Encoding", "GZIP;q=0, *;q=0.5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("{\"Id\":1}\n"));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/products/export - Should gzip the stream when the client accepts it")
+    void export_withAcceptEncodingGzip_shouldCompress() throws Exception {
+        givenExportWrites("{\"Id\":1}\n");
+
+        MvcResult result = mockMvc.perform(get("/api/v1/products/export").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(unzipped.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"Id\":1}\n");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sokoplace.product.bulk;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ProductExportService exportService;
+
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    @BeforeEach
+    void setup() {
+        exportService = new ProductExportService(jdbcTemplate, transactionManager, Jackson2ObjectMapperBuilder.json().build(), 250);
+    }
+
+    // Feeds `rows` products through the row callback, the way JdbcTemplate walks a result set
+    private void givenProducts(int rows) throws Exception {
+        willAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            given(connection.prepareStatement(anyString(), anyInt(), anyInt())).willReturn(statement);
+            invocation.getArgument(0, PreparedStatementCreator.class).createPreparedStatement(connection);
+
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long id = 1; id <= rows; id++) {
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getLong("id")).willReturn(id);
+                given(resultSet.getString("sku")).willReturn("lp00" + id);
+                given(resultSet.getString("category")).willReturn("laptop");
+                given(resultSet.getDouble("price")).willReturn(100000.0);
+                given(resultSet.getTimestamp("updated_at")).willReturn(Timestamp.valueOf("2025-06-01 12:30:15"));
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).given(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("Should write one JSON object per line using a cursor with the configured fetch size")
+    void shouldWriteNdjsonFromCursor() throws Exception {
+        givenProducts(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = exportService.exportProducts(out);
+
+        assertThat(exported).isEqualTo(2);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"Id\":1,\"sku\":\"lp001\",\"category\":\"laptop\"");
+        assertThat(lines[1]).startsWith("{\"Id\":2,");
+        assertThat(lines[2]).isEmpty();
+        verify(statement).setFetchSize(250);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Should abort the query and roll back when the client stops reading")
+    void shouldAbortWhenOutputFails() throws Exception {
+        givenProducts(5_000);
+        OutputStream brokenPipe = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exportService.exportProducts(brokenPipe))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        verify(transactionManager).rollback(any());
+    }
+}
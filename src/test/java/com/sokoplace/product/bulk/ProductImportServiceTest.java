@@ -0,0 +1,201 @@
+package com.sokoplace.product.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.dto.ProductImportResponse;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ProductImportService importService;
+
+    // SKUs sent to the database per batch, as captured from the array parameter
+    private final List<List<String>> insertedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        importService = new ProductImportService(jdbcTemplate, imageStore,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                eventPublisher, new ObjectMapper(), 2, 10);
+    }
+
+    // Simulates the import statement: every SKU is inserted except "TAKEN" (SKU exists) and "EXISTING"
+    // (product exists)
+    @SuppressWarnings("unchecked")
+    private void givenDatabaseAcceptsAllButTaken() {
+        given(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).willAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            List<String> skus = new ArrayList<>();
+            given(connection.prepareStatement(anyString())).willReturn(mock(PreparedStatement.class));
+            given(connection.createArrayOf(anyString(), any(Object[].class))).willAnswer(arrayCall -> {
+                if (skus.isEmpty()) {
+                    for (Object sku : (Object[]) arrayCall.getArgument(1)) {
+                        skus.add((String) sku);
+                    }
+                }
+                return mock(Array.class);
+            });
+            invocation.getArgument(0, PreparedStatementCreator.class).createPreparedStatement(connection);
+            insertedBatches.add(skus);
+
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            List<Object> rows = new ArrayList<>();
+            long id = 1;
+            for (String sku : skus) {
+                boolean inserted = !sku.equals("TAKEN") && !sku.equals("EXISTING");
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getString("sku")).willReturn(sku);
+                given(resultSet.getObject("id", Long.class)).willReturn(inserted ? id++ : null);
+                given(resultSet.getString("image_url")).willReturn(inserted ? "/images/laptop/laptop.jpg?v=1" : null);
+                given(resultSet.getBoolean("product_exists")).willReturn(sku.equals("EXISTING"));
+                rows.add(mapper.mapRow(resultSet, rows.size()));
+            }
+            return rows;
+        });
+    }
+
+    private static ByteArrayInputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should import valid CSV rows in batches and report invalid ones by line")
+    void shouldImportCsvInBatches() {
+        givenDatabaseAcceptsAllButTaken();
+        String csv = """
+                model,sku,category,brand,price,description
+                ThinkPad E14,lp001,laptop,lenovo,150000,"Business laptop, 14"""
+                + "\"\"\"\n" + """
+                ThinkBook 14,lp002,laptop,lenovo,100000,
+                Yoga 7,lp003,laptop,,175000,
+                Latitude 14,TAKEN,laptop,dell,130000,
+                XPS 15,lp005,laptop,dell,not-a-price,
+                """;
+
+        ProductImportResponse response = importService.importProducts(body(csv), ImportFormat.CSV);
+
+        assertThat(response.rowsRead()).isEqualTo(5);
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.failed()).isEqualTo(3);
+        assertThat(response.errors()).extracting(ProductImportResponse.RowError::line).containsExactly(4L, 6L, 5L);
+        assertThat(response.errors().get(1).error()).isEqualTo("Malformed row");
+        assertThat(response.errors().get(2).error()).isEqualTo("SKU already exists");
+        assertThat(insertedBatches).containsExactly(List.of("lp001", "lp002"), List.of("TAKEN"));
+        verify(eventPublisher, times(2)).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("Should import NDJSON rows and reject SKUs repeated within a batch")
+    void shouldImportNdjson() {
+        givenDatabaseAcceptsAllButTaken();
+        String ndjson = """
+                {"sku":"ph001","category":"phone","brand":"samsung","model":"Galaxy S25","price":125000}
+                {"sku":"ph001","category":"phone","brand":"samsung","model":"Galaxy S25 Plus","price":155000}
+                {not json
+                null
+                ["ph002","phone"]
+                """;
+
+        ProductImportResponse response = importService.importProducts(body(ndjson), ImportFormat.NDJSON);
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.errors()).extracting(ProductImportResponse.RowError::error)
+                .containsExactly("Duplicate SKU in import", "Malformed row", "Malformed row", "Malformed row");
+    }
+
+    @Test
+    @DisplayName("Should reject a CSV body whose header lacks a required column")
+    void shouldRejectIncompleteHeader() {
+        assertThatThrownBy(() -> importService.importProducts(body("sku,category,brand\n"), ImportFormat.CSV))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("model");
+        verify(jdbcTemplate, never()).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+    }
+
+    @Test
+    @DisplayName("Should refuse products that already exist or repeat within a batch, and use the versioned image URL")
+    void shouldApplyCreateProductRules() {
+        givenDatabaseAcceptsAllButTaken();
+        given(imageStore.url("laptop", "laptop.jpg")).willReturn("/images/laptop/laptop.jpg?v=1");
+        String csv = """
+                sku,category,brand,model,price
+                lp001,laptop,lenovo,ThinkPad E14,150000
+                lp002,laptop,lenovo,ThinkPad E14,140000
+                EXISTING,laptop,dell,Latitude 14,130000
+                """;
+
+        ProductImportResponse response = importService.importProducts(body(csv), ImportFormat.CSV);
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.errors()).extracting(ProductImportResponse.RowError::error)
+                .containsExactly("Duplicate product in import", "Product already exists");
+        ArgumentCaptor<ProductChangedEvent> event = ArgumentCaptor.forClass(ProductChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().product().imageUrl()).isEqualTo("/images/laptop/laptop.jpg?v=1");
+        verify(imageStore, times(2)).url("laptop", "laptop.jpg");  // once per batch
+    }
+
+    @Test
+    @DisplayName("Should split quoted CSV fields")
+    void shouldSplitQuotedCsvFields() {
+        assertThat(ProductImportService.splitCsvLine("a,\"b, c\",\"say \"\"hi\"\"\",")).containsExactly("a", "b, c", "say \"hi\"", "");
+    }
+
+    @Test
+    @DisplayName("Should cap the number of listed errors but count them all")
+    void shouldCapReportedErrors() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 15; i++) {
+            ndjson.append("{\"sku\":\"\"}\n");
+        }
+
+        ProductImportResponse response = importService.importProducts(body(ndjson.toString()), ImportFormat.NDJSON);
+
+        assertThat(response.failed()).isEqualTo(15);
+        assertThat(response.errors()).hasSize(10);
+        verify(jdbcTemplate, never()).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+    }
+}
@@ -0,0 +1,130 @@
+package com.sokoplace.product.facet;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductFacetsResponse;
+import com.sokoplace.product.dto.ProductFacetsResponse.FacetCount;
+import com.sokoplace.product.dto.ProductResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductFacetServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductFacetService facetService;
+
+    @BeforeEach
+    void setup() {
+        facetService = new ProductFacetService(productRepository, new double[]{0, 50000, 100000});
+
+        List<ProductResponse> products = List.of(
+                product(1L, "laptop", "lenovo", 100000.00),
+                product(2L, "laptop", "lenovo", 150000.00),
+                product(3L, "laptop", "dell", 105000.00),
+                product(4L, "phone", "samsung", 125000.00),
+                product(5L, "phone", "oppo", 14700.00),
+                product(6L, "printer", "hp", 30500.00));
+        given(productRepository.findResponsesAfter(anyLong(), any(Limit.class))).willReturn(products);
+        facetService.buildSnapshot();
+    }
+
+    @Test
+    @DisplayName("Should count every facet value without a filter")
+    void shouldCountWithoutFilter() {
+        ProductFacetsResponse facets = facetService.findFacets(null, null, null);
+
+        assertThat(facets.total()).isEqualTo(6);
+        assertThat(facets.categories()).containsExactly(
+                new FacetCount("laptop", 3), new FacetCount("phone", 2), new FacetCount("printer", 1));
+        assertThat(facets.brands()).first().isEqualTo(new FacetCount("lenovo", 2));
+        assertThat(facets.priceBands()).extracting(ProductFacetsResponse.PriceBandCount::count)
+                .containsExactly(2L, 0L, 4L);
+        assertThat(facets.priceBands().get(2).max()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should count each facet with the other facets' filters applied")
+    void shouldApplyOtherFilters() {
+        ProductFacetsResponse facets = facetService.findFacets(List.of("laptop"), List.of("lenovo"), null);
+
+        assertThat(facets.total()).isEqualTo(2);
+        // Brands are counted within the laptop category, ignoring the brand filter itself
+        assertThat(facets.brands()).containsExactly(new FacetCount("lenovo", 2), new FacetCount("dell", 1));
+        // Categories are counted for lenovo products only
+        assertThat(facets.categories()).containsExactly(new FacetCount("laptop", 2));
+    }
+
+    @Test
+    @DisplayName("Should filter by price band")
+    void shouldFilterByPriceBand() {
+        ProductFacetsResponse facets = facetService.findFacets(null, null, List.of(0));
+
+        assertThat(facets.total()).isEqualTo(2);
+        assertThat(facets.categories()).containsExactlyInAnyOrder(
+                new FacetCount("phone", 1), new FacetCount("printer", 1));
+    }
+
+    @Test
+    @DisplayName("Should return no matches for an unknown value")
+    void shouldHandleUnknownValues() {
+        assertThat(facetService.findFacets(List.of("tablet"), null, null).total()).isZero();
+        assertThatThrownBy(() -> facetService.findFacets(null, null, List.of(7)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    @DisplayName("Should apply product changes to the snapshot")
+    void shouldApplyProductChanges() {
+        // When - move product 3 to another brand and band, add one, delete one
+        facetService.onProductChanged(new ProductChangedEvent(3L, product(3L, "laptop", "asus", 40000.00)));
+        facetService.onProductChanged(new ProductChangedEvent(7L, product(7L, "tablet", "apple", 90000.00)));
+        facetService.onProductChanged(new ProductChangedEvent(6L, null));
+
+        // Then
+        ProductFacetsResponse facets = facetService.findFacets(null, null, null);
+        assertThat(facets.total()).isEqualTo(6);
+        assertThat(facets.brands()).extracting(FacetCount::value).contains("asus", "apple").doesNotContain("dell", "hp");
+        assertThat(facets.categories()).extracting(FacetCount::value).doesNotContain("printer");
+        assertThat(facets.priceBands()).extracting(ProductFacetsResponse.PriceBandCount::count)
+                .containsExactly(2L, 1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Should stay correct after growing and compacting its columns")
+    void shouldSurviveGrowthAndCompaction() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 100; id < 5100; id++) {
+            facetService.onProductChanged(new ProductChangedEvent(id, product(id, "cable", "generic", 500.00)));
+            ids.add(id);
+        }
+        for (Long id : ids.subList(0, 4000)) {
+            facetService.onProductChanged(new ProductChangedEvent(id, null));
+        }
+
+        ProductFacetsResponse facets = facetService.findFacets(List.of("cable"), null, null);
+        assertThat(facets.total()).isEqualTo(1000);
+        assertThat(facetService.findFacets(null, null, null).total()).isEqualTo(1006);
+    }
+
+    private static ProductResponse product(Long id, String category, String brand, double price) {
+        return new ProductResponse(id, "SKU" + id, category, brand, "Model " + id, price, null, null, null);
+    }
+}
@@ -0,0 +1,148 @@
+package com.sokoplace.product.image;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.image.ImageResizeService;
+import com.sokoplace.image.ImageStore;
+import com.sokoplace.product.ProductService;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductImageServiceTest {
+
+    @TempDir
+    Path images;
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Mock
+    private ProductService productService;
+
+    private ImageStore imageStore;
+    private ImageResizeService imageResizeService;
+    private ProductImageService productImageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        imageStore = new ImageStore(images, "classpath*:static/images/");
+        imageResizeService = new ImageResizeService(new DefaultResourceLoader(), images.toUri().toString(),
+                new int[]{80, 160, 320}, cacheDirectory, DataSize.ofMegabytes(10));
+        productImageService = new ProductImageService(productService, imageStore, imageResizeService, 1, 1, 10_000_000);
+        productImageService.prepare();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        productImageService.stop();
+    }
+
+    @Test
+    @DisplayName("Should store the upload, render its variants, then point the product at the versioned URL")
+    void shouldProcessUpload() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.bin", "application/octet-stream", png(200, 100));
+
+        productImageService.upload(1L, file);
+        productImageService.stop();  // waits for the worker to finish
+
+        Path stored = images.resolve("products").resolve("1.png");
+        assertThat(stored).isRegularFile();
+        // 80, 160, then 320 is capped at the 200px source and is the last one
+        assertThat(imageResizeService.resizeCount()).isEqualTo(3);
+        verify(productService).updateImageUrl(1L,
+                "/images/products/1.png?v=" + imageStore.fingerprint(stored).version());
+        assertThat(uploadsLeft()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject files that aren't JPEG or PNG by their content, whatever their name")
+    void shouldRejectByMagicBytes() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpg", "image/jpeg", "GIF89a not really".getBytes());
+
+        assertThatThrownBy(() -> productImageService.upload(1L, file))
+                .isInstanceOf(BadRequestException.class);
+
+        assertThat(uploadsLeft()).isZero();
+        verify(productService, never()).updateImageUrl(anyLong(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should return 404 for unknown products before storing anything")
+    void shouldRejectUnknownProduct() throws Exception {
+        given(productService.findProductById(9L)).willThrow(new EntityNotFoundException("Product not found"));
+        MockMultipartFile file = new MockMultipartFile("file", "photo.png", "image/png", png(10, 10));
+
+        assertThatThrownBy(() -> productImageService.upload(9L, file))
+                .isInstanceOf(EntityNotFoundException.class);
+
+        assertThat(uploadsLeft()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should refuse uploads once the worker and its queue are busy")
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch working = new CountDownLatch(1);
+        given(productService.updateImageUrl(eq(1L), startsWith("/images/products/1.png"))).willAnswer(invocation -> {
+            working.countDown();
+            release.await();  // holds the only worker
+            return null;
+        });
+
+        productImageService.upload(1L, new MockMultipartFile("file", png(10, 10)));
+        working.await(10, TimeUnit.SECONDS);
+        productImageService.upload(2L, new MockMultipartFile("file", png(10, 10)));
+
+        assertThat(productImageService.queuedUploads()).isEqualTo(1);
+        assertThatThrownBy(() -> productImageService.upload(3L, new MockMultipartFile("file", png(10, 10))))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        productImageService.stop();
+        verify(productService).updateImageUrl(eq(2L), startsWith("/images/products/2.png"));
+        assertThat(uploadsLeft()).isZero();
+        assertThat(images.resolve("products").resolve("3.png")).doesNotExist();
+    }
+
+    private long uploadsLeft() throws Exception {
+        try (Stream<Path> files = Files.list(images.resolve(".uploads"))) {
+            return files.count();
+        }
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,286 @@
+package com.sokoplace.product.inventory;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class InventoryServiceTest {
+
+    private static final String CLAIM = "stock_quantity - ?";
+    private static final String STORED = "SELECT stock_quantity";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InventoryService inventoryService;
+
+    // product.stock_quantity as the mocked statements see it (a null value: stock not tracked)
+    private final Map<Long, Integer> stored = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        inventoryService = new InventoryService(jdbcTemplate, transactionManager, 4, 10, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should claim a chunk of stock and sell the following orders from it without asking the database")
+    void hold_claimsAChunkThenSellsFromIt() {
+        // Given
+        givenStoredStock(Map.of(1L, 25));
+
+        // When
+        assertThat(inventoryService.hold(Map.of(1L, 2))).isEqualTo(Map.of(1L, 2));
+        assertThat(inventoryService.hold(Map.of(1L, 8))).isEqualTo(Map.of(1L, 8));
+
+        // Then
+        assertThat(stored).containsEntry(1L, 15);
+        verify(jdbcTemplate, times(1)).update(contains(CLAIM), anyInt(), anyLong(), anyInt());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Should claim the whole quantity of an order larger than a chunk")
+    void hold_largeOrder_claimsItsQuantity() {
+        // Given
+        givenStoredStock(Map.of(1L, 50));
+
+        // When
+        inventoryService.hold(Map.of(1L, 30));
+
+        // Then
+        assertThat(stored).containsEntry(1L, 20);
+    }
+
+    @Test
+    @DisplayName("Should claim what is left when less than a chunk is stored, then refuse without a round trip")
+    void hold_lastUnits_claimsRemainderThenRefusesLocally() {
+        // Given
+        givenStoredStock(Map.of(1L, 3));
+
+        // When
+        inventoryService.hold(Map.of(1L, 2));
+        inventoryService.hold(Map.of(1L, 1));
+
+        // Then
+        assertThat(stored).containsEntry(1L, 0);
+        assertThatThrownBy(() -> inventoryService.hold(Map.of(1L, 1)))
+                .isInstanceOf(InsufficientStockException.class)
+                .extracting("productId").isEqualTo(1L);
+        // Known short for recheck-interval: refused on this instance
+        assertThatThrownBy(() -> inventoryService.hold(Map.of(1L, 1)))
+                .isInstanceOf(InsufficientStockException.class);
+        verify(jdbcTemplate, times(2)).queryForList(contains(STORED), eq(Integer.class), eq(1L));
+    }
+
+    @Test
+    @DisplayName("Should ask the database again once a short product's recheck interval has passed")
+    void hold_afterRecheckInterval_claimsAgain() {
+        // Given
+        inventoryService = new InventoryService(jdbcTemplate, transactionManager, 4, 10, Duration.ZERO);
+        givenStoredStock(Map.of(1L, 0));
+        assertThatThrownBy(() -> inventoryService.hold(Map.of(1L, 1))).isInstanceOf(InsufficientStockException.class);
+
+        // When - restocked elsewhere
+        stored.put(1L, 4);
+
+        // Then
+        assertThat(inventoryService.hold(Map.of(1L, 1))).isEqualTo(Map.of(1L, 1));
+        assertThat(stored).containsEntry(1L, 0);
+    }
+
+    @Test
+    @DisplayName("Should hold all of an order's products or none of them")
+    void hold_oneProductShort_releasesTheOthers() {
+        // Given
+        givenStoredStock(Map.of(1L, 10, 2L, 0));
+
+        // When & Then
+        assertThatThrownBy(() -> inventoryService.hold(Map.of(1L, 10, 2L, 1)))
+                .isInstanceOf(InsufficientStockException.class)
+                .extracting("productId").isEqualTo(2L);
+        // Product 1's units are back in the lease: held again without another claim
+        assertThat(inventoryService.hold(Map.of(1L, 10))).isEqualTo(Map.of(1L, 10));
+        verify(jdbcTemplate, times(1)).update(contains(CLAIM), anyInt(), eq(1L), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should let products without tracked stock be ordered freely")
+    void hold_untrackedProduct_isAlwaysAvailable() {
+        // Given
+        Map<Long, Integer> untracked = new HashMap<>();
+        untracked.put(1L, null);
+        givenStoredStock(untracked);
+
+        // When & Then
+        assertThat(inventoryService.hold(Map.of(1L, 1_000))).isEmpty();
+        assertThat(inventoryService.hold(Map.of(1L, 1_000))).isEmpty();
+        verify(jdbcTemplate, never()).update(contains(CLAIM), anyInt(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should give the held units back to the lease when the order's transaction rolls back")
+    void reserve_releasesOnRollback() {
+        // Given
+        givenStoredStock(Map.of(1L, 10));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        inventoryService.reserve(Map.of(1L, 10));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Then - the lease has the 10 units again
+        assertThat(inventoryService.hold(Map.of(1L, 10))).isEqualTo(Map.of(1L, 10));
+        verify(jdbcTemplate, times(1)).update(contains(CLAIM), anyInt(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should put a cancelled order's units back in the database")
+    void restock_updatesDatabase() {
+        // When
+        inventoryService.restock(Map.of(1L, 2));
+
+        // Then
+        verify(jdbcTemplate).update(contains("stock_quantity + r.quantity"), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    @DisplayName("Should give an idle lease back to the database")
+    void sweep_givesIdleLeaseBack() {
+        // Given
+        inventoryService = new InventoryService(jdbcTemplate, transactionManager, 4, 10, Duration.ZERO);
+        givenStoredStock(Map.of(1L, 20));
+        inventoryService.hold(Map.of(1L, 1));
+
+        // When
+        inventoryService.sweep();
+
+        // Then
+        assertThat(stored).containsEntry(1L, 19);
+    }
+
+    @Test
+    @DisplayName("Should give every lease back on close, and units released afterwards too")
+    void close_givesLeasesBack() {
+        // Given
+        givenStoredStock(Map.of(1L, 20));
+        Map<Long, Integer> held = inventoryService.hold(Map.of(1L, 4));
+
+        // When
+        inventoryService.close();
+        inventoryService.releaseHold(held);
+
+        // Then
+        assertThat(stored).containsEntry(1L, 20);
+        assertThatThrownBy(() -> inventoryService.hold(Map.of(1L, 1))).isInstanceOf(InsufficientStockException.class);
+    }
+
+    @Test
+    @DisplayName("Should drop this instance's lease when the stock is set, and refuse a missing product")
+    void setStock_dropsLease() {
+        // Given
+        givenStoredStock(Map.of(1L, 20));
+        inventoryService.hold(Map.of(1L, 1));
+
+        // When
+        inventoryService.setStock(1L, 7);
+
+        // Then - the next order claims from the new stock
+        assertThat(inventoryService.hold(Map.of(1L, 7))).isEqualTo(Map.of(1L, 7));
+        assertThat(stored).containsEntry(1L, 0);
+        assertThatThrownBy(() -> inventoryService.setStock(99L, 7)).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should throw EntityNotFoundException for the stock of a missing product")
+    void findStock_missingProduct_shouldThrow() {
+        // Given
+        given(jdbcTemplate.queryForObject(contains(STORED), eq(Integer.class), eq(99L)))
+                .willThrow(new EmptyResultDataAccessException(1));
+
+        // When & Then
+        assertThatThrownBy(() -> inventoryService.findStock(99L))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    // Backs the inventory statements with `stored`, starting from the given rows
+    private void givenStoredStock(Map<Long, Integer> rows) {
+        stored.putAll(rows);
+        lenient().doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            for (Map.Entry<Long, Integer> row : stored.entrySet()) {
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getLong(1)).willReturn(row.getKey());
+                given(resultSet.getObject(2)).willReturn(row.getValue());
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("SELECT id, stock_quantity"), any(PreparedStatementSetter.class),
+                any(RowCallbackHandler.class));
+        lenient().when(jdbcTemplate.queryForList(contains(STORED), eq(Integer.class), anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(2);
+            return stored.containsKey(id) ? Collections.singletonList(stored.get(id)) : List.of();
+        });
+        lenient().when(jdbcTemplate.update(contains(CLAIM), anyInt(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            int units = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            Integer stock = stored.get(id);
+            if (stock == null || stock < units) {
+                return 0;
+            }
+            stored.put(id, stock - units);
+            return 1;
+        });
+        lenient().when(jdbcTemplate.update(contains("stock_quantity + ?"), anyInt(), anyLong())).thenAnswer(invocation -> {
+            int units = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            stored.computeIfPresent(id, (key, stock) -> stock + units);
+            return 1;
+        });
+        lenient().when(jdbcTemplate.update(contains("SET stock_quantity = ?"), anyInt(), anyLong())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            return stored.computeIfPresent(id, (key, stock) -> quantity) == null ? 0 : 1;
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.sokoplace.product.inventory;
+
+import com.sokoplace.customer.Customer;
+import com.sokoplace.customer.CustomerRepository;
+import com.sokoplace.customer.stats.CustomerStatsService;
+import com.sokoplace.customerOrder.CustomerOrderService;
+import com.sokoplace.customerOrder.dto.CustomerOrderRequest;
+import com.sokoplace.customerOrder.dto.CustomerOrderResponse;
+import com.sokoplace.customerOrder.dto.OrderItemRequest;
+import com.sokoplace.product.Product;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.test.TestcontainersConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Integration stress test: thousands of concurrent orders for one product with less stock than demand.
+// Every order runs through CustomerOrderService in its own committed transaction, like a request would.
+// Exactly the stock sells, stock_quantity matches, and cancelled orders put their units back. A second
+// InventoryService on the same database stands in for another instance of the application, claiming its
+// own leases from the same row.
+// The two stress tests are tagged slow: thousands of orders each, so they only run with mvn test -Pslow-tests.
+
+@DataJpaTest
+@Import({TestcontainersConfig.class, InventoryService.class, CustomerStatsService.class, CustomerOrderService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class InventoryStressTest {
+
+    private static final int STOCK = 1_000;
+    private static final int ORDERS = 3_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private CustomerOrderService orderService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Customer customer;
+    private Product product;
+    private InventoryService otherInstance;
+
+    @BeforeEach
+    void setUp() {
+        customer = customerRepository.save(new Customer(null, "Stress Customer", "stress@test.com", new ArrayList<>(), null, null));
+        product = productRepository.save(new Product(null, "HOT1", "phones", "Samsung", "A15", 299.0,
+                "Hot product", "/images/hot.jpg", new ArrayList<>(), null, null));
+        inventoryService.setStock(product.getId(), STOCK);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (otherInstance != null) {
+            otherInstance.close();
+        }
+        // The customer's orders and their order_item rows go with it (ON DELETE CASCADE)
+        productRepository.deleteAllByIdInBatch(List.of(product.getId()));
+        customerRepository.deleteAllByIdInBatch(List.of(customer.getId()));
+    }
+
+    @Tag("slow")
+    @Test
+    @DisplayName("Concurrent orders for one product should sell exactly the stock, never more")
+    void concurrentOrders_sellExactlyTheStock() throws Exception {
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Long> placed = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    CustomerOrderResponse order = orderService.createOrder(
+                            new CustomerOrderRequest(customer.getId(), List.of(new OrderItemRequest(product.getId(), 1))));
+                    placed.add(order.Id());
+                } catch (InsufficientStockException ex) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertThat(placed).hasSize(STOCK);
+        assertThat(rejected.get()).isEqualTo(ORDERS - STOCK);
+        assertThat(storedStock()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_item WHERE product_id = ?",
+                Integer.class, product.getId())).isEqualTo(STOCK);
+
+        // Cancelling orders puts their units back
+        placed.stream().limit(10).forEach(orderService::deleteOrder);
+        assertThat(storedStock()).isEqualTo(10);
+    }
+
+    @Tag("slow")
+    @Test
+    @DisplayName("Two instances taking from the same product should together sell exactly the stock")
+    void twoInstances_sellExactlyTheStock() throws Exception {
+        otherInstance = new InventoryService(jdbcTemplate, transactionManager, 8, 20, Duration.ofSeconds(1));
+        List<InventoryService> instances = List.of(inventoryService, otherInstance);
+        AtomicInteger sold = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            InventoryService instance = instances.get(i % 2);
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    instance.hold(Map.of(product.getId(), 1));  // held units are sold; writing the order is left out
+                    sold.incrementAndGet();
+                } catch (InsufficientStockException ex) {
+                    // sold out
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(storedStock()).isZero();
+
+        // Nothing is left in either lease to give back
+        otherInstance.close();
+        inventoryService.sweep();
+        assertThat(storedStock()).isZero();
+    }
+
+    @Test
+    @DisplayName("The database should refuse a negative stock even when written directly")
+    void negativeStock_isRejectedByTheDatabase() {
+        assertThatThrownBy(() -> jdbcTemplate.update(
+                "UPDATE product SET stock_quantity = -1 WHERE id = ?", product.getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(storedStock()).isEqualTo(STOCK);
+    }
+
+    private Integer storedStock() {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM product WHERE id = ?",
+                Integer.class, product.getId());
+    }
+}
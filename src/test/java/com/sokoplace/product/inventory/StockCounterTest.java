@@ -0,0 +1,109 @@
+package com.sokoplace.product.inventory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StockCounterTest {
+
+    @Test
+    @DisplayName("Should reserve units until the stock runs out, even when they are spread over all cells")
+    void shouldReserveUntilSoldOut() {
+        StockCounter counter = new StockCounter(1L, 3, 8);  // fewer units than cells
+
+        assertThat(counter.tryReserve(2)).isTrue();  // no single cell holds 2: takes the slow path
+        assertThat(counter.tryReserve(2)).isFalse();
+        assertThat(counter.tryReserve(1)).isTrue();
+        assertThat(counter.tryReserve(1)).isFalse();
+        assertThat(counter.available()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should add claimed units, drain them all, and remember when it claimed")
+    void shouldLeaseAndDrain() throws InterruptedException {
+        StockCounter counter = new StockCounter(1L, 0, 4);
+        Thread.sleep(5);
+        assertThat(counter.claimedWithin(1_000_000)).isFalse();  // created more than 1 ms ago
+
+        counter.leased(10);
+        counter.tryReserve(4);
+        counter.release(1);
+
+        assertThat(counter.claimedWithin(1_000_000_000)).isTrue();
+        assertThat(counter.drain()).isEqualTo(7);
+        assertThat(counter.available()).isZero();
+        assertThat(counter.tryReserve(1)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should be short only until the given time, or until cleared")
+    void shouldMarkShort() {
+        StockCounter counter = new StockCounter(1L, 0, 4);
+        assertThat(counter.isShort()).isFalse();
+
+        counter.markShort(60_000_000_000L);
+        assertThat(counter.isShort()).isTrue();
+        counter.clearShort();
+        assertThat(counter.isShort()).isFalse();
+
+        counter.markShort(0);
+        assertThat(counter.isShort()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should reject a cell count that is not a power of two")
+    void shouldRejectCellCount() {
+        assertThatThrownBy(() -> new StockCounter(1L, 10, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should never oversell under concurrent reservations and releases")
+    void shouldNotOversellUnderContention() throws Exception {
+        int stock = 5_000;
+        int threads = 16;
+        int attemptsPerThread = 1_000;  // 16,000 attempts for 5,000 units
+        StockCounter counter = new StockCounter(1L, stock, 8);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (counter.tryReserve(1)) {
+                        reserved.incrementAndGet();
+                        if (thread % 4 == 0 && i % 10 == 0) {  // some orders are cancelled again
+                            counter.release(1);
+                            released.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        int sold = reserved.get() - released.get();
+        assertThat(sold).isEqualTo(stock);  // more attempts than units: everything sells, nothing more
+        assertThat(counter.available()).isZero();
+    }
+}
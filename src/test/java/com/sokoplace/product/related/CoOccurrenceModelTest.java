@@ -0,0 +1,124 @@
+package com.sokoplace.product.related;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoOccurrenceModelTest {
+
+    @Test
+    @DisplayName("Should rank co-purchased products by count, then by id")
+    void shouldRankByCount() {
+        CoOccurrenceModel model = new CoOccurrenceModel();
+        model.addBasket(new long[]{1, 2, 3}, 1);
+        model.addBasket(new long[]{1, 3}, 1);
+        model.addBasket(new long[]{1, 4}, 1);
+
+        assertThat(model.topRelated(1, 10)).containsExactly(3, 2, 4);
+        assertThat(model.topRelated(3, 10)).containsExactly(1, 2);
+        assertThat(model.topRelated(1, 1)).containsExactly(3);
+        assertThat(model.topRelated(99, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should uncount a replaced basket and refresh the cached top list")
+    void shouldUncountBasket() {
+        CoOccurrenceModel model = new CoOccurrenceModel();
+        model.addBasket(new long[]{1, 2}, 1);
+        model.addBasket(new long[]{1, 3}, 1);
+        assertThat(model.topRelated(1, 10)).containsExactly(2, 3);  // caches the top list
+
+        // The order with {1, 2} becomes {1, 3}
+        model.addBasket(new long[]{1, 2}, -1);
+        model.addBasket(new long[]{1, 3}, 1);
+
+        assertThat(model.topRelated(1, 10)).containsExactly(3);
+        assertThat(model.topRelated(2, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should drop a deleted product from every row")
+    void shouldRemoveProduct() {
+        CoOccurrenceModel model = new CoOccurrenceModel();
+        model.addBasket(new long[]{1, 2, 3}, 1);
+
+        model.removeProduct(2);
+
+        assertThat(model.topRelated(2, 10)).isEmpty();
+        assertThat(model.topRelated(1, 10)).containsExactly(3);
+        assertThat(model.topRelated(3, 10)).containsExactly(1);
+    }
+
+    @Test
+    @DisplayName("Should ignore single-product and oversized baskets")
+    void shouldIgnoreTrivialAndOversizedBaskets() {
+        CoOccurrenceModel model = new CoOccurrenceModel();
+        model.addBasket(new long[]{1}, 1);
+        model.addBasket(LongStream.rangeClosed(1, CoOccurrenceModel.MAX_BASKET_SIZE + 1).toArray(), 1);
+
+        assertThat(model.topRelated(1, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Parallel build by stripe ownership should count exactly like basket-by-basket updates")
+    void countOwnedMatchesIncrementalUpdates() {
+        Random random = new Random(42);
+        int basketCount = 2_000;
+        long[] items = new long[basketCount * 6];
+        int[] starts = new int[basketCount + 1];
+        CoOccurrenceModel incremental = new CoOccurrenceModel();
+        int size = 0;
+        for (int b = 0; b < basketCount; b++) {
+            starts[b] = size;
+            long[] basket = random.longs(1 + random.nextInt(6), 1, 300).distinct().toArray();
+            System.arraycopy(basket, 0, items, size, basket.length);
+            size += basket.length;
+            incremental.addBasket(basket, 1);
+        }
+        starts[basketCount] = size;
+
+        CoOccurrenceModel built = new CoOccurrenceModel();
+        for (int worker = 0; worker < 3; worker++) {
+            built.countOwned(items, starts, basketCount, worker, 3);
+        }
+
+        for (long product = 1; product < 300; product++) {
+            assertThat(built.topRelated(product, 20)).containsExactly(incremental.topRelated(product, 20));
+        }
+        assertThat(built.size()).isEqualTo(incremental.size());
+    }
+
+    @Test
+    @DisplayName("LongIntHashMap should agree with a HashMap through growth and removals")
+    void longIntHashMapMatchesHashMap() {
+        Random random = new Random(7);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            int delta = random.nextInt(5) - 2;  // removals happen whenever a count reaches zero
+            int value = map.addTo(key, delta);
+            int updated = Math.max(0, expected.getOrDefault(key, 0) + delta);
+            if (updated == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, updated);
+            }
+            assertThat(value).isEqualTo(updated);
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.keyAt(slot) != 0) {
+                assertThat(expected).containsEntry(map.keyAt(slot), map.valueAt(slot));
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.sokoplace.product.related;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductService;
+import com.sokoplace.product.dto.ProductBatchResponse;
+import com.sokoplace.product.dto.ProductResponse;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class RelatedProductServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ProductService productService;
+
+    private RelatedProductService relatedProductService;
+
+    @BeforeEach
+    void setup() {
+        relatedProductService = new RelatedProductService(jdbcTemplate, transactionManager, productService, 4);
+    }
+
+    // Feeds (order id, product id) rows through the row callback, in order id order like the build query.
+    // `duringRead` runs in the middle of the read, to simulate an order committing while the build runs.
+    private void givenOrderItems(long[][] rows, Runnable duringRead) {
+        willAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            given(connection.prepareStatement(anyString(), anyInt(), anyInt())).willReturn(mock(PreparedStatement.class));
+            invocation.getArgument(0, PreparedStatementCreator.class).createPreparedStatement(connection);
+
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 0; i < rows.length; i++) {
+                if (i == rows.length / 2) {
+                    duringRead.run();
+                }
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getLong(1)).willReturn(rows[i][0]);
+                given(resultSet.getLong(2)).willReturn(rows[i][1]);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).given(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @DisplayName("Should build the model from order_item and apply changes committed during the build")
+    void shouldBuildFromOrderItems() {
+        // Given - orders 1: {10, 20, 30}, 2: {10, 30}; order 3: {10, 20} commits while the rows are read
+        givenOrderItems(new long[][]{{1, 10}, {1, 20}, {1, 30}, {2, 10}, {2, 30}},
+                () -> relatedProductService.onOrderItemsChanged(
+                        new OrderItemsChangedEvent(3L, List.of(), List.of(10L, 20L))));
+
+        // When
+        relatedProductService.buildModel();
+
+        // Then - 10 was bought twice with 20 and twice with 30; ties go to the lower id
+        assertThat(relatedProductService.findRelatedIds(10L, 10)).containsExactly(20L, 30L);
+        assertThat(relatedProductService.findRelatedIds(30L, 10)).containsExactly(10L, 20L);
+    }
+
+    @Test
+    @DisplayName("Should apply order updates, deletes and product deletions as differences")
+    void shouldApplyIncrementalChanges() {
+        givenOrderItems(new long[][]{{1, 10}, {1, 20}}, () -> {});
+        relatedProductService.buildModel();
+
+        // Order 2 is created as {10, 30}, then updated to {10, 30, 40}; order 1 is deleted
+        relatedProductService.onOrderItemsChanged(new OrderItemsChangedEvent(2L, List.of(), List.of(10L, 30L)));
+        relatedProductService.onOrderItemsChanged(new OrderItemsChangedEvent(2L, List.of(10L, 30L), List.of(10L, 30L, 40L)));
+        relatedProductService.onOrderItemsChanged(new OrderItemsChangedEvent(1L, List.of(10L, 20L), List.of()));
+        assertThat(relatedProductService.findRelatedIds(10L, 10)).containsExactly(30L, 40L);
+
+        relatedProductService.onProductChanged(new ProductChangedEvent(30L, null));
+        assertThat(relatedProductService.findRelatedIds(10L, 10)).containsExactly(40L);
+    }
+
+    @Test
+    @DisplayName("Should resolve related ids to products through the batch lookup")
+    void shouldReturnRelatedProducts() {
+        givenOrderItems(new long[][]{{1, 10}, {1, 20}}, () -> {});
+        relatedProductService.buildModel();
+        ProductResponse product20 = new ProductResponse(20L, "SKU020", "Electronics", "Anker", "Charger", 25.0, null, null, null);
+        given(productService.findProductsByIds(List.of(20L))).willReturn(new ProductBatchResponse(List.of(product20), List.of()));
+
+        List<ProductResponse> related = relatedProductService.findRelatedProducts(10L, 5);
+
+        assertThat(related).containsExactly(product20);
+        verify(productService).findProductById(10L);
+    }
+
+    @Test
+    @DisplayName("Should return no products, without a lookup, for a product never ordered with others")
+    void shouldReturnEmptyForUnorderedProduct() {
+        assertThat(relatedProductService.findRelatedProducts(10L, 5)).isEmpty();
+        verify(productService, never()).findProductsByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should propagate not found for an unknown product and reject a limit below 1")
+    void shouldRejectUnknownProductAndBadLimit() {
+        given(productService.findProductById(99L)).willThrow(new EntityNotFoundException("Product not found"));
+
+        assertThatThrownBy(() -> relatedProductService.findRelatedProducts(99L, 5))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThatThrownBy(() -> relatedProductService.findRelatedProducts(10L, 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
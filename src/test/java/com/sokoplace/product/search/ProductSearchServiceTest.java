@@ -0,0 +1,107 @@
+package com.sokoplace.product.search;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductSearchServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @InjectMocks
+    private ProductSearchService searchService;
+
+    private ProductResponse thinkPad;
+    private ProductResponse thinkBook;
+    private ProductResponse galaxy;
+
+    @BeforeEach
+    void setup() {
+        thinkPad = new ProductResponse(1L, "lp001", "laptop", "lenovo", "ThinkPad E14", 150000.00, "business laptop", null, null);
+        thinkBook = new ProductResponse(2L, "lp002", "laptop", "lenovo", "ThinkBook 14", 100000.00, "good laptop", null, null);
+        galaxy = new ProductResponse(3L, "ph001", "phone", "samsung", "Galaxy S25", 125000.00, "good phone", null, null);
+
+        given(productRepository.findResponsesAfter(anyLong(), any(Limit.class)))
+                .willReturn(List.of(thinkPad, thinkBook, galaxy));
+        searchService.buildIndex();
+    }
+
+    @Test
+    @DisplayName("Should find products by exact terms across fields")
+    void shouldMatchExactTerms() {
+        assertThat(searchService.search("samsung phone", 10)).containsExactly(galaxy);
+        assertThat(searchService.search("Lenovo", 10)).containsExactlyInAnyOrder(thinkPad, thinkBook);
+    }
+
+    @Test
+    @DisplayName("Should require every query term to match")
+    void shouldRequireAllTerms() {
+        assertThat(searchService.search("lenovo galaxy", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should match terms by prefix")
+    void shouldMatchPrefixes() {
+        assertThat(searchService.search("think", 10)).containsExactlyInAnyOrder(thinkPad, thinkBook);
+        assertThat(searchService.search("thinkp", 10)).containsExactly(thinkPad);
+    }
+
+    @Test
+    @DisplayName("Should tolerate a single typo")
+    void shouldTolerateTypos() {
+        assertThat(searchService.search("samsnug", 10)).containsExactly(galaxy);  // transposition
+        assertThat(searchService.search("lenvo", 10)).hasSize(2);  // deletion
+        assertThat(searchService.search("galaxxy", 10)).containsExactly(galaxy);  // insertion
+        assertThat(searchService.search("xyzzy", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should rank products with more matching terms higher")
+    void shouldRankByRelevance() {
+        assertThat(searchService.search("business laptop", 10)).containsExactly(thinkPad);
+        assertThat(searchService.search("laptop", 1)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should apply product changes to the index")
+    void shouldApplyProductChanges() {
+        // When - update, create and delete
+        ProductResponse renamed = new ProductResponse(3L, "ph001", "phone", "samsung", "Galaxy Fold", 125000.00, "good phone", null, null);
+        searchService.onProductChanged(new ProductChangedEvent(3L, renamed));
+        ProductResponse pixel = new ProductResponse(4L, "ph002", "phone", "google", "Pixel 9", 90000.00, "good phone", null, null);
+        searchService.onProductChanged(new ProductChangedEvent(4L, pixel));
+        searchService.onProductChanged(new ProductChangedEvent(1L, null));
+
+        // Then
+        assertThat(searchService.search("fold", 10)).containsExactly(renamed);
+        assertThat(searchService.search("s25", 10)).isEmpty();
+        assertThat(searchService.search("phone", 10)).containsExactlyInAnyOrder(renamed, pixel);
+        assertThat(searchService.search("thinkpad", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject a limit below one")
+    void shouldRejectInvalidLimit() {
+        assertThatThrownBy(() -> searchService.search("laptop", 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,141 @@
+package com.sokoplace.product.suggest;
+
+import com.sokoplace.common.BadRequestException;
+import com.sokoplace.customerOrder.OrderItemsChangedEvent;
+import com.sokoplace.product.ProductChangedEvent;
+import com.sokoplace.product.ProductRepository;
+import com.sokoplace.product.dto.ProductResponse;
+import com.sokoplace.product.dto.ProductSuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductSuggestServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductSuggestService suggestService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        suggestService = new ProductSuggestService(productRepository, jdbcTemplate, Duration.ofHours(1), Duration.ofHours(1));
+
+        given(productRepository.findResponsesAfter(anyLong(), any(Limit.class))).willReturn(List.of(
+                product(1L, "samsung", "Galaxy S25", 125000.0),
+                product(2L, "samsung", "Galaxy S25 Ultra", 180000.0),
+                product(3L, "samsung", "Galaxy A55", 55000.0),
+                product(4L, "lenovo", "ThinkPad E14", 150000.0),
+                product(5L, "sony", "WH-1000XM5", 45000.0)));
+        givenOrdersPerProduct(Map.of(2L, 7, 4L, 3, 1L, 3));
+        suggestService.buildIndex();
+    }
+
+    private static ProductResponse product(Long id, String brand, String model, double price) {
+        return new ProductResponse(id, "SKU" + id, "phone", brand, model, price, null, null, null);
+    }
+
+    // Answers the order_item aggregate query with the given counts
+    private void givenOrdersPerProduct(Map<Long, Integer> orders) {
+        willAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<Long, Integer> entry : orders.entrySet()) {
+                ResultSet resultSet = mock(ResultSet.class);
+                given(resultSet.getLong("product_id")).willReturn(entry.getKey());
+                given(resultSet.getInt("orders")).willReturn(entry.getValue());
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).given(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private List<String> texts(String prefix, int limit) {
+        return suggestService.suggest(prefix, limit).stream().map(ProductSuggestion::text).toList();
+    }
+
+    @Test
+    @DisplayName("Should rank completions by orders, then by lowest price")
+    void shouldRankByPopularityThenPrice() {
+        // S25 Ultra: 7 orders; S25: 3 orders; A55: none
+        assertThat(texts("gal", 10)).containsExactly("Galaxy S25 Ultra", "Galaxy S25", "Galaxy A55");
+    }
+
+    @Test
+    @DisplayName("Should complete brands with the orders of all their products added up")
+    void shouldCompleteBrands() {
+        assertThat(suggestService.suggest("s", 10))
+                .startsWith(new ProductSuggestion("samsung", "brand"))  // 10 orders across its models
+                .contains(new ProductSuggestion("sony", "brand"));
+    }
+
+    @Test
+    @DisplayName("Should match later words of a model, ignoring case, accents and punctuation")
+    void shouldMatchWordStarts() {
+        assertThat(texts("S25", 10)).containsExactly("Galaxy S25 Ultra", "Galaxy S25");
+        assertThat(texts("galaxy  s25 u", 10)).containsExactly("Galaxy S25 Ultra");
+        assertThat(texts("wh 1000", 10)).containsExactly("WH-1000XM5");
+        assertThat(texts("THÍNK", 10)).containsExactly("ThinkPad E14");
+        assertThat(texts("pad", 10)).isEmpty();  // not a word start
+    }
+
+    @Test
+    @DisplayName("Should cap the number of completions")
+    void shouldLimitCompletions() {
+        assertThat(texts("galaxy", 2)).hasSize(2);
+        assertThat(suggestService.suggest("", 10)).isEmpty();
+        assertThatThrownBy(() -> suggestService.suggest("gal", 0)).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    @DisplayName("Should pick up catalog changes on the next rebuild")
+    void shouldApplyChangesOnRebuild() {
+        suggestService.onProductChanged(new ProductChangedEvent(6L, product(6L, "google", "Pixel 9", 90000.0)));
+        suggestService.onProductChanged(new ProductChangedEvent(3L, null));
+
+        // The published index is untouched until the rebuild swaps in a new one
+        assertThat(texts("pix", 10)).isEmpty();
+        suggestService.rebuild();
+
+        assertThat(texts("pix", 10)).containsExactly("Pixel 9");
+        assertThat(texts("galaxy a", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep order counts from order events instead of querying order_item again")
+    void shouldCountOrdersFromEvents() {
+        // A55 moves from no orders to 4; S25 Ultra loses 4 of its 7 when those orders switch to A55
+        for (long order = 1; order <= 4; order++) {
+            suggestService.onOrderItemsChanged(new OrderItemsChangedEvent(order, List.of(2L), List.of(3L)));
+        }
+        suggestService.rebuild();
+
+        assertThat(texts("gal", 10)).containsExactly("Galaxy A55", "Galaxy S25", "Galaxy S25 Ultra");
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+    }
+}